@@ -514,10 +514,10 @@ public final class AssemblyRegion implements Locatable {
      * @param assemblyRegionPadding each assembly region will be padded by this amount on each side
      * @param activeProbThreshold minimum probability for a site to be considered active, as reported by the provided evaluator
      * @param maxProbPropagationDistance maximum number of bases probabilities can propagate in each direction when finding region boundaries
-     * @return a Iterable over one or more AssemblyRegions, each marked as either "active" or "inactive", spanning
+     * @return a List of one or more AssemblyRegions, each marked as either "active" or "inactive", spanning
      *         part of the provided Shard, and filled with all reads that overlap the region.
      */
-    public static Iterable<AssemblyRegion> createFromReadShard( final Shard<GATKRead> shard,
+    public static List<AssemblyRegion> createFromReadShard( final Shard<GATKRead> shard,
                                                                 final SAMFileHeader readsHeader,
                                                                 final ReferenceContext referenceContext,
                                                                 final FeatureContext features,
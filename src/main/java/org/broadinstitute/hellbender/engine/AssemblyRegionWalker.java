@@ -1,5 +1,6 @@
 package org.broadinstitute.hellbender.engine;
 
+import htsjdk.samtools.util.CloseableIterator;
 import org.broadinstitute.hellbender.cmdline.Advanced;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.GATKPlugin.GATKCommandLinePluginDescriptor;
@@ -11,11 +12,13 @@ import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.IntervalUtils;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.downsampling.PositionalDownsampler;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -45,6 +48,12 @@ import java.util.List;
  *
  * Read shards exist mainly as a proof-of-concept that we can shard the reads without introducing calling artifacts,
  * which will be important for the Spark equivalent of this traversal.
+ *
+ * When run with more than one thread (see {@link GATKTool#getNumThreads}), several read shards are divided into
+ * assembly regions concurrently, each on a worker thread with its own reads, reference and Feature data sources and
+ * its own activity profile. The resulting regions are passed to {@link #apply} on the main thread in shard order, so
+ * only the {@link #assemblyRegionEvaluator} needs to be thread-safe. Tools opt in to this by overriding
+ * {@link #assemblyRegionEvaluatorIsThreadSafe}.
  */
 public abstract class AssemblyRegionWalker extends GATKTool {
 
@@ -225,20 +234,44 @@ public abstract class AssemblyRegionWalker extends GATKTool {
         return defaultFilters;
     }
 
+    /**
+     * Can the {@link #assemblyRegionEvaluator} of this tool safely be called concurrently from multiple threads? Tools
+     * that do not override this to return true are always traversed on a single thread, and the engine refuses to run
+     * them with more than one.
+     *
+     * Tools should only return true if their evaluator does not modify any unsynchronized state shared between loci.
+     * {@link #apply} is always called on a single thread, and need not be thread-safe.
+     *
+     * @return true if this tool's {@link #assemblyRegionEvaluator} is thread-safe, otherwise false
+     */
+    public boolean assemblyRegionEvaluatorIsThreadSafe() {
+        return false;
+    }
+
     @Override
-    public final void traverse() {
+    boolean traversalSupportsThreads() {
+        return assemblyRegionEvaluatorIsThreadSafe();
+    }
 
-        CountingReadFilter countedFilter = makeReadFilter();
+    @Override
+    public final void traverse() {
 
         // Since we're processing regions rather than individual reads, tell the progress
         // meter to check the time more frequently (every 10 regions instead of every 1000 regions).
         progressMeter.setRecordsBetweenTimeChecks(10L);
 
+        if ( isParallelTraversal() ) {
+            traverseShardsInParallel();
+            return;
+        }
+
+        CountingReadFilter countedFilter = makeReadFilter();
+
         for ( final LocalReadShard readShard : readShards ) {
             // Since reads in each shard are lazily fetched, we need to pass the filter to the window
             // instead of filtering the reads directly here
             readShard.setReadFilter(countedFilter);
-            readShard.setDownsampler(maxReadsPerAlignmentStart > 0 ? new PositionalDownsampler(maxReadsPerAlignmentStart, getHeaderForReads()) : null);
+            readShard.setDownsampler(makeReadShardDownsampler());
             currentReadShard = readShard;
 
             processReadShard(readShard,
@@ -249,6 +282,58 @@ public abstract class AssemblyRegionWalker extends GATKTool {
         logger.info(countedFilter.getSummaryLine());
     }
 
+    /**
+     * Multi-threaded implementation of the assembly region traversal.
+     *
+     * Divides {@link GATKTool#getNumThreads} read shards at a time into assembly regions on a thread pool. Each worker
+     * thread loads the reads for its shard from its own reads data source (using its own read filter and a new
+     * downsampler), and fetches reference bases and Features for the padded shard from its own data sources. The
+     * assembly regions for each shard are then processed by {@link #apply} on the calling thread, in shard order. The
+     * counts of the read filters of all threads are merged into a single filter summary.
+     */
+    private void traverseShardsInParallel() {
+        // CountingReadFilters keep unsynchronized counts, so each thread gets its own filter
+        final List<CountingReadFilter> threadFilters = new ArrayList<>();
+        final ThreadLocal<CountingReadFilter> threadFilter = ThreadLocal.withInitial(() -> {
+            synchronized ( threadFilters ) {
+                final CountingReadFilter filter = makeReadFilter();
+                threadFilters.add(filter);
+                return filter;
+            }
+        });
+
+        // the shard regions are closed first, so that no thread still uses the data sources when they are closed
+        try ( final PerThreadDataSources dataSources = createPerThreadDataSources(FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES);
+              final CloseableIterator<List<AssemblyRegion>> shardRegions = Utils.transformParallel(readShards.iterator(), readShard -> {
+                final LocalReadShard threadReadShard = new LocalReadShard(readShard.getInterval(), readShard.getPaddedInterval(), dataSources.getReads());
+                threadReadShard.setReadFilter(threadFilter.get());
+                threadReadShard.setDownsampler(makeReadShardDownsampler());
+
+                return createAssemblyRegions(threadReadShard,
+                        new ReferenceContext(dataSources.getReference(), readShard.getPaddedInterval()),
+                        new FeatureContext(dataSources.getFeatures(), readShard.getPaddedInterval()));
+            }, getNumThreads()) ) {
+
+            // Results come back in the same order as our read shards
+            for ( final LocalReadShard readShard : readShards ) {
+                currentReadShard = readShard;
+                processAssemblyRegions(readShard, shardRegions.next());
+            }
+        }
+
+        // report the counts of all threads in a single summary, as a single-threaded traversal would
+        final CountingReadFilter countedFilter = makeReadFilter();
+        threadFilters.forEach(countedFilter::addFilteredCounts);
+        logger.info(countedFilter.getSummaryLine());
+    }
+
+    /**
+     * @return a new downsampler for the reads in a read shard, or null if downsampling is disabled
+     */
+    private PositionalDownsampler makeReadShardDownsampler() {
+        return maxReadsPerAlignmentStart > 0 ? new PositionalDownsampler(maxReadsPerAlignmentStart, getHeaderForReads()) : null;
+    }
+
     /**
      * Divide the given Shard up into active/inactive AssemblyRegions using the {@link #assemblyRegionEvaluator},
      * and send each region to the tool implementation for processing.
@@ -258,12 +343,32 @@ public abstract class AssemblyRegionWalker extends GATKTool {
      * @param featureContext Features spanning the fully-padded interval of the shard
      */
     private void processReadShard(Shard<GATKRead> shard, ReferenceContext referenceContext, FeatureContext featureContext ) {
-        // Divide each shard into one or more assembly regions using our AssemblyRegionEvaluator:
-        final Iterable<AssemblyRegion> assemblyRegions = AssemblyRegion.createFromReadShard(shard,
+        processAssemblyRegions(shard, createAssemblyRegions(shard, referenceContext, featureContext));
+    }
+
+    /**
+     * Divide the given Shard up into active/inactive AssemblyRegions using the {@link #assemblyRegionEvaluator}.
+     * May be called from a worker thread during a multi-threaded traversal.
+     *
+     * @param shard Shard to divide
+     * @param referenceContext Reference bases spanning the fully-padded interval of the shard
+     * @param featureContext Features spanning the fully-padded interval of the shard
+     * @return the assembly regions for the shard, in order of ascending location
+     */
+    private List<AssemblyRegion> createAssemblyRegions(Shard<GATKRead> shard, ReferenceContext referenceContext, FeatureContext featureContext ) {
+        return AssemblyRegion.createFromReadShard(shard,
                 getHeaderForReads(), referenceContext, featureContext, assemblyRegionEvaluator(),
                 minAssemblyRegionSize, maxAssemblyRegionSize, assemblyRegionPadding, activeProbThreshold,
                 maxProbPropagationDistance);
+    }
 
+    /**
+     * Send each assembly region from the given Shard to the tool implementation for processing.
+     *
+     * @param shard Shard the regions were created from
+     * @param assemblyRegions assembly regions for the shard, in order of ascending location
+     */
+    private void processAssemblyRegions(Shard<GATKRead> shard, Iterable<AssemblyRegion> assemblyRegions ) {
         // Call into the tool implementation to process each assembly region from this shard.
         for ( final AssemblyRegion assemblyRegion : assemblyRegions ) {
             logger.debug("Processing assembly region at " + assemblyRegion.getSpan() + " isActive: " + assemblyRegion.isActive() + " numReads: " + assemblyRegion.getReads().size() + " in read shard " + shard.getInterval());
@@ -0,0 +1,85 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.tribble.Feature;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Features prefetched from a {@link FeatureManager} for a window spanning a batch of nearby records (eg., a batch
+ * of sorted reads), shared by the {@link FeatureContext}s of all records in the batch.
+ *
+ * The first query against each FeatureInput fetches all of its Features overlapping the whole window in a single
+ * query, and indexes them so that subsequent queries for any interval within the window are answered without going
+ * back to the FeatureManager. Queries extending outside the window are passed through to the FeatureManager.
+ *
+ * Not thread-safe: a batch should only be used by the thread that created it.
+ */
+final class FeatureBatch {
+
+    private final FeatureManager featureManager;
+
+    /**
+     * Interval spanning all records in the batch
+     */
+    private final SimpleInterval window;
+
+    /**
+     * Features overlapping our window for each FeatureInput queried so far
+     */
+    private final Map<FeatureInput<? extends Feature>, IntervalTreeFeatureCache<? extends Feature>> windowFeatures = new HashMap<>();
+
+    /**
+     * @param featureManager source of Features
+     * @param window interval spanning all records in the batch
+     */
+    FeatureBatch( final FeatureManager featureManager, final SimpleInterval window ) {
+        this.featureManager = Utils.nonNull(featureManager);
+        this.window = Utils.nonNull(window);
+    }
+
+    /**
+     * @return the FeatureManager from which this batch fetches Features
+     */
+    FeatureManager getFeatureManager() {
+        return featureManager;
+    }
+
+    /**
+     * @return the interval spanning all records in the batch
+     */
+    SimpleInterval getWindow() {
+        return window;
+    }
+
+    /**
+     * Get the Features from the given FeatureInput overlapping an interval. Equivalent to
+     * {@link FeatureManager#getFeatures}, but answered from the Features prefetched for our window if possible.
+     *
+     * @param featureDescriptor FeatureInput argument from our tool representing the Feature source to query
+     * @param interval interval to query over (returned Features will overlap this interval)
+     * @param <T> type of Feature in the source represented by featureDescriptor
+     * @return A List of all Features in the backing data source for the provided FeatureInput that overlap
+     *         the provided interval (may be empty if there are none, but never null)
+     */
+    <T extends Feature> List<T> getFeatures( final FeatureInput<T> featureDescriptor, final SimpleInterval interval ) {
+        if ( ! window.contains(interval) ) {
+            return featureManager.getFeatures(featureDescriptor, interval);
+        }
+
+        // The cache for each FeatureInput is only ever filled with Features from that input, so is of the matching type
+        @SuppressWarnings("unchecked")
+        IntervalTreeFeatureCache<T> cache = (IntervalTreeFeatureCache<T>)windowFeatures.get(featureDescriptor);
+        if ( cache == null ) {
+            cache = new IntervalTreeFeatureCache<>();
+            cache.fill(featureManager.getFeatures(featureDescriptor, window).iterator(), window);
+            windowFeatures.put(featureDescriptor, cache);
+        }
+
+        cache.cacheHit(interval);
+        return cache.getCachedFeatures(interval);
+    }
+}
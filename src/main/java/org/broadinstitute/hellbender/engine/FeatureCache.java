@@ -13,25 +13,27 @@ import java.util.*;
  * during query operations initiated via {@link FeatureDataSource#query(org.broadinstitute.hellbender.utils.SimpleInterval)}
  * and/or {@link FeatureDataSource#queryAndPrefetch(org.broadinstitute.hellbender.utils.SimpleInterval)}.
  *
- * Strategy is to pre-fetch a large number of records AFTER each query interval that produces
+ * This is the default {@link FeatureQueryCache} implementation. Strategy is to pre-fetch a large number of records AFTER each query interval that produces
  * a cache miss. This optimizes for the use case of intervals with gradually increasing start
  * positions, as many subsequent queries will find their records wholly contained in the cache
  * before we have another cache miss. Performance will be poor for random/non-localized access
- * patterns, or intervals with decreasing start positions.
+ * patterns, or intervals with decreasing start positions (see {@link IntervalTreeFeatureCache} for
+ * a cache that handles these).
  *
  * Usage:
  * -Test whether each query interval is a cache hit via {@link #cacheHit(org.broadinstitute.hellbender.utils.SimpleInterval)}
  *
  * -If it is a cache hit, trim the cache to the start position of the interval (discarding records that
  *  end before the start of the new interval) via {@link #trimToNewStartPosition(int)}, then retrieve
- *  records up to the desired endpoint using {@link #getCachedFeaturesUpToStopPosition(int)}.
+ *  records up to the desired endpoint using {@link #getCachedFeaturesUpToStopPosition(int)}. {@link #getCachedFeatures(SimpleInterval)}
+ *  does both.
  *
  * -If it is a cache miss, reset the cache using {@link #fill(java.util.Iterator, org.broadinstitute.hellbender.utils.SimpleInterval)}, pre-fetching
  *  a large number of records after the query interval in addition to those actually requested.
  *
  * @param <CACHED_FEATURE> Type of Feature record we are caching
  */
-class FeatureCache<CACHED_FEATURE extends Feature> {
+class FeatureCache<CACHED_FEATURE extends Feature> implements FeatureQueryCache<CACHED_FEATURE> {
     private static final Logger logger = LogManager.getLogger(FeatureCache.class);
 
     /**
@@ -112,6 +114,7 @@ class FeatureCache<CACHED_FEATURE extends Feature> {
     /**
      * @return Number of times we called {@link #cacheHit(SimpleInterval)} and it returned true
      */
+    @Override
     public int getNumCacheHits() {
         return numCacheHits;
     }
@@ -119,6 +122,7 @@ class FeatureCache<CACHED_FEATURE extends Feature> {
     /**
      * @return Number of times we called {@link #cacheHit(SimpleInterval)} and it returned false
      */
+    @Override
     public int getNumCacheMisses() {
         return numCacheMisses;
     }
@@ -135,6 +139,7 @@ class FeatureCache<CACHED_FEATURE extends Feature> {
      *                    (replacing existing cache contents)
      * @param interval all Features from featureIter overlap this interval
      */
+    @Override
     public void fill( final Iterator<CACHED_FEATURE> featureIter, final SimpleInterval interval ) {
         cache.clear();
         while ( featureIter.hasNext() ) {
@@ -150,6 +155,7 @@ class FeatureCache<CACHED_FEATURE extends Feature> {
      * @param interval the interval to check against the contents of our cache
      * @return true if all records overlapping the provided interval are already contained in our cache, otherwise false
      */
+    @Override
     public boolean cacheHit( final SimpleInterval interval ) {
         final boolean cacheHit = cachedInterval != null && cachedInterval.contains(interval);
 
@@ -163,6 +169,22 @@ class FeatureCache<CACHED_FEATURE extends Feature> {
         return cacheHit;
     }
 
+    /**
+     * Trims the cache to the start of the provided interval via {@link #trimToNewStartPosition(int)}, then
+     * returns all cached Features up to its end via {@link #getCachedFeaturesUpToStopPosition(int)}.
+     *
+     * Since trimming discards Features, the start of each interval passed to this method must be
+     * greater than or equal to that of the previous interval since the last {@link #fill}.
+     *
+     * @param interval the interval that returned Features must overlap
+     * @return all cached Features that overlap the provided interval
+     */
+    @Override
+    public List<CACHED_FEATURE> getCachedFeatures( final SimpleInterval interval ) {
+        trimToNewStartPosition(interval.getStart());
+        return getCachedFeaturesUpToStopPosition(interval.getEnd());
+    }
+
     /**
      * Trims the cache to the specified new start position by discarding all records that end before it
      * while preserving relative ordering of records.
@@ -225,6 +247,7 @@ class FeatureCache<CACHED_FEATURE extends Feature> {
     /**
      * Print statistics about the cache hit rate for debugging
      */
+    @Override
     public void printCacheStatistics() {
         final int totalQueries = getNumCacheHits() + getNumCacheMisses();
         logger.debug(String.format("Cache hit rate was %.2f%% (%d out of %d total queries)",
@@ -45,7 +45,13 @@ public class FeatureContext {
      * We will return Features overlapping this interval. Null if this context has no known location
      * (eg., we are dealing with unmapped data).
      */
-    private final SimpleInterval interval;
+    private SimpleInterval interval;
+
+    /**
+     * Features prefetched for a batch of records including this one, from which queries are answered where possible.
+     * Null if queries should go directly to our {@link #featureManager}.
+     */
+    private FeatureBatch featureBatch;
 
     /**
      * Creates an empty FeatureContext with no backing data source. All queries on this context will
@@ -64,8 +70,38 @@ public class FeatureContext {
      * @param interval Interval to constrain queries on this FeatureContext. Null if we have no known location.
      */
     public FeatureContext(final FeatureManager featureManager, final SimpleInterval interval) {
+        this(featureManager, interval, null);
+    }
+
+    private FeatureContext(final FeatureManager featureManager, final SimpleInterval interval, final FeatureBatch featureBatch) {
         this.featureManager = featureManager;
         this.interval = interval;
+        this.featureBatch = featureBatch;
+    }
+
+    /**
+     * Creates a new FeatureContext backed by Features prefetched for a batch of records. Queries within the
+     * batch's window are answered from the prefetched Features, other queries go to the batch's FeatureManager.
+     *
+     * @param featureBatch Features prefetched for a batch of records including this one. Not null.
+     * @param interval Interval to constrain queries on this FeatureContext. Null if we have no known location.
+     * @return a FeatureContext over the given interval backed by the given batch
+     */
+    static FeatureContext fromBatch(final FeatureBatch featureBatch, final SimpleInterval interval) {
+        return new FeatureContext(featureBatch.getFeatureManager(), interval, featureBatch);
+    }
+
+    /**
+     * Move this context to a new interval, optionally backed by Features prefetched for a batch of records. Used by
+     * traversals that recycle context objects (see {@link GATKTool#allowsContextReuse}).
+     *
+     * @param interval new interval to constrain queries on this FeatureContext. Null if we have no known location.
+     * @param featureBatch Features prefetched from our FeatureManager for a batch of records including this one.
+     *                     Null if queries should go directly to our FeatureManager.
+     */
+    void reset(final SimpleInterval interval, final FeatureBatch featureBatch) {
+        this.interval = interval;
+        this.featureBatch = featureBatch;
     }
 
     /**
@@ -160,7 +196,7 @@ public class FeatureContext {
         if (featureManager == null || queryInterval == null || featureDescriptor == null) {
             return Collections.emptyList();
         }
-        return featureManager.getFeatures(featureDescriptor, queryInterval);
+        return featureBatch != null ? featureBatch.getFeatures(featureDescriptor, queryInterval) : featureManager.getFeatures(featureDescriptor, queryInterval);
     }
 
     /**
@@ -43,7 +43,9 @@ import java.util.List;
  * following each interval during a query and caching them. Performance will suffer if the access pattern is
  * random, involves queries over intervals with DECREASING start positions instead of INCREASING start positions,
  * or involves lots of very large jumps forward on the genome or lots of contig switches. Query caching
- * can be disabled, if desired.
+ * can be disabled, if desired. If queries frequently move backwards by small amounts, a query lookbehind
+ * can be configured, in which case a window extending both before and after each cache miss is cached
+ * and indexed so that queries anywhere within the window are cache hits.
  *
  * @param <T> The type of Feature returned by this data source
  */
@@ -77,12 +79,18 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
 
     /**
      * Cache containing Features from recent queries initiated via {@link #query(SimpleInterval)} and/or
-     * {@link #queryAndPrefetch(SimpleInterval)}. This is guaranteed to start at the start position of the
-     * most recent query, but will typically end well after the end of the most recent query. Designed to
-     * improve performance of the common access pattern involving multiple queries across nearby intervals
+     * {@link #queryAndPrefetch(SimpleInterval)}.
+     *
+     * If {@link #queryLookbehindBases} is 0, this is a {@link FeatureCache}, which is guaranteed to start at the
+     * start position of the most recent query, but will typically end well after the end of the most recent query.
+     * Designed to improve performance of the common access pattern involving multiple queries across nearby intervals
      * with gradually increasing start positions.
+     *
+     * Otherwise, this is an {@link IntervalTreeFeatureCache} holding a window that extends both before and after
+     * the query that last produced a cache miss, so that queries with slightly decreasing start positions are also
+     * satisfied from the cache.
      */
-    private final FeatureCache<T> queryCache;
+    private final FeatureQueryCache<T> queryCache;
 
     /**
      * When we experience a cache miss (ie., a query interval not fully contained within our cache) and need
@@ -93,6 +101,13 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
      */
     private final int queryLookaheadBases;
 
+    /**
+     * When we experience a cache miss and need to re-populate the Feature cache from disk, this controls the number
+     * of extra bases BEFORE the start of our interval to fetch. If non-zero, we use an {@link IntervalTreeFeatureCache}
+     * so that subsequent queries starting up to this many bases before the query that produced the miss are cache hits.
+     */
+    private final int queryLookbehindBases;
+
     /**
      * Holds information about the path this datasource reads from.
      */
@@ -177,7 +192,24 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
      *                          that produce this type of Feature. May be null, which results in an unrestricted search.
      */
     public FeatureDataSource(final FeatureInput<T> featureInput, final int queryLookaheadBases, final Class<? extends Feature> targetFeatureType) {
+        this(featureInput, queryLookaheadBases, 0, targetFeatureType);
+    }
+
+    /**
+     * Creates a FeatureDataSource backed by the provided FeatureInput. We will look ahead and behind the specified
+     * numbers of bases during queries that produce cache misses. A non-zero lookbehind selects a cache that can
+     * satisfy queries in any order within the cached window (see {@link IntervalTreeFeatureCache}), rather than
+     * only queries with non-decreasing start positions.
+     *
+     * @param featureInput a FeatureInput specifying a source of Features
+     * @param queryLookaheadBases look ahead this many bases during queries that produce cache misses
+     * @param queryLookbehindBases look behind this many bases during queries that produce cache misses
+     * @param targetFeatureType When searching for a {@link FeatureCodec} for this data source, restrict the search to codecs
+     *                          that produce this type of Feature. May be null, which results in an unrestricted search.
+     */
+    public FeatureDataSource(final FeatureInput<T> featureInput, final int queryLookaheadBases, final int queryLookbehindBases, final Class<? extends Feature> targetFeatureType) {
         Utils.validateArg( queryLookaheadBases >= 0, "Query lookahead bases must be >= 0");
+        Utils.validateArg( queryLookbehindBases >= 0, "Query lookbehind bases must be >= 0");
         this.featureInput = Utils.nonNull(featureInput, "featureInput must not be null");
 
         // Create a feature reader without requiring an index.  We will require one ourselves as soon as
@@ -197,8 +229,9 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
 
         this.currentIterator = null;
         this.intervalsForTraversal = null;
-        this.queryCache = new FeatureCache<>();
+        this.queryCache = queryLookbehindBases > 0 ? new IntervalTreeFeatureCache<>() : new FeatureCache<>();
         this.queryLookaheadBases = queryLookaheadBases;
+        this.queryLookbehindBases = queryLookbehindBases;
     }
 
     /**
@@ -378,25 +411,20 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
                                     "If it's a file, please index it using the bundled tool " + IndexFeatureFile.class.getSimpleName());
         }
 
-        // If the query can be satisfied using existing cache contents, prepare for retrieval
-        // by discarding all Features at the beginning of the cache that end before the start
-        // of our query interval.
-        if ( queryCache.cacheHit(interval) ) {
-            queryCache.trimToNewStartPosition(interval.getStart());
-        }
-        // Otherwise, we have a cache miss, so go to disk to refill our cache.
-        else {
+        // If the query can't be satisfied using existing cache contents, we have a cache miss,
+        // so go to disk to refill our cache.
+        if ( ! queryCache.cacheHit(interval) ) {
             refillQueryCache(interval);
         }
 
         // Return the subset of our cache that overlaps our query interval
-        return queryCache.getCachedFeaturesUpToStopPosition(interval.getEnd());
+        return queryCache.getCachedFeatures(interval);
     }
 
     /**
      * Refill our cache from disk after a cache miss. Will prefetch Features overlapping an additional
-     * queryLookaheadBases bases after the end of the provided interval, in addition to those overlapping
-     * the interval itself.
+     * queryLookaheadBases bases after the end of the provided interval (and queryLookbehindBases bases
+     * before its start), in addition to those overlapping the interval itself.
      *
      * Calling this has the side effect of invalidating (closing) any currently-open iteration over
      * this data source.
@@ -409,12 +437,12 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
         closeOpenIterationIfNecessary();
 
         // Expand the end of our query by the configured number of bases, in anticipation of probable future
-        // queries with slightly larger start/stop positions.
+        // queries with slightly larger start/stop positions (and the start, if we're configured to look behind).
         //
         // Note that it doesn't matter if we go off the end of the contig in the process, since
         // our reader's query operation is not aware of (and does not care about) contig boundaries.
         // Note: we use addExact to blow up on overflow rather than propagate negative results downstream
-        final SimpleInterval queryInterval = new SimpleInterval(interval.getContig(), interval.getStart(), Math.addExact(interval.getEnd(), queryLookaheadBases));
+        final SimpleInterval queryInterval = new SimpleInterval(interval.getContig(), Math.max(1, interval.getStart() - queryLookbehindBases), Math.addExact(interval.getEnd(), queryLookaheadBases));
 
         // Query iterator over our reader will be immediately closed after re-populating our cache
         try ( CloseableTribbleIterator<T> queryIter = featureReader.query(queryInterval.getContig(), queryInterval.getStart(), queryInterval.getEnd()) ) {
@@ -425,6 +453,20 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
         }
     }
 
+    /**
+     * @return Number of queries via {@link #queryAndPrefetch(SimpleInterval)} that were satisfied from our cache
+     */
+    public int getNumCacheHits() {
+        return queryCache.getNumCacheHits();
+    }
+
+    /**
+     * @return Number of queries via {@link #queryAndPrefetch(SimpleInterval)} that required us to refill our cache
+     */
+    public int getNumCacheMisses() {
+        return queryCache.getNumCacheMisses();
+    }
+
     /**
      * Get the logical name of this data source.
      *
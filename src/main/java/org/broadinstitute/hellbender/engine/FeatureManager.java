@@ -87,6 +87,11 @@ public final class FeatureManager implements AutoCloseable {
      */
     private final Map<FeatureInput<? extends Feature>, FeatureDataSource<? extends Feature>> featureSources;
 
+    /**
+     * Metrics into which to record the time taken by queries, or null if queries are not timed
+     */
+    private TraversalMetrics traversalMetrics = null;
+
     /**
      * Create a FeatureManager given a CommandLineProgram tool instance, discovering all FeatureInput
      * arguments in the tool and creating query-able FeatureDataSources for them. Uses the default
@@ -110,10 +115,27 @@ public final class FeatureManager implements AutoCloseable {
      *                              the end of query intervals in anticipation of future queries (>= 0).
      */
     public FeatureManager( final CommandLineProgram toolInstance, final int featureQueryLookahead ) {
+        this(toolInstance, featureQueryLookahead, 0);
+    }
+
+    /**
+     * Create a FeatureManager given a CommandLineProgram tool instance, discovering all FeatureInput
+     * arguments in the tool and creating query-able FeatureDataSources for them. Allows control over
+     * how much caching is performed by each {@link FeatureDataSource}, both before and after query intervals.
+     *
+     * @param toolInstance Instance of the tool to be run (potentially containing one or more FeatureInput arguments)
+     *                     Must have undergone command-line argument parsing and argument value injection already.
+     * @param featureQueryLookahead When querying FeatureDataSources, cache this many extra bases of context beyond
+     *                              the end of query intervals in anticipation of future queries (>= 0).
+     * @param featureQueryLookbehind When querying FeatureDataSources, cache this many extra bases of context before
+     *                               the start of query intervals in anticipation of future queries that move
+     *                               backwards (>= 0). If 0, queries that move backwards are always cache misses.
+     */
+    public FeatureManager( final CommandLineProgram toolInstance, final int featureQueryLookahead, final int featureQueryLookbehind ) {
         this.toolInstanceSimpleClassName = toolInstance.getClass().getSimpleName();
         featureSources = new LinkedHashMap<>();
 
-        initializeFeatureSources(featureQueryLookahead, toolInstance);
+        initializeFeatureSources(featureQueryLookahead, featureQueryLookbehind, toolInstance);
     }
 
     /**
@@ -122,9 +144,11 @@ public final class FeatureManager implements AutoCloseable {
      *
      * @param featureQueryLookahead Set up each FeatureDataSource to cache this many extra bases of context beyond
      *                              the end of query intervals in anticipation of future queries (>= 0).
+     * @param featureQueryLookbehind Set up each FeatureDataSource to cache this many extra bases of context before
+     *                               the start of query intervals in anticipation of future queries (>= 0).
      */
     @SuppressWarnings({"unchecked", "rawtypes"})
-    private void initializeFeatureSources( final int featureQueryLookahead, final CommandLineProgram toolInstance ) {
+    private void initializeFeatureSources( final int featureQueryLookahead, final int featureQueryLookbehind, final CommandLineProgram toolInstance ) {
 
         // Discover all arguments of type FeatureInput (or Collections thereof) in our tool's class hierarchy
         // (and associated ArgumentCollections). Arguments not specified by the user on the command line will
@@ -138,7 +162,7 @@ public final class FeatureManager implements AutoCloseable {
             // Only create a data source for Feature arguments that were actually specified
             if ( featureInput != null ) {
                 final Class<? extends Feature> featureType = getFeatureTypeForFeatureInputField(featureArgument.getKey());
-                addToFeatureSources(featureQueryLookahead, featureInput, featureType);
+                addToFeatureSources(featureQueryLookahead, featureQueryLookbehind, featureInput, featureType);
             }
         }
     }
@@ -154,8 +178,20 @@ public final class FeatureManager implements AutoCloseable {
      * (but not actual tools, so it's not protected).
      */
     void addToFeatureSources(final int featureQueryLookahead, final FeatureInput<? extends Feature> featureInput, final Class<? extends Feature> featureType) {
+        addToFeatureSources(featureQueryLookahead, 0, featureInput, featureType);
+    }
+
+    /**
+     * Add the feature data source to the given feature input.
+     *
+     * @param featureQueryLookahead look ahead this many bases during queries that produce cache misses
+     * @param featureQueryLookbehind look behind this many bases during queries that produce cache misses
+     * @param featureInput source of features
+     * @param featureType class of features
+     */
+    void addToFeatureSources(final int featureQueryLookahead, final int featureQueryLookbehind, final FeatureInput<? extends Feature> featureInput, final Class<? extends Feature> featureType) {
         // Create a new FeatureDataSource for this file, and add it to our query pool
-        featureSources.put(featureInput, new FeatureDataSource<>(featureInput, featureQueryLookahead, featureType));
+        featureSources.put(featureInput, new FeatureDataSource<>(featureInput, featureQueryLookahead, featureQueryLookbehind, featureType));
     }
 
     /**
@@ -261,7 +297,22 @@ public final class FeatureManager implements AutoCloseable {
         // No danger of a ClassCastException here, since we verified that the FeatureDataSource for this
         // FeatureInput will return Features of the expected type T when we first created the data source
         // in initializeFeatureSources()
-        return dataSource.queryAndPrefetch(interval);
+        if ( traversalMetrics == null ) {
+            return dataSource.queryAndPrefetch(interval);
+        }
+        final long start = traversalMetrics.startTimer();
+        final List<T> features = dataSource.queryAndPrefetch(interval);
+        traversalMetrics.stopTimer(TraversalMetrics.Phase.FEATURE_FETCH, start);
+        return features;
+    }
+
+    /**
+     * Record the time taken by each call to {@link #getFeatures} in the given metrics
+     *
+     * @param traversalMetrics metrics in which to record query times (may be null to stop recording them)
+     */
+    public void setTraversalMetrics( final TraversalMetrics traversalMetrics ) {
+        this.traversalMetrics = traversalMetrics;
     }
 
     /**
@@ -0,0 +1,75 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.tribble.Feature;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * FeatureQueryCache: a cache of Feature records used by {@link FeatureDataSource} to satisfy queries initiated via
+ * {@link FeatureDataSource#queryAndPrefetch(SimpleInterval)} without going to disk.
+ *
+ * Usage:
+ * -Test whether each query interval is a cache hit via {@link #cacheHit(SimpleInterval)}
+ *
+ * -If it is a cache miss, reset the cache using {@link #fill(Iterator, SimpleInterval)} over an interval
+ *  containing the query interval
+ *
+ * -Retrieve the Features overlapping the query interval via {@link #getCachedFeatures(SimpleInterval)}
+ *
+ * Implementations differ in which access patterns they support efficiently:
+ *
+ * -{@link FeatureCache} supports only queries with non-decreasing start positions
+ *
+ * -{@link IntervalTreeFeatureCache} supports queries in any order within the cached window
+ *
+ * @param <CACHED_FEATURE> Type of Feature record we are caching
+ */
+interface FeatureQueryCache<CACHED_FEATURE extends Feature> {
+
+    /**
+     * Clear our cache and fill it with the records from the provided iterator, preserving their
+     * relative ordering.
+     *
+     * @param featureIter iterator from which to pull Features with which to populate our cache
+     *                    (replacing existing cache contents)
+     * @param interval all Features from featureIter overlap this interval
+     */
+    void fill( final Iterator<CACHED_FEATURE> featureIter, final SimpleInterval interval );
+
+    /**
+     * Determines whether all records overlapping the provided interval are already contained in our cache,
+     * and updates our hit/miss counts accordingly.
+     *
+     * @param interval the interval to check against the contents of our cache
+     * @return true if all records overlapping the provided interval are already contained in our cache, otherwise false
+     */
+    boolean cacheHit( final SimpleInterval interval );
+
+    /**
+     * Returns all cached Features that overlap the provided interval, in the order in which they were
+     * added to the cache. May only be called for intervals wholly contained within the cache (ie., after
+     * {@link #cacheHit(SimpleInterval)} returned true for the interval, or after a {@link #fill} over an
+     * interval containing it).
+     *
+     * @param interval the interval that returned Features must overlap
+     * @return all cached Features that overlap the provided interval
+     */
+    List<CACHED_FEATURE> getCachedFeatures( final SimpleInterval interval );
+
+    /**
+     * @return Number of times we called {@link #cacheHit(SimpleInterval)} and it returned true
+     */
+    int getNumCacheHits();
+
+    /**
+     * @return Number of times we called {@link #cacheHit(SimpleInterval)} and it returned false
+     */
+    int getNumCacheMisses();
+
+    /**
+     * Print statistics about the cache hit rate for debugging
+     */
+    void printCacheStatistics();
+}
@@ -46,6 +46,24 @@ public abstract class GATKTool extends CommandLineProgram {
     @Argument(fullName = "secondsBetweenProgressUpdates", shortName = "secondsBetweenProgressUpdates", doc = "Output traversal statistics every time this many seconds elapse", optional = true)
     private double secondsBetweenProgressUpdates = ProgressMeter.DEFAULT_SECONDS_BETWEEN_UPDATES;
 
+    @Argument(fullName = "threads", shortName = "threads", doc = "Number of threads to use for traversal. Values greater than 1 are only supported by traversals that can process shards in parallel, and only for tools that are thread-safe.", optional = true)
+    private int numThreads = 1;
+
+    @Argument(fullName = "readAheadQueueDepth", shortName = "readAheadQueueDepth", doc = "If greater than 0, decompress and decode reads on a background thread, keeping up to this many batches of " + ReadsDataSource.READ_AHEAD_BATCH_SIZE + " reads ahead of the traversal. 0 disables read-ahead.", optional = true)
+    private int readAheadQueueDepth = 0;
+
+    @Argument(fullName = "planReadQueries", shortName = "planReadQueries", doc = "If true, use the index of each BAM input to merge consecutive intervals whose reads share a compressed block into a single query. Has no effect on other inputs.", optional = true)
+    private boolean planReadQueries = false;
+
+    @Argument(fullName = "featureQueryLookbehind", shortName = "featureQueryLookbehind", doc = "If greater than 0, when a query against a source of Features misses the cache, also cache this many bases before the query, and index the cached Features so that queries moving backwards within the cached window are cache hits.", optional = true)
+    private int featureQueryLookbehind = 0;
+
+    @Argument(fullName = "memoryMapReference", shortName = "memoryMapReference", doc = "If true, memory-map the reference fasta rather than reading it through a per-process cache. Reduces reference I/O for random access patterns, and lets concurrent processes on one machine share the reference in the page cache.", optional = true)
+    private boolean memoryMapReference = false;
+
+    @Argument(fullName = "traversalMetricsFile", shortName = "traversalMetricsFile", doc = "If specified, time each phase of the traversal (read decoding, filtering, reference and Feature fetches, and apply()) and the throughput of each shard, and write these along with overall throughput and peak heap usage to this file at the end of the traversal. Written as JSON if the file name ends with .json, otherwise as TSV.", optional = true)
+    private File traversalMetricsFile = null;
+
     @Argument(fullName = "disableSequenceDictionaryValidation", shortName = "disableSequenceDictionaryValidation", doc = "If specified, do not check the sequence dictionaries from our inputs for compatibility. Use at your own risk!", optional = true)
     private boolean disableSequenceDictionaryValidation = false;
 
@@ -124,7 +142,7 @@ public abstract class GATKTool extends CommandLineProgram {
      * May be overridden by traversals that require custom initialization of the reference data source.
      */
     void initializeReference() {
-        reference = referenceArguments.getReferenceFile() != null ? ReferenceDataSource.of(referenceArguments.getReferenceFile()) : null;
+        reference = referenceArguments.getReferenceFile() != null ? ReferenceDataSource.of(referenceArguments.getReferenceFile(), memoryMapReference) : null;
     }
 
     /**
@@ -134,19 +152,33 @@ public abstract class GATKTool extends CommandLineProgram {
      * May be overridden by traversals that require custom initialization of the reads data source.
      */
     void initializeReads() {
-        if (! readArguments.getReadFiles().isEmpty()) {
-            SamReaderFactory factory = SamReaderFactory.makeDefault().validationStringency(readArguments.getReadValidationStringency());
-            if (hasReference()) { // pass in reference if available, because CRAM files need it
-                factory = factory.referenceSequence(referenceArguments.getReferenceFile());
-            }
-            else if (hasCramInput()) {
-                throw new UserException.MissingReference("A reference file is required when using CRAM files.");
-            }
-            reads = new ReadsDataSource(readArguments.getReadPaths(), factory);
+        reads = ! readArguments.getReadFiles().isEmpty() ? createReadsDataSource() : null;
+    }
+
+    /**
+     * Open a new source of reads over our reads inputs, independent of the engine-wide {@link #reads} data source.
+     * Used by {@link #initializeReads} and by traversals that need a separate source of reads per thread.
+     *
+     * Must only be called if reads inputs were provided.
+     *
+     * @return a newly-opened ReadsDataSource over our reads inputs
+     */
+    ReadsDataSource createReadsDataSource() {
+        SamReaderFactory factory = SamReaderFactory.makeDefault().validationStringency(readArguments.getReadValidationStringency());
+        if (hasReference()) { // pass in reference if available, because CRAM files need it
+            factory = factory.referenceSequence(referenceArguments.getReferenceFile());
         }
-        else {
-            reads = null;
+        else if (hasCramInput()) {
+            throw new UserException.MissingReference("A reference file is required when using CRAM files.");
         }
+        if ( readAheadQueueDepth < 0 ) {
+            throw new UserException.BadArgumentValue("readAheadQueueDepth", String.valueOf(readAheadQueueDepth), "must be >= 0");
+        }
+
+        final ReadsDataSource readsDataSource = new ReadsDataSource(readArguments.getReadPaths(), factory);
+        readsDataSource.setReadAheadQueueDepth(readAheadQueueDepth);
+        readsDataSource.setQueryPlanningEnabled(planReadQueries);
+        return readsDataSource;
     }
 
     /**
@@ -162,15 +194,64 @@ public abstract class GATKTool extends CommandLineProgram {
      * Package-private so that engine classes can access it, but concrete tool child classes cannot.
      * May be overridden by traversals that require custom initialization of Feature data sources.
      *
-     * By default, this method initializes the FeatureManager to use the lookahead cache of {@link FeatureDataSource#DEFAULT_QUERY_LOOKAHEAD_BASES} bases.
+     * By default, this method initializes the FeatureManager to use the lookahead cache of {@link FeatureDataSource#DEFAULT_QUERY_LOOKAHEAD_BASES} bases,
+     * and the lookbehind given by {@link #getFeatureQueryLookbehind}.
      */
     void initializeFeatures() {
-        features = new FeatureManager(this);
+        features = new FeatureManager(this, FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES, getFeatureQueryLookbehind());
         if ( features.isEmpty() ) {  // No available sources of Features discovered for this tool
             features = null;
         }
     }
 
+    /**
+     * @return the number of bases before each query interval to cache when a Feature query misses the cache
+     *         (see {@link FeatureDataSource}). Package-private so that traversals overriding {@link #initializeFeatures}
+     *         can honor it.
+     */
+    int getFeatureQueryLookbehind() {
+        if ( featureQueryLookbehind < 0 ) {
+            throw new UserException.BadArgumentValue("featureQueryLookbehind", String.valueOf(featureQueryLookbehind), "must be >= 0");
+        }
+        return featureQueryLookbehind;
+    }
+
+    /**
+     * Create a set of per-thread data sources mirroring our engine-wide reference, reads and Feature data sources,
+     * for use by traversals that process shards on multiple threads. A data source is only opened on a thread
+     * if the corresponding engine-wide data source is present.
+     *
+     * @param featureQueryLookahead lookahead to use for the Feature cache of each per-thread FeatureManager
+     * @return a new PerThreadDataSources object, which must be closed by the caller once traversal is complete
+     */
+    PerThreadDataSources createPerThreadDataSources( final int featureQueryLookahead ) {
+        return new PerThreadDataSources(
+                hasReads() ? this::createReadsDataSource : () -> null,
+                hasReference() ? () -> getTraversalMetrics().timeReference(ReferenceDataSource.of(referenceArguments.getReferenceFile(), memoryMapReference)) : () -> null,
+                hasFeatures() ? () -> timeFeatureQueries(new FeatureManager(this, featureQueryLookahead, getFeatureQueryLookbehind())) : () -> null
+        );
+    }
+
+    /**
+     * @return metrics for the current traversal, in which traversals may record the time spent in each phase
+     *         (phase timing is only enabled if the user requested a {@link #traversalMetricsFile})
+     */
+    final TraversalMetrics getTraversalMetrics() {
+        return progressMeter.getMetrics();
+    }
+
+    /**
+     * Record the time taken by queries on the given FeatureManager in our traversal metrics, if phase timing is enabled
+     *
+     * @return the given FeatureManager
+     */
+    private FeatureManager timeFeatureQueries( final FeatureManager featureManager ) {
+        if ( featureManager != null && getTraversalMetrics().isPhaseTimingEnabled() ) {
+            featureManager.setTraversalMetrics(getTraversalMetrics());
+        }
+        return featureManager;
+    }
+
     /**
      * Initialize our intervals for traversal.
      *
@@ -267,6 +348,47 @@ public abstract class GATKTool extends CommandLineProgram {
         return false;
     }
 
+    /**
+     * May the traversal recycle the context objects (ReferenceContext, FeatureContext and ReadsContext) it hands to
+     * apply()? If so, each traversal thread resets a single instance of each context for every record instead of
+     * allocating new ones, which saves considerable allocation and garbage collection on traversals over many
+     * records (eg., every locus in a genome).
+     *
+     * Tools that override this to return true must not retain a reference to any context object beyond the call to
+     * apply() to which it was passed, since its contents will change with the next record. Anything derived from a
+     * context (its interval, reference bases, Features, etc.) may still be retained.
+     *
+     * @return true if this tool allows its context objects to be recycled between records, otherwise false
+     */
+    public boolean allowsContextReuse() {
+        return false;
+    }
+
+    /**
+     * Can this tool's traversal process shards on multiple threads? Traversal types that implement a
+     * shard-parallel mode should override to return true for the tools they can run that way. The engine will refuse
+     * to run a tool with more than one thread if this returns false.
+     *
+     * @return true if this tool's traversal supports the {@link #numThreads} argument, otherwise false
+     */
+    boolean traversalSupportsThreads() {
+        return false;
+    }
+
+    /**
+     * @return the number of threads requested for traversal (always 1 unless the tool supports parallel traversal)
+     */
+    public final int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * @return true if traversal should process shards on multiple threads, otherwise false
+     */
+    final boolean isParallelTraversal() {
+        return numThreads > 1;
+    }
+
     /**
      * Returns the reference sequence dictionary if there is a reference (hasReference() == true), otherwise null.
      * @return reference sequence dictionary if any, or null
@@ -360,6 +482,11 @@ public abstract class GATKTool extends CommandLineProgram {
         checkToolRequirements();
 
         progressMeter = new ProgressMeter(secondsBetweenProgressUpdates);
+        if ( traversalMetricsFile != null ) {
+            getTraversalMetrics().enablePhaseTiming();
+            reference = getTraversalMetrics().timeReference(reference);
+            timeFeatureQueries(features);
+        }
     }
 
     /**
@@ -417,6 +544,14 @@ public abstract class GATKTool extends CommandLineProgram {
             throw new UserException("Tool " + getClass().getSimpleName() + " requires features, but none were provided");
         }
 
+        if ( numThreads < 1 ) {
+            throw new UserException.BadArgumentValue("threads", String.valueOf(numThreads), "must be >= 1");
+        }
+
+        if ( numThreads > 1 && ! traversalSupportsThreads() ) {
+            throw new UserException.BadArgumentValue("threads", String.valueOf(numThreads), "Tool " + getClass().getSimpleName() + " does not support multi-threaded traversal");
+        }
+
     }
 
     /*
@@ -583,6 +718,9 @@ public abstract class GATKTool extends CommandLineProgram {
             progressMeter.start();
             traverse();
             progressMeter.stop();
+            if ( traversalMetricsFile != null ) {
+                getTraversalMetrics().write(traversalMetricsFile);
+            }
             return onTraversalSuccess();
         } finally {
             closeTool();
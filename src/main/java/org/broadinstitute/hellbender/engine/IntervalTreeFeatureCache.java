@@ -0,0 +1,224 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.tribble.Feature;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * IntervalTreeFeatureCache: a {@link FeatureQueryCache} that holds a bounded window of Features indexed by
+ * position, so that any query interval contained within the window is a cache hit regardless of the order
+ * in which queries arrive.
+ *
+ * This is intended for access patterns that the default {@link FeatureCache} handles poorly, such as
+ * queries that jump backwards by a small amount (eg., for the mates of paired reads, or padded assembly
+ * regions). {@link FeatureDataSource} uses it when configured with a non-zero query lookbehind, filling
+ * it with the Features overlapping a window that extends both before and after each query interval
+ * that produces a cache miss.
+ *
+ * Features are stored in the order they were read (sorted by start position), together with a running
+ * maximum of their end positions. Since the running maximum is non-decreasing, the first Feature that could
+ * overlap a query can be found by binary search, and overlapping Features are then collected by a scan that
+ * stops at the first Feature starting after the end of the query. Unlike {@link FeatureCache}, retrieval
+ * never discards Features, so the window is only replaced on the next cache miss.
+ *
+ * @param <CACHED_FEATURE> Type of Feature record we are caching
+ */
+final class IntervalTreeFeatureCache<CACHED_FEATURE extends Feature> implements FeatureQueryCache<CACHED_FEATURE> {
+    private static final Logger logger = LogManager.getLogger(IntervalTreeFeatureCache.class);
+
+    /**
+     * Initial capacity of our cache (will grow by doubling if needed)
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Our cached Features, in the order they were added (ie., sorted by start position)
+     */
+    private final List<CACHED_FEATURE> cache;
+
+    /**
+     * maxEnds[i] is the largest end position of cache[0..i]. Grown by doubling as needed.
+     */
+    private int[] maxEnds;
+
+    /**
+     * Our cache currently contains all Feature records overlapping this interval. Null before the first fill.
+     */
+    private SimpleInterval cachedInterval;
+
+    /**
+     * Number of times we called {@link #cacheHit(SimpleInterval)} and it returned true
+     */
+    private int numCacheHits = 0;
+
+    /**
+     * Number of times we called {@link #cacheHit(SimpleInterval)} and it returned false
+     */
+    private int numCacheMisses = 0;
+
+    /**
+     * Number of cache hits whose start position was before that of the previous query (ie., hits that
+     * {@link FeatureCache} would have been unable to satisfy)
+     */
+    private int numBackwardCacheHits = 0;
+
+    /**
+     * Start position of the most recent query on our current contig, for tracking backward hits
+     */
+    private int previousQueryStart = 0;
+
+    /**
+     * Create an initially-empty IntervalTreeFeatureCache
+     */
+    public IntervalTreeFeatureCache() {
+        cache = new ArrayList<>(INITIAL_CAPACITY);
+        maxEnds = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return the interval that all Features in our cache overlap, or null if we have not yet been filled
+     */
+    public SimpleInterval getCachedInterval() {
+        return cachedInterval;
+    }
+
+    /**
+     * @return the number of Features in our cache
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return Number of cache hits whose start position was before that of the previous query
+     */
+    public int getNumBackwardCacheHits() {
+        return numBackwardCacheHits;
+    }
+
+    @Override
+    public int getNumCacheHits() {
+        return numCacheHits;
+    }
+
+    @Override
+    public int getNumCacheMisses() {
+        return numCacheMisses;
+    }
+
+    /**
+     * Clear our cache and fill it with the records from the provided iterator, which must be sorted by
+     * start position, and index them for retrieval.
+     *
+     * @param featureIter iterator from which to pull Features with which to populate our cache
+     *                    (replacing existing cache contents)
+     * @param interval all Features from featureIter overlap this interval
+     */
+    @Override
+    public void fill( final Iterator<CACHED_FEATURE> featureIter, final SimpleInterval interval ) {
+        cache.clear();
+
+        int maxEnd = 0;
+        int previousStart = 0;
+        while ( featureIter.hasNext() ) {
+            final CACHED_FEATURE feature = featureIter.next();
+            if ( feature.getStart() < previousStart ) {
+                throw new GATKException(String.format("BUG: Features added to the cache must be sorted by start position, but found start %d after start %d",
+                        feature.getStart(), previousStart));
+            }
+            previousStart = feature.getStart();
+            maxEnd = Math.max(maxEnd, feature.getEnd());
+
+            if ( cache.size() == maxEnds.length ) {
+                final int[] newMaxEnds = new int[maxEnds.length * 2];
+                System.arraycopy(maxEnds, 0, newMaxEnds, 0, maxEnds.length);
+                maxEnds = newMaxEnds;
+            }
+            maxEnds[cache.size()] = maxEnd;
+            cache.add(feature);
+        }
+
+        cachedInterval = interval;
+        previousQueryStart = 0;
+    }
+
+    @Override
+    public boolean cacheHit( final SimpleInterval interval ) {
+        final boolean cacheHit = cachedInterval != null && cachedInterval.contains(interval);
+
+        if ( cacheHit ) {
+            ++numCacheHits;
+            if ( interval.getStart() < previousQueryStart ) {
+                ++numBackwardCacheHits;
+            }
+            previousQueryStart = interval.getStart();
+        }
+        else {
+            ++numCacheMisses;
+        }
+
+        return cacheHit;
+    }
+
+    /**
+     * Returns (but does not remove) all cached Features that overlap the provided interval, in the order in
+     * which they were added to the cache.
+     *
+     * @param interval the interval that returned Features must overlap. Must lie within our cached interval.
+     * @return all cached Features that overlap the provided interval
+     */
+    @Override
+    public List<CACHED_FEATURE> getCachedFeatures( final SimpleInterval interval ) {
+        if ( cachedInterval == null || ! cachedInterval.contains(interval) ) {
+            throw new GATKException(String.format("BUG: attempted to retrieve Features for interval %s not contained in the cached interval %s",
+                    interval, cachedInterval));
+        }
+
+        final List<CACHED_FEATURE> matchingFeatures = new ArrayList<>();
+        for ( int i = firstIndexReaching(interval.getStart()); i < cache.size(); ++i ) {
+            final CACHED_FEATURE candidateFeature = cache.get(i);
+            if ( candidateFeature.getStart() > interval.getEnd() ) {
+                break; // No more possible matches among the remaining cached Features, so stop looking
+            }
+            if ( candidateFeature.getEnd() >= interval.getStart() ) {
+                matchingFeatures.add(candidateFeature);
+            }
+        }
+        return matchingFeatures;
+    }
+
+    /**
+     * @return the index of the first cached Feature such that it or some earlier Feature ends on or after
+     *         the given position. No Feature before this index can overlap the position or anything after it.
+     */
+    private int firstIndexReaching( final int position ) {
+        int low = 0;
+        int high = cache.size();
+        while ( low < high ) {
+            final int mid = (low + high) >>> 1;
+            if ( maxEnds[mid] < position ) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void printCacheStatistics() {
+        final int totalQueries = getNumCacheHits() + getNumCacheMisses();
+        logger.debug(String.format("Cache hit rate was %.2f%% (%d out of %d total queries, of which %d were backward hits)",
+                totalQueries > 0 ? ((double)getNumCacheHits() / totalQueries) * 100.0 : 0.0,
+                getNumCacheHits(),
+                totalQueries,
+                getNumBackwardCacheHits()));
+    }
+}
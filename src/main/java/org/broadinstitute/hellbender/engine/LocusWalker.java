@@ -2,6 +2,9 @@ package org.broadinstitute.hellbender.engine;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.CloseableIterator;
+import org.broadinstitute.hellbender.cmdline.Advanced;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.GATKPlugin.GATKCommandLinePluginDescriptor;
 import org.broadinstitute.hellbender.cmdline.GATKPlugin.GATKReadFilterPluginDescriptor;
@@ -10,15 +13,19 @@ import org.broadinstitute.hellbender.engine.filters.ReadFilter;
 import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
 import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.IntervalUtils;
+import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.iterators.IntervalOverlappingIterator;
 import org.broadinstitute.hellbender.utils.iterators.ReadFilteringIterator;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.downsampling.DownsamplingMethod;
 import org.broadinstitute.hellbender.utils.locusiterator.LIBSDownsamplingInfo;
 import org.broadinstitute.hellbender.utils.locusiterator.LocusIteratorByState;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 /**
@@ -29,6 +36,11 @@ import java.util.stream.StreamSupport;
  * LocusWalker authors must implement the apply() method to process each position, and may optionally implement
  * onTraversalStart(), onTraversalSuccess() and/or closeTool().
  *
+ * When run with more than one thread (see {@link GATKTool#getNumThreads}), the traversal intervals are divided into
+ * shards of {@link #readShardSize} bases, and the pileups for several shards are computed concurrently, each with an
+ * independent reads query and LocusIteratorByState. The resulting AlignmentContexts are handed to apply() on the main
+ * thread in genomic order, so tool implementations do not need to be thread-safe.
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 public abstract class LocusWalker extends GATKTool {
@@ -36,6 +48,15 @@ public abstract class LocusWalker extends GATKTool {
     @Argument(fullName = "maxDepthPerSample", shortName = "maxDepthPerSample", doc = "Maximum number of reads to retain per sample per locus. Reads above this threshold will be downsampled. Set to 0 to disable.", optional = true)
     protected int maxDepthPerSample = defaultMaxDepthPerSample();
 
+    /**
+     * Default size of the read shards whose pileups are computed concurrently during a multi-threaded traversal
+     */
+    public static final int DEFAULT_READ_SHARD_SIZE = 10_000;
+
+    @Advanced
+    @Argument(fullName = "readShardSize", shortName = "readShardSize", doc = "Size of each read shard, in bases, when traversing with multiple threads. Ignored for single-threaded traversals.", optional = true)
+    protected int readShardSize = DEFAULT_READ_SHARD_SIZE;
+
     /**
      * Should the LIBS keep unique reads? Tools that do should override to return {@code true}.
      */
@@ -142,11 +163,19 @@ public abstract class LocusWalker extends GATKTool {
     @Override
     protected final void onStartup() {
         super.onStartup();
+        if ( readShardSize <= 0 ) {
+            throw new UserException.BadArgumentValue("readShardSize", String.valueOf(readShardSize), "read shard size must be > 0");
+        }
         if ( hasIntervals() ) {
             reads.setTraversalBounds(intervalArgumentCollection.getTraversalParameters(getHeaderForReads().getSequenceDictionary()));
         }
     }
 
+    @Override
+    boolean traversalSupportsThreads() {
+        return true;
+    }
+
     /**
      * Implementation of locus-based traversal.
      * Subclasses can override to provide their own behavior but default implementation should be suitable for most uses.
@@ -162,22 +191,155 @@ public abstract class LocusWalker extends GATKTool {
         final Set<String> samples = header.getReadGroups().stream()
                                           .map(SAMReadGroupRecord::getSample)
                                           .collect(Collectors.toSet());
+        if ( isParallelTraversal() ) {
+            traverseShardsInParallel(header, samples);
+            return;
+        }
         final CountingReadFilter countedFilter = makeReadFilter();
         // get the LIBS
-        final LocusIteratorByState libs = new LocusIteratorByState(new ReadFilteringIterator(reads.iterator(), countedFilter), getDownsamplingInfo(), keepUniqueReadListInLibs(), samples, header, includeDeletions(), includeNs());
+        final TraversalMetrics metrics = getTraversalMetrics();
+        final Iterator<GATKRead> filteredReads = new ReadFilteringIterator(
+                metrics.timeIterator(reads.iterator(), TraversalMetrics.Phase.READ_DECODING), metrics.timeFilter(countedFilter));
+        final LocusIteratorByState libs = new LocusIteratorByState(filteredReads, getDownsamplingInfo(), keepUniqueReadListInLibs(), samples, header, includeDeletions(), includeNs());
         // prepare the iterator
         Spliterator<AlignmentContext> iterator = (hasIntervals()) ? new IntervalOverlappingIterator<>(libs, intervalsForTraversal, header.getSequenceDictionary()).spliterator() : libs.spliterator();
+        final WalkerContexts contexts = new WalkerContexts(null, reference, features, allowsContextReuse());
         // iterate over each alignment, and apply the function
         StreamSupport.stream(iterator, false)
             .forEach(alignmentContext -> {
-                        final SimpleInterval alignmentInterval = new SimpleInterval(alignmentContext);
-                        apply(alignmentContext, new ReferenceContext(reference, alignmentInterval), new FeatureContext(features, alignmentInterval));
+                        final SimpleInterval alignmentInterval = getLocusInterval(alignmentContext);
+                        final long applyStart = metrics.startTimer();
+                        apply(alignmentContext, contexts.getReferenceContext(alignmentInterval), contexts.getFeatureContext(alignmentInterval));
+                        metrics.stopTimer(TraversalMetrics.Phase.APPLY, applyStart);
                         progressMeter.update(alignmentInterval);
                 }
             );
         logger.info(countedFilter.getSummaryLine());
     }
 
+    /**
+     * Multi-threaded implementation of locus-based traversal.
+     *
+     * Divides the traversal intervals (or the whole genome, if there are none) into shards of {@link #readShardSize}
+     * bases, and computes the AlignmentContexts for {@link GATKTool#getNumThreads} shards at a time on a thread pool.
+     * Each shard queries all reads overlapping it from a per-thread reads data source (so reads spanning the shard
+     * boundaries contribute to the pileups on both sides) and runs its own LocusIteratorByState, restricted to the loci
+     * within the shard. The AlignmentContexts are then passed to {@link #apply} on the calling thread in genomic order.
+     *
+     * Reads that span a shard boundary are filtered in both shards, but are only counted by the read filter of the first
+     * shard they overlap. The counts of the read filters of all threads (plus, when traversing the whole genome, those of
+     * the unmapped reads with no position) are then merged into a single filter summary, so that it matches that of a
+     * single-threaded traversal. Note that when downsampling
+     * is enabled the reads kept may differ from a single-threaded traversal, since the shards share a random generator.
+     */
+    private void traverseShardsInParallel( final SAMFileHeader header, final Set<String> samples ) {
+        final SAMSequenceDictionary dictionary = header.getSequenceDictionary();
+        final List<SimpleInterval> intervals = hasIntervals() ? intervalsForTraversal : IntervalUtils.getAllIntervalsForReference(dictionary);
+
+        final List<ShardBoundary> shards = new ArrayList<>();
+        for ( final SimpleInterval interval : intervals ) {
+            shards.addAll(Shard.divideIntervalIntoShards(interval, readShardSize, 0, dictionary));
+        }
+
+        // CountingReadFilters keep unsynchronized counts, so each thread gets its own filter. Reads already seen by
+        // the previous shard go through a separate filter whose counts are discarded.
+        final List<CountingReadFilter> threadFilters = new ArrayList<>();
+        final ThreadLocal<CountingReadFilter> threadFilter = ThreadLocal.withInitial(() -> {
+            synchronized ( threadFilters ) {
+                final CountingReadFilter filter = makeReadFilter();
+                threadFilters.add(filter);
+                return filter;
+            }
+        });
+        final ThreadLocal<CountingReadFilter> uncountedThreadFilter = ThreadLocal.withInitial(() -> {
+            synchronized ( threadFilters ) {
+                return makeReadFilter();
+            }
+        });
+
+        // the shard results are closed first, so that no thread still uses the data sources when they are closed
+        try ( final PerThreadDataSources dataSources = createPerThreadDataSources(FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES);
+              final CloseableIterator<List<AlignmentContext>> shardResults = Utils.transformParallel(
+                    IntStream.range(0, shards.size()).iterator(),
+                    shardIndex -> {
+                        final ShardBoundary shard = shards.get(shardIndex);
+                        final ShardBoundary previousShard = shardIndex > 0 ? shards.get(shardIndex - 1) : null;
+                        final int previousShardEnd = previousShard != null && previousShard.getContig().equals(shard.getContig()) ? previousShard.getEnd() : 0;
+                        final CountingReadFilter countedFilter = threadFilter.get();
+                        final CountingReadFilter uncountedFilter = uncountedThreadFilter.get();
+                        final ReadFilter shardFilter = new ReadFilter() {
+                            private static final long serialVersionUID = 1L;
+
+                            @Override
+                            public boolean test( final GATKRead read ) {
+                                return read.getAssignedStart() > previousShardEnd ? countedFilter.test(read) : uncountedFilter.test(read);
+                            }
+                        };
+                        return loadShardAlignmentContexts(shard, dataSources.getReads(), shardFilter, samples, header);
+                    },
+                    getNumThreads()) ) {
+
+            // apply() is always called on this thread, so a single set of contexts suffices
+            final TraversalMetrics metrics = getTraversalMetrics();
+            final WalkerContexts contexts = new WalkerContexts(null, reference, features, allowsContextReuse());
+            while ( shardResults.hasNext() ) {
+                for ( final AlignmentContext alignmentContext : shardResults.next() ) {
+                    final SimpleInterval alignmentInterval = getLocusInterval(alignmentContext);
+                    final long applyStart = metrics.startTimer();
+                    apply(alignmentContext, contexts.getReferenceContext(alignmentInterval), contexts.getFeatureContext(alignmentInterval));
+                    metrics.stopTimer(TraversalMetrics.Phase.APPLY, applyStart);
+                    progressMeter.update(alignmentInterval);
+                }
+            }
+        }
+
+        // Unmapped reads with no position contribute no loci, but a serial traversal without intervals still runs them
+        // through the read filter, so count them too. Then report the counts of all threads in a single summary.
+        final CountingReadFilter countedFilter = makeReadFilter();
+        if ( ! hasIntervals() ) {
+            final Iterator<GATKRead> unmappedReads = reads.queryUnmapped();
+            while ( unmappedReads.hasNext() ) {
+                countedFilter.test(unmappedReads.next());
+            }
+        }
+        threadFilters.forEach(countedFilter::addFilteredCounts);
+        logger.info(countedFilter.getSummaryLine());
+    }
+
+    /**
+     * Returns the interval of the locus of an AlignmentContext, reusing the location of the context itself if it is
+     * already a SimpleInterval (as it is for contexts produced by {@link LocusIteratorByState}) rather than
+     * allocating a copy of it for every locus.
+     */
+    private static SimpleInterval getLocusInterval( final AlignmentContext alignmentContext ) {
+        return alignmentContext.getLocation() instanceof SimpleInterval ? (SimpleInterval)alignmentContext.getLocation() : new SimpleInterval(alignmentContext);
+    }
+
+    /**
+     * Run a LocusIteratorByState over all reads overlapping a shard, and collect the AlignmentContexts for the loci
+     * within the shard.
+     *
+     * @param shard shard to process
+     * @param shardReads reads data source for the calling thread
+     * @param readFilter filter to apply to the reads before building pileups
+     * @param samples samples from the read groups in our header
+     * @param header header for our reads
+     * @return AlignmentContexts for all covered loci within the shard, in genomic order
+     */
+    private List<AlignmentContext> loadShardAlignmentContexts( final ShardBoundary shard, final ReadsDataSource shardReads, final ReadFilter readFilter, final Set<String> samples, final SAMFileHeader header ) {
+        final TraversalMetrics metrics = getTraversalMetrics();
+        final long shardStart = metrics.startTimer();
+        final Iterator<GATKRead> readsIterator = new ReadFilteringIterator(
+                metrics.timeIterator(shardReads.query(shard.getInterval()), TraversalMetrics.Phase.READ_DECODING), metrics.timeFilter(readFilter));
+        final LocusIteratorByState libs = new LocusIteratorByState(readsIterator, getDownsamplingInfo(), keepUniqueReadListInLibs(), samples, header, includeDeletions(), includeNs());
+        final Iterator<AlignmentContext> shardLoci = new IntervalOverlappingIterator<>(libs, Collections.singletonList(shard.getInterval()), header.getSequenceDictionary());
+
+        final List<AlignmentContext> alignmentContexts = new ArrayList<>();
+        shardLoci.forEachRemaining(alignmentContexts::add);
+        metrics.recordShard(shard, alignmentContexts.size(), shardStart);
+        return alignmentContexts;
+    }
+
     /**
      * Process an individual AlignmentContext (with optional contextual information). Must be implemented by tool authors.
      * In general, tool authors should simply stream their output from apply(), and maintain as little internal state
@@ -0,0 +1,188 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.FastaSequenceIndexEntry;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.util.StringUtil;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.fasta.CachingIndexedFastaSequenceFile;
+import org.broadinstitute.hellbender.utils.reference.ReferenceUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+/**
+ * Manages queries over reference data from a fasta file that is memory-mapped in its entirety, rather than
+ * read through a private cache as in {@link ReferenceFileSource}.
+ *
+ * Queries are served directly from the mapped file: bases are copied out of the OS page cache into the
+ * returned {@link ReferenceSequence} without any intermediate buffering or re-reading of the file on a cache
+ * miss, so there is no penalty for random or backwards access patterns. Since the page cache is shared, multiple
+ * JVMs traversing the same reference on one machine share a single copy of it in physical memory.
+ *
+ * Like {@link ReferenceFileSource}, bases are returned upper-cased, with IUPAC codes converted to Ns.
+ *
+ * Queries do not modify any shared state, so a single instance may safely be queried from multiple threads.
+ */
+public final class MemoryMappedReferenceFileSource implements ReferenceDataSource {
+
+    /**
+     * The file is mapped in segments of this size, since a single mapping is limited to 2GB
+     */
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_OFFSET_MASK = SEGMENT_SIZE - 1;
+
+    private final File fastaFile;
+
+    /**
+     * Our fasta index, giving the location and line layout of each contig
+     */
+    private final FastaSequenceIndex index;
+
+    private final SAMSequenceDictionary sequenceDictionary;
+
+    /**
+     * Read-only mappings of consecutive SEGMENT_SIZE chunks of the fasta file (the last may be shorter)
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Initialize this data source using a fasta file.
+     *
+     * The provided fasta file must have companion .fai and .dict files.
+     *
+     * @param fastaFile reference fasta file
+     */
+    public MemoryMappedReferenceFileSource( final File fastaFile ) {
+        Utils.nonNull(fastaFile);
+        // Will throw a UserException if the .fai and/or .dict are missing
+        CachingIndexedFastaSequenceFile.checkFastaCompanionFiles(fastaFile);
+
+        this.fastaFile = fastaFile;
+        this.index = new FastaSequenceIndex(new File(ReferenceUtils.getFastaIndexFileName(fastaFile.getAbsolutePath())));
+        this.sequenceDictionary = ReferenceUtils.loadFastaDictionary(new File(ReferenceUtils.getFastaDictionaryFileName(fastaFile.getAbsolutePath())));
+
+        // Mappings remain valid after the channel used to create them is closed
+        try ( final FileChannel channel = FileChannel.open(fastaFile.toPath(), StandardOpenOption.READ) ) {
+            final long fileSize = channel.size();
+            final int numSegments = (int)((fileSize + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            segments = new MappedByteBuffer[numSegments];
+            for ( int i = 0; i < numSegments; ++i ) {
+                final long segmentStart = (long)i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, Math.min(SEGMENT_SIZE, fileSize - segmentStart));
+            }
+        }
+        catch ( IOException e ) {
+            throw new UserException.CouldNotReadInputFile(fastaFile, "Could not memory-map reference", e);
+        }
+    }
+
+    /**
+     * Start an iteration over the entire reference. Not yet supported!
+     *
+     * @return iterator over all bases in this reference
+     */
+    @Override
+    public Iterator<Byte> iterator() {
+        throw new UnsupportedOperationException("Iteration over entire reference not yet implemented");
+    }
+
+    /**
+     * Query a specific interval on this reference, and get back all bases spanning that interval at once.
+     * Call getBases() on the returned ReferenceSequence to get the actual reference bases. See the BaseUtils
+     * class for guidance on how to work with bases in this format.
+     *
+     * @param contig query interval contig
+     * @param start query interval start (1-based, inclusive)
+     * @param stop query interval stop (1-based, inclusive)
+     * @return a ReferenceSequence containing all bases spanning the query interval, prefetched
+     */
+    @Override
+    public ReferenceSequence queryAndPrefetch( final String contig, final long start, final long stop ) {
+        if ( ! index.hasIndexEntry(contig) ) {
+            throw new UserException.MissingContigInSequenceDictionary(contig, sequenceDictionary);
+        }
+        final FastaSequenceIndexEntry entry = index.getIndexEntry(contig);
+
+        if ( stop > entry.getSize() ) {
+            throw new SAMException("Query asks for data past end of contig. Query contig " + contig + " start:" + start + " stop:" + stop + " contigLength:" + entry.getSize());
+        }
+        if ( start < 1 || start > stop + 1 ) {
+            throw new SAMException(String.format("Malformed query; start point %d lies after end point %d, or before position 1", start, stop));
+        }
+
+        final byte[] bases = new byte[(int)(stop - start + 1)];
+        final int basesPerLine = entry.getBasesPerLine();
+        final int terminatorLength = entry.getBytesPerLine() - basesPerLine;
+
+        // Walk the lines spanned by the query, copying only the bases (skipping line terminators)
+        long position = start - 1;
+        long fileOffset = entry.getLocation() + (position / basesPerLine) * entry.getBytesPerLine() + position % basesPerLine;
+        int copied = 0;
+        while ( copied < bases.length ) {
+            final int remainingInLine = basesPerLine - (int)(position % basesPerLine);
+            final int toCopy = Math.min(remainingInLine, bases.length - copied);
+            copyBytes(fileOffset, bases, copied, toCopy);
+
+            copied += toCopy;
+            position += toCopy;
+            fileOffset += toCopy + (toCopy == remainingInLine ? terminatorLength : 0);
+        }
+
+        StringUtil.toUpperCase(bases);
+        BaseUtils.convertIUPACtoN(bases, true, false);
+        return new ReferenceSequence(contig, entry.getSequenceIndex(), bases);
+    }
+
+    /**
+     * Copy bytes from the mapped file, which may span a boundary between mapped segments
+     */
+    private void copyBytes( final long fileOffset, final byte[] destination, final int destinationOffset, final int length ) {
+        long offset = fileOffset;
+        int copied = 0;
+        while ( copied < length ) {
+            final int segmentOffset = (int)(offset & SEGMENT_OFFSET_MASK);
+            // Duplicate so that positioning the buffer for a bulk get doesn't affect concurrent queries
+            final ByteBuffer segment = segments[(int)(offset >>> SEGMENT_SHIFT)].duplicate();
+            final int toCopy = Math.min(length - copied, segment.limit() - segmentOffset);
+            segment.position(segmentOffset);
+            segment.get(destination, destinationOffset + copied, toCopy);
+
+            copied += toCopy;
+            offset += toCopy;
+        }
+    }
+
+    /**
+     * Get the sequence dictionary for this reference
+     *
+     * @return SAMSequenceDictionary for this reference
+     */
+    @Override
+    public SAMSequenceDictionary getSequenceDictionary() {
+        return sequenceDictionary;
+    }
+
+    /**
+     * Permanently close this data source. The mapping itself is released once this object is garbage collected.
+     */
+    @Override
+    public void close() {
+        // Nothing to do: there is no portable way to unmap a MappedByteBuffer before it's collected
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryMappedReferenceFileSource(" + fastaFile + ")";
+    }
+}
@@ -0,0 +1,91 @@
+package org.broadinstitute.hellbender.engine;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Per-thread data sources for traversals that process shards on multiple threads.
+ *
+ * None of {@link ReadsDataSource}, {@link ReferenceDataSource} or {@link FeatureManager} can be shared between threads
+ * (they keep open iterators and/or caches), so each worker thread lazily opens its own copy of each data source the
+ * first time it asks for it. Every data source opened through this object is closed by {@link #close}.
+ *
+ * Instances should be obtained via {@link GATKTool#createPerThreadDataSources}.
+ */
+final class PerThreadDataSources implements AutoCloseable {
+
+    private final ThreadLocal<ReadsDataSource> reads;
+    private final ThreadLocal<ReferenceDataSource> reference;
+    private final ThreadLocal<FeatureManager> features;
+
+    /**
+     * All data sources opened so far on any thread, so that we can close them at the end of traversal
+     */
+    private final Queue<AutoCloseable> openedDataSources = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param readsFactory opens a new source of reads (may return null if there are no reads)
+     * @param referenceFactory opens a new source of reference data (may return null if there is no reference)
+     * @param featuresFactory opens a new source of Features (may return null if there are no Features)
+     */
+    PerThreadDataSources( final Supplier<ReadsDataSource> readsFactory, final Supplier<ReferenceDataSource> referenceFactory, final Supplier<FeatureManager> featuresFactory ) {
+        Utils.nonNull(readsFactory);
+        Utils.nonNull(referenceFactory);
+        Utils.nonNull(featuresFactory);
+
+        this.reads = ThreadLocal.withInitial(() -> track(readsFactory.get()));
+        this.reference = ThreadLocal.withInitial(() -> track(referenceFactory.get()));
+        this.features = ThreadLocal.withInitial(() -> {
+            final FeatureManager featureManager = track(featuresFactory.get());
+            return featureManager != null && ! featureManager.isEmpty() ? featureManager : null;
+        });
+    }
+
+    private <T extends AutoCloseable> T track( final T dataSource ) {
+        if ( dataSource != null ) {
+            openedDataSources.add(dataSource);
+        }
+        return dataSource;
+    }
+
+    /**
+     * @return the source of reads for the calling thread (null if there are no reads)
+     */
+    ReadsDataSource getReads() {
+        return reads.get();
+    }
+
+    /**
+     * @return the source of reference data for the calling thread (null if there is no reference)
+     */
+    ReferenceDataSource getReference() {
+        return reference.get();
+    }
+
+    /**
+     * @return the source of Features for the calling thread (null if there are no Features)
+     */
+    FeatureManager getFeatures() {
+        return features.get();
+    }
+
+    /**
+     * Close all data sources opened on any thread. Must only be called once all worker threads are done.
+     */
+    @Override
+    public void close() {
+        AutoCloseable dataSource;
+        while ( (dataSource = openedDataSources.poll()) != null ) {
+            try {
+                dataSource.close();
+            }
+            catch ( Exception e ) {
+                throw new GATKException("Error closing per-thread data source", e);
+            }
+        }
+    }
+}
@@ -21,6 +21,9 @@ import java.util.function.LongSupplier;
  * Note no {@link #update(Locatable)} must be called after {@link #stop}.
  *
  * All output is made at INFO level via log4j.
+ *
+ * In addition to logging, the meter keeps structured {@link TraversalMetrics} for the traversal, available via
+ * {@link #getMetrics}, into which traversals may also record a breakdown of their time by phase.
  */
 public final class ProgressMeter {
     protected static final Logger logger = LogManager.getLogger(ProgressMeter.class);
@@ -104,6 +107,11 @@ public final class ProgressMeter {
      */
     private LongSupplier timeFunction;
 
+    /**
+     * Structured metrics for the traversal
+     */
+    private final TraversalMetrics metrics = new TraversalMetrics();
+
     /**
      * Keeps track of whether the progress meter has ever been started.
      */
@@ -191,16 +199,34 @@ public final class ProgressMeter {
      * @throws IllegalStateException if the meter has not been started yet or has been stopped already
      */
     public void update( final Locatable currentLocus ) {
+        update(currentLocus, 1L);
+    }
+
+    /**
+     * Signal to the progress meter that a batch of additional records has been processed (for example, all
+     * records in a shard processed on another thread). Will output statistics to the logger roughly every
+     * {@link #secondsBetweenUpdates} seconds.
+     *
+     * @param currentLocus the genomic location of the last record in the batch or null if it had no location.
+     * @param numRecords number of records processed in the batch (must be >= 0)
+     * @throws IllegalStateException if the meter has not been started yet or has been stopped already
+     */
+    public void update( final Locatable currentLocus, final long numRecords ) {
         if (! started){
             throw new IllegalStateException("the progress meter has not been started yet");
         }
         if (stopped){
             throw new IllegalStateException("the progress meter has been stopped already");
         }
-        ++numRecordsProcessed;
-        if ( numRecordsProcessed % recordsBetweenTimeChecks == 0 ) {
+        Utils.validateArg(numRecords >= 0, "numRecords must be >= 0");
+        final long previousNumRecordsProcessed = numRecordsProcessed;
+        numRecordsProcessed += numRecords;
+        // check the time whenever we cross a multiple of recordsBetweenTimeChecks
+        if ( numRecordsProcessed / recordsBetweenTimeChecks != previousNumRecordsProcessed / recordsBetweenTimeChecks ) {
             currentTimeMs = timeFunction.getAsLong();
             this.currentLocus = currentLocus;
+            metrics.setTraversalTotals(numRecordsProcessed, currentTimeMs - startTimeMs);
+            metrics.sampleHeapUsage();
 
             if ( secondsSinceLastPrint() >= secondsBetweenUpdates ) {
                 printProgress();
@@ -222,6 +248,8 @@ public final class ProgressMeter {
         }
         this.stopped = true;
         currentTimeMs = timeFunction.getAsLong();
+        metrics.setTraversalTotals(numRecordsProcessed, currentTimeMs - startTimeMs);
+        metrics.sampleHeapUsage();
         logger.info(String.format("Traversal complete. Processed %d total records in %.1f minutes.", numRecordsProcessed, elapsedTimeInMinutes()));
     }
 
@@ -291,6 +319,14 @@ public final class ProgressMeter {
                                       "unmapped";
     }
 
+    /**
+     * @return structured metrics for the traversal. Totals are only updated when we check the current time, and
+     *         are final once the meter has been stopped.
+     */
+    public TraversalMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Returns whether the meter has been started. It returns false before the call to {@link #start} and true forever after.
      */
@@ -1,16 +1,29 @@
 package org.broadinstitute.hellbender.engine;
 
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.CloseableIterator;
+import org.broadinstitute.hellbender.cmdline.Advanced;
+import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.GATKPlugin.GATKCommandLinePluginDescriptor;
 import org.broadinstitute.hellbender.cmdline.GATKPlugin.GATKReadFilterPluginDescriptor;
 import org.broadinstitute.hellbender.engine.filters.ReadFilter;
 import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.engine.filters.CountingReadFilter;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.IntervalUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.iterators.ReadFilteringIterator;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.StreamSupport;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * A ReadWalker is a tool that processes a single read at a time from one or multiple sources of reads, with
@@ -20,9 +33,52 @@ import java.util.stream.StreamSupport;
  *
  * ReadWalker authors must implement the apply() method to process each read, and may optionally implement
  * onTraversalStart() and/or onTraversalSuccess(). See the PrintReadsWithReference walker for an example.
+ *
+ * When run with more than one thread (see {@link GATKTool#getNumThreads}), the traversal intervals are divided into
+ * shards of {@link #readShardSize} bases which are processed concurrently, each worker thread using its own reads,
+ * reference and Feature data sources. Each read is processed exactly once, by the first shard it overlaps. In this
+ * mode {@link #apply} is called concurrently from multiple threads, so tools must opt in by overriding
+ * {@link #applyIsThreadSafe} once they are known to be thread-safe. Tools that write reads should do so through a
+ * writer obtained from {@link #createShardOrderedSAMWriter}, which preserves the traversal order of the output.
+ *
+ * When sources of Features are present, reads are handed to {@link #apply} in batches of up to
+ * {@link #featureQueryBatchSize} nearby reads: Features for each FeatureInput are fetched once for the window spanned
+ * by the batch, and the FeatureContext of each read in the batch is answered from them.
+ *
+ * Tools that do not need to see every read may end the traversal early by calling {@link #stopTraversal} from
+ * {@link #apply}.
  */
 public abstract class ReadWalker extends GATKTool {
 
+    /**
+     * Default size of the read shards processed concurrently during a multi-threaded traversal
+     */
+    public static final int DEFAULT_READ_SHARD_SIZE = 1_000_000;
+
+    @Advanced
+    @Argument(fullName = "readShardSize", shortName = "readShardSize", doc = "Size of each read shard, in bases, when traversing with multiple threads. Ignored for single-threaded traversals.", optional = true)
+    protected int readShardSize = DEFAULT_READ_SHARD_SIZE;
+
+    /**
+     * Default maximum number of reads whose Features are fetched together
+     */
+    public static final int DEFAULT_FEATURE_QUERY_BATCH_SIZE = 1_000;
+
+    @Advanced
+    @Argument(fullName = "featureQueryBatchSize", shortName = "featureQueryBatchSize", doc = "Maximum number of nearby reads for which to fetch Features in a single query per FeatureInput. 1 queries Features separately for each read.", optional = true)
+    protected int featureQueryBatchSize = DEFAULT_FEATURE_QUERY_BATCH_SIZE;
+
+    /**
+     * Writers created via {@link #createShardOrderedSAMWriter}, which must be flushed after each shard in a
+     * multi-threaded traversal
+     */
+    private final List<ShardOrderedReadWriter> shardOrderedWriters = new ArrayList<>();
+
+    /**
+     * Set by {@link #stopTraversal}; may be set from any thread during a multi-threaded traversal
+     */
+    private volatile boolean traversalStopRequested = false;
+
     @Override
     public boolean requiresReads() {
         return true;
@@ -34,6 +90,12 @@ public abstract class ReadWalker extends GATKTool {
      */
     public static final int FEATURE_CACHE_LOOKAHEAD = 1_000;
 
+    /**
+     * A batch of reads whose Features are fetched together spans at most this many bases, so that fetching the Features
+     * for a batch does not usually require more than one query against each underlying data source
+     */
+    private static final int MAX_FEATURE_QUERY_BATCH_SPAN = FEATURE_CACHE_LOOKAHEAD;
+
     /**
      * Return the list of GATKCommandLinePluginDescriptors to be used for this tool.
      * Uses the read filter plugin.
@@ -52,9 +114,66 @@ public abstract class ReadWalker extends GATKTool {
     protected final void onStartup() {
         super.onStartup();
 
+        if ( readShardSize <= 0 ) {
+            throw new UserException.BadArgumentValue("readShardSize", String.valueOf(readShardSize), "read shard size must be > 0");
+        }
+        if ( featureQueryBatchSize <= 0 ) {
+            throw new UserException.BadArgumentValue("featureQueryBatchSize", String.valueOf(featureQueryBatchSize), "Feature query batch size must be > 0");
+        }
+
         setReadTraversalBounds();
     }
 
+    /**
+     * Can {@link #apply} safely be called concurrently from multiple threads? Tools that do not override this to
+     * return true are always traversed on a single thread, and the engine refuses to run them with more than one.
+     *
+     * Tools should only return true if {@link #apply} does not modify any unsynchronized state shared between reads,
+     * and writes any output reads through a writer obtained from {@link #createShardOrderedSAMWriter}.
+     *
+     * @return true if this tool's {@link #apply} is thread-safe, otherwise false
+     */
+    public boolean applyIsThreadSafe() {
+        return false;
+    }
+
+    @Override
+    boolean traversalSupportsThreads() {
+        return applyIsThreadSafe();
+    }
+
+    /**
+     * Creates a SAM writer as in {@link GATKTool#createSAMWriter} that may be used from {@link #apply} during
+     * a multi-threaded traversal. Reads written while processing each shard are buffered and written to the
+     * output in traversal order, so the output of a multi-threaded traversal is identical to that of a
+     * single-threaded one. In a single-threaded traversal reads are written through directly.
+     *
+     * @param outputFile output file; if this file has a .cram extension then a reference is required. Can not be null.
+     * @param preSorted if true then the records must already be sorted to match the header sort order
+     * @return a writer that must be closed by the caller
+     */
+    public final ShardOrderedReadWriter createShardOrderedSAMWriter( final File outputFile, final boolean preSorted ) {
+        final ShardOrderedReadWriter writer = new ShardOrderedReadWriter(createSAMWriter(outputFile, preSorted));
+        shardOrderedWriters.add(writer);
+        return writer;
+    }
+
+    /**
+     * Ask for the traversal to end before all reads have been processed: no further reads are handed to
+     * {@link #apply} once the current call returns, except for reads already being processed concurrently on other
+     * threads of a multi-threaded traversal. {@link #onTraversalSuccess} is still called.
+     */
+    protected final void stopTraversal() {
+        traversalStopRequested = true;
+    }
+
+    /**
+     * @return true if {@link #stopTraversal} has been called
+     */
+    protected final boolean isTraversalStopRequested() {
+        return traversalStopRequested;
+    }
+
     /**
      * Initialize traversal bounds if intervals are specified
      */
@@ -67,7 +186,7 @@ public abstract class ReadWalker extends GATKTool {
     @Override
     void initializeFeatures() {
         //We override this method to change lookahead of the cache
-        features = new FeatureManager(this, FEATURE_CACHE_LOOKAHEAD);
+        features = new FeatureManager(this, FEATURE_CACHE_LOOKAHEAD, getFeatureQueryLookbehind());
         if ( features.isEmpty() ) {  // No available sources of Features discovered for this tool
             features = null;
         }
@@ -83,24 +202,271 @@ public abstract class ReadWalker extends GATKTool {
      */
     @Override
     public void traverse() {
+        if ( isParallelTraversal() ) {
+            traverseShardsInParallel();
+            return;
+        }
+
         // Process each read in the input stream.
         // Supply reference bases spanning each read, if a reference is available.
         final CountingReadFilter countedFilter = makeReadFilter();
 
-        StreamSupport.stream(reads.spliterator(), false)
-                .filter(countedFilter)
-                .forEach(read -> {
-                    final SimpleInterval readInterval = getReadInterval(read);
-                    apply(read,
-                          new ReferenceContext(reference, readInterval), // Will create an empty ReferenceContext if reference or readInterval == null
-                          new FeatureContext(features, readInterval));   // Will create an empty FeatureContext if features or readInterval == null
+        final TraversalMetrics metrics = getTraversalMetrics();
+        final Iterator<GATKRead> filteredReads = new ReadFilteringIterator(
+                metrics.timeIterator(reads.iterator(), TraversalMetrics.Phase.READ_DECODING), metrics.timeFilter(countedFilter));
+
+        applyToReads(filteredReads, reference, features, progressMeter::update);
+
+        logger.info(countedFilter.getSummaryLine());
+    }
+
+    /**
+     * Hand each read to {@link #apply}, along with contextual information from the given reference and Feature
+     * data sources, and notify the given callback of each read's interval after it has been processed.
+     *
+     * If there are sources of Features, reads are accumulated into batches of nearby reads on the same contig (see
+     * {@link #featureQueryBatchSize}), and all reads in a batch share the Features prefetched for the batch's window.
+     * Reads are still handed to {@link #apply} one at a time and in their original order.
+     *
+     * @param filteredReads reads to process, in coordinate order, already filtered
+     * @param referenceSource reference data source to use for ReferenceContexts (may be null)
+     * @param featureSource Feature data sources to use for FeatureContexts (may be null)
+     * @param onReadProcessed called with the interval of each read (null for reads with no valid interval) once it has been processed
+     */
+    private void applyToReads( final Iterator<GATKRead> filteredReads, final ReferenceDataSource referenceSource,
+                               final FeatureManager featureSource, final Consumer<SimpleInterval> onReadProcessed ) {
+        final WalkerContexts contexts = new WalkerContexts(null, referenceSource, featureSource, allowsContextReuse());
+        final TraversalMetrics metrics = getTraversalMetrics();
+
+        if ( featureSource == null || featureQueryBatchSize == 1 ) {
+            while ( ! traversalStopRequested && filteredReads.hasNext() ) {
+                final GATKRead read = filteredReads.next();
+                final SimpleInterval readInterval = getReadInterval(read);
+                final long applyStart = metrics.startTimer();
+                apply(read,
+                      contexts.getReferenceContext(readInterval), // Will be an empty ReferenceContext if reference or readInterval == null
+                      contexts.getFeatureContext(readInterval));  // Will be an empty FeatureContext if features or readInterval == null
+                metrics.stopTimer(TraversalMetrics.Phase.APPLY, applyStart);
+
+                onReadProcessed.accept(readInterval);
+            }
+            return;
+        }
+
+        final List<GATKRead> batchReads = new ArrayList<>(featureQueryBatchSize);
+        final List<SimpleInterval> batchIntervals = new ArrayList<>(featureQueryBatchSize);
+        SimpleInterval batchWindow = null;
+
+        while ( ! traversalStopRequested && filteredReads.hasNext() ) {
+            final GATKRead read = filteredReads.next();
+            final SimpleInterval readInterval = getReadInterval(read);
 
-                    progressMeter.update(readInterval);
-                });
+            // Start a new batch if this read can't join the current one
+            if ( batchReads.size() == featureQueryBatchSize ||
+                 (batchWindow != null && readInterval != null && ! canExtendFeatureQueryBatch(batchWindow, readInterval)) ) {
+                applyToReadBatch(batchReads, batchIntervals, batchWindow, featureSource, contexts, onReadProcessed);
+                batchReads.clear();
+                batchIntervals.clear();
+                batchWindow = null;
+            }
 
+            batchReads.add(read);
+            batchIntervals.add(readInterval);
+            if ( readInterval != null ) {
+                batchWindow = batchWindow == null ? readInterval : batchWindow.spanWith(readInterval);
+            }
+        }
+
+        applyToReadBatch(batchReads, batchIntervals, batchWindow, featureSource, contexts, onReadProcessed);
+    }
+
+    /**
+     * @return true if a read with the given interval may be added to a batch of reads spanning the given window
+     */
+    private static boolean canExtendFeatureQueryBatch( final SimpleInterval batchWindow, final SimpleInterval readInterval ) {
+        return batchWindow.getContig().equals(readInterval.getContig()) &&
+               Math.max(batchWindow.getEnd(), readInterval.getEnd()) - Math.min(batchWindow.getStart(), readInterval.getStart()) < MAX_FEATURE_QUERY_BATCH_SPAN;
+    }
+
+    /**
+     * Hand a batch of reads to {@link #apply}, with FeatureContexts sharing Features prefetched for the batch window.
+     *
+     * @param batchReads reads in the batch
+     * @param batchIntervals interval of each read in the batch (null for reads with no valid interval)
+     * @param batchWindow interval spanning all reads in the batch with an interval (null if there are none)
+     * @param featureSource Feature data sources from which to prefetch Features. Not null.
+     * @param contexts supplies the context objects for each read
+     * @param onReadProcessed called with the interval of each read once it has been processed
+     */
+    private void applyToReadBatch( final List<GATKRead> batchReads, final List<SimpleInterval> batchIntervals, final SimpleInterval batchWindow,
+                                   final FeatureManager featureSource, final WalkerContexts contexts, final Consumer<SimpleInterval> onReadProcessed ) {
+        final FeatureBatch featureBatch = batchWindow != null ? new FeatureBatch(featureSource, batchWindow) : null;
+
+        final TraversalMetrics metrics = getTraversalMetrics();
+
+        for ( int i = 0; i < batchReads.size() && ! traversalStopRequested; ++i ) {
+            final SimpleInterval readInterval = batchIntervals.get(i);
+            final long applyStart = metrics.startTimer();
+            apply(batchReads.get(i),
+                  contexts.getReferenceContext(readInterval),
+                  contexts.getFeatureContext(readInterval, readInterval != null ? featureBatch : null));
+            metrics.stopTimer(TraversalMetrics.Phase.APPLY, applyStart);
+
+            onReadProcessed.accept(readInterval);
+        }
+    }
+
+    /**
+     * Multi-threaded implementation of read-based traversal.
+     *
+     * Divides the traversal intervals (or the whole genome, if there are none) into shards of {@link #readShardSize}
+     * bases, and processes {@link GATKTool#getNumThreads} shards at a time on a thread pool, each thread querying
+     * its own reads, reference and Feature data sources. A read is processed only by the first shard it overlaps,
+     * so reads that span shard boundaries are not processed more than once. Shard results (including any output
+     * buffered by {@link ShardOrderedReadWriter}s) are consumed on the calling thread in shard order. Unmapped reads
+     * with no position, if part of the traversal, are processed serially once all shards are done. The counts of the
+     * read filters of all threads are merged into a single filter summary, which matches that of a serial traversal.
+     */
+    private void traverseShardsInParallel() {
+        final SAMSequenceDictionary dictionary = getHeaderForReads().getSequenceDictionary();
+        final TraversalParameters traversalParameters = hasIntervals() ?
+                intervalArgumentCollection.getTraversalParameters(dictionary) :
+                new TraversalParameters(IntervalUtils.getAllIntervalsForReference(dictionary), true);
+
+        final List<ShardBoundary> shards = new ArrayList<>();
+        for ( final SimpleInterval interval : traversalParameters.getIntervalsForTraversal() ) {
+            shards.addAll(Shard.divideIntervalIntoShards(interval, readShardSize, 0, dictionary));
+        }
+
+        // CountingReadFilters keep unsynchronized counts, so each thread gets its own filter
+        final List<CountingReadFilter> threadFilters = new ArrayList<>();
+        final ThreadLocal<CountingReadFilter> threadFilter = ThreadLocal.withInitial(() -> {
+            synchronized ( threadFilters ) {
+                final CountingReadFilter filter = makeReadFilter();
+                threadFilters.add(filter);
+                return filter;
+            }
+        });
+
+        // the shard results are closed first, so that no thread still uses the data sources when they are closed
+        try ( final PerThreadDataSources dataSources = createPerThreadDataSources(FEATURE_CACHE_LOOKAHEAD);
+              final CloseableIterator<ReadShardResult> shardResults = Utils.transformParallel(
+                    IntStream.range(0, shards.size()).filter(shardIndex -> ! traversalStopRequested).iterator(),
+                    shardIndex -> processShard(shards, shardIndex, dataSources, threadFilter.get()),
+                    getNumThreads()) ) {
+            while ( shardResults.hasNext() ) {
+                final ReadShardResult result = shardResults.next();
+                for ( int i = 0; i < shardOrderedWriters.size(); ++i ) {
+                    shardOrderedWriters.get(i).writeShard(result.writerOutput.get(i));
+                }
+                progressMeter.update(result.lastReadInterval, result.numReads);
+            }
+        }
+
+        final CountingReadFilter countedFilter = makeReadFilter();
+        if ( traversalParameters.traverseUnmappedReads() ) {
+            final WalkerContexts contexts = new WalkerContexts(null, reference, features, allowsContextReuse());
+            final Iterator<GATKRead> unmappedReads = reads.queryUnmapped();
+            while ( ! traversalStopRequested && unmappedReads.hasNext() ) {
+                final GATKRead read = unmappedReads.next();
+                if ( countedFilter.test(read) ) {
+                    apply(read, contexts.getReferenceContext(null), contexts.getFeatureContext(null));
+                    progressMeter.update(null);
+                }
+            }
+        }
+
+        // report the counts of all threads in a single summary, as a single-threaded traversal would
+        threadFilters.forEach(countedFilter::addFilteredCounts);
         logger.info(countedFilter.getSummaryLine());
     }
 
+    /**
+     * Process all reads owned by one shard on the calling thread, using that thread's data sources.
+     *
+     * @param shards all shards in the traversal, in traversal order
+     * @param shardIndex index of the shard to process
+     * @param dataSources per-thread data sources
+     * @param countedFilter read filter for the calling thread
+     * @return the number of reads processed, the location of the last one, and any output buffered for the shard
+     */
+    private ReadShardResult processShard( final List<ShardBoundary> shards, final int shardIndex, final PerThreadDataSources dataSources, final CountingReadFilter countedFilter ) {
+        final TraversalMetrics metrics = getTraversalMetrics();
+        final long shardStart = metrics.startTimer();
+        final ShardBoundary shard = shards.get(shardIndex);
+        final ShardBoundary previousShard = shardIndex > 0 ? shards.get(shardIndex - 1) : null;
+
+        // Reads that start at or before the end of the previous shard on the same contig overlap that shard,
+        // and so belong to it rather than to us
+        final int previousShardEnd = previousShard != null && previousShard.getContig().equals(shard.getContig()) ? previousShard.getEnd() : 0;
+
+        final ReferenceDataSource shardReference = dataSources.getReference();
+        final FeatureManager shardFeatures = dataSources.getFeatures();
+
+        shardOrderedWriters.forEach(ShardOrderedReadWriter::startShard);
+
+        // Reads that start at or before the end of the previous shard are skipped without being counted by the filter
+        final Iterator<GATKRead> shardReads = new ReadFilteringIterator(
+                new ReadFilteringIterator(
+                        metrics.timeIterator(dataSources.getReads().query(shard.getInterval()), TraversalMetrics.Phase.READ_DECODING),
+                        new ReadStartFilter(previousShardEnd)),
+                metrics.timeFilter(countedFilter));
+
+        final ShardProgress progress = new ShardProgress();
+        applyToReads(shardReads, shardReference, shardFeatures, progress::recordRead);
+        metrics.recordShard(shard, progress.numReads, shardStart);
+
+        final List<List<GATKRead>> writerOutput = shardOrderedWriters.stream().map(ShardOrderedReadWriter::finishShard).collect(Collectors.toList());
+        return new ReadShardResult(progress.numReads, progress.lastReadInterval, writerOutput);
+    }
+
+    /**
+     * Accepts only reads whose assigned start is after a given position, ie. reads that do not belong to the
+     * previous shard
+     */
+    private static final class ReadStartFilter extends ReadFilter {
+        private static final long serialVersionUID = 1L;
+
+        private final int previousShardEnd;
+
+        private ReadStartFilter( final int previousShardEnd ) {
+            this.previousShardEnd = previousShardEnd;
+        }
+
+        @Override
+        public boolean test( final GATKRead read ) {
+            return read.getAssignedStart() > previousShardEnd;
+        }
+    }
+
+    /**
+     * Number of reads processed in a shard, and the location of the last one
+     */
+    private static final class ShardProgress {
+        private long numReads = 0;
+        private SimpleInterval lastReadInterval = null;
+
+        private void recordRead( final SimpleInterval readInterval ) {
+            ++numReads;
+            lastReadInterval = readInterval;
+        }
+    }
+
+    /**
+     * Results of processing a single shard on a worker thread, to be consumed in shard order
+     */
+    private static final class ReadShardResult {
+        private final long numReads;
+        private final SimpleInterval lastReadInterval;
+        private final List<List<GATKRead>> writerOutput;
+
+        private ReadShardResult( final long numReads, final SimpleInterval lastReadInterval, final List<List<GATKRead>> writerOutput ) {
+            this.numReads = numReads;
+            this.lastReadInterval = lastReadInterval;
+            this.writerOutput = writerOutput;
+        }
+    }
+
     /**
      * Returns an interval for the read.
      * Note: some walkers must be able to work on any read, including those whose coordinates do not form a valid SimpleInterval.
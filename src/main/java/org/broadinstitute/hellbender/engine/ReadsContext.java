@@ -21,7 +21,7 @@ public final class ReadsContext implements Iterable<GATKRead> {
 
     private final ReadsDataSource dataSource;
 
-    private final SimpleInterval interval;
+    private SimpleInterval interval;
 
     /**
      * Create an empty ReadsContext with no backing data source or interval. Calls to
@@ -44,6 +44,16 @@ public final class ReadsContext implements Iterable<GATKRead> {
         this.interval = interval;
     }
 
+    /**
+     * Move this context to a new interval. Used by traversals that recycle context objects
+     * (see {@link GATKTool#allowsContextReuse}).
+     *
+     * @param interval new interval over which to query (may be null)
+     */
+    void resetInterval( final SimpleInterval interval ) {
+        this.interval = interval;
+    }
+
     /**
      * Does this context have a backing source of reads data?
      *
@@ -9,6 +9,7 @@ import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.iterators.ReadAheadIterator;
 import org.broadinstitute.hellbender.utils.iterators.SAMRecordToReadIterator;
 import org.broadinstitute.hellbender.utils.iterators.SamReaderQueryingIterator;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
@@ -30,6 +31,11 @@ import java.util.stream.Collectors;
 public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoCloseable {
     protected static final Logger logger = LogManager.getLogger(ReadsDataSource.class);
 
+    /**
+     * Number of reads handed from the read-ahead thread to the traversal at a time, when read-ahead is enabled
+     */
+    public static final int READ_AHEAD_BATCH_SIZE = 1000;
+
     /**
      * Mapping from SamReaders to iterators over the reads from each reader. Only one
      * iterator can be open from a given reader at a time (this is a restriction
@@ -72,6 +78,28 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
      */
     private boolean indicesAvailable;
 
+    /**
+     * Maximum number of batches of {@link #READ_AHEAD_BATCH_SIZE} reads to decode ahead of the traversal on a
+     * background thread. 0 if read-ahead is disabled.
+     */
+    private int readAheadQueueDepth = 0;
+
+    /**
+     * Read-ahead stage for the current iteration, if read-ahead is enabled and an iteration is active, otherwise null.
+     * Wraps the iterators in {@link #readers}, and so must be closed before them.
+     */
+    private ReadAheadIterator<SAMRecord> readAheadIterator;
+
+    /**
+     * If true, queries over multiple intervals are planned using the index of each BAM reader (see {@link ReadsQueryPlan})
+     */
+    private boolean queryPlanningEnabled = false;
+
+    /**
+     * Plans for the most recent query over multiple intervals, one per reader. Empty if there were no plans.
+     */
+    private List<ReadsQueryPlan> queryPlans = Collections.emptyList();
+
     /**
      * Initialize this data source with a single SAM/BAM file without a reference and validation stringency SILENT.
      *
@@ -197,6 +225,19 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
         return intervalsForTraversal != null || traverseUnmapped;
     }
 
+    /**
+     * Enable or disable read-ahead for subsequent iterations and queries. When enabled, reads are decompressed and
+     * fully decoded on a background thread, in batches of {@link #READ_AHEAD_BATCH_SIZE}, while the caller processes
+     * previously-decoded reads. Read-ahead applies equally to single and merged multi-file iterations, and to
+     * iterations bounded by intervals.
+     *
+     * @param readAheadQueueDepth maximum number of batches of reads to hold ahead of the caller. 0 disables read-ahead.
+     */
+    public void setReadAheadQueueDepth( final int readAheadQueueDepth ) {
+        Utils.validateArg(readAheadQueueDepth >= 0, "readAheadQueueDepth must be >= 0");
+        this.readAheadQueueDepth = readAheadQueueDepth;
+    }
+
     private void raiseExceptionForMissingIndex(String reason) {
         String commandsToIndex = backingPaths.entrySet().stream()
                 .filter(f -> !f.getKey().hasIndex())
@@ -249,6 +290,26 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
         return prepareIteratorsForTraversal(null, true);
     }
 
+    /**
+     * Enable or disable index-aware planning of queries over multiple intervals (disabled by default). When enabled,
+     * consecutive intervals whose reads are stored in a common BGZF block of an indexed BAM file are merged into a
+     * single query, so that the block is decompressed once rather than once per interval. Other inputs are queried
+     * as usual. The reads returned are the same either way.
+     *
+     * @param queryPlanningEnabled true to plan queries over multiple intervals, false to query them as given
+     */
+    public void setQueryPlanningEnabled( final boolean queryPlanningEnabled ) {
+        this.queryPlanningEnabled = queryPlanningEnabled;
+    }
+
+    /**
+     * @return the plans for the most recent traversal or query over multiple intervals, one per reader (empty if
+     *         query planning is disabled or the most recent query was not over multiple intervals)
+     */
+    public List<ReadsQueryPlan> getQueryPlans() {
+        return queryPlans;
+    }
+
     /**
      * Returns the SAM header for this data source. Will be a merged header if there are multiple readers.
      * If there is only a single reader, returns its header directly.
@@ -284,11 +345,23 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
         closePreviousIterationsIfNecessary();
 
         final boolean traversalIsBounded = (queryIntervals != null && ! queryIntervals.isEmpty()) || queryUnmapped;
+        final boolean planQueries = queryPlanningEnabled && queryIntervals != null && queryIntervals.size() > 1;
+        queryPlans = planQueries ? new ArrayList<>(readers.size()) : Collections.emptyList();
 
         // Set up an iterator for each reader, bounded to overlap with the supplied intervals if there are any
         for ( Map.Entry<SamReader, CloseableIterator<SAMRecord>> readerEntry : readers.entrySet() ) {
-            readerEntry.setValue(traversalIsBounded ? new SamReaderQueryingIterator(readerEntry.getKey(), queryIntervals, queryUnmapped) :
-                                                      readerEntry.getKey().iterator());
+            final SamReader reader = readerEntry.getKey();
+            final ReadsQueryPlan plan = planQueries ? ReadsQueryPlan.create(reader, queryIntervals) : null;
+            if ( plan != null ) {
+                logger.debug("Query plan for " + backingPaths.get(reader) + ": " + plan);
+                queryPlans.add(plan);
+                final SamReaderQueryingIterator plannedIterator = new SamReaderQueryingIterator(reader, plan.getPlannedIntervals(), queryUnmapped);
+                readerEntry.setValue(plan.mergedAnyIntervals() ? new PlannedQueryIterator(plannedIterator, plan) : plannedIterator);
+            }
+            else {
+                readerEntry.setValue(traversalIsBounded ? new SamReaderQueryingIterator(reader, queryIntervals, queryUnmapped) :
+                                                          reader.iterator());
+            }
         }
 
         // Create a merging iterator over all readers if necessary. In the case where there's only a single reader,
@@ -301,9 +374,61 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
             startingIterator = new MergingSamRecordIterator(headerMerger, readers, true);
         }
 
+        if ( readAheadQueueDepth > 0 ) {
+            readAheadIterator = new ReadAheadIterator<>(startingIterator, readAheadQueueDepth, READ_AHEAD_BATCH_SIZE, SAMRecord::eagerDecode);
+            startingIterator = readAheadIterator;
+        }
+
         return new SAMRecordToReadIterator(startingIterator);
     }
 
+    /**
+     * Iterator over a query planned by a {@link ReadsQueryPlan} that merged some intervals, which discards the reads
+     * returned from the gaps between the original intervals
+     */
+    private static final class PlannedQueryIterator implements CloseableIterator<SAMRecord> {
+        private final SamReaderQueryingIterator plannedIterator;
+        private final ReadsQueryPlan plan;
+        private SAMRecord nextRecord;
+
+        private PlannedQueryIterator( final SamReaderQueryingIterator plannedIterator, final ReadsQueryPlan plan ) {
+            this.plannedIterator = plannedIterator;
+            this.plan = plan;
+            advance();
+        }
+
+        private void advance() {
+            nextRecord = null;
+            while ( plannedIterator.hasNext() ) {
+                final SAMRecord record = plannedIterator.next();
+                if ( plan.overlapsQueryIntervals(record) ) {
+                    nextRecord = record;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextRecord != null;
+        }
+
+        @Override
+        public SAMRecord next() {
+            if ( nextRecord == null ) {
+                throw new NoSuchElementException("Iterator is exhausted");
+            }
+            final SAMRecord toReturn = nextRecord;
+            advance();
+            return toReturn;
+        }
+
+        @Override
+        public void close() {
+            plannedIterator.close();
+        }
+    }
+
     /**
      * Create a header merger from the individual SAM/BAM headers in our readers
      *
@@ -341,6 +466,12 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
      * Close any previously-opened iterations over our readers (htsjdk allows only one open iteration per reader).
      */
     private void closePreviousIterationsIfNecessary() {
+        // Stop the read-ahead thread before closing the iterators it's reading from
+        if ( readAheadIterator != null ) {
+            readAheadIterator.close();
+            readAheadIterator = null;
+        }
+
         for ( Map.Entry<SamReader, CloseableIterator<SAMRecord>> readerEntry : readers.entrySet() ) {
             CloseableIterator<SAMRecord> readerIterator = readerEntry.getValue();
             if ( readerIterator != null ) {
@@ -0,0 +1,259 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.samtools.BAMFileSpan;
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SamReader;
+import org.broadinstitute.hellbender.utils.IntervalUtils;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plan for querying an indexed SamReader over a set of (typically many small, sparse) intervals, such as exome targets.
+ *
+ * Each interval query is resolved by the index into a list of chunks of the file, each spanning one or more BGZF
+ * blocks. Nearby intervals frequently resolve to chunks that begin in the same BGZF block in which the chunks of the
+ * previous interval ended, so querying the intervals separately decompresses that block once per interval. The plan
+ * uses the index to find such intervals, and merges consecutive intervals on the same contig whose chunks share a
+ * block into a single query, so that each shared block is decompressed only once. The merged query may return reads
+ * in the gaps between the original intervals, so clients must discard reads for which
+ * {@link #overlapsQueryIntervals} is false whenever {@link #mergedAnyIntervals} is true.
+ *
+ * htsjdk already merges the overlapping and adjacent chunks of a single multi-interval query, so the plan only helps
+ * when intervals share a block without their chunks touching, or when many intervals have no reads at all (these are
+ * dropped from the plan). Planning is therefore disabled by default, see {@link ReadsDataSource#setQueryPlanningEnabled}.
+ *
+ * Only BAM files are planned: the offsets in a CRAM index are container offsets, not BGZF virtual file offsets, so
+ * the block arithmetic used here does not apply to them.
+ *
+ * The plan also keeps statistics on the number of index chunks involved in the query, with and without planning, and
+ * on the number of intervals merged into a preceding query.
+ */
+public final class ReadsQueryPlan {
+
+    /**
+     * The original query intervals, sorted and with overlapping/abutting intervals merged
+     */
+    private final QueryInterval[] queryIntervals;
+
+    /**
+     * The intervals to actually query
+     */
+    private final List<SimpleInterval> plannedIntervals;
+
+    private final int numUnplannedChunks;
+    private final int numPlannedChunks;
+    private final int numMergedIntervals;
+
+    private ReadsQueryPlan( final QueryInterval[] queryIntervals, final List<SimpleInterval> plannedIntervals,
+                            final int numUnplannedChunks, final int numPlannedChunks, final int numMergedIntervals ) {
+        this.queryIntervals = queryIntervals;
+        this.plannedIntervals = plannedIntervals;
+        this.numUnplannedChunks = numUnplannedChunks;
+        this.numPlannedChunks = numPlannedChunks;
+        this.numMergedIntervals = numMergedIntervals;
+    }
+
+    /**
+     * Plan a query over the given intervals, using the index of the given reader.
+     *
+     * @param reader indexed reader to query
+     * @param intervals intervals to query, in any order. Must not be empty.
+     * @return a plan for the query, or null if the reader is not an indexed BAM file
+     */
+    public static ReadsQueryPlan create( final SamReader reader, final List<SimpleInterval> intervals ) {
+        Utils.nonNull(reader);
+        Utils.nonEmpty(intervals);
+        if ( reader.type() != SamReader.Type.BAM_TYPE || ! reader.hasIndex() ) {
+            return null;
+        }
+        return create(reader.indexing().getIndex(), reader.getFileHeader().getSequenceDictionary(), intervals);
+    }
+
+    /**
+     * Plan a query over the given intervals, using the given index.
+     *
+     * @param index index of the file to be queried
+     * @param dictionary sequence dictionary of the file to be queried
+     * @param intervals intervals to query, in any order. Must not be empty.
+     * @return a plan for the query
+     */
+    static ReadsQueryPlan create( final BAMIndex index, final SAMSequenceDictionary dictionary, final List<SimpleInterval> intervals ) {
+        Utils.nonNull(index);
+        Utils.nonNull(dictionary);
+        Utils.nonEmpty(intervals);
+
+        final QueryInterval[] queryIntervals = QueryInterval.optimizeIntervals(
+                intervals.stream().map(interval -> IntervalUtils.convertSimpleIntervalToQueryInterval(interval, dictionary)).toArray(QueryInterval[]::new));
+
+        final List<SimpleInterval> plannedIntervals = new ArrayList<>();
+        int numUnplannedChunks = 0;
+        int numPlannedChunks = 0;
+        int numMergedIntervals = 0;
+
+        // Current group of consecutive intervals to be merged into a single query
+        QueryInterval groupStart = null;
+        QueryInterval groupEnd = null;
+        long groupLastBlock = 0;
+
+        for ( final QueryInterval interval : queryIntervals ) {
+            final List<Chunk> chunks = getChunks(index, interval);
+            if ( chunks.isEmpty() ) {
+                // The index tells us that no reads overlap this interval, so there's no need to query it
+                continue;
+            }
+            numUnplannedChunks += chunks.size();
+
+            final long firstBlock = blockAddress(chunks.get(0).getChunkStart());
+            final long lastBlock = blockAddress(chunks.get(chunks.size() - 1).getChunkEnd());
+
+            if ( groupStart != null && groupStart.referenceIndex == interval.referenceIndex && firstBlock <= groupLastBlock ) {
+                // This interval's reads start in a block already read by the current group: join the group
+                ++numMergedIntervals;
+                groupEnd = interval;
+                groupLastBlock = Math.max(groupLastBlock, lastBlock);
+            }
+            else {
+                if ( groupStart != null ) {
+                    numPlannedChunks += addPlannedInterval(index, dictionary, groupStart, groupEnd, plannedIntervals);
+                }
+                groupStart = interval;
+                groupEnd = interval;
+                groupLastBlock = lastBlock;
+            }
+        }
+        if ( groupStart != null ) {
+            numPlannedChunks += addPlannedInterval(index, dictionary, groupStart, groupEnd, plannedIntervals);
+        }
+
+        return new ReadsQueryPlan(queryIntervals, Collections.unmodifiableList(plannedIntervals), numUnplannedChunks, numPlannedChunks, numMergedIntervals);
+    }
+
+    /**
+     * Add a single interval spanning a group of intervals to our plan
+     *
+     * @return the number of chunks in the spanning interval's query
+     */
+    private static int addPlannedInterval( final BAMIndex index, final SAMSequenceDictionary dictionary, final QueryInterval groupStart,
+                                           final QueryInterval groupEnd, final List<SimpleInterval> plannedIntervals ) {
+        final QueryInterval spanning = new QueryInterval(groupStart.referenceIndex, groupStart.start, groupEnd.end);
+        plannedIntervals.add(new SimpleInterval(dictionary.getSequence(spanning.referenceIndex).getSequenceName(), spanning.start, spanning.end));
+        return getChunks(index, spanning).size();
+    }
+
+    private static List<Chunk> getChunks( final BAMIndex index, final QueryInterval interval ) {
+        final BAMFileSpan span = index.getSpanOverlapping(interval.referenceIndex, interval.start, interval.end);
+        return span != null ? span.getChunks() : Collections.emptyList();
+    }
+
+    /**
+     * @return the file offset of the BGZF block containing the given virtual file offset
+     */
+    private static long blockAddress( final long virtualOffset ) {
+        return virtualOffset >>> 16;
+    }
+
+    /**
+     * @return the intervals to query in place of the original intervals. These may span several of the original
+     *         intervals, and the gaps between them. Intervals that the index shows to contain no reads are omitted.
+     */
+    public List<SimpleInterval> getPlannedIntervals() {
+        return plannedIntervals;
+    }
+
+    /**
+     * @return true if any of the original intervals were merged, in which case reads returned by a query over
+     *         the planned intervals must be filtered using {@link #overlapsQueryIntervals}
+     */
+    public boolean mergedAnyIntervals() {
+        return numMergedIntervals > 0;
+    }
+
+    /**
+     * Does a record from a query over our planned intervals overlap one of the original query intervals?
+     * Uses the same notion of overlap as htsjdk interval queries, where an unmapped read with an assigned position
+     * occupies that position alone. Unmapped reads with no assigned position are always accepted, since they can only
+     * come from a separate query for unmapped reads.
+     *
+     * @param record record to test
+     * @return true if the record overlaps one of our original query intervals, otherwise false
+     */
+    public boolean overlapsQueryIntervals( final SAMRecord record ) {
+        final int referenceIndex = record.getReferenceIndex();
+        if ( referenceIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX ) {
+            return true;
+        }
+        final int start = record.getAlignmentStart();
+        final int end = record.getReadUnmappedFlag() ? start : record.getAlignmentEnd();
+
+        // Find the first interval that doesn't end before the record starts
+        int low = 0;
+        int high = queryIntervals.length;
+        while ( low < high ) {
+            final int mid = (low + high) >>> 1;
+            final QueryInterval interval = queryIntervals[mid];
+            if ( interval.referenceIndex < referenceIndex || (interval.referenceIndex == referenceIndex && intervalEnd(interval) < start) ) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < queryIntervals.length && queryIntervals[low].referenceIndex == referenceIndex && queryIntervals[low].start <= end;
+    }
+
+    /**
+     * @return the end of a query interval, treating a non-positive end as the end of the contig as htsjdk does
+     */
+    private static int intervalEnd( final QueryInterval interval ) {
+        return interval.end <= 0 ? Integer.MAX_VALUE : interval.end;
+    }
+
+    /**
+     * @return the number of (sorted, merged) intervals in the original query
+     */
+    public int getNumQueryIntervals() {
+        return queryIntervals.length;
+    }
+
+    /**
+     * @return the number of intervals in our plan
+     */
+    public int getNumPlannedQueries() {
+        return plannedIntervals.size();
+    }
+
+    /**
+     * @return the total number of index chunks that would be read if each original interval were queried separately
+     */
+    public int getNumUnplannedChunks() {
+        return numUnplannedChunks;
+    }
+
+    /**
+     * @return the total number of index chunks read by a query over our planned intervals
+     */
+    public int getNumPlannedChunks() {
+        return numPlannedChunks;
+    }
+
+    /**
+     * @return the number of query intervals merged into the query of a preceding interval because their reads start
+     *         in a BGZF block already read by that query, which would otherwise be decompressed once for each interval
+     */
+    public int getNumMergedIntervals() {
+        return numMergedIntervals;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d query intervals planned as %d queries over %d index chunks (%d without planning), merging %d intervals into the query of a preceding interval",
+                             getNumQueryIntervals(), getNumPlannedQueries(), getNumPlannedChunks(), getNumUnplannedChunks(), getNumMergedIntervals());
+    }
+}
@@ -38,7 +38,7 @@ public final class ReferenceContext implements Iterable<Byte> {
     /**
      * Interval representing our location on the reference. May be null if, eg., we're dealing with unmapped data.
      */
-    private final SimpleInterval interval;
+    private SimpleInterval interval;
 
     /**
      * Reference interval optionally expanded by a configurable amount to produce the true query interval.
@@ -120,6 +120,19 @@ public final class ReferenceContext implements Iterable<Byte> {
         }
     }
 
+    /**
+     * Move this context to a new interval, discarding any window and cached bases, as if it had been newly
+     * constructed with our data source and the given interval. Used by traversals that recycle context objects
+     * (see {@link GATKTool#allowsContextReuse}).
+     *
+     * @param interval our new location on the reference (may be null if our location is unknown)
+     */
+    void resetInterval( final SimpleInterval interval ) {
+        this.interval = interval;
+        this.window = interval;
+        this.cachedSequence = null;
+    }
+
     /**
      * Determines whether this ReferenceContext has a backing reference data source. A ReferenceContext with
      * no backing data source will always return an empty bases array from {@link #getBases()} and an
@@ -27,6 +27,19 @@ public interface ReferenceDataSource extends GATKDataSource<Byte>, AutoCloseable
         return new ReferenceFileSource(fastaFile);
     }
 
+    /**
+     * Initialize this data source using a fasta file, optionally memory-mapping it.
+     *
+     * The provided fasta file must have companion .fai and .dict files.
+     *
+     * @param fastaFile reference fasta file
+     * @param memoryMapped if true, memory-map the fasta file (see {@link MemoryMappedReferenceFileSource}),
+     *                     otherwise read it through a cache (see {@link ReferenceFileSource})
+     */
+    public static ReferenceDataSource of(final File fastaFile, final boolean memoryMapped) {
+        return memoryMapped ? new MemoryMappedReferenceFileSource(fastaFile) : new ReferenceFileSource(fastaFile);
+    }
+
 
     /**
      * Initialize this data source using ReferenceBases and corresponding sequence dictionary.
@@ -0,0 +1,94 @@
+package org.broadinstitute.hellbender.engine;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A GATKReadWriter that can be written to from multiple traversal threads while still producing output in
+ * traversal order.
+ *
+ * While a thread is processing a shard (between calls to {@link #startShard} and {@link #finishShard}), reads
+ * written by that thread are held in a per-thread buffer for the shard. The traversal then hands each shard's
+ * buffered reads to {@link #writeShard} in shard order, from a single thread. Reads written outside of a shard
+ * go straight to the underlying writer.
+ *
+ * Instances should be obtained via {@link ReadWalker#createShardOrderedSAMWriter}.
+ */
+public final class ShardOrderedReadWriter implements GATKReadWriter {
+
+    private final GATKReadWriter writer;
+
+    /**
+     * Reads written by the current thread for its current shard. Unset if the thread is not processing a shard.
+     */
+    private final ThreadLocal<List<GATKRead>> currentShardReads = new ThreadLocal<>();
+
+    /**
+     * @param writer underlying writer to which reads will eventually be written, in shard order
+     */
+    ShardOrderedReadWriter( final GATKReadWriter writer ) {
+        this.writer = Utils.nonNull(writer);
+    }
+
+    @Override
+    public void addRead( final GATKRead read ) {
+        final List<GATKRead> shardReads = currentShardReads.get();
+        if ( shardReads != null ) {
+            shardReads.add(read);
+        }
+        else {
+            writer.addRead(read);
+        }
+    }
+
+    /**
+     * Start buffering reads written by the calling thread for a new shard.
+     */
+    void startShard() {
+        if ( currentShardReads.get() != null ) {
+            throw new IllegalStateException("The current thread is already processing a shard");
+        }
+        currentShardReads.set(new ArrayList<>());
+    }
+
+    /**
+     * Stop buffering reads written by the calling thread, and return the reads written for its shard.
+     *
+     * @return reads written by the calling thread since the previous call to {@link #startShard}, in the order written
+     */
+    List<GATKRead> finishShard() {
+        final List<GATKRead> shardReads = currentShardReads.get();
+        if ( shardReads == null ) {
+            throw new IllegalStateException("The current thread is not processing a shard");
+        }
+        currentShardReads.remove();
+        return shardReads;
+    }
+
+    /**
+     * Write the buffered reads for a shard to the underlying writer. Shards must be written in traversal order.
+     *
+     * @param shardReads reads returned by {@link #finishShard} for the next shard in traversal order
+     */
+    void writeShard( final List<GATKRead> shardReads ) {
+        for ( final GATKRead read : shardReads ) {
+            writer.addRead(read);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        }
+        catch ( IOException e ) {
+            throw new GATKException("Error closing read writer", e);
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.util.Locatable;
+import org.broadinstitute.hellbender.engine.filters.ReadFilter;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Structured timing and throughput metrics for a traversal, kept by the {@link ProgressMeter}.
+ *
+ * The meter always records the total number of records processed, the total elapsed time, and a high-water mark of
+ * the heap in use (sampled whenever the meter checks the time). If phase timing is enabled (see
+ * {@link #enablePhaseTiming}), traversals additionally break down the time they spend in each {@link Phase} and
+ * record the throughput of each shard processed. Phase times are summed over all threads, so during a multi-threaded
+ * traversal they may add up to more than the elapsed time.
+ *
+ * Phase timing costs a few calls to {@link System#nanoTime} per record, so is disabled by default. When it is
+ * disabled, all of the timing methods here are no-ops and the wrapping methods return the object they were given.
+ *
+ * Metrics can be queried directly, or written to a JSON or TSV file via {@link #write}.
+ *
+ * All methods may be called concurrently from multiple traversal threads.
+ */
+public final class TraversalMetrics {
+
+    /**
+     * Phases of a traversal for which time is recorded separately
+     */
+    public enum Phase {
+        /**
+         * Fetching and decoding records (eg., reads) from the primary input
+         */
+        READ_DECODING("readDecoding"),
+
+        /**
+         * Applying read filters
+         */
+        FILTERING("filtering"),
+
+        /**
+         * Querying reference bases
+         */
+        REFERENCE_FETCH("referenceFetch"),
+
+        /**
+         * Querying Features from sources of Features
+         */
+        FEATURE_FETCH("featureFetch"),
+
+        /**
+         * Calling the tool's apply() method. Includes any reference and Feature fetches made lazily by the tool from
+         * within apply(), which are also reported separately.
+         */
+        APPLY("apply");
+
+        private final String metricName;
+
+        Phase( final String metricName ) {
+            this.metricName = metricName;
+        }
+
+        /**
+         * @return the name of this phase in metrics files
+         */
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    /**
+     * Number of records processed and time taken for a single shard of a multi-threaded traversal
+     */
+    public static final class ShardMetrics {
+        private final SimpleInterval shard;
+        private final long numRecords;
+        private final long elapsedNanos;
+
+        ShardMetrics( final SimpleInterval shard, final long numRecords, final long elapsedNanos ) {
+            this.shard = shard;
+            this.numRecords = numRecords;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return interval spanned by the shard
+         */
+        public SimpleInterval getShard() {
+            return shard;
+        }
+
+        /**
+         * @return number of records processed in the shard
+         */
+        public long getNumRecords() {
+            return numRecords;
+        }
+
+        /**
+         * @return time taken by the thread that processed the shard, in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return records processed per second by the thread that processed the shard
+         */
+        public double getRecordsPerSecond() {
+            return perSecond(numRecords, elapsedNanos);
+        }
+    }
+
+    private volatile boolean phaseTimingEnabled = false;
+
+    private final LongAdder[] phaseNanos = newAdders();
+    private final LongAdder[] phaseCounts = newAdders();
+
+    private final List<ShardMetrics> shards = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicLong peakHeapUsedBytes = new AtomicLong(0L);
+
+    private volatile long numRecordsProcessed = 0L;
+    private volatile long elapsedMillis = 0L;
+
+    private static LongAdder[] newAdders() {
+        final LongAdder[] adders = new LongAdder[Phase.values().length];
+        for ( int i = 0; i < adders.length; ++i ) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Enable timing of traversal phases and per-shard throughput. Must be called before the traversal starts.
+     */
+    public void enablePhaseTiming() {
+        phaseTimingEnabled = true;
+    }
+
+    /**
+     * @return true if traversal phases and shards are being timed, otherwise false
+     */
+    public boolean isPhaseTimingEnabled() {
+        return phaseTimingEnabled;
+    }
+
+    /**
+     * Start timing an operation, to be passed to {@link #stopTimer} once the operation is complete
+     *
+     * @return the current time in nanoseconds if phase timing is enabled, otherwise 0
+     */
+    public long startTimer() {
+        return phaseTimingEnabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Record the time taken by an operation in the given phase, if phase timing is enabled
+     *
+     * @param phase phase of the traversal in which the operation took place
+     * @param startNanos value returned by {@link #startTimer} when the operation started
+     */
+    public void stopTimer( final Phase phase, final long startNanos ) {
+        if ( phaseTimingEnabled ) {
+            addPhaseTime(phase, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Record the time taken by a single operation in the given phase
+     *
+     * @param phase phase of the traversal in which the operation took place
+     * @param nanos time taken, in nanoseconds
+     */
+    public void addPhaseTime( final Phase phase, final long nanos ) {
+        phaseNanos[phase.ordinal()].add(nanos);
+        phaseCounts[phase.ordinal()].increment();
+    }
+
+    /**
+     * @return total time spent in the given phase over all threads, in nanoseconds
+     */
+    public long getPhaseTimeNanos( final Phase phase ) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * @return number of timed operations in the given phase
+     */
+    public long getPhaseCount( final Phase phase ) {
+        return phaseCounts[phase.ordinal()].sum();
+    }
+
+    /**
+     * Record the number of records processed and the time taken for a single shard, if phase timing is enabled
+     *
+     * @param shard interval spanned by the shard
+     * @param numRecords number of records processed in the shard
+     * @param startNanos value returned by {@link #startTimer} when processing of the shard started
+     */
+    public void recordShard( final Locatable shard, final long numRecords, final long startNanos ) {
+        if ( phaseTimingEnabled ) {
+            shards.add(new ShardMetrics(new SimpleInterval(shard), numRecords, System.nanoTime() - startNanos));
+            sampleHeapUsage();
+        }
+    }
+
+    /**
+     * @return metrics for each shard recorded so far, in the order in which the shards were completed
+     */
+    public List<ShardMetrics> getShardMetrics() {
+        synchronized ( shards ) {
+            return new ArrayList<>(shards);
+        }
+    }
+
+    /**
+     * Sample the amount of heap currently in use, updating our high-water mark
+     */
+    public void sampleHeapUsage() {
+        final Runtime runtime = Runtime.getRuntime();
+        final long used = runtime.totalMemory() - runtime.freeMemory();
+        peakHeapUsedBytes.accumulateAndGet(used, Math::max);
+    }
+
+    /**
+     * @return the largest amount of heap seen in use, in bytes. Heap usage is only sampled periodically, so the true
+     *         peak may be somewhat higher.
+     */
+    public long getPeakHeapUsedBytes() {
+        return peakHeapUsedBytes.get();
+    }
+
+    /**
+     * Record the totals for the traversal as a whole
+     *
+     * @param numRecordsProcessed total number of records processed
+     * @param elapsedMillis total elapsed time, in milliseconds
+     */
+    void setTraversalTotals( final long numRecordsProcessed, final long elapsedMillis ) {
+        this.numRecordsProcessed = numRecordsProcessed;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return total number of records processed, as of the last progress update
+     */
+    public long getNumRecordsProcessed() {
+        return numRecordsProcessed;
+    }
+
+    /**
+     * @return total elapsed time of the traversal in milliseconds, as of the last progress update
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Wrap an iterator so that the time taken by each call to hasNext() and next() is recorded in the given phase.
+     *
+     * @return a timed iterator if phase timing is enabled, otherwise the given iterator
+     */
+    public <T> Iterator<T> timeIterator( final Iterator<T> iterator, final Phase phase ) {
+        Utils.nonNull(iterator);
+        if ( ! phaseTimingEnabled ) {
+            return iterator;
+        }
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                final long start = System.nanoTime();
+                final boolean hasNext = iterator.hasNext();
+                addPhaseTime(phase, System.nanoTime() - start);
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                final long start = System.nanoTime();
+                final T next = iterator.next();
+                addPhaseTime(phase, System.nanoTime() - start);
+                return next;
+            }
+        };
+    }
+
+    /**
+     * Wrap a read filter so that the time taken to test each read is recorded in the {@link Phase#FILTERING} phase.
+     *
+     * @return a timed filter if phase timing is enabled, otherwise the given filter
+     */
+    public ReadFilter timeFilter( final ReadFilter filter ) {
+        Utils.nonNull(filter);
+        return phaseTimingEnabled ? new TimedReadFilter(filter, this) : filter;
+    }
+
+    /**
+     * Wrap a reference data source so that the time taken by each query is recorded in the
+     * {@link Phase#REFERENCE_FETCH} phase. Closing the returned data source closes the given one.
+     *
+     * @return a timed data source if phase timing is enabled and the given data source is non-null,
+     *         otherwise the given data source
+     */
+    public ReferenceDataSource timeReference( final ReferenceDataSource reference ) {
+        return phaseTimingEnabled && reference != null ? new TimedReferenceDataSource(reference, this) : reference;
+    }
+
+    /**
+     * Write our metrics to a file, as JSON if the file name ends with ".json" and otherwise as TSV.
+     *
+     * The TSV format consists of a table of summary metrics (one per line, with columns "metric" and "value"),
+     * followed by a blank line and a table of per-shard metrics with columns "shard", "records", "seconds" and
+     * "recordsPerSecond".
+     *
+     * @param file file to write
+     */
+    public void write( final File file ) {
+        Utils.nonNull(file);
+        try ( final PrintStream out = new PrintStream(file) ) {
+            if ( file.getName().endsWith(".json") ) {
+                writeJson(out);
+            } else {
+                writeTsv(out);
+            }
+            if ( out.checkError() ) {
+                throw new UserException.CouldNotCreateOutputFile(file, "an error occurred while writing traversal metrics");
+            }
+        }
+        catch ( FileNotFoundException e ) {
+            throw new UserException.CouldNotCreateOutputFile(file, "could not open file for traversal metrics", e);
+        }
+    }
+
+    private void writeTsv( final PrintStream out ) {
+        out.println("metric\tvalue");
+        out.println("records\t" + numRecordsProcessed);
+        out.println("elapsedSeconds\t" + seconds(TimeUnit.MILLISECONDS.toNanos(elapsedMillis)));
+        out.println("recordsPerSecond\t" + perSecond(numRecordsProcessed, TimeUnit.MILLISECONDS.toNanos(elapsedMillis)));
+        out.println("peakHeapUsedBytes\t" + getPeakHeapUsedBytes());
+        if ( phaseTimingEnabled ) {
+            for ( final Phase phase : Phase.values() ) {
+                out.println(phase.getMetricName() + "Seconds\t" + seconds(getPhaseTimeNanos(phase)));
+                out.println(phase.getMetricName() + "Count\t" + getPhaseCount(phase));
+            }
+        }
+
+        out.println();
+        out.println("shard\trecords\tseconds\trecordsPerSecond");
+        for ( final ShardMetrics shard : getShardMetrics() ) {
+            out.println(shard.getShard() + "\t" + shard.getNumRecords() + "\t" + seconds(shard.getElapsedNanos()) + "\t" + shard.getRecordsPerSecond());
+        }
+    }
+
+    private void writeJson( final PrintStream out ) {
+        out.println("{");
+        out.println("  \"records\": " + numRecordsProcessed + ",");
+        out.println("  \"elapsedSeconds\": " + seconds(TimeUnit.MILLISECONDS.toNanos(elapsedMillis)) + ",");
+        out.println("  \"recordsPerSecond\": " + perSecond(numRecordsProcessed, TimeUnit.MILLISECONDS.toNanos(elapsedMillis)) + ",");
+        out.println("  \"peakHeapUsedBytes\": " + getPeakHeapUsedBytes() + ",");
+
+        out.print("  \"phases\": {");
+        if ( phaseTimingEnabled ) {
+            final Phase[] phases = Phase.values();
+            for ( int i = 0; i < phases.length; ++i ) {
+                out.print(i == 0 ? "\n" : ",\n");
+                out.print("    \"" + phases[i].getMetricName() + "\": { \"seconds\": " + seconds(getPhaseTimeNanos(phases[i])) +
+                          ", \"count\": " + getPhaseCount(phases[i]) + " }");
+            }
+            out.print("\n  ");
+        }
+        out.println("},");
+
+        out.print("  \"shards\": [");
+        final List<ShardMetrics> shardMetrics = getShardMetrics();
+        for ( int i = 0; i < shardMetrics.size(); ++i ) {
+            final ShardMetrics shard = shardMetrics.get(i);
+            out.print(i == 0 ? "\n" : ",\n");
+            out.print("    { \"shard\": " + jsonString(shard.getShard().toString()) + ", \"records\": " + shard.getNumRecords() +
+                      ", \"seconds\": " + seconds(shard.getElapsedNanos()) + ", \"recordsPerSecond\": " + shard.getRecordsPerSecond() + " }");
+        }
+        out.println(shardMetrics.isEmpty() ? "]" : "\n  ]");
+        out.println("}");
+    }
+
+    private static String jsonString( final String value ) {
+        final StringBuilder builder = new StringBuilder("\"");
+        for ( final char c : value.toCharArray() ) {
+            if ( c == '"' || c == '\\' ) {
+                builder.append('\\').append(c);
+            } else if ( c < 0x20 ) {
+                builder.append(String.format("\\u%04x", (int)c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static double seconds( final long nanos ) {
+        return nanos / (double)TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static double perSecond( final long count, final long nanos ) {
+        return nanos > 0 ? count / seconds(nanos) : 0.0;
+    }
+
+    /**
+     * ReadFilter that records the time taken by another filter
+     */
+    private static final class TimedReadFilter extends ReadFilter {
+        private static final long serialVersionUID = 1L;
+
+        private final transient TraversalMetrics metrics;
+
+        private TimedReadFilter( final ReadFilter filter, final TraversalMetrics metrics ) {
+            super(filter);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public boolean test( final GATKRead read ) {
+            final long start = System.nanoTime();
+            final boolean result = delegate.test(read);
+            metrics.addPhaseTime(Phase.FILTERING, System.nanoTime() - start);
+            return result;
+        }
+    }
+
+    /**
+     * ReferenceDataSource that records the time taken by queries on another data source
+     */
+    private static final class TimedReferenceDataSource implements ReferenceDataSource {
+        private final ReferenceDataSource reference;
+        private final TraversalMetrics metrics;
+
+        private TimedReferenceDataSource( final ReferenceDataSource reference, final TraversalMetrics metrics ) {
+            this.reference = reference;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public ReferenceSequence queryAndPrefetch( final String contig, final long start, final long stop ) {
+            final long startNanos = System.nanoTime();
+            final ReferenceSequence sequence = reference.queryAndPrefetch(contig, start, stop);
+            metrics.addPhaseTime(Phase.REFERENCE_FETCH, System.nanoTime() - startNanos);
+            return sequence;
+        }
+
+        @Override
+        public Iterator<Byte> iterator() {
+            return reference.iterator();
+        }
+
+        @Override
+        public SAMSequenceDictionary getSequenceDictionary() {
+            return reference.getSequenceDictionary();
+        }
+
+        @Override
+        public void close() {
+            reference.close();
+        }
+
+        @Override
+        public String toString() {
+            return reference.toString();
+        }
+    }
+}
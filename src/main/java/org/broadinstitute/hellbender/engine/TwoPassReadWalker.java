@@ -1,14 +1,19 @@
 package org.broadinstitute.hellbender.engine;
 
 
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SamReaderFactory;
 import org.broadinstitute.hellbender.engine.filters.CountingReadFilter;
 import org.broadinstitute.hellbender.engine.filters.ReadFilter;
 import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
 import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
 import org.broadinstitute.hellbender.tools.walkers.rnaseq.SplitNCigarReads;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.SAMFileGATKReadWriter;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.StreamSupport;
@@ -29,34 +34,82 @@ import java.util.stream.StreamSupport;
  * each read.  These are analogous to and replace {@link ReadWalker#apply}.  Authors may optionally implement
  * {@link #onTraversalStart} and/or {@link #onTraversalSuccess} and {@link #afterFirstPass} to perform
  * operations between passes. See the {@link SplitNCigarReads} walker for an example.
+ *
+ * By default the second pass re-reads (and re-filters) the original inputs. Tools may instead override
+ * {@link #spillReadsForSecondPass} to have the reads that pass the filters copied to a temporary BAM file on local
+ * disk during the first pass, and read back from there on the second pass. This is cheaper than decoding the
+ * inputs twice when they are remote, CRAM, or highly compressed, at the cost of local disk space.
  */
 public abstract class TwoPassReadWalker extends ReadWalker {
 
+    @Override
+    boolean traversalSupportsThreads() {
+        return false;
+    }
+
     @Override
     public void traverse() {
         // Process each read in the input stream.
         // Supply reference bases spanning each read, if a reference is available.
         final CountingReadFilter countedFilter = makeReadFilter();
 
-        traverseReads(countedFilter, this::firstPassApply);
-        logger.info("Finished first pass through the reads");
-        afterFirstPass();
-        // Need to reinitialize the reads and intervals so they are guaranteed to pass over a file
-        initializeReads();
-        setReadTraversalBounds();
-        logger.info("Starting second pass through the reads");
-        traverseReads(countedFilter, this::secondPassApply);
+        if ( spillReadsForSecondPass() ) {
+            traverseWithSpill(countedFilter);
+        } else {
+            traverseReads(reads, countedFilter, this::firstPassApply);
+            logger.info("Finished first pass through the reads");
+            afterFirstPass();
+            // Need to reinitialize the reads and intervals so they are guaranteed to pass over a file
+            initializeReads();
+            setReadTraversalBounds();
+            logger.info("Starting second pass through the reads");
+            traverseReads(reads, countedFilter, this::secondPassApply);
+        }
         logger.info(countedFilter.getSummaryLine());
     }
 
+    /**
+     * Make both passes, writing the reads that pass the filter on the first pass to a temporary spill file,
+     * and taking the reads for the second pass from that file.
+     */
+    private void traverseWithSpill(final CountingReadFilter countedFilter) {
+        final File spillFile = IOUtils.createTempFile("twoPassReadWalkerSpill", ".bam");
+        try {
+            final SAMFileWriterFactory spillWriterFactory = new SAMFileWriterFactory()
+                    .setCompressionLevel(getSpillCompressionLevel())
+                    .setCreateIndex(false)
+                    .setCreateMd5File(false);
+            try ( final SAMFileGATKReadWriter spillWriter = new SAMFileGATKReadWriter(spillWriterFactory.makeBAMWriter(getHeaderForReads(), true, spillFile)) ) {
+                traverseReads(reads, countedFilter, (read, referenceContext, featureContext) -> {
+                    // Spill a copy of the read: firstPassApply may modify the read, and the writer may encode it
+                    // later on another thread (with asynchronous writing), so the read itself can't be spilled
+                    spillWriter.addRead(read.copy());
+                    firstPassApply(read, referenceContext, featureContext);
+                });
+            }
+            logger.info("Finished first pass through the reads");
+            afterFirstPass();
+
+            logger.info("Starting second pass through the reads, using the reads spilled to " + spillFile.getAbsolutePath());
+            final SamReaderFactory spillReaderFactory = SamReaderFactory.makeDefault().validationStringency(readArguments.getReadValidationStringency());
+            try ( final ReadsDataSource spilledReads = new ReadsDataSource(spillFile.toPath(), spillReaderFactory) ) {
+                // The spilled reads have already been filtered and restricted to our intervals
+                traverseReads(spilledReads, ReadFilterLibrary.ALLOW_ALL_READS, this::secondPassApply);
+            }
+        } finally {
+            spillFile.delete();
+        }
+    }
+
     /**
      * Process using the given filter and function.
-     * @param countedFilter a filter to apply to all reads.
+     * @param source the reads to process
+     * @param filter a filter to apply to all reads.
      * @param f function applied to each read, should produce some useful side effect
      */
-    private void traverseReads(final CountingReadFilter countedFilter, final GATKApply f) {
-        StreamSupport.stream(reads.spliterator(), false)
-                .filter(countedFilter)
+    private void traverseReads(final Iterable<GATKRead> source, final ReadFilter filter, final GATKApply f) {
+        StreamSupport.stream(source.spliterator(), false)
+                .filter(filter)
                 .forEach(read -> {
                     final SimpleInterval readInterval = getReadInterval(read);
                     f.consume(read,
@@ -119,6 +172,25 @@ public abstract class TwoPassReadWalker extends ReadWalker {
      */
     protected void afterFirstPass() {}
 
+    /**
+     * Should the second pass take its reads from a local spill file written during the first pass, rather than from
+     * the original inputs? The reads presented to {@link #secondPassApply} are the same either way, but any
+     * information not preserved by writing them to BAM (eg., the file they came from) will be lost.
+     *
+     * The default implementation returns false.
+     */
+    protected boolean spillReadsForSecondPass() {
+        return false;
+    }
+
+    /**
+     * @return the BGZF compression level (0-9) of the spill file used when {@link #spillReadsForSecondPass} is true.
+     *         Lower levels use more disk space but less CPU time. The default is 1.
+     */
+    protected int getSpillCompressionLevel() {
+        return 1;
+    }
+
     /**
      * Not called by {@link TwoPassReadWalker}.  Does nothing.
      *
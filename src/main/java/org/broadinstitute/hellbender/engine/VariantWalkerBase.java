@@ -36,7 +36,7 @@ public abstract class VariantWalkerBase extends GATKTool {
     void initializeFeatures() {
         //Note: we override this method because we don't want to set feature manager to null if there are no FeatureInputs.
         //This is because we have at least 1 source of features (namely the driving dataset).
-        features = new FeatureManager(this, FEATURE_CACHE_LOOKAHEAD);
+        features = new FeatureManager(this, FEATURE_CACHE_LOOKAHEAD, getFeatureQueryLookbehind());
         initializeDrivingVariants();
     }
 
@@ -94,15 +94,19 @@ public abstract class VariantWalkerBase extends GATKTool {
     @Override
     public void traverse() {
         final VariantFilter filter = makeVariantFilter();
+        final WalkerContexts contexts = new WalkerContexts(reads, reference, features, allowsContextReuse());
+        final TraversalMetrics metrics = getTraversalMetrics();
         // Process each variant in the input stream.
         StreamSupport.stream(getSpliteratorForDrivingVariants(), false)
                 .filter(filter)
                 .forEach(variant -> {
                     final SimpleInterval variantInterval = new SimpleInterval(variant);
+                    final long applyStart = metrics.startTimer();
                     apply(variant,
-                            new ReadsContext(reads, variantInterval),
-                            new ReferenceContext(reference, variantInterval),
-                            new FeatureContext(features, variantInterval));
+                            contexts.getReadsContext(variantInterval),
+                            contexts.getReferenceContext(variantInterval),
+                            contexts.getFeatureContext(variantInterval));
+                    metrics.stopTimer(TraversalMetrics.Phase.APPLY, applyStart);
 
                     progressMeter.update(variantInterval);
                 });
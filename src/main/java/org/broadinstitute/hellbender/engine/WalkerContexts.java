@@ -0,0 +1,95 @@
+package org.broadinstitute.hellbender.engine;
+
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+
+/**
+ * Supplies the context objects handed to a walker's apply() method for each record in a traversal.
+ *
+ * If context reuse is enabled (see {@link GATKTool#allowsContextReuse}), a single instance of each kind of context
+ * is created on first use and reset in place for every subsequent record, so that traversals over many records do
+ * not allocate new contexts for each one. Otherwise, new contexts are created for every record.
+ *
+ * Since recycled contexts are mutated, an instance of this class must only be used by a single thread. Traversals
+ * that process records on several threads should create one instance per thread (or per shard).
+ */
+final class WalkerContexts {
+
+    private final ReadsDataSource reads;
+    private final ReferenceDataSource reference;
+    private final FeatureManager features;
+    private final boolean reuseContexts;
+
+    private ReadsContext readsContext;
+    private ReferenceContext referenceContext;
+    private FeatureContext featureContext;
+
+    /**
+     * @param reads source of reads for ReadsContexts (may be null)
+     * @param reference source of reference bases for ReferenceContexts (may be null)
+     * @param features sources of Features for FeatureContexts (may be null)
+     * @param reuseContexts if true, recycle a single instance of each context rather than creating a new one per record
+     */
+    WalkerContexts( final ReadsDataSource reads, final ReferenceDataSource reference, final FeatureManager features, final boolean reuseContexts ) {
+        this.reads = reads;
+        this.reference = reference;
+        this.features = features;
+        this.reuseContexts = reuseContexts;
+    }
+
+    /**
+     * @param interval interval of the current record (may be null)
+     * @return a ReadsContext over the given interval
+     */
+    ReadsContext getReadsContext( final SimpleInterval interval ) {
+        if ( ! reuseContexts ) {
+            return new ReadsContext(reads, interval);
+        }
+        if ( readsContext == null ) {
+            readsContext = new ReadsContext(reads, interval);
+        } else {
+            readsContext.resetInterval(interval);
+        }
+        return readsContext;
+    }
+
+    /**
+     * @param interval interval of the current record (may be null)
+     * @return a windowless ReferenceContext over the given interval
+     */
+    ReferenceContext getReferenceContext( final SimpleInterval interval ) {
+        if ( ! reuseContexts ) {
+            return new ReferenceContext(reference, interval);
+        }
+        if ( referenceContext == null ) {
+            referenceContext = new ReferenceContext(reference, interval);
+        } else {
+            referenceContext.resetInterval(interval);
+        }
+        return referenceContext;
+    }
+
+    /**
+     * @param interval interval of the current record (may be null)
+     * @return a FeatureContext over the given interval
+     */
+    FeatureContext getFeatureContext( final SimpleInterval interval ) {
+        return getFeatureContext(interval, null);
+    }
+
+    /**
+     * @param interval interval of the current record (may be null)
+     * @param featureBatch Features prefetched from our FeatureManager for a batch of records including the current
+     *                     one (may be null, in which case queries go directly to the FeatureManager)
+     * @return a FeatureContext over the given interval
+     */
+    FeatureContext getFeatureContext( final SimpleInterval interval, final FeatureBatch featureBatch ) {
+        if ( ! reuseContexts ) {
+            return featureBatch != null ? FeatureContext.fromBatch(featureBatch, interval) : new FeatureContext(features, interval);
+        }
+        if ( featureContext == null ) {
+            featureContext = new FeatureContext(features, null);
+        }
+        featureContext.reset(interval, featureBatch);
+        return featureContext;
+    }
+}
@@ -48,6 +48,17 @@ public class CountingReadFilter extends ReadFilter {
         filteredCount = 0;
     }
 
+    /**
+     * Add the counts of another filter, made the same way as this one (eg., by another call to the same
+     * makeReadFilter() method), to those of this filter and of its component filters. Used to merge the counts of
+     * the filters of the threads of a multi-threaded traversal into a single summary.
+     */
+    public void addFilteredCounts(final CountingReadFilter other) {
+        Utils.nonNull(other);
+        Utils.validateArg(other.getClass() == getClass(), () -> "can't add the counts of a " + other.getClass().getSimpleName() + " to a " + getClass().getSimpleName());
+        filteredCount += other.filteredCount;
+    }
+
     public String getName() {return delegateFilter.getClass().getSimpleName();}
 
     // Returns a summary line with filter counts organized by level
@@ -121,6 +132,12 @@ public class CountingReadFilter extends ReadFilter {
             return accept;
         }
 
+        @Override
+        public void addFilteredCounts(final CountingReadFilter other) {
+            super.addFilteredCounts(other);
+            delegateCountingFilter.addFilteredCounts(((CountingNegateReadFilter)other).delegateCountingFilter);
+        }
+
         @Override
         public String getName() {
             return "Not " + delegateCountingFilter.getName();
@@ -147,6 +164,13 @@ public class CountingReadFilter extends ReadFilter {
             this.rhs = rhs;
         }
 
+        @Override
+        public void addFilteredCounts(final CountingReadFilter other) {
+            super.addFilteredCounts(other);
+            lhs.addFilteredCounts(((CountingBinopReadFilter)other).lhs);
+            rhs.addFilteredCounts(((CountingBinopReadFilter)other).rhs);
+        }
+
         @Override
         protected String getSummaryLineForLevel(final int indentLevel) {
             final String indent = getIndentString(indentLevel);
@@ -10,6 +10,7 @@ import org.apache.spark.serializer.KryoRegistrator;
 import org.bdgenomics.adam.serialization.ADAMKryoRegistrator;
 import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
 import org.broadinstitute.hellbender.utils.read.markduplicates.PairedEnds;
+import org.broadinstitute.hellbender.utils.variant.DbSnpBitSetUtil;
 
 import java.util.Collections;
 
@@ -49,6 +50,9 @@ public class GATKRegistrator implements KryoRegistrator {
 
         kryo.register(SAMRecord.class, new SAMRecordSerializer());
 
+        // the BitSets in a DbSnpBitSetUtil keep their size in a transient field, so Kryo's default serializer can't handle them
+        kryo.register(DbSnpBitSetUtil.class, new JavaSerializer());
+
         //register to avoid writing the full name of this class over and over
         kryo.register(PairedEnds.class, new FieldSerializer<>(kryo, PairedEnds.class));
 
@@ -59,6 +59,8 @@ public class ApplyBQSRUniqueArgumentCollection implements ArgumentCollectionDefi
     public ApplyBQSRArgumentCollection toApplyBQSRArgumentCollection(int PRESERVE_QSCORES_LESS_THAN) {
         ApplyBQSRArgumentCollection ret = new ApplyBQSRArgumentCollection();
         ret.quantizationLevels = this.quantizationLevels;
+        ret.staticQuantizationQuals = this.staticQuantizationQuals;
+        ret.roundDown = this.roundDown;
         ret.emitOriginalQuals = this.emitOriginalQuals;
         ret.PRESERVE_QSCORES_LESS_THAN = PRESERVE_QSCORES_LESS_THAN;
         ret.globalQScorePrior = this.globalQScorePrior;
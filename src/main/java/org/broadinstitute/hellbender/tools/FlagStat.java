@@ -21,6 +21,11 @@ public final class FlagStat extends ReadWalker {
 
     private final FlagStatus sum = new FlagStatus();
 
+    @Override
+    public boolean allowsContextReuse() {
+        return true;
+    }
+
     @Override
     public void apply( GATKRead read, ReferenceContext referenceContext, FeatureContext featureContext ) {
         sum.add(read);
@@ -7,8 +7,8 @@ import org.broadinstitute.hellbender.cmdline.programgroups.ReadProgramGroup;
 import org.broadinstitute.hellbender.engine.FeatureContext;
 import org.broadinstitute.hellbender.engine.ReadWalker;
 import org.broadinstitute.hellbender.engine.ReferenceContext;
+import org.broadinstitute.hellbender.engine.ShardOrderedReadWriter;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
-import org.broadinstitute.hellbender.utils.read.SAMFileGATKReadWriter;
 
 import java.io.File;
 
@@ -22,11 +22,21 @@ public final class PrintReads extends ReadWalker {
     @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc="Write output to this file")
     public File OUTPUT;
 
-    private SAMFileGATKReadWriter outputWriter;
+    private ShardOrderedReadWriter outputWriter;
+
+    @Override
+    public boolean applyIsThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public boolean allowsContextReuse() {
+        return true;
+    }
 
     @Override
     public void onTraversalStart() {
-        outputWriter = createSAMWriter(OUTPUT, true);
+        outputWriter = createShardOrderedSAMWriter(OUTPUT, true);
     }
 
     @Override
@@ -66,6 +66,12 @@ public final class ExampleAssemblyRegionWalker extends AssemblyRegionWalker {
         return (locusPileup, referenceContext, featureContext) -> new ActivityProfileState(new SimpleInterval(locusPileup), 1.0);
     }
 
+    @Override
+    public boolean assemblyRegionEvaluatorIsThreadSafe() {
+        // The evaluator above keeps no state
+        return true;
+    }
+
     @Override
     public void onTraversalStart() {
         try {
@@ -36,6 +36,11 @@ public class ExampleLocusWalker extends LocusWalker {
 
     private PrintStream outputStream = null;
 
+    @Override
+    public boolean allowsContextReuse() {
+        return true;
+    }
+
     @Override
     public void onTraversalStart() {
         try {
@@ -12,8 +12,10 @@ import org.broadinstitute.hellbender.cmdline.programgroups.SparkProgramGroup;
 import org.broadinstitute.hellbender.engine.spark.GATKSparkTool;
 import org.broadinstitute.hellbender.tools.ApplyBQSRArgumentCollection;
 import org.broadinstitute.hellbender.tools.spark.transforms.ApplyBQSRSparkFn;
+import org.broadinstitute.hellbender.transformers.BQSRReadTransformer;
 import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationLookupTable;
 import org.broadinstitute.hellbender.utils.recalibration.RecalibrationReport;
 
 @CommandLineProgramProperties(summary="Apply Base Quality Recalibration to a SAM/BAM/CRAM file using Spark",
@@ -44,8 +46,9 @@ public final class ApplyBQSRSpark extends GATKSparkTool {
     protected void runTool(JavaSparkContext ctx) {
         JavaRDD<GATKRead> initialReads = getReads();
         final GCSOptions gcsOptions = getAuthenticatedGCSOptions(); // null if we have no api key
-        Broadcast<RecalibrationReport> recalibrationReportBroadCast = ctx.broadcast(new RecalibrationReport(BucketUtils.openFile(bqsrRecalFile, gcsOptions)));
-        final JavaRDD<GATKRead> recalibratedReads = ApplyBQSRSparkFn.apply(initialReads, recalibrationReportBroadCast, getHeaderForReads(), applyBQSRArgs);
+        final RecalibrationReport recalibrationReport = new RecalibrationReport(BucketUtils.openFile(bqsrRecalFile, gcsOptions));
+        final Broadcast<RecalibrationLookupTable> lookupTableBroadcast = ctx.broadcast(BQSRReadTransformer.createLookupTable(recalibrationReport, applyBQSRArgs));
+        final JavaRDD<GATKRead> recalibratedReads = ApplyBQSRSparkFn.apply(initialReads, lookupTableBroadcast, getHeaderForReads(), applyBQSRArgs);
         writeReads(ctx, output, recalibratedReads);
     }
 }
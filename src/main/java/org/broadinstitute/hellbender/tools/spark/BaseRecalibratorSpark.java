@@ -4,6 +4,8 @@ import org.broadinstitute.hellbender.utils.SerializableFunction;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.broadinstitute.hellbender.cmdline.Advanced;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.ArgumentCollection;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
@@ -26,10 +28,16 @@ import org.broadinstitute.hellbender.utils.recalibration.BaseRecalibrationEngine
 import org.broadinstitute.hellbender.utils.recalibration.RecalUtils;
 import org.broadinstitute.hellbender.utils.recalibration.RecalibrationArgumentCollection;
 import org.broadinstitute.hellbender.utils.recalibration.RecalibrationReport;
+import org.broadinstitute.hellbender.utils.variant.DbSnpBitSetUtil;
 import org.broadinstitute.hellbender.utils.variant.GATKVariant;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @CommandLineProgramProperties(
         summary = "Base Quality Score Recalibration (BQSR) -- Generates recalibration table based on various user-specified covariates (such as read group, reported quality score, machine cycle, and nucleotide context).",
@@ -71,6 +79,25 @@ public class BaseRecalibratorSpark extends GATKSparkTool {
     @ArgumentCollection(doc = "all the command line arguments for BQSR and its covariates")
     private final RecalibrationArgumentCollection bqsrArgs = new RecalibrationArgumentCollection();
 
+    /**
+     * Rather than joining the known variants with the reads, load them into a bit set that is broadcast to the
+     * workers, which find the bases of each read that overlap known sites with bit operations.
+     */
+    @Advanced
+    @Argument(fullName = "useKnownSitesBitSet", shortName = "useKnownSitesBitSet", doc = "Broadcast the known sites as a bit set instead of joining them with the reads", optional = true)
+    private boolean useKnownSitesBitSet = false;
+
+    /**
+     * A file holding the known sites bit set (see --useKnownSitesBitSet), which implies --useKnownSitesBitSet. If
+     * the file exists, the bit set is loaded from it instead of from the known sites; otherwise the bit set is built
+     * from the known sites and saved to this file, so that later runs against the same known sites can reuse it. The saved bit set always holds all the known sites, even when intervals are given. The
+     * file records the known sites and the reference sequence dictionary it was built from, and loading it fails if
+     * they don't match the current ones.
+     */
+    @Advanced
+    @Argument(fullName = "knownSitesBitSetFile", shortName = "knownSitesBitSetFile", doc = "File to load the known sites bit set from, or to save it to if the file does not exist", optional = true)
+    private String knownSitesBitSetFile = null;
+
     @Argument(fullName="readShardSize", shortName="readShardSize", doc = "Maximum size of each read shard, in bases. Only applies when using the OVERLAPS_PARTITIONER join strategy.", optional = true)
     public int readShardSize = 10000;
 
@@ -85,17 +112,54 @@ public class BaseRecalibratorSpark extends GATKSparkTool {
 
         JavaRDD<GATKRead> initialReads = getReads();
         VariantsSparkSource variantsSparkSource = new VariantsSparkSource(ctx);
-        JavaRDD<GATKVariant> bqsrKnownVariants = variantsSparkSource.getParallelVariants(knownVariants, getIntervals());
+        JavaRDD<GATKVariant> bqsrKnownVariants;
+        Broadcast<DbSnpBitSetUtil> knownSitesBitSet = null;
+        if ( useKnownSitesBitSet || knownSitesBitSetFile != null ) {
+            knownSitesBitSet = ctx.broadcast(loadKnownSitesBitSet(variantsSparkSource));
+            bqsrKnownVariants = ctx.emptyRDD(); // only the reference bases need to be joined with the reads
+        } else {
+            bqsrKnownVariants = variantsSparkSource.getParallelVariants(knownVariants, getIntervals());
+        }
 
         // TODO: Look into broadcasting the reference to all of the workers. This would make AddContextDataToReadSpark
         // TODO: and ApplyBQSRStub simpler (#855).
         JavaPairRDD<GATKRead, ReadContextData> rddReadContext = AddContextDataToReadSpark.add(ctx, initialReads, getReference(), bqsrKnownVariants, joinStrategy, getReferenceSequenceDictionary(), readShardSize, readShardPadding);
 
         // TODO: broadcast the reads header?
-        final RecalibrationReport bqsrReport = BaseRecalibratorSparkFn.apply(rddReadContext, getHeaderForReads(), getReferenceSequenceDictionary(), bqsrArgs);
+        final RecalibrationReport bqsrReport = BaseRecalibratorSparkFn.apply(rddReadContext, getHeaderForReads(), getReferenceSequenceDictionary(), bqsrArgs, knownSitesBitSet);
 
         try ( final PrintStream reportStream = new PrintStream(BucketUtils.createFile(outputTablesPath, getAuthenticatedGCSOptions())) ) {
             RecalUtils.outputRecalibrationReport(reportStream, bqsrArgs, bqsrReport.getQuantizationInfo(), bqsrReport.getRecalibrationTables(), bqsrReport.getCovariates());
         }
     }
+
+    /**
+     * Load the known sites bit set from {@link #knownSitesBitSetFile} if it exists, otherwise build it from the known
+     * variants (in parallel, one partial bit set per partition) and save it to {@link #knownSitesBitSetFile} if given.
+     * A bit set that is saved is built from all the known variants rather than only those within the intervals, since
+     * later runs may use other intervals.
+     */
+    private DbSnpBitSetUtil loadKnownSitesBitSet( final VariantsSparkSource variantsSparkSource ) {
+        final List<String> knownSitesPaths = knownVariants.stream().map(BucketUtils::makeFilePathAbsolute).collect(Collectors.toList());
+        if ( knownSitesBitSetFile != null && BucketUtils.fileExists(knownSitesBitSetFile, getAuthenticatedGCSOptions()) ) {
+            try ( final InputStream in = BucketUtils.openFile(knownSitesBitSetFile, getAuthenticatedGCSOptions()) ) {
+                return DbSnpBitSetUtil.read(in, knownSitesBitSetFile, knownSitesPaths, getReferenceSequenceDictionary());
+            } catch ( final IOException e ) {
+                throw new UserException.CouldNotReadInputFile("Couldn't read the known sites bit set " + knownSitesBitSetFile, e);
+            }
+        }
+
+        final List<SimpleInterval> intervals = knownSitesBitSetFile != null ? null : getIntervals();
+        final DbSnpBitSetUtil bitSet = variantsSparkSource.getParallelVariants(knownVariants, intervals)
+                .mapPartitions(variants -> Collections.singletonList(DbSnpBitSetUtil.createFromSites(variants, null)).iterator())
+                .reduce(DbSnpBitSetUtil::union);
+        if ( knownSitesBitSetFile != null ) {
+            try ( final OutputStream out = BucketUtils.createFile(knownSitesBitSetFile, getAuthenticatedGCSOptions()) ) {
+                bitSet.write(out, knownSitesPaths, getReferenceSequenceDictionary());
+            } catch ( final IOException e ) {
+                throw new UserException.CouldNotCreateOutputFile(knownSitesBitSetFile, "Couldn't write the known sites bit set", e);
+            }
+        }
+        return bitSet;
+    }
 }
@@ -6,17 +6,21 @@ import org.apache.spark.broadcast.Broadcast;
 import org.broadinstitute.hellbender.tools.ApplyBQSRArgumentCollection;
 import org.broadinstitute.hellbender.transformers.BQSRReadTransformer;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
-import org.broadinstitute.hellbender.utils.recalibration.RecalibrationReport;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationLookupTable;
 
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 public class ApplyBQSRSparkFn {
 
-    public static JavaRDD<GATKRead> apply(JavaRDD<GATKRead> reads, final Broadcast<RecalibrationReport> reportBroadcast, final SAMFileHeader readsHeader, ApplyBQSRArgumentCollection args) {
+    /**
+     * @param lookupTableBroadcast lookup table created from the recalibration report by
+     *                             {@link BQSRReadTransformer#createLookupTable} with the same args
+     */
+    public static JavaRDD<GATKRead> apply(JavaRDD<GATKRead> reads, final Broadcast<RecalibrationLookupTable> lookupTableBroadcast, final SAMFileHeader readsHeader, ApplyBQSRArgumentCollection args) {
         return reads.mapPartitions(readsIterator -> {
-            final RecalibrationReport report = reportBroadcast.getValue();
-            final BQSRReadTransformer transformer = new BQSRReadTransformer(readsHeader, report, args);//reuse this for all reads in the partition
+            final RecalibrationLookupTable lookupTable = lookupTableBroadcast.getValue();
+            final BQSRReadTransformer transformer = new BQSRReadTransformer(readsHeader, lookupTable, args);//reuse this for all reads in the partition
             final Iterable<GATKRead> readsIterable = () -> readsIterator;
             return StreamSupport.stream(readsIterable.spliterator(), false).map(read -> transformer.apply(read)).collect(Collectors.toList()).iterator();
         });
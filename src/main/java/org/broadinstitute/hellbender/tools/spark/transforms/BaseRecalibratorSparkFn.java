@@ -4,6 +4,7 @@ import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMSequenceDictionary;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.broadcast.Broadcast;
 import org.broadinstitute.hellbender.engine.ReadContextData;
 import org.broadinstitute.hellbender.engine.ReferenceDataSource;
 import org.broadinstitute.hellbender.engine.ReferenceMemorySource;
@@ -11,6 +12,7 @@ import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.recalibration.*;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
 import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
+import org.broadinstitute.hellbender.utils.variant.DbSnpBitSetUtil;
 import org.broadinstitute.hellbender.utils.variant.GATKVariant;
 import scala.Tuple2;
 
@@ -20,17 +22,30 @@ import java.util.Arrays;
 public final class BaseRecalibratorSparkFn {
 
     public static RecalibrationReport apply( final JavaPairRDD<GATKRead, ReadContextData> readsWithContext, final SAMFileHeader header, final SAMSequenceDictionary referenceDictionary, final RecalibrationArgumentCollection recalArgs ) {
+        return apply(readsWithContext, header, referenceDictionary, recalArgs, null);
+    }
+
+    /**
+     * @param knownSitesBitSet known sites of variation over the whole genome, in which case the variants in the
+     *                         ReadContextData of the reads are ignored, or null to use those variants
+     */
+    public static RecalibrationReport apply( final JavaPairRDD<GATKRead, ReadContextData> readsWithContext, final SAMFileHeader header, final SAMSequenceDictionary referenceDictionary, final RecalibrationArgumentCollection recalArgs, final Broadcast<DbSnpBitSetUtil> knownSitesBitSet ) {
         JavaRDD<RecalibrationTables> unmergedTables = readsWithContext.mapPartitions(readWithContextIterator -> {
             final BaseRecalibrationEngine bqsr = new BaseRecalibrationEngine(recalArgs, header);
             bqsr.logCovariatesUsed();
+            final DbSnpBitSetUtil knownSites = knownSitesBitSet != null ? knownSitesBitSet.getValue() : null;
 
             while ( readWithContextIterator.hasNext() ) {
                 final Tuple2<GATKRead, ReadContextData> readWithData = readWithContextIterator.next();
-                Iterable<GATKVariant> variants = readWithData._2().getOverlappingVariants();
                 final ReferenceBases refBases = readWithData._2().getOverlappingReferenceBases();
                 ReferenceDataSource refDS = new ReferenceMemorySource(refBases, referenceDictionary);
 
-                bqsr.processRead(readWithData._1(), refDS, variants);
+                if ( knownSites != null ) {
+                    bqsr.processRead(readWithData._1(), refDS, knownSites);
+                } else {
+                    Iterable<GATKVariant> variants = readWithData._2().getOverlappingVariants();
+                    bqsr.processRead(readWithData._1(), refDS, variants);
+                }
             }
             return Arrays.asList(bqsr.getRecalibrationTables()).iterator();
         });
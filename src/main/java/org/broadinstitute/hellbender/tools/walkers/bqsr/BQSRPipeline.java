@@ -0,0 +1,193 @@
+package org.broadinstitute.hellbender.tools.walkers.bqsr;
+
+import htsjdk.tribble.Feature;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.cmdline.Advanced;
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.ArgumentCollection;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.cmdline.programgroups.ReadProgramGroup;
+import org.broadinstitute.hellbender.engine.FeatureContext;
+import org.broadinstitute.hellbender.engine.FeatureInput;
+import org.broadinstitute.hellbender.engine.ReferenceContext;
+import org.broadinstitute.hellbender.engine.ReferenceDataSource;
+import org.broadinstitute.hellbender.engine.TwoPassReadWalker;
+import org.broadinstitute.hellbender.engine.filters.ReadFilter;
+import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.tools.ApplyBQSRUniqueArgumentCollection;
+import org.broadinstitute.hellbender.transformers.BQSRReadTransformer;
+import org.broadinstitute.hellbender.transformers.ReadTransformer;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.SAMFileGATKReadWriter;
+import org.broadinstitute.hellbender.utils.recalibration.BaseRecalibrationEngine;
+import org.broadinstitute.hellbender.utils.recalibration.QuantizationInfo;
+import org.broadinstitute.hellbender.utils.recalibration.RecalUtils;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationArgumentCollection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Both steps of base quality score recalibration (BaseRecalibrator and ApplyBQSR) in a single command.
+ *
+ * <p>
+ * On the first pass through the reads, this tool collects recalibration tables exactly as {@link BaseRecalibrator}
+ * does, while also copying the reads to a temporary BAM file on local disk. Once the tables are complete, the second
+ * pass recalibrates the reads in the temporary file exactly as {@link ApplyBQSR} does, and writes them to the output.
+ * The inputs are therefore only decompressed and decoded once, which roughly halves the decoding work of running
+ * the two tools separately, at the cost of local disk space for the temporary file.
+ * </p>
+ *
+ * <p>
+ * As for BaseRecalibrator, reads that are unmapped, duplicates, secondary alignments, fail vendor quality checks, or
+ * have mapping quality 0 or unavailable do not contribute to the recalibration tables. As for ApplyBQSR, all reads that
+ * pass the tool's read filters are recalibrated and written to the output.
+ * </p>
+ *
+ * <h3>Examples</h3>
+ * <pre>
+ * ./gatk-launch BQSRPipeline \
+ *   -I my_reads.bam \
+ *   -R reference.fasta \
+ *   -knownSites dbsnp.vcf \
+ *   -O my_reads.recalibrated.bam \
+ *   -recalTableOutput recal_data.table
+ * </pre>
+ */
+@CommandLineProgramProperties(
+        summary = "Performs both steps of BQSR - creation of recalibration tables and rewriting of the bam - in a single command, decoding the input only once",
+        oneLineSummary = "Both steps of BQSR (BaseRecalibrator and ApplyBQSR) in a single command",
+        programGroup = ReadProgramGroup.class
+)
+public final class BQSRPipeline extends TwoPassReadWalker {
+    private static final Logger logger = LogManager.getLogger(BQSRPipeline.class);
+
+    @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc = "Write recalibrated reads to this file")
+    public File OUTPUT;
+
+    /**
+     * See {@link BaseRecalibrator}.
+     */
+    @Argument(fullName = "knownSites", shortName = "knownSites", doc = "One or more databases of known polymorphic sites used to exclude regions around known polymorphisms from analysis.", optional = false)
+    private List<FeatureInput<Feature>> knownSites;
+
+    @Argument(fullName = "recalTableOutput", shortName = "recalTableOutput", doc = "If specified, also write the recalibration table to this file", optional = true)
+    private File recalTableFile = null;
+
+    @Advanced
+    @Argument(fullName = "spillCompressionLevel", shortName = "spillCompressionLevel", doc = "Compression level (0-9) of the temporary file holding the reads between passes. Lower levels use more disk space but less CPU time.", optional = true)
+    private int spillCompressionLevel = 1;
+
+    /**
+     * all the command line arguments for BQSR and its covariates
+     */
+    @ArgumentCollection(doc = "all the command line arguments for BQSR and its covariates")
+    private final RecalibrationArgumentCollection recalArgs = new RecalibrationArgumentCollection();
+
+    /**
+     * command-line arguments to fine tune the apply BQSR step.
+     */
+    @ArgumentCollection
+    public ApplyBQSRUniqueArgumentCollection applyBqsrArgs = new ApplyBQSRUniqueArgumentCollection();
+
+    private BaseRecalibrationEngine recalibrationEngine;
+
+    private ReferenceDataSource referenceDataSource; // datasource for the reference. We're using a different one from the engine itself to avoid messing with its caches.
+
+    private ReadFilter bqsrReadFilter;
+
+    private ReadTransformer transform;
+
+    private SAMFileGATKReadWriter outputWriter;
+
+    @Override
+    public boolean requiresReference() {
+        return true;
+    }
+
+    @Override
+    protected boolean spillReadsForSecondPass() {
+        return true;
+    }
+
+    @Override
+    protected int getSpillCompressionLevel() {
+        return spillCompressionLevel;
+    }
+
+    @Override
+    public void onTraversalStart() {
+        if ( spillCompressionLevel < 0 || spillCompressionLevel > 9 ) {
+            throw new UserException.BadArgumentValue("spillCompressionLevel", String.valueOf(spillCompressionLevel), "must be between 0 and 9");
+        }
+        if (recalArgs.FORCE_PLATFORM != null) {
+            recalArgs.DEFAULT_PLATFORM = recalArgs.FORCE_PLATFORM;
+        }
+
+        Utils.warnOnNonIlluminaReadGroups(getHeaderForReads(), logger);
+
+        recalibrationEngine = new BaseRecalibrationEngine(recalArgs, getHeaderForReads());
+        recalibrationEngine.logCovariatesUsed();
+        referenceDataSource = ReferenceDataSource.of(referenceArguments.getReferenceFile());
+
+        // The tool's read filters are those of ApplyBQSR, so apply the additional filters of BaseRecalibrator here
+        bqsrReadFilter = BaseRecalibrator.makeBQSRSpecificReadFilters().stream().reduce(ReadFilterLibrary.ALLOW_ALL_READS, (f1, f2) -> f1.and(f2));
+
+        outputWriter = createSAMWriter(OUTPUT, true);
+    }
+
+    @Override
+    protected void firstPassApply( final GATKRead read, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
+        if ( bqsrReadFilter.test(read) ) {
+            recalibrationEngine.processRead(read, referenceDataSource, featureContext.getValues(knownSites));
+        }
+    }
+
+    @Override
+    protected void afterFirstPass() {
+        recalibrationEngine.finalizeData();
+
+        logger.info("Calculating quantized quality scores...");
+        final QuantizationInfo quantizationInfo = new QuantizationInfo(recalibrationEngine.getFinalRecalibrationTables(), recalArgs.QUANTIZING_LEVELS);
+
+        // Recalibrate from the report as written to disk, so that the results are the same as running BaseRecalibrator
+        // and ApplyBQSR separately
+        final File reportFile = recalTableFile != null ? recalTableFile : IOUtils.createTempFile("BQSRPipeline", ".table");
+        logger.info("Writing recalibration report...");
+        try ( PrintStream recalTableStream = new PrintStream(reportFile) ) {
+            RecalUtils.outputRecalibrationReport(recalTableStream, recalArgs, quantizationInfo, recalibrationEngine.getFinalRecalibrationTables(), recalibrationEngine.getCovariates());
+        }
+        catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(reportFile, e);
+        }
+
+        transform = new BQSRReadTransformer(getHeaderForReads(), reportFile, applyBqsrArgs.toApplyBQSRArgumentCollection(recalArgs.PRESERVE_QSCORES_LESS_THAN));
+    }
+
+    @Override
+    protected void secondPassApply( final GATKRead read, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
+        outputWriter.addRead(transform.apply(read));
+    }
+
+    @Override
+    public Object onTraversalSuccess() {
+        return recalibrationEngine.getNumReadsProcessed();
+    }
+
+    @Override
+    public void closeTool() {
+        if ( outputWriter != null ) {
+            outputWriter.close();
+        }
+        if ( referenceDataSource != null ) {
+            referenceDataSource.close();
+        }
+    }
+}
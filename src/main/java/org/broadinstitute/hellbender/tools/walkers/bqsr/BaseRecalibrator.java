@@ -4,6 +4,7 @@ import htsjdk.samtools.SAMFileHeader;
 import htsjdk.tribble.Feature;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.cmdline.Advanced;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.ArgumentCollection;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
@@ -15,17 +16,25 @@ import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
 import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.recalibration.BaseRecalibrationEngine;
+import org.broadinstitute.hellbender.utils.recalibration.BinaryRecalibrationReport;
 import org.broadinstitute.hellbender.utils.recalibration.QuantizationInfo;
 import org.broadinstitute.hellbender.utils.recalibration.RecalUtils;
 import org.broadinstitute.hellbender.utils.recalibration.RecalibrationArgumentCollection;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationConvergenceTracker;
+import org.broadinstitute.hellbender.utils.variant.DbSnpBitSetUtil;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary.*;
 
@@ -66,6 +75,22 @@ import static org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary.*;
  * The GATK Report is intended to be easy to read by humans or computers. Check out the documentation of the GATKReport to learn how to manipulate this table.
  * </p>
  *
+ * <h3>Multi-threaded execution</h3>
+ * <p>
+ * When run with more than one thread, each worker thread collects its own recalibration tables over the read shards
+ * it processes, and the tables of all threads are merged once traversal is complete. The resulting report is the
+ * same as that of a single-threaded run, so there is no need to scatter the input and gather the reports.
+ * </p>
+ *
+ * <h3>Early termination</h3>
+ * <p>
+ * For high-depth inputs the recalibration statistics usually converge long before all reads have been seen. With
+ * --convergenceCheckInterval, the empirical quality of each read group is checked at regular intervals, and once none
+ * has changed by more than --convergenceTolerance since the previous check the traversal ends (or, with
+ * --postConvergenceSamplingRate, continues over only a fraction of the remaining reads). Since reads are traversed
+ * in coordinate order, this is best combined with intervals spread over the genome.
+ * </p>
+ *
  * <h3>Examples</h3>
  * <pre>
  * java -Xmx4g -jar GenomeAnalysisTK.jar \
@@ -111,20 +136,108 @@ public final class BaseRecalibrator extends ReadWalker {
     @Argument(shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, doc = "The output recalibration table file to create", optional = false)
     private File recalTableFile = null;
 
+    /**
+     * Binary reports hold the same information as text reports, but are much faster to load for ApplyBQSR and
+     * GatherBQSRReports. They can be converted to and from text reports with ConvertBQSRReport.
+     */
+    @Argument(fullName = "binaryReport", shortName = "binaryReport", doc = "Write the recalibration table in binary format instead of as a text report", optional = true)
+    private boolean binaryReport = false;
+
+    /**
+     * Rather than querying the known sites for the reads as they are traversed, load all the known sites into an
+     * in-memory bit set before traversal and find the bases of each read that overlap known sites with bit
+     * operations. This avoids decoding the known sites for every batch of reads, at the cost of one pass over the
+     * known sites at startup and about one bit of memory per base of the reference contigs that have known sites.
+     */
+    @Advanced
+    @Argument(fullName = "useKnownSitesBitSet", shortName = "useKnownSitesBitSet", doc = "Load the known sites into an in-memory bit set before traversal", optional = true)
+    private boolean useKnownSitesBitSet = false;
+
+    /**
+     * A file holding the known sites bit set (see --useKnownSitesBitSet), which implies --useKnownSitesBitSet. If
+     * the file exists, the bit set is loaded from it instead of from the known sites; otherwise the bit set is built
+     * from the known sites and saved to this file, so that later runs against the same known sites can reuse it. The file records the known sites and the reference sequence dictionary it was built
+     * from, and loading it fails if they don't match the current ones.
+     */
+    @Advanced
+    @Argument(fullName = "knownSitesBitSetFile", shortName = "knownSitesBitSetFile", doc = "File to load the known sites bit set from, or to save it to if the file does not exist", optional = true)
+    private File knownSitesBitSetFile = null;
+
+    /**
+     * Every this many reads, check whether the empirical quality of any read group has changed by more than
+     * --convergenceTolerance since the previous check. Once none has, the recalibration statistics are considered to
+     * have converged, and the traversal ends (see --postConvergenceSamplingRate). In a multi-threaded traversal, each
+     * thread checks the statistics it has collected itself, and the traversal ends once all threads have converged.
+     */
+    @Advanced
+    @Argument(fullName = "convergenceCheckInterval", shortName = "convergenceCheckInterval", doc = "Check whether the recalibration statistics have converged every this many reads. 0 to never check and process all reads.", optional = true)
+    private long convergenceCheckInterval = 0;
+
+    /**
+     * The largest change in the empirical quality of any read group, in Phred units, between two consecutive checks
+     * for the recalibration statistics to be considered converged (see --convergenceCheckInterval).
+     */
+    @Advanced
+    @Argument(fullName = "convergenceTolerance", shortName = "convergenceTolerance", doc = "Largest change in the empirical quality of any read group between two convergence checks for the recalibration statistics to be considered converged", optional = true)
+    private double convergenceTolerance = 0.05;
+
+    /**
+     * Rather than ending the traversal once the recalibration statistics have converged (see
+     * --convergenceCheckInterval), keep processing this fraction of the remaining reads. Reads are selected by name,
+     * so the selection does not depend on the number of threads.
+     */
+    @Advanced
+    @Argument(fullName = "postConvergenceSamplingRate", shortName = "postConvergenceSamplingRate", doc = "Fraction of reads to process once the recalibration statistics have converged. 0 to end the traversal.", optional = true)
+    private double postConvergenceSamplingRate = 0.0;
+
     private BaseRecalibrationEngine recalibrationEngine;
 
+    /**
+     * Known sites loaded before traversal, or null if they are queried for each read
+     */
+    private DbSnpBitSetUtil knownSitesBitSet = null;
+
     private ReferenceDataSource referenceDataSource; // datasource for the reference. We're using a different one from the engine itself to avoid messing with its caches.
 
+    /**
+     * The recalibration engine and reference of the thread calling {@link #apply}. The thread that starts the
+     * traversal uses {@link #recalibrationEngine}; other threads get their own, which are merged into it at the end.
+     */
+    private ThreadLocal<RecalibrationWorker> threadWorker;
+
+    /**
+     * The worker of the thread that started the traversal, which uses {@link #recalibrationEngine}
+     */
+    private RecalibrationWorker mainWorker;
+
+    /**
+     * Per-thread workers other than the one for the thread that started the traversal, in order of creation
+     */
+    private final List<RecalibrationWorker> otherWorkers = new ArrayList<>();
+
     /**
      * an object that keeps track of the information necessary for quality score quantization
      */
     private QuantizationInfo quantizationInfo = null;
 
+    /**
+     * Reads are sampled after convergence by comparing a hash of their name modulo this number with the sampling rate
+     */
+    private static final int SAMPLING_RESOLUTION = 1_000_000;
+
     @Override
     public boolean requiresReference() {
         return true;
     }
 
+    /**
+     * Each thread records its observations with its own recalibration engine (see {@link #threadWorker})
+     */
+    @Override
+    public boolean applyIsThreadSafe() {
+        return true;
+    }
+
     /**
      * Parse the -cov arguments and create a list of covariates to be used here
      * Based on the covariates' estimates for initial capacity allocate the data hashmap
@@ -140,6 +253,67 @@ public final class BaseRecalibrator extends ReadWalker {
         recalibrationEngine = new BaseRecalibrationEngine(recalArgs, getHeaderForReads());
         recalibrationEngine.logCovariatesUsed();
         referenceDataSource = ReferenceDataSource.of(referenceArguments.getReferenceFile());
+
+        if ( useKnownSitesBitSet || knownSitesBitSetFile != null ) {
+            knownSitesBitSet = loadKnownSitesBitSet();
+        }
+
+        if ( convergenceCheckInterval < 0 ) {
+            throw new UserException.BadArgumentValue("convergenceCheckInterval", String.valueOf(convergenceCheckInterval), "must be >= 0");
+        }
+        if ( convergenceTolerance < 0.0 ) {
+            throw new UserException.BadArgumentValue("convergenceTolerance", String.valueOf(convergenceTolerance), "must be >= 0");
+        }
+        if ( postConvergenceSamplingRate < 0.0 || postConvergenceSamplingRate >= 1.0 ) {
+            throw new UserException.BadArgumentValue("postConvergenceSamplingRate", String.valueOf(postConvergenceSamplingRate), "must be >= 0 and < 1");
+        }
+
+        threadWorker = ThreadLocal.withInitial(this::createWorker);
+        mainWorker = new RecalibrationWorker(recalibrationEngine, referenceDataSource, convergenceTolerance);
+        threadWorker.set(mainWorker);
+    }
+
+    /**
+     * Load the known sites bit set from {@link #knownSitesBitSetFile} if it exists, otherwise build it from the known
+     * sites and save it to {@link #knownSitesBitSetFile} if given
+     */
+    private DbSnpBitSetUtil loadKnownSitesBitSet() {
+        final List<String> knownSitesPaths = knownSites.stream()
+                .map(knownSitesInput -> BucketUtils.makeFilePathAbsolute(knownSitesInput.getFeaturePath()))
+                .collect(Collectors.toList());
+        if ( knownSitesBitSetFile != null && knownSitesBitSetFile.exists() ) {
+            logger.info("Loading known sites bit set from " + knownSitesBitSetFile);
+            return DbSnpBitSetUtil.read(knownSitesBitSetFile, knownSitesPaths, getBestAvailableSequenceDictionary());
+        }
+
+        logger.info("Loading known sites into a bit set...");
+        DbSnpBitSetUtil bitSet = null;
+        for ( final FeatureInput<Feature> knownSitesInput : knownSites ) {
+            try ( final FeatureDataSource<Feature> knownSitesSource = new FeatureDataSource<>(knownSitesInput, 0, null) ) {
+                final DbSnpBitSetUtil sites = DbSnpBitSetUtil.createFromSites(knownSitesSource.iterator(), getBestAvailableSequenceDictionary());
+                bitSet = bitSet == null ? sites : bitSet.union(sites);
+            }
+        }
+        if ( knownSitesBitSetFile != null ) {
+            logger.info("Saving known sites bit set to " + knownSitesBitSetFile);
+            bitSet.write(knownSitesBitSetFile, knownSitesPaths, getBestAvailableSequenceDictionary());
+        }
+        return bitSet;
+    }
+
+    /**
+     * Create the engine and reference for a worker thread in a multi-threaded traversal. Each engine gets its own
+     * copy of the header, since the engine may update the platform of its read groups.
+     */
+    private RecalibrationWorker createWorker() {
+        synchronized ( otherWorkers ) {
+            final RecalibrationWorker worker = new RecalibrationWorker(
+                    new BaseRecalibrationEngine(recalArgs, getHeaderForReads().clone()),
+                    ReferenceDataSource.of(referenceArguments.getReferenceFile()),
+                    convergenceTolerance);
+            otherWorkers.add(worker);
+            return worker;
+        }
     }
 
     @Override
@@ -181,11 +355,81 @@ public final class BaseRecalibrator extends ReadWalker {
      */
     @Override
     public void apply( GATKRead read, ReferenceContext ref, FeatureContext featureContext ) {
-        recalibrationEngine.processRead(read, referenceDataSource, featureContext.getValues(knownSites));
+        final RecalibrationWorker worker = threadWorker.get();
+        if ( worker.converged && ! isSampledAfterConvergence(read) ) {
+            worker.numReadsSkipped++;
+            return;
+        }
+
+        if ( knownSitesBitSet != null ) {
+            worker.engine.processRead(read, worker.reference, knownSitesBitSet);
+        } else {
+            worker.engine.processRead(read, worker.reference, featureContext.getValues(knownSites));
+        }
+        if ( convergenceCheckInterval > 0 && ! worker.converged && ++worker.numReadsSinceConvergenceCheck >= convergenceCheckInterval ) {
+            worker.numReadsSinceConvergenceCheck = 0;
+            checkConvergence(worker);
+        }
+    }
+
+    /**
+     * Update the convergence tracker of a worker with the statistics it has collected so far, and end the traversal
+     * if it has converged along with all other workers (unless we are to sample reads after convergence)
+     */
+    private void checkConvergence( final RecalibrationWorker worker ) {
+        if ( ! worker.convergenceTracker.update(worker.engine.getRecalibrationTablesWithCurrentQualityScores()) ) {
+            logger.debug(String.format("Recalibration statistics not converged after %d reads: largest change in read group empirical quality is %.4f",
+                                       worker.engine.getNumReadsProcessed(), worker.convergenceTracker.getLastMaximumChange()));
+            return;
+        }
+
+        worker.converged = true;
+        logger.info(String.format("Recalibration statistics converged after %d reads (%d convergence checks)%s",
+                                  worker.engine.getNumReadsProcessed(), worker.convergenceTracker.getNumUpdates(),
+                                  postConvergenceSamplingRate > 0.0 ? ", processing " + postConvergenceSamplingRate + " of the remaining reads" : ""));
+        if ( postConvergenceSamplingRate == 0.0 && allWorkersConverged() ) {
+            stopTraversal();
+        }
+    }
+
+    /**
+     * @return true if the statistics of all workers that have processed any reads have converged
+     */
+    private boolean allWorkersConverged() {
+        synchronized ( otherWorkers ) {
+            return Stream.concat(Stream.of(mainWorker), otherWorkers.stream())
+                    .allMatch(worker -> worker.converged || worker.engine.getNumReadsProcessed() == 0);
+        }
+    }
+
+    /**
+     * @return true if the read is to be processed once the recalibration statistics have converged, based on its name
+     */
+    private boolean isSampledAfterConvergence( final GATKRead read ) {
+        if ( postConvergenceSamplingRate == 0.0 ) {
+            return false;
+        }
+        final String name = read.getName();
+        final int hash = name == null ? 0 : name.hashCode() & Integer.MAX_VALUE;
+        return hash % SAMPLING_RESOLUTION < postConvergenceSamplingRate * SAMPLING_RESOLUTION;
     }
 
     @Override
     public Object onTraversalSuccess() {
+        synchronized ( otherWorkers ) {
+            if ( ! otherWorkers.isEmpty() ) {
+                logger.info("Merging recalibration tables from " + otherWorkers.size() + " threads...");
+            }
+            if ( convergenceCheckInterval > 0 ) {
+                final long numReadsSkipped = mainWorker.numReadsSkipped + otherWorkers.stream().mapToLong(worker -> worker.numReadsSkipped).sum();
+                logger.info(String.format("Recalibration statistics %s; %d reads were skipped after convergence%s",
+                                          allWorkersConverged() ? "converged" : "did not converge", numReadsSkipped,
+                                          isTraversalStopRequested() ? " and the traversal ended early" : ""));
+            }
+            for ( final RecalibrationWorker worker : otherWorkers ) {
+                recalibrationEngine.mergeObservations(worker.engine);
+            }
+        }
         recalibrationEngine.finalizeData();
 
         logger.info("Calculating quantized quality scores...");
@@ -208,7 +452,25 @@ public final class BaseRecalibrator extends ReadWalker {
         quantizationInfo = new QuantizationInfo(recalibrationEngine.getFinalRecalibrationTables(), recalArgs.QUANTIZING_LEVELS);
     }
 
+    @Override
+    public void closeTool() {
+        synchronized ( otherWorkers ) {
+            otherWorkers.forEach(worker -> worker.reference.close());
+            otherWorkers.clear();
+        }
+    }
+
     private void generateReport() {
+        if ( binaryReport ) {
+            try ( OutputStream recalTableStream = new FileOutputStream(recalTableFile) ) {
+                BinaryRecalibrationReport.write(recalTableStream, recalArgs.generateReportTable(recalibrationEngine.getCovariates().covariateNames()),
+                                                quantizationInfo, recalibrationEngine.getFinalRecalibrationTables(), recalibrationEngine.getCovariates());
+            }
+            catch (final IOException e) {
+                throw new UserException.CouldNotCreateOutputFile(recalTableFile, e);
+            }
+            return;
+        }
         try ( PrintStream recalTableStream = new PrintStream(recalTableFile) ) {
             RecalUtils.outputRecalibrationReport(recalTableStream, recalArgs, quantizationInfo, recalibrationEngine.getFinalRecalibrationTables(), recalibrationEngine.getCovariates());
         }
@@ -216,4 +478,22 @@ public final class BaseRecalibrator extends ReadWalker {
             throw new UserException.CouldNotCreateOutputFile(recalTableFile, e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * A recalibration engine and the reference data source it reads from, for use by a single thread
+     */
+    private static final class RecalibrationWorker {
+        private final BaseRecalibrationEngine engine;
+        private final ReferenceDataSource reference;
+        private final RecalibrationConvergenceTracker convergenceTracker;
+        private long numReadsSinceConvergenceCheck = 0;
+        private long numReadsSkipped = 0;
+        private volatile boolean converged = false; // read by other workers' threads
+
+        private RecalibrationWorker( final BaseRecalibrationEngine engine, final ReferenceDataSource reference, final double convergenceTolerance ) {
+            this.engine = engine;
+            this.reference = reference;
+            this.convergenceTracker = new RecalibrationConvergenceTracker(convergenceTolerance);
+        }
+    }
+}
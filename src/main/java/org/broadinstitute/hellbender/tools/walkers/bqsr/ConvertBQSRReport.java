@@ -0,0 +1,70 @@
+package org.broadinstitute.hellbender.tools.walkers.bqsr;
+
+import htsjdk.samtools.util.IOUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgram;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.cmdline.programgroups.ReadProgramGroup;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.recalibration.BinaryRecalibrationReport;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationReport;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+
+/**
+ * Converts a BQSR recalibration report between the text GATKReport format and the binary format.
+ *
+ * <p>
+ * A binary report is converted to a text report, and a text report to a binary report. Both formats hold the same
+ * information and are accepted by ApplyBQSR, GatherBQSRReports and AnalyzeCovariates, but binary reports are much
+ * faster to load.
+ * </p>
+ *
+ * <h3>Examples</h3>
+ * <pre>
+ * ./gatk-launch ConvertBQSRReport -I recal_data.table -O recal_data.bin
+ * ./gatk-launch ConvertBQSRReport -I recal_data.bin -O recal_data.table
+ * </pre>
+ */
+@CommandLineProgramProperties(
+        summary = "Converts a BQSR recalibration report from the text format to the binary format, or from the binary format to the text format",
+        oneLineSummary = "Converts BQSR recalibration reports between text and binary formats",
+        programGroup = ReadProgramGroup.class
+)
+public final class ConvertBQSRReport extends CommandLineProgram {
+    private static final Logger logger = LogManager.getLogger(ConvertBQSRReport.class);
+
+    @Argument(fullName = StandardArgumentDefinitions.INPUT_LONG_NAME,
+            shortName = StandardArgumentDefinitions.INPUT_SHORT_NAME, doc="BQSR report file to convert")
+    public File inputReport;
+
+    @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME,
+            shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc="File to output the converted report to")
+    public File outputReport;
+
+    @Override
+    protected Object doWork() {
+        IOUtil.assertFileIsReadable(inputReport);
+        IOUtil.assertFileIsWritable(outputReport);
+
+        final boolean inputIsBinary = BinaryRecalibrationReport.isBinaryReport(inputReport);
+        final RecalibrationReport report = new RecalibrationReport(inputReport);
+        if ( inputIsBinary ) {
+            logger.info("Converting binary report " + inputReport + " to text");
+            try ( final PrintStream out = new PrintStream(outputReport) ) {
+                report.createGATKReport().print(out);
+            } catch ( final FileNotFoundException e ) {
+                throw new UserException.CouldNotCreateOutputFile(outputReport, e);
+            }
+        } else {
+            logger.info("Converting text report " + inputReport + " to binary");
+            BinaryRecalibrationReport.write(report, outputReport);
+        }
+        return 0;
+    }
+}
@@ -13,7 +13,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @CommandLineProgramProperties(
-        summary = "Gathers scattered BQSR recalibration reports into a single file",
+        summary = "Gathers scattered BQSR recalibration reports, in text or binary format, into a single file",
         oneLineSummary = "Gathers scattered BQSR recalibration reports into a single file",
         programGroup = ReadProgramGroup.class
 )
@@ -26,13 +26,15 @@ public final class GatherBQSRReports extends CommandLineProgram {
             shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc="File to output the gathered file to")
     public File outputReport;
 
+    @Argument(fullName = "binaryReport", shortName = "binaryReport", doc = "Write the gathered report in binary format instead of as a text report", optional = true)
+    public boolean binaryReport = false;
 
     @Override
     protected Object doWork() {
         inputReports.forEach(IOUtil::assertFileIsReadable);
         IOUtil.assertFileIsWritable(outputReport);
 
-        RecalibrationReport.gatherReportsIntoOneFile(inputReports, outputReport);
+        RecalibrationReport.gatherReportsIntoOneFile(inputReports, outputReport, binaryReport);
 
         return 0;
     }
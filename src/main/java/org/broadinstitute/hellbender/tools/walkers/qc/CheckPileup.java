@@ -93,6 +93,11 @@ public final class CheckPileup extends LocusWalker {
         return true;
     }
 
+    @Override
+    public boolean allowsContextReuse() {
+        return true;
+    }
+
     private long nLoci = 0;
     private long nBases = 0;
     private PrintStream out;
@@ -113,6 +113,11 @@ public final class Pileup extends LocusWalker {
         return false;
     }
 
+    @Override
+    public boolean allowsContextReuse() {
+        return true;
+    }
+
     @Override
     public List<ReadFilter> getDefaultReadFilters() {
         final List<ReadFilter> defaultFilters = super.getDefaultReadFilters();
@@ -7,7 +7,6 @@ import org.broadinstitute.hellbender.exceptions.UserException.MalformedRead;
 import org.broadinstitute.hellbender.tools.ApplyBQSRArgumentCollection;
 import org.broadinstitute.hellbender.utils.QualityUtils;
 import org.broadinstitute.hellbender.utils.Utils;
-import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.ReadUtils;
 import org.broadinstitute.hellbender.utils.recalibration.*;
@@ -16,37 +15,20 @@ import org.broadinstitute.hellbender.utils.recalibration.covariates.ReadCovariat
 import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
 
 import java.io.File;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
-import static org.broadinstitute.hellbender.utils.MathUtils.fastRound;
-import static org.broadinstitute.hellbender.utils.QualityUtils.boundQual;
-import static org.broadinstitute.hellbender.utils.recalibration.RecalDatum.MAX_RECALIBRATED_Q_SCORE;
-
 public final class BQSRReadTransformer implements ReadTransformer {
     private static final long serialVersionUID = 1L;
 
-    private final QuantizationInfo quantizationInfo; // histogram containing the map for qual quantization (calculated after recalibration is done)
-    private final RecalibrationTables recalibrationTables;
+    private final RecalibrationLookupTable lookupTable; // precomputed recalibration tables, quantization and static quantization
     private final StandardCovariateList covariates; // list of all covariates to be used in this calculation
     private final SAMFileHeader header;
     
     private final int preserveQLessThan;
-    private final double globalQScorePrior;
     private final boolean emitOriginalQuals;
-
-    //These fields are created to avoid redoing these calculations for every read
-    private final int totalCovariateCount;
-    private final int specialCovariateCount;
-
-    private static final int BASE_SUBSTITUTION_INDEX = EventType.BASE_SUBSTITUTION.ordinal();
-
-    //Note: varargs allocates a new array every time. We'll pre-allocate one array and reuse it to avoid object allocation for every base of every read.
-    private final RecalDatum[] empiricalQualCovsArgs;
     private final boolean useOriginalBaseQualities;
 
-    private byte[] staticQuantizedMapping;
     private final CovariateKeyCache keyCache;
 
     /**
@@ -61,54 +43,67 @@ public final class BQSRReadTransformer implements ReadTransformer {
     }
 
     /**
-     * Constructor using separate RecalibrationTables, QuantizationInfo, and StandardCovariateList
+     * Constructor using a RecalibrationReport
      *
      * @param header header for the reads
-     * @param recalibrationTables recalibration tables output from BQSR
-     * @param quantizationInfo quantization info
-     * @param covariates standard covariate set
-     * @param args ApplyBQSR arguments
+     * @param recalInfo the output of BaseRecalibration, containing the recalibration information
+     * @param args a set of arguments to control how bqsr is applied
      */
-    private BQSRReadTransformer(final SAMFileHeader header, final RecalibrationTables recalibrationTables, final QuantizationInfo quantizationInfo, final StandardCovariateList covariates, final ApplyBQSRArgumentCollection args) {
-        this.header = header;
-        this.recalibrationTables = recalibrationTables;
-        this.covariates = covariates;
-        this.quantizationInfo = quantizationInfo;
+    public BQSRReadTransformer(final SAMFileHeader header, final RecalibrationReport recalInfo, final ApplyBQSRArgumentCollection args) {
+        this(header, createLookupTable(recalInfo, args), args);
+    }
 
-        if (args.quantizationLevels == 0) { // quantizationLevels == 0 means no quantization, preserve the quality scores
-            quantizationInfo.noQuantization();
-        } else if (args.quantizationLevels > 0 && args.quantizationLevels != quantizationInfo.getQuantizationLevels()) { // any other positive value means, we want a different quantization than the one pre-calculated in the recalibration report. Negative values mean the user did not provide a quantization argument, and just wants to use what's in the report.
-            quantizationInfo.quantizeQualityScores(args.quantizationLevels);
-        }
+    /**
+     * Constructor using a precomputed RecalibrationLookupTable
+     *
+     * @param header header for the reads
+     * @param lookupTable lookup table created by {@link #createLookupTable} with the same args
+     * @param args a set of arguments to control how bqsr is applied
+     */
+    public BQSRReadTransformer(final SAMFileHeader header, final RecalibrationLookupTable lookupTable, final ApplyBQSRArgumentCollection args) {
+        Utils.nonNull(lookupTable);
+        this.header = header;
+        this.lookupTable = lookupTable;
+        this.covariates = lookupTable.getCovariates();
 
         this.preserveQLessThan = args.PRESERVE_QSCORES_LESS_THAN;
-        this.globalQScorePrior = args.globalQScorePrior;
         this.emitOriginalQuals = args.emitOriginalQuals;
         this.useOriginalBaseQualities = args.useOriginalBaseQualities;
 
-        // staticQuantizedQuals is entirely separate from the dynamic binning that quantizationLevels, and
-        // staticQuantizedQuals does not make use of quantizationInfo
-        if(args.staticQuantizationQuals != null && !args.staticQuantizationQuals.isEmpty()) {
-            staticQuantizedMapping = constructStaticQuantizedMapping(args.staticQuantizationQuals, args.roundDown);
-        }
-
-        totalCovariateCount = covariates.size();
-        specialCovariateCount = covariates.numberOfSpecialCovariates();
-
-        //Note: We pre-create the varargs arrays that will be used in the calls. Otherwise we're spending a lot of time allocating those int[] objects
-        empiricalQualCovsArgs = new RecalDatum[totalCovariateCount - specialCovariateCount];
         keyCache = new CovariateKeyCache();//one cache per transformer
     }
 
     /**
-     * Constructor using a RecalibrationReport
+     * Precompute the recalibrated qualities given by a RecalibrationReport under the given ApplyBQSR arguments.
+     * The lookup table is much cheaper to query than the report, and is serializable, so it can be created once and
+     * shared among transformers (eg., broadcast to Spark executors).
+     *
+     * Note: this may requantize the QuantizationInfo of the report, according to args.quantizationLevels.
      *
-     * @param header header for the reads
      * @param recalInfo the output of BaseRecalibration, containing the recalibration information
      * @param args a set of arguments to control how bqsr is applied
+     * @return a lookup table for use by BQSRReadTransformer
      */
-    public BQSRReadTransformer(final SAMFileHeader header, final RecalibrationReport recalInfo, final ApplyBQSRArgumentCollection args) {
-        this(header, recalInfo.getRecalibrationTables(), recalInfo.getQuantizationInfo(), recalInfo.getCovariates(), args);
+    public static RecalibrationLookupTable createLookupTable(final RecalibrationReport recalInfo, final ApplyBQSRArgumentCollection args) {
+        Utils.nonNull(recalInfo);
+        Utils.nonNull(args);
+        final QuantizationInfo quantizationInfo = recalInfo.getQuantizationInfo();
+
+        if (args.quantizationLevels == 0) { // quantizationLevels == 0 means no quantization, preserve the quality scores
+            quantizationInfo.noQuantization();
+        } else if (args.quantizationLevels > 0 && args.quantizationLevels != quantizationInfo.getQuantizationLevels()) { // any other positive value means, we want a different quantization than the one pre-calculated in the recalibration report. Negative values mean the user did not provide a quantization argument, and just wants to use what's in the report.
+            quantizationInfo.quantizeQualityScores(args.quantizationLevels);
+        }
+
+        // staticQuantizedQuals is entirely separate from the dynamic binning that quantizationLevels, and
+        // staticQuantizedQuals does not make use of quantizationInfo
+        byte[] staticQuantizedMapping = null;
+        if(args.staticQuantizationQuals != null && !args.staticQuantizationQuals.isEmpty()) {
+            staticQuantizedMapping = constructStaticQuantizedMapping(args.staticQuantizationQuals, args.roundDown);
+        }
+
+        return new RecalibrationLookupTable(recalInfo.getRecalibrationTables(), recalInfo.getCovariates(),
+                                            quantizationInfo.getQuantizedQuals(), staticQuantizedMapping, args.globalQScorePrior);
     }
 
     /**
@@ -151,21 +146,15 @@ public final class BQSRReadTransformer implements ReadTransformer {
         // get the keyset for this base using the error model
         final int[][] fullReadKeySet = readCovariates.getKeySet(EventType.BASE_SUBSTITUTION);
 
-        // the rg key is constant over the whole read, the global deltaQ is too
+        // the rg key is constant over the whole read
         final int rgKey = fullReadKeySet[0][0];
 
-        final RecalDatum empiricalQualRG = recalibrationTables.getReadGroupTable().get2Keys(rgKey, BASE_SUBSTITUTION_INDEX);
-
-        if (empiricalQualRG == null) {
+        if (! lookupTable.hasReadGroup(rgKey)) {
             return read;
         }
         final byte[] quals = read.getBaseQualities();
 
         final int readLength = quals.length;
-        final double epsilon = globalQScorePrior > 0.0 ? globalQScorePrior : empiricalQualRG.getEstimatedQReported();
-
-        final NestedIntegerArray<RecalDatum> qualityScoreTable = recalibrationTables.getQualityScoreTable();
-        final List<Byte> quantizedQuals = quantizationInfo.getQuantizedQuals();
 
         //Note: this loop is under very heavy use in applyBQSR. Keep it slim.
         for (int offset = 0; offset < readLength; offset++) { // recalibrate all bases in the read
@@ -174,33 +163,12 @@ public final class BQSRReadTransformer implements ReadTransformer {
             if (quals[offset] < preserveQLessThan) {
                 continue;
             }
-            Arrays.fill(empiricalQualCovsArgs, null);  //clear the array
-            final int[] keySet = fullReadKeySet[offset];
-
-
-            final RecalDatum empiricalQualQS = qualityScoreTable.get3Keys(keySet[0], keySet[1], BASE_SUBSTITUTION_INDEX);
-
-            for (int i = specialCovariateCount; i < totalCovariateCount; i++) {
-                if (keySet[i] >= 0) {
-                    empiricalQualCovsArgs[i - specialCovariateCount] = recalibrationTables.getTable(i).get4Keys(keySet[0], keySet[1], keySet[i], BASE_SUBSTITUTION_INDEX);
-                }
-            }
-            final double recalibratedQualDouble = hierarchicalBayesianQualityEstimate(epsilon, empiricalQualRG, empiricalQualQS, empiricalQualCovsArgs);
-
-            final byte recalibratedQualityScore = quantizedQuals.get(getRecalibratedQual(recalibratedQualDouble));
-
-            // Bin to static quals
-            quals[offset] = staticQuantizedMapping == null ? recalibratedQualityScore : staticQuantizedMapping[recalibratedQualityScore];
+            quals[offset] = lookupTable.getRecalibratedQuality(fullReadKeySet[offset]);
         }
         read.setBaseQualities(quals);
         return read;
     }
 
-    // recalibrated quality is bound between 1 and MAX_QUAL
-    private byte getRecalibratedQual(final double recalibratedQualDouble) {
-        return boundQual(fastRound(recalibratedQualDouble), MAX_RECALIBRATED_Q_SCORE);
-    }
-
     public static double hierarchicalBayesianQualityEstimate( final double epsilon,
                                                               final RecalDatum empiricalQualRG,
                                                               final RecalDatum empiricalQualQS,
@@ -3,7 +3,9 @@ package org.broadinstitute.hellbender.utils;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.util.CloseableIterator;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -26,6 +28,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -1047,45 +1050,113 @@ public final class Utils {
      * Like Guava's {@link Iterators#transform(Iterator, com.google.common.base.Function)}, but runs a fixed number
      * ({@code numThreads}) of transformations in parallel, while maintaining ordering of the output iterator.
      * This is useful if the transformations are CPU intensive.
+     *
+     * If a transformation throws, or the returned iterator is closed before it is exhausted, the outstanding
+     * transformations are cancelled and the worker threads are stopped before control returns to the caller, so
+     * resources used by the transformations may be released safely afterwards. The worker threads are daemon threads,
+     * so an iterator that is abandoned without being closed won't keep the JVM alive.
      */
-    public static <F, T> Iterator<T> transformParallel(final Iterator<F> fromIterator, final Function<F, T> function, final int numThreads) {
+    public static <F, T> CloseableIterator<T> transformParallel(final Iterator<F> fromIterator, final Function<F, T> function, final int numThreads) {
         Utils.nonNull(fromIterator, "fromIterator");
         Utils.nonNull(function, "function");
         Utils.validateArg(numThreads >= 1, "numThreads must be at least 1");
 
         if (numThreads == 1) { // defer to Guava for single-threaded case
-            return Iterators.transform(fromIterator, new com.google.common.base.Function<F, T>() {
+            final Iterator<T> transformed = Iterators.transform(fromIterator, new com.google.common.base.Function<F, T>() {
                 @Nullable
                 @Override
                 public T apply(@Nullable final F input) {
                     return function.apply(input);
                 }
             });
+            return new CloseableIterator<T>() {
+                @Override
+                public boolean hasNext() {
+                    return transformed.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return transformed.next();
+                }
+
+                @Override
+                public void close() {
+                    // nothing runs in the background
+                }
+            };
         }
         // use an executor service for the multi-threaded case
-        final ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
-        final Queue<Future<T>> futures = new LinkedList<>();
-        return new AbstractIterator<T>() {
-            @Override
-            protected T computeNext() {
-                try {
-                    while (fromIterator.hasNext()) {
-                        if (futures.size() == numThreads) {
-                            return futures.remove().get();
-                        }
-                        final F next = fromIterator.next();
-                        final Future<T> future = executorService.submit(() -> function.apply(next));
-                        futures.add(future);
-                    }
-                    if (!futures.isEmpty()) {
+        return new ParallelTransformIterator<>(fromIterator, function, numThreads);
+    }
+
+    /**
+     * The multi-threaded implementation of {@link #transformParallel}.
+     */
+    private static final class ParallelTransformIterator<F, T> extends AbstractIterator<T> implements CloseableIterator<T> {
+        private final Iterator<F> fromIterator;
+        private final Function<F, T> function;
+        private final int numThreads;
+        private final ExecutorService executorService;
+        private final Queue<Future<T>> futures = new LinkedList<>();
+
+        private ParallelTransformIterator(final Iterator<F> fromIterator, final Function<F, T> function, final int numThreads) {
+            this.fromIterator = fromIterator;
+            this.function = function;
+            this.numThreads = numThreads;
+            this.executorService = Executors.newFixedThreadPool(numThreads,
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("transformParallel-%d").build());
+        }
+
+        @Override
+        protected T computeNext() {
+            try {
+                while (fromIterator.hasNext()) {
+                    if (futures.size() == numThreads) {
                         return futures.remove().get();
                     }
-                    executorService.shutdown();
-                    return endOfData();
-                } catch (InterruptedException | ExecutionException e) {
-                    throw new GATKException("Problem running task", e);
+                    final F next = fromIterator.next();
+                    final Future<T> future = executorService.submit(() -> function.apply(next));
+                    futures.add(future);
+                }
+                if (!futures.isEmpty()) {
+                    return futures.remove().get();
                 }
+                executorService.shutdown();
+                return endOfData();
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new GATKException("Interrupted while waiting for task", e);
+            } catch (ExecutionException e) {
+                close();
+                throw new GATKException("Problem running task", e);
+            } catch (RuntimeException e) {
+                close();
+                throw e;
             }
-        };
+        }
+
+        /**
+         * Cancels all outstanding transformations and waits for the worker threads to stop.
+         */
+        @Override
+        public void close() {
+            futures.forEach(future -> future.cancel(true));
+            futures.clear();
+            executorService.shutdownNow();
+            boolean interrupted = false;
+            while (!executorService.isTerminated()) {
+                try {
+                    executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    // keep waiting, since the caller may release resources the workers are still using
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
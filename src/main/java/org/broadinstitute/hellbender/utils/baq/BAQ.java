@@ -11,11 +11,14 @@ import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.engine.ReferenceDataSource;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.LRUCache;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.ReadUtils;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /*
   The topology of the profile HMM:
@@ -61,6 +64,17 @@ public final class BAQ implements Serializable {
         DONT_MODIFY                 // do the BAQ, but don't modify the quality scores themselves, just return them in the function.
     }
 
+    /**
+     * Implementations of the BAQ HMM. All implementations compute the same model, and are used through the same
+     * {@link #hmm_glocal} and calcBAQFromHMM methods.
+     */
+    public enum Implementation {
+        /** Double-precision implementation, synchronized with samtools. The default. */
+        DOUBLE,
+        /** Faster single-precision implementation. May differ from DOUBLE by rounding in rare cases. */
+        FLOAT
+    }
+
     public static final String BAQ_TAG = "BQ";
 
     private static final double[] qual2prob = new double[256];
@@ -109,6 +123,60 @@ public final class BAQ implements Serializable {
         return cb;
     }
 
+    private Implementation implementation = Implementation.DOUBLE;
+
+    /**
+     * Maximum number of results to keep in the result cache, or 0 for no cache
+     */
+    private int resultCacheSize = 0;
+
+    /**
+     * Cache of HMM results for recently seen (reference, read bases, quals) combinations. Created lazily, since
+     * it's not serialized.
+     */
+    private transient LRUCache<HMMCacheKey, HMMCacheValue> resultCache;
+
+    /**
+     * Number of calculations answered from the result cache
+     */
+    private transient long numResultCacheHits = 0;
+
+    public Implementation getImplementation() {
+        return implementation;
+    }
+
+    /**
+     * Set the implementation of the HMM to use for subsequent calculations
+     */
+    public void setImplementation( final Implementation implementation ) {
+        this.implementation = Utils.nonNull(implementation);
+    }
+
+    /**
+     * Cache the results of the HMM for up to maxEntries distinct combinations of reference bases, read bases and
+     * qualities, so that reads identical to a recently seen read (such as duplicates) don't need the HMM run again.
+     *
+     * @param maxEntries maximum number of results to cache, or 0 to disable the cache
+     */
+    public void setResultCacheSize( final int maxEntries ) {
+        Utils.validateArg(maxEntries >= 0, "maxEntries must be >= 0");
+        resultCacheSize = maxEntries;
+        resultCache = null;
+    }
+
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    /**
+     * @return the number of calculations so far that were answered from the result cache rather than by the HMM
+     */
+    public long getNumResultCacheHits() {
+        synchronized ( this ) {
+            return numResultCacheHits;
+        }
+    }
+
     /**
      * Use defaults for everything
      */
@@ -203,10 +271,17 @@ public final class BAQ implements Serializable {
         //System.out.printf("c->bw = %d, bw = %d, l_ref = %d, l_query = %d\n", cb, bw, l_ref, l_query);
 		bw2 = bw * 2 + 1;
 
-        // allocate the forward and backward matrices f[][] and b[][] and the scaling array s[]
-		double[][] f = new double[l_query+1][bw2*3 + 6];
-		double[][] b = new double[l_query+1][bw2*3 + 6];
-		double[] s = new double[l_query+2];
+        if ( implementation == Implementation.FLOAT ) {
+            FloatBAQHMM.hmm_glocal(this, bw, ref, query, qstart, l_query, _iqual, state, q);
+            return 0;
+        }
+
+        // get the (zeroed) forward and backward matrices f[][] and b[][] and the scaling array s[]
+        final HMMMatrices<double[]> matrices = HMMMatrices.DOUBLE_POOL.get();
+        matrices.prepare(l_query + 1, bw2*3 + 6);
+		double[][] f = matrices.f;
+		double[][] b = matrices.b;
+		double[] s = matrices.s;
 
 		// initialize transition probabilities
 		double sM, sI, bM, bI;
@@ -528,10 +603,93 @@ public final class BAQ implements Serializable {
         // note -- assumes ref is offset from the *CLIPPED* start
         BAQCalculationResult baqResult = new BAQCalculationResult(query, quals, ref);
         int queryLen = queryEnd - queryStart;
+
+        if ( resultCacheSize > 0 ) {
+            final HMMCacheKey key = new HMMCacheKey(ref, query, quals, queryStart, queryEnd);
+            final LRUCache<HMMCacheKey, HMMCacheValue> cache = getResultCache();
+            final HMMCacheValue cached;
+            synchronized ( cache ) {
+                cached = cache.get(key);
+            }
+            if ( cached != null ) {
+                synchronized ( this ) {
+                    numResultCacheHits++;
+                }
+                // callers modify the results, so give them a copy
+                System.arraycopy(cached.bq, 0, baqResult.bq, 0, cached.bq.length);
+                System.arraycopy(cached.state, 0, baqResult.state, 0, cached.state.length);
+                return baqResult;
+            }
+            hmm_glocal(baqResult.refBases, baqResult.readBases, queryStart, queryLen, baqResult.rawQuals, baqResult.state, baqResult.bq);
+            final HMMCacheValue value = new HMMCacheValue(baqResult.bq.clone(), baqResult.state.clone());
+            synchronized ( cache ) {
+                cache.put(key, value);
+            }
+            return baqResult;
+        }
+
         hmm_glocal(baqResult.refBases, baqResult.readBases, queryStart, queryLen, baqResult.rawQuals, baqResult.state, baqResult.bq);
         return baqResult;
     }
 
+    private LRUCache<HMMCacheKey, HMMCacheValue> getResultCache() {
+        synchronized ( this ) {
+            if ( resultCache == null ) {
+                resultCache = new LRUCache<>(resultCacheSize);
+            }
+            return resultCache;
+        }
+    }
+
+    /**
+     * Key for the result cache: everything the HMM output depends on, other than the parameters of this object
+     */
+    private static final class HMMCacheKey {
+        private final byte[] ref;
+        private final byte[] query;
+        private final byte[] quals;
+        private final int queryStart;
+        private final int queryEnd;
+        private final int hashCode;
+
+        private HMMCacheKey( final byte[] ref, final byte[] query, final byte[] quals, final int queryStart, final int queryEnd ) {
+            // copy the arrays, since the caller may modify them (eg., overwriting the quals with their BAQ'd values)
+            this.ref = ref.clone();
+            this.query = query.clone();
+            this.quals = quals.clone();
+            this.queryStart = queryStart;
+            this.queryEnd = queryEnd;
+            this.hashCode = 31 * (31 * (31 * (31 * Arrays.hashCode(this.ref) + Arrays.hashCode(this.query)) + Arrays.hashCode(this.quals)) + queryStart) + queryEnd;
+        }
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) return true;
+            if ( ! (o instanceof HMMCacheKey) ) return false;
+            final HMMCacheKey other = (HMMCacheKey)o;
+            return hashCode == other.hashCode && queryStart == other.queryStart && queryEnd == other.queryEnd &&
+                   Arrays.equals(query, other.query) && Arrays.equals(quals, other.quals) && Arrays.equals(ref, other.ref);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * HMM output for a cached key
+     */
+    private static final class HMMCacheValue {
+        private final byte[] bq;
+        private final int[] state;
+
+        private HMMCacheValue( final byte[] bq, final int[] state ) {
+            this.bq = bq;
+            this.state = state;
+        }
+    }
+
 
     /**
      * Determine the appropriate start and stop offsets in the reads for the bases given the cigar string
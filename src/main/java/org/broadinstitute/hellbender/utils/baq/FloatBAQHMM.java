@@ -0,0 +1,162 @@
+package org.broadinstitute.hellbender.utils.baq;
+
+/**
+ * Single-precision version of the BAQ profile HMM in {@link BAQ#hmm_glocal}, used by BAQ objects whose implementation
+ * is {@link BAQ.Implementation#FLOAT}.
+ *
+ * The algorithm is exactly that of the double-precision version (which see for the topology of the HMM), with all
+ * probabilities held as floats. The forward and backward rows are rescaled to sum to one at every position, so there
+ * is no risk of underflow, and halving the size of the band matrices makes the computation substantially faster.
+ * The matrices are kept in a per-thread pool (see {@link HMMMatrices}) and reused from read to read rather than
+ * allocated for every read.
+ *
+ * The reduced precision means that the phred-scaled posteriors differ from those of the double-precision version
+ * by rounding in rare cases, so results are not guaranteed to be identical to samtools.
+ */
+final class FloatBAQHMM {
+
+    private static final float EI = 0.25f;
+
+    private FloatBAQHMM() {}
+
+    /**
+     * Compute the BAQ HMM for a query. Arguments are as for {@link BAQ#hmm_glocal}, which has already validated them
+     * and computed the band width bw.
+     */
+    static void hmm_glocal( final BAQ baq, final int bw, final byte[] ref, final byte[] query, final int qstart, final int l_query,
+                            final byte[] _iqual, final int[] state, final byte[] q ) {
+        int i, k;
+        final float cd = (float)baq.getGapOpenProb();
+        final float ce = (float)baq.getGapExtensionProb();
+        final byte minBaseQual = baq.getMinBaseQual();
+        final int l_ref = ref.length;
+        final int bw2 = bw * 2 + 1;
+
+        final HMMMatrices<float[]> matrices = HMMMatrices.FLOAT_POOL.get();
+        matrices.prepare(l_query + 1, bw2 * 3 + 6);
+        final float[][] f = matrices.f;
+        final float[][] b = matrices.b;
+        final float[] s = matrices.s;
+
+        // initialize transition probabilities
+        final float sM, sI, bM, bI;
+        sM = sI = 1.0f / (2 * l_query + 2);
+        bM = (1 - cd) / l_ref; bI = cd / l_ref; // (bM+bI)*l_ref==1
+
+        final float[] m = new float[9];
+        m[0*3+0] = (1 - cd - cd) * (1 - sM); m[0*3+1] = m[0*3+2] = cd * (1 - sM);
+        m[1*3+0] = (1 - ce) * (1 - sI); m[1*3+1] = ce * (1 - sI); m[1*3+2] = 0.0f;
+        m[2*3+0] = 1 - ce; m[2*3+1] = 0.0f; m[2*3+2] = ce;
+
+        /*** forward ***/
+        // f[0]
+        f[0][set_u(bw, 0, 0)] = s[0] = 1.0f;
+        { // f[1]
+            final float[] fi = f[1];
+            float sum;
+            final int beg = 1, end = l_ref < bw + 1? l_ref : bw + 1;
+            for (k = beg, sum = 0.0f; k <= end; ++k) {
+                final float e = epsilon(baq, ref[k-1], query[qstart], _iqual[qstart]);
+                final int u = set_u(bw, 1, k);
+                fi[u+0] = e * bM; fi[u+1] = EI * bI;
+                sum += fi[u] + fi[u+1];
+            }
+            // rescale
+            s[1] = sum;
+            final int _beg = set_u(bw, 1, beg), _end = set_u(bw, 1, end) + 2;
+            for (k = _beg; k <= _end; ++k) fi[k] /= sum;
+        }
+
+        // f[2..l_query]
+        for (i = 2; i <= l_query; ++i) {
+            final float[] fi = f[i], fi1 = f[i-1];
+            float sum;
+            int beg = 1, end = l_ref, x;
+            final byte qyi = query[qstart+i-1];
+            final byte qual = _iqual[qstart+i-1];
+            x = i - bw; beg = beg > x? beg : x; // band start
+            x = i + bw; end = end < x? end : x; // band end
+            for (k = beg, sum = 0.0f; k <= end; ++k) {
+                final float e = epsilon(baq, ref[k-1], qyi, qual);
+                final int u = set_u(bw, i, k), v11 = set_u(bw, i-1, k-1), v10 = set_u(bw, i-1, k), v01 = set_u(bw, i, k-1);
+                fi[u+0] = e * (m[0] * fi1[v11+0] + m[3] * fi1[v11+1] + m[6] * fi1[v11+2]);
+                fi[u+1] = EI * (m[1] * fi1[v10+0] + m[4] * fi1[v10+1]);
+                fi[u+2] = m[2] * fi[v01+0] + m[8] * fi[v01+2];
+                sum += fi[u] + fi[u+1] + fi[u+2];
+            }
+            // rescale
+            s[i] = sum;
+            final int _beg = set_u(bw, i, beg), _end = set_u(bw, i, end) + 2;
+            for (k = _beg, sum = 1.0f/sum; k <= _end; ++k) fi[k] *= sum;
+        }
+        { // f[l_query+1]
+            float sum;
+            for (k = 1, sum = 0.0f; k <= l_ref; ++k) {
+                final int u = set_u(bw, l_query, k);
+                if (u < 3 || u >= bw2*3+3) continue;
+                sum += f[l_query][u+0] * sM + f[l_query][u+1] * sI;
+            }
+            s[l_query+1] = sum; // the last scaling factor
+        }
+
+        /*** backward ***/
+        // b[l_query] (b[l_query+1][0]=1 and thus \tilde{b}[][]=1/s[l_query+1]; this is where s[l_query+1] comes from)
+        for (k = 1; k <= l_ref; ++k) {
+            final int u = set_u(bw, l_query, k);
+            final float[] bi = b[l_query];
+            if (u < 3 || u >= bw2*3+3) continue;
+            bi[u+0] = sM / s[l_query] / s[l_query+1]; bi[u+1] = sI / s[l_query] / s[l_query+1];
+        }
+        // b[l_query-1..1]
+        for (i = l_query - 1; i >= 1; --i) {
+            int beg = 1, end = l_ref, x;
+            final float[] bi = b[i], bi1 = b[i+1];
+            float y = (i > 1)? 1.0f : 0.0f;
+            final byte qyi1 = query[qstart+i];
+            final byte qual1 = _iqual[qstart+i];
+            x = i - bw; beg = beg > x? beg : x;
+            x = i + bw; end = end < x? end : x;
+            for (k = end; k >= beg; --k) {
+                final int u = set_u(bw, i, k), v11 = set_u(bw, i+1, k+1), v10 = set_u(bw, i+1, k), v01 = set_u(bw, i, k+1);
+                final float e = (k >= l_ref? 0 : epsilon(baq, ref[k], qyi1, qual1)) * bi1[v11];
+                bi[u+0] = e * m[0] + EI * m[1] * bi1[v10+1] + m[2] * bi[v01+2]; // bi1[v11] has been folded into e.
+                bi[u+1] = e * m[3] + EI * m[4] * bi1[v10+1];
+                bi[u+2] = (e * m[6] + m[8] * bi[v01+2]) * y;
+            }
+            // rescale
+            final int _beg = set_u(bw, i, beg), _end = set_u(bw, i, end) + 2;
+            for (k = _beg, y = 1.0f/s[i]; k <= _end; ++k) bi[k] *= y;
+        }
+
+        /*** MAP ***/
+        for (i = 1; i <= l_query; ++i) {
+            float sum = 0.0f, max = 0.0f;
+            final float[] fi = f[i], bi = b[i];
+            int beg = 1, end = l_ref, x, max_k = -1;
+            x = i - bw; beg = beg > x? beg : x;
+            x = i + bw; end = end < x? end : x;
+            for (k = beg; k <= end; ++k) {
+                final int u = set_u(bw, i, k);
+                float z;
+                sum += (z = fi[u+0] * bi[u+0]); if (z > max) { max = z; max_k = (k-1)<<2 | 0; }
+                sum += (z = fi[u+1] * bi[u+1]); if (z > max) { max = z; max_k = (k-1)<<2 | 1; }
+            }
+            max /= sum;
+            if (state != null) state[qstart+i-1] = max_k;
+            if (q != null) {
+                k = (int)(-4.343 * Math.log(1. - max) + .499); // = 10*log10(1-max)
+                q[qstart+i-1] = (byte)(k > 100? 99 : (k < minBaseQual ? minBaseQual : k));
+            }
+        }
+    }
+
+    private static float epsilon( final BAQ baq, final byte ref, final byte read, final byte qual ) {
+        return (float)baq.calcEpsilon(ref, read, qual);
+    }
+
+    private static int set_u( final int b, final int i, final int k ) {
+        int x = i - b;
+        x = x > 0 ? x : 0;
+        return (k + 1 - x) * 3;
+    }
+}
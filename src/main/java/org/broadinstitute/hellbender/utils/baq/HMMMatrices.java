@@ -0,0 +1,78 @@
+package org.broadinstitute.hellbender.utils.baq;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Forward/backward matrices and scaling factors for the BAQ HMMs, grown as needed to fit the largest read and band
+ * seen so far and reused from read to read. Each thread gets its own matrices from {@link #DOUBLE_POOL} (used by
+ * {@link BAQ#hmm_glocal}) or {@link #FLOAT_POOL} (used by {@link FloatBAQHMM}).
+ *
+ * @param <R> type of a row of the matrices: double[] or float[]
+ */
+final class HMMMatrices<R> {
+
+    static final ThreadLocal<HMMMatrices<double[]>> DOUBLE_POOL = ThreadLocal.withInitial(() ->
+            new HMMMatrices<>(double[]::new, double[][]::new, row -> row.length, (row, length) -> Arrays.fill(row, 0, length, 0.0)));
+
+    static final ThreadLocal<HMMMatrices<float[]>> FLOAT_POOL = ThreadLocal.withInitial(() ->
+            new HMMMatrices<>(float[]::new, float[][]::new, row -> row.length, (row, length) -> Arrays.fill(row, 0, length, 0.0f)));
+
+    private final IntFunction<R> newRow;
+    private final IntFunction<R[]> newRows;
+    private final ToIntFunction<R> rowLength;
+    private final ObjIntConsumer<R> zeroPrefix;
+
+    R[] f;
+    R[] b;
+    R s;
+
+    /**
+     * @param newRow allocates a (zeroed) row of the given length
+     * @param newRows allocates an array of the given number of rows
+     * @param rowLength the length of a row
+     * @param zeroPrefix zeroes the given number of leading elements of a row
+     */
+    private HMMMatrices( final IntFunction<R> newRow, final IntFunction<R[]> newRows, final ToIntFunction<R> rowLength, final ObjIntConsumer<R> zeroPrefix ) {
+        this.newRow = newRow;
+        this.newRows = newRows;
+        this.rowLength = rowLength;
+        this.zeroPrefix = zeroPrefix;
+        f = newRows.apply(0);
+        b = newRows.apply(0);
+        s = newRow.apply(0);
+    }
+
+    /**
+     * Make sure that the matrices have at least the given number of rows and columns, and zero the part of them
+     * that will be used, since the HMMs rely on cells outside the band being zero.
+     */
+    void prepare( final int rows, final int columns ) {
+        if ( f.length < rows || (rows > 0 && rowLength.applyAsInt(f[0]) < columns) ) {
+            final int newColumns = Math.max(columns, f.length > 0 ? rowLength.applyAsInt(f[0]) : 0);
+            final int newRowCount = Math.max(rows, f.length);
+            f = newMatrix(newRowCount, newColumns);
+            b = newMatrix(newRowCount, newColumns);
+        } else {
+            for ( int i = 0; i < rows; i++ ) {
+                zeroPrefix.accept(f[i], columns);
+                zeroPrefix.accept(b[i], columns);
+            }
+        }
+        if ( rowLength.applyAsInt(s) < rows + 1 ) {
+            s = newRow.apply(rows + 1);
+        } else {
+            zeroPrefix.accept(s, rows + 1);
+        }
+    }
+
+    private R[] newMatrix( final int rows, final int columns ) {
+        final R[] matrix = newRows.apply(rows);
+        for ( int i = 0; i < rows; i++ ) {
+            matrix[i] = newRow.apply(columns);
+        }
+        return matrix;
+    }
+}
@@ -145,6 +145,27 @@ public final class CachingIndexedFastaSequenceFile extends IndexedFastaSequenceF
      * @return A new instance of a CachingIndexedFastaSequenceFile.
      */
     public static CachingIndexedFastaSequenceFile checkAndCreate(final File fastaFile) {
+        checkFastaCompanionFiles(fastaFile);
+
+        // Read reference data by creating an IndexedFastaSequenceFile.
+        try {
+            return new CachingIndexedFastaSequenceFile(fastaFile);
+        }
+        catch (IllegalArgumentException e) {
+            throw new UserException.CouldNotReadInputFile(fastaFile, "Could not read reference sequence.  The FASTA must have either a .fasta or .fa extension", e);
+        }
+        catch (Exception e) {
+            throw new UserException.CouldNotReadInputFile(fastaFile, e);
+        }
+    }
+
+    /**
+     * Checks that a fasta file exists, is not gzipped, and has companion .fai and .dict files.
+     *
+     * @param fastaFile Fasta file to be used as reference
+     * @throws UserException if any of these checks fail
+     */
+    public static void checkFastaCompanionFiles(final File fastaFile) {
         // does the fasta file exist? check that first...
         if (!fastaFile.exists()) {
             throw new UserException.MissingReference("The specified fasta file (" + fastaFile.getAbsolutePath() + ") does not exist.");
@@ -169,17 +190,6 @@ public final class CachingIndexedFastaSequenceFile extends IndexedFastaSequenceF
         if (!dictFile.exists()) {
             throw new UserException.MissingReferenceDictFile(dictFile, fastaFile);
         }
-
-        // Read reference data by creating an IndexedFastaSequenceFile.
-        try {
-            return new CachingIndexedFastaSequenceFile(fastaFile);
-        }
-        catch (IllegalArgumentException e) {
-            throw new UserException.CouldNotReadInputFile(fastaFile, "Could not read reference sequence.  The FASTA must have either a .fasta or .fa extension", e);
-        }
-        catch (Exception e) {
-            throw new UserException.CouldNotReadInputFile(fastaFile, e);
-        }
     }
 
     /**
@@ -40,12 +40,23 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
     private final GATKRead[][] readsBySampleIndex;
 
     /**
-     * Indexed per sample, allele and finally read (within sample).
+     * Indexed per sample, and then allele and read (within sample) in a single array per sample where the likelihoods
+     * of each allele are contiguous.
      * <p>
-     *     valuesBySampleIndex[s][a][r] == lnLk(R_r | A_a) where R_r comes from Sample s.
+     *     valuesBySampleIndex[s][a * readCapacityBySampleIndex[s] + r] == lnLk(R_r | A_a) where R_r comes from Sample s.
      * </p>
      */
-    private final double[][][] valuesBySampleIndex;
+    private final double[][] valuesBySampleIndex;
+
+    /**
+     * Number of reads each sample has room for in its likelihood array, that is, the distance between the
+     * likelihoods of two consecutive alleles.
+     * <p>
+     *     It is never less than the number of reads of the sample but it is not reduced when reads are removed, so
+     *     that removing reads and adding reads back can be done in place.
+     * </p>
+     */
+    private final int[] readCapacityBySampleIndex;
 
     /**
      * Sample list
@@ -122,7 +133,8 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
 
         readsBySampleIndex = new GATKRead[sampleCount][];
         readListBySampleIndex = (List<GATKRead>[])new List[sampleCount];
-        valuesBySampleIndex = new double[sampleCount][][];
+        valuesBySampleIndex = new double[sampleCount][];
+        readCapacityBySampleIndex = new int[sampleCount];
         referenceAlleleIndex = findReferenceAllele(alleles);
 
         readIndexBySampleIndex = new Object2IntMap[sampleCount];
@@ -139,11 +151,13 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
                             final SampleList samples,
                             final GATKRead[][] readsBySampleIndex,
                             final Object2IntMap<GATKRead>[] readIndex,
-                            final double[][][] values) {
+                            final double[][] values,
+                            final int[] readCapacities) {
         this.samples = samples;
         this.alleles = alleles;
         this.readsBySampleIndex = readsBySampleIndex;
         this.valuesBySampleIndex = values;
+        this.readCapacityBySampleIndex = readCapacities;
         this.readIndexBySampleIndex = readIndex;
         final int sampleCount = samples.numberOfSamples();
         this.readListBySampleIndex = (List<GATKRead>[])new List[sampleCount];
@@ -171,8 +185,8 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
                 : reads.toArray(new GATKRead[reads.size()]);
         final int sampleReadCount = readsBySampleIndex[sampleIndex].length;
 
-        final double[][] sampleValues = new double[alleleCount][sampleReadCount];
-        valuesBySampleIndex[sampleIndex] = sampleValues;
+        valuesBySampleIndex[sampleIndex] = new double[alleleCount * sampleReadCount];
+        readCapacityBySampleIndex[sampleIndex] = sampleReadCount;
     }
 
     /**
@@ -181,9 +195,8 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
     public ReadLikelihoods<A> copy() {
 
         final int sampleCount = samples.numberOfSamples();
-        final int alleleCount = alleles.numberOfAlleles();
 
-        final double[][][] newLikelihoodValues = new double[sampleCount][alleleCount][];
+        final double[][] newLikelihoodValues = new double[sampleCount][];
 
         @SuppressWarnings({"unchecked", "rawtypes"})
         final Object2IntMap<GATKRead>[] newReadIndexBySampleIndex = new Object2IntMap[sampleCount];
@@ -191,9 +204,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
 
         for (int s = 0; s < sampleCount; s++) {
             newReadsBySampleIndex[s] = readsBySampleIndex[s].clone();
-            for (int a = 0; a < alleleCount; a++) {
-                newLikelihoodValues[s][a] = valuesBySampleIndex[s][a].clone();
-            }
+            newLikelihoodValues[s] = valuesBySampleIndex[s].clone();
         }
 
         // Finally we create the new read-likelihood
@@ -202,7 +213,8 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
                 samples,
                 newReadsBySampleIndex,
                 newReadIndexBySampleIndex,
-                newLikelihoodValues);
+                newLikelihoodValues,
+                readCapacityBySampleIndex.clone());
     }
 
 
@@ -346,47 +358,49 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         }
 
         for (int s = 0; s < valuesBySampleIndex.length; s++) {
-            final double[][] sampleValues = valuesBySampleIndex[s];
+            final double[] sampleValues = valuesBySampleIndex[s];
+            final int readCapacity = readCapacityBySampleIndex[s];
             final int readCount = readsBySampleIndex[s].length;
             for (int r = 0; r < readCount; r++) {
-                normalizeLikelihoodsPerRead(bestToZero, maximumLikelihoodDifferenceCap, sampleValues, s, r);
+                normalizeLikelihoodsPerRead(bestToZero, maximumLikelihoodDifferenceCap, sampleValues, readCapacity, s, r);
             }
         }
     }
 
     // Does the normalizeLikelihoods job for each read.
     private void normalizeLikelihoodsPerRead(final boolean bestToZero, final double maximumBestAltLikelihoodDifference,
-                                             final double[][] sampleValues, final int sampleIndex, final int readIndex) {
+                                             final double[] sampleValues, final int readCapacity, final int sampleIndex, final int readIndex) {
 
         final BestAllele bestAlternativeAllele = searchBestAllele(sampleIndex,readIndex,false);
 
         final double worstLikelihoodCap = bestAlternativeAllele.likelihood + maximumBestAltLikelihoodDifference;
 
         final double referenceLikelihood = referenceAlleleIndex == MISSING_REF ? Double.NEGATIVE_INFINITY :
-                sampleValues[referenceAlleleIndex][readIndex];
+                sampleValues[referenceAlleleIndex * readCapacity + readIndex];
 
         final double bestAbsoluteLikelihood = Math.max(bestAlternativeAllele.likelihood, referenceLikelihood);
 
-        final int alleleCount = alleles.numberOfAlleles();
+        // the likelihoods of the read are at readIndex + a * readCapacity for each allele a.
+        final int end = alleles.numberOfAlleles() * readCapacity;
         if (bestToZero) {
             if (bestAbsoluteLikelihood == Double.NEGATIVE_INFINITY) {
-                for (int a = 0; a < alleleCount; a++) {
-                    sampleValues[a][readIndex] = 0;
+                for (int i = readIndex; i < end; i += readCapacity) {
+                    sampleValues[i] = 0;
                 }
             } else if (worstLikelihoodCap != Double.NEGATIVE_INFINITY) {
-                for (int a = 0; a < alleleCount; a++) {
-                    sampleValues[a][readIndex] = (sampleValues[a][readIndex] < worstLikelihoodCap ? worstLikelihoodCap : sampleValues[a][readIndex]) - bestAbsoluteLikelihood;
+                for (int i = readIndex; i < end; i += readCapacity) {
+                    sampleValues[i] = (sampleValues[i] < worstLikelihoodCap ? worstLikelihoodCap : sampleValues[i]) - bestAbsoluteLikelihood;
                 }
             } else {
-                for (int a = 0; a < alleleCount; a++) {
-                    sampleValues[a][readIndex] -= bestAbsoluteLikelihood;
+                for (int i = readIndex; i < end; i += readCapacity) {
+                    sampleValues[i] -= bestAbsoluteLikelihood;
                 }
             }
         } else {
             // Guarantee to be the case by enclosing code.
-            for (int a = 0; a < alleleCount; a++) {
-                if (sampleValues[a][readIndex] < worstLikelihoodCap) {
-                    sampleValues[a][readIndex] = worstLikelihoodCap;
+            for (int i = readIndex; i < end; i += readCapacity) {
+                if (sampleValues[i] < worstLikelihoodCap) {
+                    sampleValues[i] = worstLikelihoodCap;
                 }
             }
         }
@@ -441,16 +455,17 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
             return new BestAllele(sampleIndex, readIndex, -1, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
         }
 
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex];
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCapacity = readCapacityBySampleIndex[sampleIndex];
         int bestAlleleIndex = canBeReference || referenceAlleleIndex != 0 ? 0 : 1;
 
-        double bestLikelihood = sampleValues[bestAlleleIndex][readIndex];
+        double bestLikelihood = sampleValues[bestAlleleIndex * readCapacity + readIndex];
         double secondBestLikelihood = Double.NEGATIVE_INFINITY;
         for (int a = bestAlleleIndex + 1; a < alleleCount; a++) {
             if (!canBeReference && referenceAlleleIndex == a) {
                 continue;
             }
-            final double candidateLikelihood = sampleValues[a][readIndex];
+            final double candidateLikelihood = sampleValues[a * readCapacity + readIndex];
             if (candidateLikelihood > bestLikelihood) {
                 bestAlleleIndex = a;
                 secondBestLikelihood = bestLikelihood;
@@ -526,15 +541,11 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
 
         //copy old allele likelihoods and set new allele likelihoods to the default value
         for (int s = 0; s < samples.numberOfSamples(); s++) {
-            final int sampleReadCount = readsBySampleIndex[s].length;
-            final double[][] newValuesBySampleIndex = Arrays.copyOf(valuesBySampleIndex[s], newAlleleCount);
-            for (int a = oldAlleleCount; a < newAlleleCount; a++) {
-                newValuesBySampleIndex[a] = new double[sampleReadCount];
-                if (defaultLikelihood != 0.0) {
-                    Arrays.fill(newValuesBySampleIndex[a], defaultLikelihood);
-                }
+            final int readCapacity = readCapacityBySampleIndex[s];
+            final double[] newSampleValues = valuesBySampleIndex[s] = Arrays.copyOf(valuesBySampleIndex[s], newAlleleCount * readCapacity);
+            if (defaultLikelihood != 0.0) {
+                Arrays.fill(newSampleValues, oldAlleleCount * readCapacity, newAlleleCount * readCapacity, defaultLikelihood);
             }
-            valuesBySampleIndex[s] = newValuesBySampleIndex;
         }
     }
 
@@ -564,7 +575,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         final int[] oldToNewAlleleIndexMap = oldToNewAlleleIndexMap(newToOldAlleleMap, oldAlleleCount, newAlleles);
 
         // We calculate the marginal likelihoods.
-        final double[][][] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, null);
+        final double[][] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, null);
 
         final int sampleCount = samples.numberOfSamples();
 
@@ -580,7 +591,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
                 new IndexedAlleleList(newAlleles),
                 samples,
                 newReadsBySampleIndex,
-                newReadIndexBySampleIndex, newLikelihoodValues);
+                newReadIndexBySampleIndex, newLikelihoodValues, readCounts(newReadsBySampleIndex));
     }
 
 
@@ -618,7 +629,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         final int[][] readsToKeep = overlappingReadIndicesBySampleIndex(overlap);
         // We calculate the marginal likelihoods.
 
-        final double[][][] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, readsToKeep);
+        final double[][] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, readsToKeep);
 
         final int sampleCount = samples.numberOfSamples();
 
@@ -644,7 +655,12 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         // Finally we create the new read-likelihood
         return new ReadLikelihoods<>(new IndexedAlleleList<>(newAlleles), samples,
                 newReadsBySampleIndex,
-                newReadIndexBySampleIndex, newLikelihoodValues);
+                newReadIndexBySampleIndex, newLikelihoodValues, readCounts(newReadsBySampleIndex));
+    }
+
+    // The number of reads of each sample, which is the read capacity of likelihood arrays that have no room to spare.
+    private static int[] readCounts(final GATKRead[][] readsBySampleIndex) {
+        return Arrays.stream(readsBySampleIndex).mapToInt(sampleReads -> sampleReads.length).toArray();
     }
 
     private int[][] overlappingReadIndicesBySampleIndex(final Locatable overlap) {
@@ -693,32 +709,35 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
     }
 
     // Calculate the marginal likelihoods considering the old -> new allele index mapping.
-    private double[][][] marginalLikelihoods(final int oldAlleleCount, final int newAlleleCount, final int[] oldToNewAlleleIndexMap, final int[][] readsToKeep) {
+    // The result has no room to spare, i.e. the read capacity of each sample is its new number of reads.
+    private double[][] marginalLikelihoods(final int oldAlleleCount, final int newAlleleCount, final int[] oldToNewAlleleIndexMap, final int[][] readsToKeep) {
 
         final int sampleCount = samples.numberOfSamples();
-        final double[][][] result = new double[sampleCount][][];
+        final double[][] result = new double[sampleCount][];
 
         for (int s = 0; s < sampleCount; s++) {
             final int sampleReadCount = readsBySampleIndex[s].length;
-            final double[][] oldSampleValues = valuesBySampleIndex[s];
+            final int readCapacity = readCapacityBySampleIndex[s];
+            final double[] oldSampleValues = valuesBySampleIndex[s];
             final int[] sampleReadToKeep = readsToKeep == null || readsToKeep[s].length == sampleReadCount ? null : readsToKeep[s];
             final int newSampleReadCount = sampleReadToKeep == null ? sampleReadCount : sampleReadToKeep.length;
-            final double[][] newSampleValues = result[s] = new double[newAlleleCount][newSampleReadCount];
+            final double[] newSampleValues = result[s] = new double[newAlleleCount * newSampleReadCount];
             // We initiate all likelihoods to -Inf.
-            for (int a = 0; a < newAlleleCount; a++) {
-                Arrays.fill(newSampleValues[a], Double.NEGATIVE_INFINITY);
-            }
-            // For each old allele and read we update the new table keeping the maximum likelihood.
-            for (int r = 0; r < newSampleReadCount; r++) {
-                for (int a = 0; a < oldAlleleCount; a++) {
-                    final int oldReadIndex = newSampleReadCount == sampleReadCount ? r : sampleReadToKeep[r];
-                    final int newAlleleIndex = oldToNewAlleleIndexMap[a];
-                    if (newAlleleIndex == -1) {
-                        continue;
-                    }
-                    final double likelihood = oldSampleValues[a][oldReadIndex];
-                    if (likelihood > newSampleValues[newAlleleIndex][r]) {
-                        newSampleValues[newAlleleIndex][r] = likelihood;
+            Arrays.fill(newSampleValues, Double.NEGATIVE_INFINITY);
+            // For each old allele and read we update the new table keeping the maximum likelihood; we go one allele
+            // at a time so that both the old and the new likelihoods are traversed sequentially.
+            for (int a = 0; a < oldAlleleCount; a++) {
+                final int newAlleleIndex = oldToNewAlleleIndexMap[a];
+                if (newAlleleIndex == -1) {
+                    continue;
+                }
+                final int oldOffset = a * readCapacity;
+                final int newOffset = newAlleleIndex * newSampleReadCount;
+                for (int r = 0; r < newSampleReadCount; r++) {
+                    final int oldReadIndex = sampleReadToKeep == null ? r : sampleReadToKeep[r];
+                    final double likelihood = oldSampleValues[oldOffset + oldReadIndex];
+                    if (likelihood > newSampleValues[newOffset + r]) {
+                        newSampleValues[newOffset + r] = likelihood;
                     }
                 }
             }
@@ -783,10 +802,11 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         final double log10QualPerBase = -4.0;
         final double log10MaxLikelihoodForTrueAllele = maxErrorsForRead * log10QualPerBase;
 
-        final int alleleCount = alleles.numberOfAlleles();
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex];
-        for (int a = 0; a < alleleCount; a++) {
-            if (sampleValues[a][readIndex] >= log10MaxLikelihoodForTrueAllele) {
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCapacity = readCapacityBySampleIndex[sampleIndex];
+        final int end = alleles.numberOfAlleles() * readCapacity;
+        for (int i = readIndex; i < end; i += readCapacity) {
+            if (sampleValues[i] >= log10MaxLikelihoodForTrueAllele) {
                 return false;
             }
         }
@@ -826,18 +846,23 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         }
     }
 
-    // Extends the likelihood arrays-matrices.
+    // Extends the likelihood arrays-matrices, in place if the sample has room for the new reads.
     private void extendsLikelihoodArrays(final double initialLikelihood, final int sampleIndex, final int sampleReadCount, final int newSampleReadCount) {
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex];
         final int alleleCount = alleles.numberOfAlleles();
-        for (int a = 0; a < alleleCount; a++) {
-            sampleValues[a] = Arrays.copyOf(sampleValues[a], newSampleReadCount);
-        }
-        if (initialLikelihood != 0.0) // the default array new value.
-        {
+        int readCapacity = readCapacityBySampleIndex[sampleIndex];
+        if (newSampleReadCount > readCapacity) {
+            final double[] oldSampleValues = valuesBySampleIndex[sampleIndex];
+            final double[] newSampleValues = new double[alleleCount * newSampleReadCount];
             for (int a = 0; a < alleleCount; a++) {
-                Arrays.fill(sampleValues[a], sampleReadCount, newSampleReadCount, initialLikelihood);
+                System.arraycopy(oldSampleValues, a * readCapacity, newSampleValues, a * newSampleReadCount, sampleReadCount);
             }
+            valuesBySampleIndex[sampleIndex] = newSampleValues;
+            readCapacity = readCapacityBySampleIndex[sampleIndex] = newSampleReadCount;
+        }
+        // the room may hold the likelihoods of removed reads, so the new ones are set even if initialLikelihood is 0.
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+        for (int a = 0; a < alleleCount; a++) {
+            Arrays.fill(sampleValues, a * readCapacity + sampleReadCount, a * readCapacity + newSampleReadCount, initialLikelihood);
         }
     }
 
@@ -905,16 +930,17 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
 
     // Updates per-sample structures according to the addition of the NON_REF allele.
     private void addNonReferenceAlleleLikelihoodsPerSample(final int alleleCount, final int newAlleleCount, final int sampleIndex) {
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex] = Arrays.copyOf(valuesBySampleIndex[sampleIndex], newAlleleCount);
+        final int readCapacity = readCapacityBySampleIndex[sampleIndex];
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex] = Arrays.copyOf(valuesBySampleIndex[sampleIndex], newAlleleCount * readCapacity);
         final int sampleReadCount = readsBySampleIndex[sampleIndex].length;
 
-        final double[] nonRefAlleleLikelihoods = sampleValues[alleleCount] = new double [sampleReadCount];
-        Arrays.fill(nonRefAlleleLikelihoods, Double.NEGATIVE_INFINITY);
+        final int nonRefOffset = alleleCount * readCapacity;
+        Arrays.fill(sampleValues, nonRefOffset, nonRefOffset + readCapacity, Double.NEGATIVE_INFINITY);
         for (int r = 0; r < sampleReadCount; r++) {
             final BestAllele bestAllele = searchBestAllele(sampleIndex,r,true);
             final double secondBestLikelihood = Double.isInfinite(bestAllele.confidence) ? bestAllele.likelihood
                     : bestAllele.likelihood - bestAllele.confidence;
-            nonRefAlleleLikelihoods[r] = secondBestLikelihood;
+            sampleValues[nonRefOffset + r] = secondBestLikelihood;
         }
     }
 
@@ -1186,13 +1212,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         Utils.skimArray(oldSampleReads,firstDeleted, newSampleReads, firstDeleted, removeIndex, firstDeleted);
 
         // Then we skim out the likelihoods of the removed reads.
-        final double[][] oldSampleValues = valuesBySampleIndex[sampleIndex];
-        final double[][] newSampleValues = new double[alleleCount][newSampleReadCount];
-        for (int a = 0; a < alleleCount; a++) {
-            System.arraycopy(oldSampleValues[a], 0, newSampleValues[a], 0, firstDeleted);
-            Utils.skimArray(oldSampleValues[a], firstDeleted, newSampleValues[a], firstDeleted, removeIndex, firstDeleted);
-        }
-        valuesBySampleIndex[sampleIndex] = newSampleValues;
+        skimLikelihoods(sampleIndex, alleleCount, sampleReadCount, removeIndex, firstDeleted);
         readsBySampleIndex[sampleIndex] = newSampleReads;
         readListBySampleIndex[sampleIndex] = null; // reset the unmodifiable list.
     }
@@ -1244,17 +1264,28 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         }
 
         // Then we skim out the likelihoods of the removed reads.
-        final double[][] oldSampleValues = valuesBySampleIndex[sampleIndex];
-        final double[][] newSampleValues = new double[alleleCount][newSampleReadCount];
-        for (int a = 0; a < alleleCount; a++) {
-            System.arraycopy(oldSampleValues[a],0,newSampleValues[a],0,firstDeleted);
-            Utils.skimArray(oldSampleValues[a], firstDeleted, newSampleValues[a], firstDeleted, removeIndex, firstDeleted);
-        }
-        valuesBySampleIndex[sampleIndex] = newSampleValues;
+        skimLikelihoods(sampleIndex, alleleCount, sampleReadCount, removeIndex, firstDeleted);
         readsBySampleIndex[sampleIndex] = newSampleReads;
         readListBySampleIndex[sampleIndex] = null; // reset the unmodifiable list.
     }
 
+    // Removes the likelihoods of the removed reads in place, moving the remaining ones of each allele down;
+    // the read capacity of the sample is unchanged.
+    private void skimLikelihoods(final int sampleIndex, final int alleleCount, final int sampleReadCount,
+                                 final boolean[] removeIndex, final int firstDeleted) {
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCapacity = readCapacityBySampleIndex[sampleIndex];
+        for (int a = 0; a < alleleCount; a++) {
+            final int offset = a * readCapacity;
+            int to = offset + firstDeleted;
+            for (int r = firstDeleted; r < sampleReadCount; r++) {
+                if (!removeIndex[r]) {
+                    sampleValues[to++] = sampleValues[offset + r];
+                }
+            }
+        }
+    }
+
 
     private Object2IntMap<GATKRead> readIndexBySampleIndex(final int sampleIndex) {
         if (readIndexBySampleIndex[sampleIndex] == null) {
@@ -1291,16 +1322,16 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
 
         @Override
         public void set(final int alleleIndex, final int readIndex, final double value) {
-            Utils.validIndex(alleleIndex, valuesBySampleIndex[sampleIndex].length);
-            Utils.validIndex(readIndex, valuesBySampleIndex[sampleIndex][alleleIndex].length);
-            valuesBySampleIndex[sampleIndex][alleleIndex][readIndex] = value;
+            Utils.validIndex(alleleIndex, alleles.numberOfAlleles());
+            Utils.validIndex(readIndex, readsBySampleIndex[sampleIndex].length);
+            valuesBySampleIndex[sampleIndex][alleleIndex * readCapacityBySampleIndex[sampleIndex] + readIndex] = value;
         }
 
         @Override
         public double get(final int alleleIndex, final int readIndex) {
-            Utils.validIndex(alleleIndex, valuesBySampleIndex[sampleIndex].length);
-            Utils.validIndex(readIndex, valuesBySampleIndex[sampleIndex][alleleIndex].length);
-            return valuesBySampleIndex[sampleIndex][alleleIndex][readIndex];
+            Utils.validIndex(alleleIndex, alleles.numberOfAlleles());
+            Utils.validIndex(readIndex, readsBySampleIndex[sampleIndex].length);
+            return valuesBySampleIndex[sampleIndex][alleleIndex * readCapacityBySampleIndex[sampleIndex] + readIndex];
         }
 
         @Override
@@ -1340,8 +1371,8 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         @Override
         public void copyAlleleLikelihoods(final int alleleIndex, final double[] dest, final int offset) {
             Utils.nonNull(dest);
-            Utils.validIndex(alleleIndex, valuesBySampleIndex[sampleIndex].length);
-            System.arraycopy(valuesBySampleIndex[sampleIndex][alleleIndex], 0, dest, offset, numberOfReads());
+            Utils.validIndex(alleleIndex, alleles.numberOfAlleles());
+            System.arraycopy(valuesBySampleIndex[sampleIndex], alleleIndex * readCapacityBySampleIndex[sampleIndex], dest, offset, numberOfReads());
         }
     }
 }
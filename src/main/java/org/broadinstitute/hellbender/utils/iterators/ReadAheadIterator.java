@@ -0,0 +1,176 @@
+package org.broadinstitute.hellbender.utils.iterators;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Wraps an iterator so that its records are pulled (and optionally pre-processed) on a background thread, ahead of
+ * the consumer. Records are handed over in batches through a bounded queue, so that the work of the wrapped iterator
+ * (eg., decompressing and decoding records from a file) overlaps with the work done by the consumer on each record.
+ *
+ * The wrapped iterator must not be accessed by anyone else while this iterator is open, and must only be closed
+ * after this iterator has been closed (which stops the background thread).
+ *
+ * Any exception thrown by the wrapped iterator or the prefetch action on the background thread is re-thrown,
+ * wrapped in a {@link GATKException}, by the next call to {@link #hasNext} or {@link #next} that reaches it.
+ */
+public final class ReadAheadIterator<T> implements CloseableIterator<T> {
+
+    /**
+     * How long the background thread waits for space in the queue before checking whether we've been closed
+     */
+    private static final long QUEUE_POLL_INTERVAL_MS = 100L;
+
+    private final BlockingQueue<Batch<T>> queue;
+    private final Thread readAheadThread;
+
+    /**
+     * Set when the consumer closes this iterator, to tell the background thread to stop
+     */
+    private volatile boolean closed = false;
+
+    private Iterator<T> currentBatch = Collections.emptyIterator();
+    private boolean sourceExhausted = false;
+
+    /**
+     * @param source iterator to read ahead from
+     * @param queueDepth maximum number of batches of records held in memory ahead of the consumer (must be >= 1)
+     * @param batchSize number of records per batch (must be >= 1)
+     * @param prefetchAction action run on the background thread on each record as it is read (may be null)
+     */
+    public ReadAheadIterator( final Iterator<T> source, final int queueDepth, final int batchSize, final Consumer<T> prefetchAction ) {
+        Utils.nonNull(source);
+        Utils.validateArg(queueDepth >= 1, "queueDepth must be >= 1");
+        Utils.validateArg(batchSize >= 1, "batchSize must be >= 1");
+
+        this.queue = new ArrayBlockingQueue<>(queueDepth);
+        this.readAheadThread = new Thread(() -> readAhead(source, batchSize, prefetchAction), "ReadAheadIterator");
+        this.readAheadThread.setDaemon(true);
+        this.readAheadThread.start();
+    }
+
+    /**
+     * Body of the background thread: fill batches from the source and queue them until the source is exhausted,
+     * an error occurs, or we are closed.
+     */
+    private void readAhead( final Iterator<T> source, final int batchSize, final Consumer<T> prefetchAction ) {
+        try {
+            while ( ! closed && source.hasNext() ) {
+                final List<T> records = new ArrayList<>(batchSize);
+                while ( records.size() < batchSize && source.hasNext() ) {
+                    final T record = source.next();
+                    if ( prefetchAction != null ) {
+                        prefetchAction.accept(record);
+                    }
+                    records.add(record);
+                }
+                enqueue(new Batch<>(records, null));
+            }
+            enqueue(new Batch<>(null, null));
+        }
+        catch ( final Throwable t ) {
+            enqueue(new Batch<>(null, t));
+        }
+    }
+
+    /**
+     * Queue a batch, waiting for space in the queue. Gives up silently if we're closed while waiting.
+     */
+    private void enqueue( final Batch<T> batch ) {
+        try {
+            while ( ! queue.offer(batch, QUEUE_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS) ) {
+                if ( closed ) {
+                    return;
+                }
+            }
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if ( closed ) {
+            return false;
+        }
+
+        while ( ! currentBatch.hasNext() && ! sourceExhausted ) {
+            final Batch<T> batch;
+            try {
+                batch = queue.take();
+            }
+            catch ( final InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new GATKException("Interrupted while waiting for records from the read-ahead thread", e);
+            }
+
+            if ( batch.error != null ) {
+                sourceExhausted = true;
+                throw new GATKException("Error reading records on the read-ahead thread", batch.error);
+            }
+            if ( batch.records == null ) {
+                sourceExhausted = true;
+            }
+            else {
+                currentBatch = batch.records.iterator();
+            }
+        }
+
+        return currentBatch.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if ( ! hasNext() ) {
+            throw new NoSuchElementException("next() called when there are no more records");
+        }
+        return currentBatch.next();
+    }
+
+    /**
+     * Stop the background thread and discard any records read ahead. Does not close the wrapped iterator, which
+     * may safely be closed once this method returns.
+     */
+    @Override
+    public void close() {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+        queue.clear();
+
+        try {
+            readAheadThread.join();
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while waiting for the read-ahead thread to stop", e);
+        }
+        queue.clear();
+    }
+
+    /**
+     * A batch of records read ahead. A batch with null records marks the end of the source, or an error if error is set.
+     */
+    private static final class Batch<T> {
+        private final List<T> records;
+        private final Throwable error;
+
+        private Batch( final List<T> records, final Throwable error ) {
+            this.records = records;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import org.broadinstitute.hellbender.utils.QualityUtils;
+
+import java.util.Arrays;
+
+import static org.broadinstitute.hellbender.utils.pairhmm.PairHMMModel.*;
+
+/**
+ * Pure-Java version of the LOGLESS_CACHING PairHMM organized like the native AVX implementation.
+ *
+ * The cells of the match, insertion and deletion matrices are computed one anti-diagonal at a time: every cell
+ * of an anti-diagonal depends only on the two previous anti-diagonals, so the inner loop has no loop-carried
+ * dependency and only accesses flat arrays indexed by the read position. Only the three most recent
+ * anti-diagonals of each matrix are kept, so memory use is linear in the read length rather than proportional to
+ * read length x haplotype length.
+ *
+ * As in the native implementation, each likelihood is first computed in single precision and recomputed in
+ * double precision only if the single precision result underflows. Results are within single precision
+ * rounding of those of {@link LoglessPairHMM}.
+ */
+public final class AntiDiagonalLoglessPairHMM extends PairHMM {
+    static final float INITIAL_CONDITION_FLOAT = (float) Math.pow(2, 120);
+    static final double INITIAL_CONDITION_FLOAT_LOG10 = Math.log10(INITIAL_CONDITION_FLOAT);
+
+    // single precision sums of probabilities below this value are recomputed in double precision
+    static final float MIN_ACCEPTED_FLOAT = 1e-28f;
+
+    // per read row (1-based, row 0 is unused): read bases, priors and transition probabilities
+    private byte[] paddedReadBases;
+    private double[] matchPrior, mismatchPrior;
+    private double[] mm, gm, mx, xx, my, yy;
+    private float[] matchPriorFloat, mismatchPriorFloat;
+    private float[] mmFloat, gmFloat, mxFloat, xxFloat, myFloat, yyFloat;
+    private double[][] transition;
+
+    // haplotype bases in reverse order, so that the bases of the cells of an anti-diagonal are contiguous
+    private byte[] reversedHaplotypeBases;
+
+    // the three most recent anti-diagonals of each matrix, indexed by read row
+    private double[][] matchDiagonals, insertionDiagonals, deletionDiagonals;
+    private float[][] matchDiagonalsFloat, insertionDiagonalsFloat, deletionDiagonalsFloat;
+
+    private long numDoublePrecisionRecomputations = 0;
+
+    @Override
+    public void doNotUseTristateCorrection() {
+        doNotUseTristateCorrection = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialize( final int readMaxLength, final int haplotypeMaxLength ) {
+        super.initialize(readMaxLength, haplotypeMaxLength);
+
+        // one extra slot as the zero of column 0 of anti-diagonal d is stored at index d
+        final int diagonalLength = paddedMaxReadLength + 1;
+
+        paddedReadBases = new byte[paddedMaxReadLength];
+        matchPrior = new double[paddedMaxReadLength];
+        mismatchPrior = new double[paddedMaxReadLength];
+        matchPriorFloat = new float[paddedMaxReadLength];
+        mismatchPriorFloat = new float[paddedMaxReadLength];
+        mm = new double[paddedMaxReadLength];
+        gm = new double[paddedMaxReadLength];
+        mx = new double[paddedMaxReadLength];
+        xx = new double[paddedMaxReadLength];
+        my = new double[paddedMaxReadLength];
+        yy = new double[paddedMaxReadLength];
+        mmFloat = new float[paddedMaxReadLength];
+        gmFloat = new float[paddedMaxReadLength];
+        mxFloat = new float[paddedMaxReadLength];
+        xxFloat = new float[paddedMaxReadLength];
+        myFloat = new float[paddedMaxReadLength];
+        yyFloat = new float[paddedMaxReadLength];
+        transition = PairHMMModel.createTransitionMatrix(maxReadLength);
+
+        reversedHaplotypeBases = new byte[maxHaplotypeLength];
+
+        matchDiagonals = new double[3][diagonalLength];
+        insertionDiagonals = new double[3][diagonalLength];
+        deletionDiagonals = new double[3][diagonalLength];
+        matchDiagonalsFloat = new float[3][diagonalLength];
+        insertionDiagonalsFloat = new float[3][diagonalLength];
+        deletionDiagonalsFloat = new float[3][diagonalLength];
+    }
+
+    /**
+     * @return the number of likelihoods that underflowed in single precision and were recomputed in double precision
+     */
+    public long getNumDoublePrecisionRecomputations() {
+        return numDoublePrecisionRecomputations;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected double subComputeReadLikelihoodGivenHaplotypeLog10( final byte[] haplotypeBases,
+                                                                  final byte[] readBases,
+                                                                  final byte[] readQuals,
+                                                                  final byte[] insertionGOP,
+                                                                  final byte[] deletionGOP,
+                                                                  final byte[] overallGCP,
+                                                                  final int hapStartIndex,
+                                                                  final boolean recacheReadValues,
+                                                                  final int nextHapStartIndex) {
+        if ( ! constantsAreInitialized || recacheReadValues ) {
+            initializeReadValues(readBases, readQuals, insertionGOP, deletionGOP, overallGCP);
+            constantsAreInitialized = true;
+        }
+
+        final int haplotypeLength = haplotypeBases.length;
+        for ( int j = 0; j < haplotypeLength; j++ ) {
+            reversedHaplotypeBases[j] = haplotypeBases[haplotypeLength - 1 - j];
+        }
+
+        final float sumProbabilitiesFloat = computeSumProbabilitiesFloat(readBases.length, haplotypeLength);
+        if ( sumProbabilitiesFloat >= MIN_ACCEPTED_FLOAT ) {
+            return Math.log10(sumProbabilitiesFloat) - INITIAL_CONDITION_FLOAT_LOG10;
+        }
+
+        numDoublePrecisionRecomputations++;
+        return Math.log10(computeSumProbabilities(readBases.length, haplotypeLength)) - LoglessPairHMM.INITIAL_CONDITION_LOG10;
+    }
+
+    /**
+     * Cache the read bases, and the priors and transition probabilities of each read row in both precisions
+     */
+    private void initializeReadValues( final byte[] readBases, final byte[] readQuals, final byte[] insertionGOP, final byte[] deletionGOP, final byte[] overallGCP ) {
+        PairHMMModel.qualToTransProbs(transition, insertionGOP, deletionGOP, overallGCP);
+        final double mismatchDivisor = doNotUseTristateCorrection ? 1.0 : LoglessPairHMM.TRISTATE_CORRECTION;
+
+        for ( int i = 1; i <= readBases.length; i++ ) {
+            paddedReadBases[i] = readBases[i - 1];
+            matchPrior[i] = QualityUtils.qualToProb(readQuals[i - 1]);
+            mismatchPrior[i] = QualityUtils.qualToErrorProb(readQuals[i - 1]) / mismatchDivisor;
+            mm[i] = transition[i][matchToMatch];
+            gm[i] = transition[i][indelToMatch];
+            mx[i] = transition[i][matchToInsertion];
+            xx[i] = transition[i][insertionToInsertion];
+            my[i] = transition[i][matchToDeletion];
+            yy[i] = transition[i][deletionToDeletion];
+
+            matchPriorFloat[i] = (float) matchPrior[i];
+            mismatchPriorFloat[i] = (float) mismatchPrior[i];
+            mmFloat[i] = (float) mm[i];
+            gmFloat[i] = (float) gm[i];
+            mxFloat[i] = (float) mx[i];
+            xxFloat[i] = (float) xx[i];
+            myFloat[i] = (float) my[i];
+            yyFloat[i] = (float) yy[i];
+        }
+    }
+
+    /**
+     * Run the forward algorithm in single precision, one anti-diagonal d = i + j of the (read row i, haplotype
+     * column j) matrices at a time.
+     *
+     * Row 0 of the deletion matrix holds the initial condition (free deletions before the start of the read), and
+     * the rest of row 0 and all of column 0 are zero. Row 0 is stored at index 0 of every anti-diagonal, and
+     * the cell of column 0 of anti-diagonal d at index d, which is just past the computed cells.
+     *
+     * @return the sum of the match and insertion probabilities of the last read row, scaled by the initial condition
+     */
+    private float computeSumProbabilitiesFloat( final int readLength, final int haplotypeLength ) {
+        float[] matchPrev2 = matchDiagonalsFloat[0], matchPrev = matchDiagonalsFloat[1], matchCur = matchDiagonalsFloat[2];
+        float[] insertionPrev2 = insertionDiagonalsFloat[0], insertionPrev = insertionDiagonalsFloat[1], insertionCur = insertionDiagonalsFloat[2];
+        float[] deletionPrev2 = deletionDiagonalsFloat[0], deletionPrev = deletionDiagonalsFloat[1], deletionCur = deletionDiagonalsFloat[2];
+
+        final float initialValue = INITIAL_CONDITION_FLOAT / haplotypeLength;
+        for ( int k = 0; k < 3; k++ ) {
+            Arrays.fill(matchDiagonalsFloat[k], 0, readLength + 2, 0.0f);
+            Arrays.fill(insertionDiagonalsFloat[k], 0, readLength + 2, 0.0f);
+            Arrays.fill(deletionDiagonalsFloat[k], 0, readLength + 2, 0.0f);
+            deletionDiagonalsFloat[k][0] = initialValue;
+        }
+
+        final byte[] reads = paddedReadBases;
+        final byte[] haps = reversedHaplotypeBases;
+        float sumProbabilities = 0.0f;
+        for ( int d = 2; d <= readLength + haplotypeLength; d++ ) {
+            final int iStart = Math.max(1, d - haplotypeLength);
+            final int iEnd = Math.min(readLength, d - 1);
+            // the haplotype base of cell (i, d - i) is reversedHaplotypeBases[i + hapOffset]
+            final int hapOffset = haplotypeLength - d;
+
+            for ( int i = iStart; i <= iEnd; i++ ) {
+                final byte x = reads[i];
+                final byte y = haps[i + hapOffset];
+                final float prior = x == y || x == (byte) 'N' || y == (byte) 'N' ? matchPriorFloat[i] : mismatchPriorFloat[i];
+                matchCur[i] = prior * ( matchPrev2[i - 1] * mmFloat[i] +
+                        insertionPrev2[i - 1] * gmFloat[i] +
+                        deletionPrev2[i - 1] * gmFloat[i] );
+                insertionCur[i] = matchPrev[i - 1] * mxFloat[i] + insertionPrev[i - 1] * xxFloat[i];
+                deletionCur[i] = matchPrev[i] * myFloat[i] + deletionPrev[i] * yyFloat[i];
+            }
+
+            if ( d <= readLength ) {
+                matchCur[d] = insertionCur[d] = deletionCur[d] = 0.0f;
+            }
+            if ( iEnd == readLength ) {
+                sumProbabilities += matchCur[readLength] + insertionCur[readLength];
+            }
+
+            final float[] matchFree = matchPrev2, insertionFree = insertionPrev2, deletionFree = deletionPrev2;
+            matchPrev2 = matchPrev; matchPrev = matchCur; matchCur = matchFree;
+            insertionPrev2 = insertionPrev; insertionPrev = insertionCur; insertionCur = insertionFree;
+            deletionPrev2 = deletionPrev; deletionPrev = deletionCur; deletionCur = deletionFree;
+        }
+        return sumProbabilities;
+    }
+
+    /**
+     * Double precision version of {@link #computeSumProbabilitiesFloat}, scaled by {@link LoglessPairHMM#INITIAL_CONDITION}
+     */
+    private double computeSumProbabilities( final int readLength, final int haplotypeLength ) {
+        double[] matchPrev2 = matchDiagonals[0], matchPrev = matchDiagonals[1], matchCur = matchDiagonals[2];
+        double[] insertionPrev2 = insertionDiagonals[0], insertionPrev = insertionDiagonals[1], insertionCur = insertionDiagonals[2];
+        double[] deletionPrev2 = deletionDiagonals[0], deletionPrev = deletionDiagonals[1], deletionCur = deletionDiagonals[2];
+
+        final double initialValue = LoglessPairHMM.INITIAL_CONDITION / haplotypeLength;
+        for ( int k = 0; k < 3; k++ ) {
+            Arrays.fill(matchDiagonals[k], 0, readLength + 2, 0.0);
+            Arrays.fill(insertionDiagonals[k], 0, readLength + 2, 0.0);
+            Arrays.fill(deletionDiagonals[k], 0, readLength + 2, 0.0);
+            deletionDiagonals[k][0] = initialValue;
+        }
+
+        final byte[] reads = paddedReadBases;
+        final byte[] haps = reversedHaplotypeBases;
+        double sumProbabilities = 0.0;
+        for ( int d = 2; d <= readLength + haplotypeLength; d++ ) {
+            final int iStart = Math.max(1, d - haplotypeLength);
+            final int iEnd = Math.min(readLength, d - 1);
+            final int hapOffset = haplotypeLength - d;
+
+            for ( int i = iStart; i <= iEnd; i++ ) {
+                final byte x = reads[i];
+                final byte y = haps[i + hapOffset];
+                final double prior = x == y || x == (byte) 'N' || y == (byte) 'N' ? matchPrior[i] : mismatchPrior[i];
+                matchCur[i] = prior * ( matchPrev2[i - 1] * mm[i] +
+                        insertionPrev2[i - 1] * gm[i] +
+                        deletionPrev2[i - 1] * gm[i] );
+                insertionCur[i] = matchPrev[i - 1] * mx[i] + insertionPrev[i - 1] * xx[i];
+                deletionCur[i] = matchPrev[i] * my[i] + deletionPrev[i] * yy[i];
+            }
+
+            if ( d <= readLength ) {
+                matchCur[d] = insertionCur[d] = deletionCur[d] = 0.0;
+            }
+            if ( iEnd == readLength ) {
+                sumProbabilities += matchCur[readLength] + insertionCur[readLength];
+            }
+
+            final double[] matchFree = matchPrev2, insertionFree = insertionPrev2, deletionFree = deletionPrev2;
+            matchPrev2 = matchPrev; matchPrev = matchCur; matchCur = matchFree;
+            insertionPrev2 = insertionPrev; insertionPrev = insertionCur; insertionCur = insertionFree;
+            deletionPrev2 = deletionPrev; deletionPrev = deletionCur; deletionCur = deletionFree;
+        }
+        return sumProbabilities;
+    }
+}
@@ -0,0 +1,389 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.genotyper.LikelihoodMatrix;
+import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadUtils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Computes the likelihoods of all the reads of a region given all its haplotypes, as
+ * {@link PairHMM#computeLog10Likelihoods} does, but schedules the read x haplotype pairs in batches:
+ *
+ * <ul>
+ *     <li>haplotypes are sorted by length and then by bases, so that consecutive haplotypes share long prefixes and
+ *     PairHMM implementations that cache the columns of the shared prefix (see {@link PairHMM#findFirstPositionWhereHaplotypesDiffer})
+ *     recompute as few cells as possible</li>
+ *     <li>reads are sorted by length, and packed into work units of reads of similar length with about
+ *     {@code targetCellsPerWorkUnit} cells each (each read is computed against all the haplotypes)</li>
+ *     <li>work units are dispatched to a fixed pool of threads, each with its own PairHMM</li>
+ * </ul>
+ *
+ * The likelihoods are the same as those computed by {@link PairHMM#computeLog10Likelihoods}. Implementations that
+ * compute all the pairs of a region natively ({@link VectorLoglessPairHMM}) already batch the work, so they are
+ * called with the whole region on the calling thread.
+ *
+ * Statistics on the work done for the last region, and in total, are available from {@link #getLastRegionStats}
+ * and {@link #getTotalStats}.
+ *
+ * Instances are not thread-safe: regions must be submitted one at a time.
+ */
+public final class BatchedPairHMM implements Closeable {
+    private static final Logger logger = LogManager.getLogger(BatchedPairHMM.class);
+
+    public static final long DEFAULT_TARGET_CELLS_PER_WORK_UNIT = 1_000_000L;
+
+    private static final Comparator<byte[]> BASES_COMPARATOR = (bases1, bases2) -> {
+        final int lengthComparison = Integer.compare(bases1.length, bases2.length);
+        if ( lengthComparison != 0 ) {
+            return lengthComparison;
+        }
+        for ( int i = 0; i < bases1.length; i++ ) {
+            if ( bases1[i] != bases2[i] ) {
+                return Byte.compare(bases1[i], bases2[i]);
+            }
+        }
+        return 0;
+    };
+
+    private final long targetCellsPerWorkUnit;
+    private final ExecutorService executorService;
+
+    // one PairHMM per thread; all of them are closed when this is closed
+    private final PairHMM.Implementation implementation;
+    private final ThreadLocal<PairHMM> threadHMM;
+    private final List<PairHMM> hmms = Collections.synchronizedList(new ArrayList<>());
+
+    // whether the PairHMMs are native, determined on the first region
+    private Boolean isNative = null;
+
+    private RegionStats lastRegionStats = new RegionStats(0);
+    private final RegionStats totalStats = new RegionStats(0);
+
+    /**
+     * @param implementation the PairHMM implementation used by each thread
+     * @param numThreads number of threads computing likelihoods. With 1 thread, the calling thread does all the work.
+     * @param targetCellsPerWorkUnit approximate number of PairHMM matrix cells (read length x haplotype length,
+     *                               summed over all pairs) in a work unit. Must be > 0.
+     */
+    public BatchedPairHMM(final PairHMM.Implementation implementation, final int numThreads, final long targetCellsPerWorkUnit) {
+        Utils.nonNull(implementation);
+        Utils.validateArg(numThreads >= 1, "numThreads must be at least 1");
+        Utils.validateArg(targetCellsPerWorkUnit > 0, "targetCellsPerWorkUnit must be > 0");
+        this.implementation = implementation;
+        this.targetCellsPerWorkUnit = targetCellsPerWorkUnit;
+        this.threadHMM = ThreadLocal.withInitial(() -> {
+            final PairHMM hmm = implementation.makeNewHMM();
+            hmms.add(hmm);
+            return hmm;
+        });
+        this.executorService = numThreads == 1 ? null : Executors.newFixedThreadPool(numThreads);
+    }
+
+    /**
+     * Compute the likelihoods of the given reads for all the haplotypes of the likelihood matrix
+     *
+     * @param logLikelihoods where to store the log10 likelihoods, where position [a][r] is reserved for the
+     *                       likelihood of {@code processedReads[r]} conditional to {@code alleles[a]}
+     * @param processedReads reads to analyze
+     * @param gcp gap continuation penalties of each of the processed reads
+     * @return statistics on the work done for this region
+     */
+    public RegionStats computeLog10Likelihoods(final LikelihoodMatrix<Haplotype> logLikelihoods,
+                                               final List<GATKRead> processedReads,
+                                               final Map<GATKRead, byte[]> gcp) {
+        Utils.nonNull(logLikelihoods);
+        Utils.nonNull(processedReads);
+        Utils.nonNull(gcp);
+
+        final List<Haplotype> haplotypes = logLikelihoods.alleles();
+        final RegionStats stats = new RegionStats(1);
+        stats.numReads = processedReads.size();
+        stats.numHaplotypes = haplotypes.size();
+        if ( processedReads.isEmpty() || haplotypes.isEmpty() ) {
+            return recordStats(stats);
+        }
+
+        if ( isNative() ) {
+            computeNatively(threadHMM.get(), logLikelihoods, processedReads, gcp, stats);
+            return recordStats(stats);
+        }
+
+        // haplotypes by length and then by bases, so that consecutive haplotypes of the same length share prefixes
+        final byte[][] haplotypeBases = new byte[haplotypes.size()][];
+        for ( int a = 0; a < haplotypes.size(); a++ ) {
+            haplotypeBases[a] = haplotypes.get(a).getBases();
+        }
+        final Integer[] haplotypeOrder = sortedIndices(haplotypes.size(), (a1, a2) -> BASES_COMPARATOR.compare(haplotypeBases[a1], haplotypeBases[a2]));
+        final long totalHaplotypeLength = Arrays.stream(haplotypeBases).mapToLong(bases -> bases.length).sum();
+        final int maxHaplotypeLength = haplotypeBases[haplotypeOrder[haplotypeOrder.length - 1]].length;
+
+        // longest reads first, so that the largest work units start first
+        final Integer[] readOrder = sortedIndices(processedReads.size(), (r1, r2) -> Integer.compare(processedReads.get(r2).getLength(), processedReads.get(r1).getLength()));
+        final List<WorkUnit> workUnits = new ArrayList<>();
+        WorkUnit workUnit = null;
+        for ( final int readIndex : readOrder ) {
+            final long readCells = processedReads.get(readIndex).getLength() * totalHaplotypeLength;
+            if ( workUnit == null || (workUnit.numCells > 0 && workUnit.numCells + readCells > targetCellsPerWorkUnit) ) {
+                workUnit = new WorkUnit();
+                workUnits.add(workUnit);
+            }
+            workUnit.readIndices.add(readIndex);
+            workUnit.numCells += readCells;
+        }
+        stats.numWorkUnits = workUnits.size();
+
+        // results[a][r] is the likelihood of read r given haplotype a; each work unit writes to its own reads
+        final double[][] results = new double[haplotypes.size()][processedReads.size()];
+        final List<RegionStats> workUnitStats = runWorkUnits(workUnits, unit -> computeWorkUnit(unit, processedReads, gcp, haplotypeBases, haplotypeOrder, maxHaplotypeLength, results));
+        workUnitStats.forEach(stats::addCells);
+
+        for ( int a = 0; a < haplotypes.size(); a++ ) {
+            for ( int r = 0; r < processedReads.size(); r++ ) {
+                logLikelihoods.set(a, r, results[a][r]);
+            }
+        }
+        return recordStats(stats);
+    }
+
+    /**
+     * @return statistics on the work done for the last region, empty if none has been computed yet
+     */
+    public RegionStats getLastRegionStats() {
+        return lastRegionStats;
+    }
+
+    /**
+     * @return statistics on the work done for all the regions so far
+     */
+    public RegionStats getTotalStats() {
+        return totalStats;
+    }
+
+    @Override
+    public void close() {
+        if ( executorService != null ) {
+            executorService.shutdown();
+        }
+        synchronized (hmms) {
+            hmms.forEach(PairHMM::close);
+            hmms.clear();
+        }
+        logger.info("PairHMM batching: " + totalStats);
+    }
+
+    /**
+     * @return true if the PairHMMs compute all the pairs of a region natively. Only the implementations that may be
+     *         native are instantiated on the calling thread to find out; for the others, only the threads computing
+     *         work units get a PairHMM.
+     */
+    private boolean isNative() {
+        if ( isNative == null ) {
+            isNative = (implementation == PairHMM.Implementation.AVX_LOGLESS_CACHING || implementation == PairHMM.Implementation.FASTEST_AVAILABLE)
+                    && threadHMM.get() instanceof VectorLoglessPairHMM;
+        }
+        return isNative;
+    }
+
+    /**
+     * @return the number of PairHMMs created so far, one per thread that has computed likelihoods
+     */
+    int getNumHMMs() {
+        return hmms.size();
+    }
+
+    private RegionStats recordStats(final RegionStats stats) {
+        lastRegionStats = stats;
+        totalStats.add(stats);
+        return stats;
+    }
+
+    private static void computeNatively(final PairHMM hmm, final LikelihoodMatrix<Haplotype> logLikelihoods,
+                                        final List<GATKRead> processedReads, final Map<GATKRead, byte[]> gcp,
+                                        final RegionStats stats) {
+        final List<Haplotype> haplotypes = logLikelihoods.alleles();
+        final int readMaxLength = PairHMM.findMaxReadLength(processedReads);
+        final int haplotypeMaxLength = haplotypes.stream().mapToInt(Haplotype::length).max().getAsInt();
+        hmm.initialize(haplotypes, null, readMaxLength, haplotypeMaxLength);
+        hmm.computeLog10Likelihoods(logLikelihoods, processedReads, gcp);
+
+        final long totalHaplotypeLength = haplotypes.stream().mapToLong(Haplotype::length).sum();
+        stats.numWorkUnits = 1;
+        stats.numPairs = (long)processedReads.size() * haplotypes.size();
+        stats.cellsComputed = processedReads.stream().mapToLong(read -> read.getLength() * totalHaplotypeLength).sum();
+    }
+
+    private List<RegionStats> runWorkUnits(final List<WorkUnit> workUnits, final Function<WorkUnit, RegionStats> compute) {
+        if ( executorService == null || workUnits.size() == 1 ) {
+            final List<RegionStats> stats = new ArrayList<>(workUnits.size());
+            workUnits.forEach(unit -> stats.add(compute.apply(unit)));
+            return stats;
+        }
+
+        final List<Future<RegionStats>> futures = new ArrayList<>(workUnits.size());
+        for ( final WorkUnit unit : workUnits ) {
+            futures.add(executorService.submit(() -> compute.apply(unit)));
+        }
+        final List<RegionStats> stats = new ArrayList<>(workUnits.size());
+        try {
+            for ( final Future<RegionStats> future : futures ) {
+                stats.add(future.get());
+            }
+        } catch (final InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while computing PairHMM likelihoods", e);
+        } catch (final ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new GATKException("Problem computing PairHMM likelihoods", e.getCause());
+        }
+        return stats;
+    }
+
+    /**
+     * Compute the likelihoods of the reads of a work unit for all the haplotypes, on the current thread
+     */
+    private RegionStats computeWorkUnit(final WorkUnit unit, final List<GATKRead> processedReads, final Map<GATKRead, byte[]> gcp,
+                                        final byte[][] haplotypeBases, final Integer[] haplotypeOrder, final int maxHaplotypeLength,
+                                        final double[][] results) {
+        final PairHMM hmm = threadHMM.get();
+        // the first read of a unit is the longest
+        final int maxReadLength = processedReads.get(unit.readIndices.get(0)).getLength();
+        if ( ! hmm.initialized || maxReadLength > hmm.maxReadLength || maxHaplotypeLength > hmm.maxHaplotypeLength ) {
+            hmm.initialize(Math.max(maxReadLength, hmm.initialized ? hmm.maxReadLength : 0),
+                           Math.max(maxHaplotypeLength, hmm.initialized ? hmm.maxHaplotypeLength : 0));
+        }
+        final boolean reusesPrefix = hmm.reusesHaplotypePrefix();
+
+        final RegionStats stats = new RegionStats(0);
+        for ( final int readIndex : unit.readIndices ) {
+            final GATKRead read = processedReads.get(readIndex);
+            final byte[] readBases = read.getBases();
+            final byte[] readQuals = read.getBaseQualities();
+            final byte[] readInsQuals = ReadUtils.getBaseInsertionQualities(read);
+            final byte[] readDelQuals = ReadUtils.getBaseDeletionQualities(read);
+            final byte[] overallGCP = gcp.get(read);
+
+            for ( int h = 0; h < haplotypeOrder.length; h++ ) {
+                final int a = haplotypeOrder[h];
+                final boolean recacheReadValues = h == 0;
+                final byte[] nextHaplotypeBases = h == haplotypeOrder.length - 1 ? null : haplotypeBases[haplotypeOrder[h + 1]];
+                // the column the PairHMM will start from, see PairHMM.computeReadLikelihoodGivenHaplotypeLog10
+                final int hapStartIndex = ! reusesPrefix || recacheReadValues ? 0 : hmm.hapStartIndex;
+
+                results[a][readIndex] = hmm.computeReadLikelihoodGivenHaplotypeLog10(haplotypeBases[a],
+                        readBases, readQuals, readInsQuals, readDelQuals, overallGCP, recacheReadValues, nextHaplotypeBases);
+
+                stats.numPairs++;
+                stats.cellsComputed += (long)readBases.length * (haplotypeBases[a].length - hapStartIndex);
+                stats.cellsSkipped += (long)readBases.length * hapStartIndex;
+            }
+        }
+        return stats;
+    }
+
+    private static Integer[] sortedIndices(final int size, final Comparator<Integer> comparator) {
+        final Integer[] indices = new Integer[size];
+        for ( int i = 0; i < size; i++ ) {
+            indices[i] = i;
+        }
+        Arrays.sort(indices, comparator);
+        return indices;
+    }
+
+    /**
+     * Reads whose likelihoods are computed together, for all the haplotypes, by one thread
+     */
+    private static final class WorkUnit {
+        private final List<Integer> readIndices = new ArrayList<>();
+        private long numCells = 0;
+    }
+
+    /**
+     * Statistics on the work done to compute the likelihoods of one or more regions
+     */
+    public static final class RegionStats {
+        private long numRegions;
+        private long numReads = 0;
+        private long numHaplotypes = 0;
+        private long numPairs = 0;
+        private long numWorkUnits = 0;
+        private long cellsComputed = 0;
+        private long cellsSkipped = 0;
+
+        private RegionStats(final long numRegions) {
+            this.numRegions = numRegions;
+        }
+
+        private void addCells(final RegionStats other) {
+            numPairs += other.numPairs;
+            cellsComputed += other.cellsComputed;
+            cellsSkipped += other.cellsSkipped;
+        }
+
+        private void add(final RegionStats other) {
+            addCells(other);
+            numRegions += other.numRegions;
+            numReads += other.numReads;
+            numHaplotypes += other.numHaplotypes;
+            numWorkUnits += other.numWorkUnits;
+        }
+
+        public long getNumRegions() { return numRegions; }
+
+        public long getNumReads() { return numReads; }
+
+        public long getNumHaplotypes() { return numHaplotypes; }
+
+        /**
+         * @return the number of read x haplotype pairs computed
+         */
+        public long getNumPairs() { return numPairs; }
+
+        public long getNumWorkUnits() { return numWorkUnits; }
+
+        /**
+         * @return the number of PairHMM matrix cells computed
+         */
+        public long getCellsComputed() { return cellsComputed; }
+
+        /**
+         * @return the number of PairHMM matrix cells that did not need to be computed because they were in the prefix
+         *         that a haplotype shares with the previous haplotype computed for the same read
+         */
+        public long getCellsSkipped() { return cellsSkipped; }
+
+        /**
+         * @return the fraction of the cells of all the pairs that did not need to be computed, 0 if there were none
+         */
+        public double getFractionSkipped() {
+            final long totalCells = cellsComputed + cellsSkipped;
+            return totalCells == 0 ? 0.0 : (double)cellsSkipped / totalCells;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d regions, %d reads, %d haplotypes, %d pairs in %d work units, %d cells computed, %d cells skipped (%.1f%%)",
+                    numRegions, numReads, numHaplotypes, numPairs, numWorkUnits, cellsComputed, cellsSkipped, 100.0 * getFractionSkipped());
+        }
+    }
+}
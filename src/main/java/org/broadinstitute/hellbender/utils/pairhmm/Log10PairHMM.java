@@ -44,11 +44,10 @@ public final class Log10PairHMM extends N2MemoryPairHMM {
     public void initialize(final int readMaxLength, final int haplotypeMaxLength ) {
         super.initialize(readMaxLength, haplotypeMaxLength);
 
-        for( int i=0; i < paddedMaxReadLength; i++ ) {
-            Arrays.fill(matchMatrix[i], Double.NEGATIVE_INFINITY);
-            Arrays.fill(insertionMatrix[i], Double.NEGATIVE_INFINITY);
-            Arrays.fill(deletionMatrix[i], Double.NEGATIVE_INFINITY);
-        }
+        final int matrixSize = paddedMaxReadLength * matrixWidth;
+        Arrays.fill(matchMatrix, 0, matrixSize, Double.NEGATIVE_INFINITY);
+        Arrays.fill(insertionMatrix, 0, matrixSize, Double.NEGATIVE_INFINITY);
+        Arrays.fill(deletionMatrix, 0, matrixSize, Double.NEGATIVE_INFINITY);
     }
 
     /**
@@ -78,7 +77,7 @@ public final class Log10PairHMM extends N2MemoryPairHMM {
         for (int i = 1; i < paddedReadLength; i++) {
             // +1 here is because hapStartIndex is 0-based, but our matrices are 1 based
             for (int j = hapStartIndex+1; j < paddedHaplotypeLength; j++) {
-                updateCell(i, j, prior[i][j], transition[i]);
+                updateCell(i, j, prior[i * matrixWidth + j], transition[i]);
             }
         }
 
@@ -91,15 +90,15 @@ public final class Log10PairHMM extends N2MemoryPairHMM {
     private void initializeMatrixValues(final byte[] haplotypeBases) {
         final double initialValue = Math.log10(1.0 / haplotypeBases.length);
         for( int j = 0; j < paddedHaplotypeLength; j++ ) {
-            deletionMatrix[0][j] = initialValue;
+            deletionMatrix[j] = initialValue;
         }
     }
 
     private double finalLog10LikelihoodCalculation() {
-        final int endI = paddedReadLength - 1;
-        double finalLog10SumProbabilities = myLog10SumLog10(new double[]{matchMatrix[endI][1], insertionMatrix[endI][1]});
+        final int endRow = (paddedReadLength - 1) * matrixWidth;
+        double finalLog10SumProbabilities = myLog10SumLog10(new double[]{matchMatrix[endRow + 1], insertionMatrix[endRow + 1]});
         for (int j = 2; j < paddedHaplotypeLength; j++) {
-            finalLog10SumProbabilities = myLog10SumLog10(new double[]{finalLog10SumProbabilities, matchMatrix[endI][j], insertionMatrix[endI][j]});
+            finalLog10SumProbabilities = myLog10SumLog10(new double[]{finalLog10SumProbabilities, matchMatrix[endRow + j], insertionMatrix[endRow + j]});
         }
         return finalLog10SumProbabilities;
     }
@@ -124,7 +123,7 @@ public final class Log10PairHMM extends N2MemoryPairHMM {
             final byte qual = readQuals[i];
             for (int j = startIndex; j < haplotypeBases.length; j++) {
                 final byte y = haplotypeBases[j];
-                prior[i+1][j+1] = ( x == y || x == (byte) 'N' || y == (byte) 'N' ?
+                prior[(i + 1) * matrixWidth + j + 1] = ( x == y || x == (byte) 'N' || y == (byte) 'N' ?
                         QualityUtils.qualToProbLog10(qual) : (QualityUtils.qualToErrorProbLog10(qual) - (doNotUseTristateCorrection ? 0.0 : log10_3)) );
             }
         }
@@ -173,12 +172,14 @@ public final class Log10PairHMM extends N2MemoryPairHMM {
      * @param transition        an array with the six transition relevant to this location
      */
     private void updateCell( final int indI, final int indJ, final double prior, final double[] transition) {
-
-        matchMatrix[indI][indJ] = prior +
-                myLog10SumLog10(new double[]{matchMatrix[indI - 1][indJ - 1] + transition[matchToMatch],
-                        insertionMatrix[indI - 1][indJ - 1] + transition[indelToMatch],
-                        deletionMatrix[indI - 1][indJ - 1] + transition[indelToMatch]});
-        insertionMatrix[indI][indJ] = myLog10SumLog10(new double[]{matchMatrix[indI - 1][indJ] + transition[matchToInsertion], insertionMatrix[indI - 1][indJ] + transition[insertionToInsertion]});
-        deletionMatrix[indI][indJ]  = myLog10SumLog10(new double[]{matchMatrix[indI][indJ - 1] + transition[matchToDeletion], deletionMatrix[indI][indJ - 1] + transition[deletionToDeletion]});
+        final int cell = indI * matrixWidth + indJ;
+        final int up = cell - matrixWidth;
+
+        matchMatrix[cell] = prior +
+                myLog10SumLog10(new double[]{matchMatrix[up - 1] + transition[matchToMatch],
+                        insertionMatrix[up - 1] + transition[indelToMatch],
+                        deletionMatrix[up - 1] + transition[indelToMatch]});
+        insertionMatrix[cell] = myLog10SumLog10(new double[]{matchMatrix[up] + transition[matchToInsertion], insertionMatrix[up] + transition[insertionToInsertion]});
+        deletionMatrix[cell]  = myLog10SumLog10(new double[]{matchMatrix[cell - 1] + transition[matchToDeletion], deletionMatrix[cell - 1] + transition[deletionToDeletion]});
     }
 }
@@ -31,7 +31,7 @@ public class LoglessPairHMM extends N2MemoryPairHMM {
             final double initialValue = INITIAL_CONDITION / haplotypeBases.length;
             // set the initial value (free deletions in the beginning) for the first row in the deletion matrix
             for( int j = 0; j < paddedHaplotypeLength; j++ ) {
-                deletionMatrix[0][j] = initialValue;
+                deletionMatrix[j] = initialValue;
             }
         }
 
@@ -45,24 +45,27 @@ public class LoglessPairHMM extends N2MemoryPairHMM {
         initializePriors(haplotypeBases, readBases, readQuals, hapStartIndex);
 
         for (int i = 1; i < paddedReadLength; i++) {
+            // offsets of cells (i, 0) and (i - 1, 0) in the flat matrices
+            final int row = i * matrixWidth;
+            final int previousRow = row - matrixWidth;
             // +1 here is because hapStartIndex is 0-based, but our matrices are 1 based
             for (int j = hapStartIndex+1; j < paddedHaplotypeLength; j++) {
                 //Inlined the code from updateCell - helps JIT to detect hotspots and produce good native code
-                matchMatrix[i][j] = prior[i][j] * ( matchMatrix[i - 1][j - 1] * transition[i][matchToMatch] +
-                        insertionMatrix[i - 1][j - 1] * transition[i][indelToMatch] +
-                        deletionMatrix[i - 1][j - 1] * transition[i][indelToMatch] );
-                insertionMatrix[i][j] = matchMatrix[i - 1][j] * transition[i][matchToInsertion] + insertionMatrix[i - 1][j] * transition[i][insertionToInsertion];
-                deletionMatrix[i][j] = matchMatrix[i][j - 1] * transition[i][matchToDeletion] + deletionMatrix[i][j - 1] * transition[i][deletionToDeletion];
+                matchMatrix[row + j] = prior[row + j] * ( matchMatrix[previousRow + j - 1] * transition[i][matchToMatch] +
+                        insertionMatrix[previousRow + j - 1] * transition[i][indelToMatch] +
+                        deletionMatrix[previousRow + j - 1] * transition[i][indelToMatch] );
+                insertionMatrix[row + j] = matchMatrix[previousRow + j] * transition[i][matchToInsertion] + insertionMatrix[previousRow + j] * transition[i][insertionToInsertion];
+                deletionMatrix[row + j] = matchMatrix[row + j - 1] * transition[i][matchToDeletion] + deletionMatrix[row + j - 1] * transition[i][deletionToDeletion];
             }
         }
 
         // final log probability is the log10 sum of the last element in the Match and Insertion state arrays
         // this way we ignore all paths that ended in deletions! (huge)
         // but we have to sum all the paths ending in the M and I matrices, because they're no longer extended.
-        final int endI = paddedReadLength - 1;
+        final int endRow = (paddedReadLength - 1) * matrixWidth;
         double finalSumProbabilities = 0.0;
         for (int j = 1; j < paddedHaplotypeLength; j++) {
-            finalSumProbabilities += matchMatrix[endI][j] + insertionMatrix[endI][j];
+            finalSumProbabilities += matchMatrix[endRow + j] + insertionMatrix[endRow + j];
         }
         return Math.log10(finalSumProbabilities) - INITIAL_CONDITION_LOG10;
     }
@@ -84,9 +87,10 @@ public class LoglessPairHMM extends N2MemoryPairHMM {
         for (int i = 0; i < readBases.length; i++) {
             final byte x = readBases[i];
             final byte qual = readQuals[i];
+            final int row = (i + 1) * matrixWidth;
             for (int j = startIndex; j < haplotypeBases.length; j++) {
                 final byte y = haplotypeBases[j];
-                prior[i+1][j+1] = ( x == y || x == (byte) 'N' || y == (byte) 'N' ?
+                prior[row + j + 1] = ( x == y || x == (byte) 'N' || y == (byte) 'N' ?
                         QualityUtils.qualToProb(qual) : (QualityUtils.qualToErrorProb(qual) / (doNotUseTristateCorrection ? 1.0 : TRISTATE_CORRECTION)) );
             }
         }
@@ -1,14 +1,22 @@
 package org.broadinstitute.hellbender.utils.pairhmm;
 
+import java.util.Arrays;
+
 /**
  * Superclass for PairHMM that want to use a full read x haplotype matrix for their match, insertion, and deletion matrix
+ *
+ * The matrices are stored flat, in row-major order: cell (i, j) is at index {@code i * matrixWidth + j}. The storage
+ * only grows: initializing for sizes that fit in the current storage reuses it, rather than allocating new matrices.
  */
 abstract class N2MemoryPairHMM extends PairHMM {
     protected double[][] transition = null; // The transition probabilities cache
-    protected double[][] prior = null;      // The prior probabilities cache
-    protected double[][] matchMatrix = null;
-    protected double[][] insertionMatrix = null;
-    protected double[][] deletionMatrix = null;
+    protected double[] prior = null;        // The prior probabilities cache
+    protected double[] matchMatrix = null;
+    protected double[] insertionMatrix = null;
+    protected double[] deletionMatrix = null;
+
+    // number of columns of the matrices (the padded max haplotype length)
+    protected int matrixWidth;
 
     @Override
     public void doNotUseTristateCorrection() {
@@ -27,12 +35,28 @@ abstract class N2MemoryPairHMM extends PairHMM {
     public void initialize( final int readMaxLength, final int haplotypeMaxLength ) {
         super.initialize(readMaxLength, haplotypeMaxLength);
 
-        matchMatrix = new double[paddedMaxReadLength][paddedMaxHaplotypeLength];
-        insertionMatrix = new double[paddedMaxReadLength][paddedMaxHaplotypeLength];
-        deletionMatrix = new double[paddedMaxReadLength][paddedMaxHaplotypeLength];
+        matrixWidth = paddedMaxHaplotypeLength;
+        final int matrixSize = paddedMaxReadLength * paddedMaxHaplotypeLength;
+        if ( matchMatrix == null || matchMatrix.length < matrixSize ) {
+            matchMatrix = new double[matrixSize];
+            insertionMatrix = new double[matrixSize];
+            deletionMatrix = new double[matrixSize];
+            prior = new double[matrixSize];
+        } else {
+            // the cells of the initial conditions must be cleared of the values of previous computations
+            Arrays.fill(matchMatrix, 0, matrixSize, 0.0);
+            Arrays.fill(insertionMatrix, 0, matrixSize, 0.0);
+            Arrays.fill(deletionMatrix, 0, matrixSize, 0.0);
+        }
 
-        transition = PairHMMModel.createTransitionMatrix(maxReadLength);
-        prior = new double[paddedMaxReadLength][paddedMaxHaplotypeLength];
+        if ( transition == null || transition.length < maxReadLength + 1 ) {
+            transition = PairHMMModel.createTransitionMatrix(maxReadLength);
+        }
+    }
+
+    @Override
+    boolean reusesHaplotypePrefix() {
+        return true;
     }
 
     /**
@@ -49,15 +73,16 @@ abstract class N2MemoryPairHMM extends PairHMM {
      * @param name the name of this matrix
      * @param matrix the matrix of values
      */
-    private void dumpMatrix(final String name, final double[][] matrix) {
+    private void dumpMatrix(final String name, final double[] matrix) {
         System.out.printf("%s%n", name);
-        for ( int i = 0; i < matrix.length; i++) {
+        for ( int i = 0; i < paddedMaxReadLength; i++) {
             System.out.printf("\t%s[%d]", name, i);
-            for ( int j = 0; j < matrix[i].length; j++ ) {
-                if ( Double.isInfinite(matrix[i][j]) )
-                    System.out.printf(" %15s", String.format("%f", matrix[i][j]));
+            for ( int j = 0; j < matrixWidth; j++ ) {
+                final double value = matrix[i * matrixWidth + j];
+                if ( Double.isInfinite(value) )
+                    System.out.printf(" %15s", String.format("%f", value));
                 else
-                    System.out.printf(" % 15.5e", matrix[i][j]);
+                    System.out.printf(" % 15.5e", value);
             }
             System.out.println();
         }
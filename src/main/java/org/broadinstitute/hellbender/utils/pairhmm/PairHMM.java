@@ -50,6 +50,12 @@ public abstract class PairHMM implements Closeable{
             logger.info("Using the non-hardware-accelerated Java LOGLESS_CACHING PairHMM implementation");
             return hmm;
         }),
+        /* Pure Java version of LOGLESS_CACHING computed by anti-diagonals in single precision, falling back to double precision when that underflows */
+        ANTI_DIAGONAL_LOGLESS(() -> {
+            final AntiDiagonalLoglessPairHMM hmm = new AntiDiagonalLoglessPairHMM();
+            logger.info("Using the non-hardware-accelerated Java ANTI_DIAGONAL_LOGLESS PairHMM implementation");
+            return hmm;
+        }),
         /* Optimized AVX implementation of LOGLESS_CACHING called through JNI. Throws if AVX is not available */
         AVX_LOGLESS_CACHING(() -> {
             // Constructor will throw a UserException if AVX is not available
@@ -93,8 +99,9 @@ public abstract class PairHMM implements Closeable{
     protected boolean doNotUseTristateCorrection = false;
     protected void doNotUseTristateCorrection() { doNotUseTristateCorrection = true; }
 
-    //debug array
+    //debug array; grown as needed and reused, only the first numLogLikelihoods values are those of the last computation
     protected double[] mLogLikelihoodArray;
+    protected int numLogLikelihoods;
 
     //profiling information
     protected static Boolean doProfiling = true;
@@ -191,7 +198,7 @@ public abstract class PairHMM implements Closeable{
         final int readCount = processedReads.size();
         final List<Haplotype> alleles = logLikelihoods.alleles();
         final int alleleCount = alleles.size();
-        mLogLikelihoodArray = new double[readCount * alleleCount];
+        ensureLogLikelihoodArrayCapacity(readCount * alleleCount);
         int idx = 0;
         int readIndex = 0;
         for(final GATKRead read : processedReads){
@@ -306,6 +313,14 @@ public abstract class PairHMM implements Closeable{
                                                                            final boolean recacheReadValues,
                                                                            final int nextHapStartIndex);
 
+    /**
+     * @return true if, when the read values are not recached, this implementation only computes the haplotype columns
+     *         after {@link #hapStartIndex}, reusing those of the prefix shared with the previous haplotype
+     */
+    boolean reusesHaplotypePrefix() {
+        return false;
+    }
+
     /**
      * Compute the first position at which two haplotypes differ
      *
@@ -329,11 +344,25 @@ public abstract class PairHMM implements Closeable{
         return Math.min(haplotype1.length, haplotype2.length);
     }
 
+    /**
+     * Make sure {@link #mLogLikelihoodArray} can hold the given number of likelihoods, reusing it if it is large enough
+     *
+     * @param size the number of likelihoods of the current computation
+     */
+    protected void ensureLogLikelihoodArrayCapacity(final int size) {
+        if ( mLogLikelihoodArray == null || mLogLikelihoodArray.length < size ) {
+            mLogLikelihoodArray = new double[size];
+        }
+        numLogLikelihoods = size;
+    }
+
     /**
      * Return the results of the computeLogLikelihoods function
+     *
+     * @return a copy of the likelihoods of the last computation, or null if there has not been one
      */
     public double[] getLogLikelihoodArray() {
-        return mLogLikelihoodArray;
+        return mLogLikelihoodArray == null ? null : Arrays.copyOf(mLogLikelihoodArray, numLogLikelihoods);
     }
 
     /**
@@ -93,7 +93,7 @@ public final class VectorLoglessPairHMM extends LoglessPairHMM {
             ++idx;
         }
 
-        mLogLikelihoodArray = new double[readListSize * numHaplotypes];      //to store results
+        ensureLogLikelihoodArrayCapacity(readListSize * numHaplotypes);      //to store results
         if (doProfiling) {
             threadLocalSetupTimeDiff = (System.nanoTime() - startTime);
         }
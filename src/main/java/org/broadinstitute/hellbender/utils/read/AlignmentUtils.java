@@ -9,6 +9,8 @@ import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
 import org.broadinstitute.hellbender.utils.pileup.PileupElement;
 import org.broadinstitute.hellbender.utils.smithwaterman.SWPairwiseAlignment;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAligner;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAlignment;
 
 import java.util.*;
 
@@ -57,14 +59,58 @@ public final class AlignmentUtils {
                                                        final Haplotype refHaplotype,
                                                        final int referenceStart,
                                                        final boolean isInformative) {
+        return createReadAlignedToRef(originalRead, haplotype, refHaplotype, referenceStart, isInformative,
+                                      SmithWatermanAligner.Implementation.FULL_MATRIX.makeNewAligner());
+    }
+
+    /**
+     * Same as {@link #createReadAlignedToRef(GATKRead, Haplotype, Haplotype, int, boolean)}, aligning the read to the
+     * haplotype with the given aligner
+     *
+     * @param aligner the aligner to use to align the read to the haplotype
+     */
+    public static GATKRead createReadAlignedToRef(final GATKRead originalRead,
+                                                       final Haplotype haplotype,
+                                                       final Haplotype refHaplotype,
+                                                       final int referenceStart,
+                                                       final boolean isInformative,
+                                                       final SmithWatermanAligner aligner) {
+        return createReadAlignedToRef(originalRead, haplotype, refHaplotype, referenceStart, isInformative, aligner, SmithWatermanAligner.NO_BAND);
+    }
+
+    /**
+     * Same as {@link #createReadAlignedToRef(GATKRead, Haplotype, Haplotype, int, boolean, SmithWatermanAligner)}, but
+     * if the read is mapped, the read is expected to align to the haplotype where its current alignment places it, and
+     * the aligner may only consider alignments within {@code bandWidth} bases of that offset
+     * (see {@link SmithWatermanAligner#align(byte[], byte[], SWPairwiseAlignment.Parameters, SWPairwiseAlignment.OverhangStrategy, int, int)}).
+     *
+     * @param bandWidth how far from its current position the read may align to the haplotype, or
+     *                  {@link SmithWatermanAligner#NO_BAND} to consider all alignments
+     */
+    public static GATKRead createReadAlignedToRef(final GATKRead originalRead,
+                                                       final Haplotype haplotype,
+                                                       final Haplotype refHaplotype,
+                                                       final int referenceStart,
+                                                       final boolean isInformative,
+                                                       final SmithWatermanAligner aligner,
+                                                       final int bandWidth) {
         Utils.nonNull(originalRead);
         Utils.nonNull(haplotype);
         Utils.nonNull(refHaplotype);
         Utils.nonNull(haplotype.getCigar());
+        Utils.nonNull(aligner);
         if ( referenceStart < 1 ) { throw new IllegalArgumentException("reference start much be >= 1 but got " + referenceStart); }
+        Utils.validateArg(bandWidth >= 0 || bandWidth == SmithWatermanAligner.NO_BAND, () -> "bandWidth must be >= 0 or NO_BAND but got " + bandWidth);
 
         // compute the smith-waterman alignment of read -> haplotype
-        final SWPairwiseAlignment swPairwiseAlignment = new SWPairwiseAlignment(haplotype.getBases(), originalRead.getBases(), CigarUtils.NEW_SW_PARAMETERS);
+        final SmithWatermanAlignment swPairwiseAlignment;
+        if ( bandWidth == SmithWatermanAligner.NO_BAND || originalRead.isUnmapped() ) {
+            swPairwiseAlignment = aligner.align(haplotype.getBases(), originalRead.getBases(), CigarUtils.NEW_SW_PARAMETERS, SWPairwiseAlignment.OverhangStrategy.SOFTCLIP);
+        } else {
+            final int expectedOffset = originalRead.getSoftStart() - (referenceStart + haplotype.getAlignmentStartHapwrtRef());
+            swPairwiseAlignment = aligner.align(haplotype.getBases(), originalRead.getBases(), CigarUtils.NEW_SW_PARAMETERS, SWPairwiseAlignment.OverhangStrategy.SOFTCLIP,
+                                                expectedOffset, bandWidth);
+        }
         if ( swPairwiseAlignment.getAlignmentStart2wrt1() == -1 ) {
             // sw can fail (reasons not clear) so if it happens just don't realign the read
             return originalRead;
@@ -7,6 +7,8 @@ import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.smithwaterman.SWPairwiseAlignment.Parameters;
 import org.broadinstitute.hellbender.utils.smithwaterman.SWPairwiseAlignment;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAligner;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAlignment;
 
 import java.util.*;
 
@@ -269,8 +271,36 @@ public final class CigarUtils {
      * @return a Cigar mapping this path to refSeq, or null if no reasonable alignment could be found
      */
     public static Cigar calculateCigar(final byte[] refSeq, final byte[] altSeq) {
+        return calculateCigar(refSeq, altSeq, SmithWatermanAligner.Implementation.FULL_MATRIX.makeNewAligner());
+    }
+
+    /**
+     * Calculate the cigar elements for this path against the reference sequence, aligning them with the given aligner
+     *
+     * @param refSeq the reference sequence that all of the bases in this path should align to
+     * @param aligner the aligner to use to align the path to the reference sequence
+     * @return a Cigar mapping this path to refSeq, or null if no reasonable alignment could be found
+     */
+    public static Cigar calculateCigar(final byte[] refSeq, final byte[] altSeq, final SmithWatermanAligner aligner) {
+        return calculateCigar(refSeq, altSeq, aligner, SmithWatermanAligner.NO_BAND);
+    }
+
+    /**
+     * Calculate the cigar elements for this path against the reference sequence, aligning them with the given aligner
+     * and, since the path starts where the reference does, only considering alignments within {@code bandWidth} bases
+     * of that offset (see {@link SmithWatermanAligner#align(byte[], byte[], SWPairwiseAlignment.Parameters, SWPairwiseAlignment.OverhangStrategy, int, int)})
+     *
+     * @param refSeq the reference sequence that all of the bases in this path should align to
+     * @param aligner the aligner to use to align the path to the reference sequence
+     * @param bandWidth how far from the start of the reference the path may align, or
+     *                  {@link SmithWatermanAligner#NO_BAND} to consider all alignments
+     * @return a Cigar mapping this path to refSeq, or null if no reasonable alignment could be found
+     */
+    public static Cigar calculateCigar(final byte[] refSeq, final byte[] altSeq, final SmithWatermanAligner aligner, final int bandWidth) {
         Utils.nonNull(refSeq, "refSeq");
         Utils.nonNull(altSeq, "altSeq");
+        Utils.nonNull(aligner, "aligner");
+        Utils.validateArg(bandWidth >= 0 || bandWidth == SmithWatermanAligner.NO_BAND, () -> "bandWidth must be >= 0 or NO_BAND but got " + bandWidth);
         if ( altSeq.length == 0 ) {
             // horrible edge case from the unit tests, where this path has no bases
             return new Cigar(Arrays.asList(new CigarElement(refSeq.length, CigarOperator.D)));
@@ -288,7 +318,9 @@ public final class CigarUtils {
 
         final String paddedRef = SW_PAD + new String(refSeq) + SW_PAD;
         final String paddedPath = SW_PAD + new String(altSeq) + SW_PAD;
-        final SWPairwiseAlignment alignment = new SWPairwiseAlignment( paddedRef.getBytes(), paddedPath.getBytes(), NEW_SW_PARAMETERS);
+        final SmithWatermanAlignment alignment = bandWidth == SmithWatermanAligner.NO_BAND
+                ? aligner.align(paddedRef.getBytes(), paddedPath.getBytes(), NEW_SW_PARAMETERS, SWPairwiseAlignment.OverhangStrategy.SOFTCLIP)
+                : aligner.align(paddedRef.getBytes(), paddedPath.getBytes(), NEW_SW_PARAMETERS, SWPairwiseAlignment.OverhangStrategy.SOFTCLIP, 0, bandWidth);
 
         if ( isSWFailure(alignment) ) {
             return null;
@@ -311,7 +343,7 @@ public final class CigarUtils {
     /**
      * Make sure that the SW didn't fail in some terrible way, and throw exception if it did
      */
-    private static boolean isSWFailure(final SWPairwiseAlignment alignment) {
+    private static boolean isSWFailure(final SmithWatermanAlignment alignment) {
         // check that the alignment starts at the first base, which it should given the padding
         if ( alignment.getAlignmentStart2wrt1() > 0 ) {
             return true;
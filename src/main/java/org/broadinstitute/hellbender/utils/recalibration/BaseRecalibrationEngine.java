@@ -22,9 +22,9 @@ import org.broadinstitute.hellbender.utils.read.AlignmentUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.ReadUtils;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.Covariate;
-import org.broadinstitute.hellbender.utils.recalibration.covariates.CovariateKeyCache;
-import org.broadinstitute.hellbender.utils.recalibration.covariates.ReadCovariates;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StreamingCovariateEvaluator;
+import org.broadinstitute.hellbender.utils.variant.DbSnpBitSetUtil;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -33,7 +33,6 @@ public final class BaseRecalibrationEngine implements Serializable {
     private static final long serialVersionUID = 1L;
 
     protected static final Logger logger = LogManager.getLogger(BaseRecalibrationEngine.class);
-    private final CovariateKeyCache keyCache;
 
     /*
      * Every call to EventType.values() (or any enum type) creates a new array instance but they are all equal (ie contain identical elements).
@@ -62,6 +61,12 @@ public final class BaseRecalibrationEngine implements Serializable {
 
     private RecalibrationTables recalTables;
 
+    /**
+     * Dense tables in which observations are collected before being moved into recalTables, or null if
+     * observations are collected directly into recalTables
+     */
+    private FlatRecalibrationTables flatRecalTables;
+
     private SAMFileHeader readsHeader;
 
     /**
@@ -74,6 +79,16 @@ public final class BaseRecalibrationEngine implements Serializable {
 
     private long numReadsProcessed = 0L;
 
+    /**
+     * Transformation applied to each read before processing it, built once rather than for every read
+     */
+    private final ReadTransformer readTransform;
+
+    /**
+     * Working storage for processRead, reused from read to read. Not serialized, and allocated on first use.
+     */
+    private transient ReadBuffers buffers;
+
     /**
      * Has finalizeData() been called?
      */
@@ -84,7 +99,12 @@ public final class BaseRecalibrationEngine implements Serializable {
         this.readsHeader = readsHeader;
 
         if (recalArgs.enableBAQ) {
+            if ( recalArgs.BAQ_CACHE_SIZE < 0 ) {
+                throw new UserException.BadArgumentValue("bqsrBAQCacheSize", String.valueOf(recalArgs.BAQ_CACHE_SIZE), "must be >= 0");
+            }
             baq = new BAQ(recalArgs.BAQGOP); // setup the BAQ object with the provided gap open penalty
+            baq.setImplementation(recalArgs.BAQ_IMPLEMENTATION);
+            baq.setResultCacheSize(recalArgs.BAQ_CACHE_SIZE);
         } else {
             baq = null;
         }
@@ -96,8 +116,9 @@ public final class BaseRecalibrationEngine implements Serializable {
             throw new UserException("Number of read groups must be >= 1, but is " + numReadGroups);
         }
         recalTables = new RecalibrationTables(covariates, numReadGroups);
-        keyCache = new CovariateKeyCache();
         cachedEventTypes = recalArgs.computeIndelBQSRTables ? EventType.values() : new EventType[]{EventType.BASE_SUBSTITUTION};
+        flatRecalTables = recalArgs.useFlatRecalibrationTables ? new FlatRecalibrationTables(covariates, numReadGroups, cachedEventTypes.length) : null;
+        readTransform = makeReadTransform();
     }
 
     public void logCovariatesUsed() {
@@ -112,8 +133,30 @@ public final class BaseRecalibrationEngine implements Serializable {
      * whether or not the base matches the reference at this particular location
      */
     public void processRead( final GATKRead originalRead, final ReferenceDataSource refDS, final Iterable<? extends Locatable> knownSites ) {
-        final ReadTransformer transform = makeReadTransform();
-        final GATKRead read = transform.apply(originalRead);
+        Utils.nonNull(knownSites);
+        processRead(originalRead, refDS, knownSites, null);
+    }
+
+    /**
+     * As {@link #processRead(GATKRead, ReferenceDataSource, Iterable)}, but with the known sites of variation given as
+     * a bit set covering the whole genome rather than as the features overlapping the read, so that the bases of the
+     * read to skip are found with bit operations rather than by iterating over decoded features.
+     *
+     * Runs of consecutive known positions are treated as single known sites, which makes no difference to the result
+     * unless the read has an insertion exactly between two abutting known sites.
+     */
+    public void processRead( final GATKRead originalRead, final ReferenceDataSource refDS, final DbSnpBitSetUtil knownSites ) {
+        Utils.nonNull(knownSites);
+        processRead(originalRead, refDS, null, knownSites);
+    }
+
+    /**
+     * @param knownSites features overlapping the read, or null if knownSitesBitSet is given
+     * @param knownSitesBitSet known sites over the whole genome, or null if knownSites is given
+     */
+    private void processRead( final GATKRead originalRead, final ReferenceDataSource refDS,
+                              final Iterable<? extends Locatable> knownSites, final DbSnpBitSetUtil knownSitesBitSet ) {
+        final GATKRead read = readTransform.apply(originalRead);
 
         if( read.isEmpty() ) {
             return; // the whole read was inside the adaptor so skip it
@@ -121,32 +164,63 @@ public final class BaseRecalibrationEngine implements Serializable {
 
         RecalUtils.parsePlatformForRead(read, readsHeader, recalArgs);
 
-        int[] isSNP = new int[read.getLength()];
-        int[] isInsertion = new int[isSNP.length];
-        int[] isDeletion = new int[isSNP.length];
+        final int readLength = read.getLength();
+        if ( buffers == null ) {
+            buffers = new ReadBuffers(covariates);
+        }
+        buffers.prepareForRead(readLength);
+        final int[] isSNP = buffers.isSNP;
+        final int[] isInsertion = buffers.isInsertion;
+        final int[] isDeletion = buffers.isDeletion;
 
         //Note: this function modifies the isSNP, isInsertion and isDeletion arguments so it can't be skipped, BAQ or no BAQ
         final int nErrors = calculateIsSNPOrIndel(read, refDS, isSNP, isInsertion, isDeletion);
 
         // note for efficiency reasons we don't compute the BAQ array unless we actually have
         // some error to marginalize over.  For ILMN data ~85% of reads have no error
-        final byte[] baqArray = (nErrors == 0 || !recalArgs.enableBAQ) ? flatBAQArray(read) : calculateBAQArray(read, refDS);
+        final byte[] baqArray = (nErrors == 0 || !recalArgs.enableBAQ) ? buffers.flatBAQ : calculateBAQArray(read, refDS);
 
         if( baqArray != null ) { // some reads just can't be BAQ'ed
-            final ReadCovariates covariates = RecalUtils.computeCovariates(read, readsHeader, this.covariates, true, keyCache);
-            final boolean[] skip = calculateSkipArray(read, knownSites); // skip known sites of variation as well as low quality and non-regular bases
-            final double[] snpErrors = calculateFractionalErrorArray(isSNP, baqArray);
-            final double[] insertionErrors = calculateFractionalErrorArray(isInsertion, baqArray);
-            final double[] deletionErrors = calculateFractionalErrorArray(isDeletion, baqArray);
+            buffers.covariateEvaluator.setRead(read, readsHeader, true);
+            if ( knownSitesBitSet != null ) {
+                calculateKnownSites(read, knownSitesBitSet, buffers.knownSites);
+            } else {
+                calculateKnownSites(read, knownSites, buffers.knownSites);
+            }
+            calculateSkipArray(read, buffers.skip, buffers.knownSites); // skip known sites of variation as well as low quality and non-regular bases
+            calculateFractionalErrorArray(isSNP, baqArray, readLength, buffers.errors[EventType.BASE_SUBSTITUTION.ordinal()]);
+            calculateFractionalErrorArray(isInsertion, baqArray, readLength, buffers.errors[EventType.BASE_INSERTION.ordinal()]);
+            calculateFractionalErrorArray(isDeletion, baqArray, readLength, buffers.errors[EventType.BASE_DELETION.ordinal()]);
+            fillEventQualities(read, readLength, buffers.quals);
 
-            // aggregate all of the info into our info object, and update the data
-            final ReadRecalibrationInfo info = new ReadRecalibrationInfo(read, covariates, skip, snpErrors, insertionErrors, deletionErrors);
-            updateRecalTablesForRead(info);
+            updateRecalTablesForRead(read, buffers);
         }
 
         numReadsProcessed++;
     }
 
+    /**
+     * Merge the data collected by another engine over a disjoint set of reads (eg., on another thread) into this
+     * engine, as if this engine had processed those reads itself. The other engine must have been created with
+     * the same arguments and read group information as this one. Neither engine may have been finalized.
+     *
+     * @param other engine whose data to merge into this one
+     */
+    public void mergeObservations( final BaseRecalibrationEngine other ) {
+        Utils.nonNull(other);
+        if ( finalized || other.finalized ) {
+            throw new IllegalStateException("Cannot merge engines after FinalizeData() has been called");
+        }
+
+        if ( flatRecalTables != null && other.flatRecalTables != null ) {
+            flatRecalTables.mergeObservations(other.flatRecalTables);
+        } else {
+            other.flushFlatRecalibrationTables();
+        }
+        recalTables.mergeObservations(other.recalTables);
+        numReadsProcessed += other.numReadsProcessed;
+    }
+
     /**
      * Finalize, if appropriate, all derived data in recalibrationTables.
      *
@@ -160,6 +234,7 @@ public final class BaseRecalibrationEngine implements Serializable {
             throw new IllegalStateException("FinalizeData() has already been called");
         }
 
+        flushFlatRecalibrationTables();
         finalizeRecalibrationTables(recalTables);
         finalized = true;
     }
@@ -213,9 +288,32 @@ public final class BaseRecalibrationEngine implements Serializable {
      * Get a possibly not-final recalibration table, to deal with distributed execution.
      */
     public RecalibrationTables getRecalibrationTables() {
+        flushFlatRecalibrationTables();
+        return recalTables;
+    }
+
+    /**
+     * Get a possibly not-final recalibration table in which only the quality score table is guaranteed to hold all
+     * the observations collected so far. Unlike {@link #getRecalibrationTables}, this does not flush the (much larger)
+     * additional covariate tables when collecting data in flat tables, so it is cheap enough to call often during the
+     * traversal, eg. to check whether the statistics have converged.
+     */
+    public RecalibrationTables getRecalibrationTablesWithCurrentQualityScores() {
+        if ( flatRecalTables != null ) {
+            flatRecalTables.flushQualityScoreTableInto(recalTables);
+        }
         return recalTables;
     }
 
+    /**
+     * Move any observations collected in our flat tables into recalTables
+     */
+    private void flushFlatRecalibrationTables() {
+        if ( flatRecalTables != null ) {
+            flatRecalTables.flushInto(recalTables);
+        }
+    }
+
     /**
      * Get the final recalibration tables, after finalizeData() has been called
      *
@@ -241,40 +339,81 @@ public final class BaseRecalibrationEngine implements Serializable {
     }
 
     /**
-     * Update the recalibration statistics using the information in recalInfo
-     * @param recalInfo data structure holding information about the recalibration values for a single read
+     * Update the recalibration statistics for a single read, using the covariates, skip array, error fractions and
+     * qualities computed for the read in our buffers
+     * @param read the read
+     * @param readBuffers buffers holding the per-base information for the read
      */
-    private void updateRecalTablesForRead( final ReadRecalibrationInfo recalInfo ) {
+    private void updateRecalTablesForRead( final GATKRead read, final ReadBuffers readBuffers ) {
         if ( finalized ) {
             throw new IllegalStateException("FinalizeData() has already been called");
         }
 
-        final GATKRead read = recalInfo.getRead();
-        final ReadCovariates readCovariates = recalInfo.getCovariatesValues();
         final NestedIntegerArray<RecalDatum> qualityScoreTable = recalTables.getQualityScoreTable();
+        final boolean[] skip = readBuffers.skip;
 
-        final int nCovariates = covariates.size();
-        final int nSpecialCovariates = covariates.numberOfSpecialCovariates();
+        final StreamingCovariateEvaluator covariateEvaluator = readBuffers.covariateEvaluator;
         final int readLength = read.getLength();
+        if ( flatRecalTables != null ) {
+            updateFlatRecalTablesForRead(readBuffers, readLength);
+            return;
+        }
+        final NestedIntegerArray<RecalDatum> contextTable = recalTables.getTable(covariateEvaluator.getContextCovariateIndex());
+        final NestedIntegerArray<RecalDatum> cycleTable = recalTables.getTable(covariateEvaluator.getCycleCovariateIndex());
+        final int key0 = covariateEvaluator.getReadGroupKey();
         for( int offset = 0; offset < readLength; offset++ ) {
-            if( ! recalInfo.skip(offset) ) {
+            if( ! skip[offset] ) {
                 for (int idx = 0; idx < cachedEventTypes.length; idx++) { //Note: we loop explicitly over cached values for speed
-                    final EventType eventType = cachedEventTypes[idx];
-                    final int[] keys = readCovariates.getKeySet(offset, eventType);
-                    final int eventIndex = eventType.ordinal();
-                    final byte qual = recalInfo.getQual(eventType, offset);
-                    final double isError = recalInfo.getErrorFraction(eventType, offset);
+                    final int eventIndex = cachedEventTypes[idx].ordinal();
+                    final byte qual = readBuffers.quals[eventIndex][offset];
+                    final double isError = readBuffers.errors[eventIndex][offset];
 
-                    final int key0 = keys[0];
-                    final int key1 = keys[1];
+                    // the quality score covariate key is the reported quality itself
+                    final int key1 = qual;
 
                     RecalUtils.incrementDatumOrPutIfNecessary3keys(qualityScoreTable, qual, isError, key0, key1, eventIndex);
 
-                    for (int i = nSpecialCovariates; i < nCovariates; i++) {
-                        final int keyi = keys[i];
-                        if (keyi >= 0) {
-                            RecalUtils.incrementDatumOrPutIfNecessary4keys(recalTables.getTable(i), qual, isError, key0, key1, keyi, eventIndex);
-                        }
+                    final int contextKey = covariateEvaluator.getContextKey(offset, eventIndex);
+                    if (contextKey >= 0) {
+                        RecalUtils.incrementDatumOrPutIfNecessary4keys(contextTable, qual, isError, key0, key1, contextKey, eventIndex);
+                    }
+                    final int cycleKey = covariateEvaluator.getCycleKey(offset, eventIndex);
+                    if (cycleKey >= 0) {
+                        RecalUtils.incrementDatumOrPutIfNecessary4keys(cycleTable, qual, isError, key0, key1, cycleKey, eventIndex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Version of {@link #updateRecalTablesForRead} that collects the observations in our flat tables
+     */
+    private void updateFlatRecalTablesForRead( final ReadBuffers readBuffers, final int readLength ) {
+        final boolean[] skip = readBuffers.skip;
+        final StreamingCovariateEvaluator covariateEvaluator = readBuffers.covariateEvaluator;
+        final int nSpecialCovariates = covariates.numberOfSpecialCovariates();
+        final int contextTableIndex = covariateEvaluator.getContextCovariateIndex() - nSpecialCovariates;
+        final int cycleTableIndex = covariateEvaluator.getCycleCovariateIndex() - nSpecialCovariates;
+        final int key0 = covariateEvaluator.getReadGroupKey();
+        for( int offset = 0; offset < readLength; offset++ ) {
+            if( ! skip[offset] ) {
+                for (int idx = 0; idx < cachedEventTypes.length; idx++) {
+                    final int eventIndex = cachedEventTypes[idx].ordinal();
+                    final double isError = readBuffers.errors[eventIndex][offset];
+
+                    // the quality score covariate key is the reported quality itself
+                    final int key1 = readBuffers.quals[eventIndex][offset];
+
+                    flatRecalTables.incrementQualityScoreTable(key0, key1, eventIndex, isError);
+
+                    final int contextKey = covariateEvaluator.getContextKey(offset, eventIndex);
+                    if (contextKey >= 0) {
+                        flatRecalTables.incrementAdditionalTable(contextTableIndex, key0, key1, contextKey, eventIndex, isError);
+                    }
+                    final int cycleKey = covariateEvaluator.getCycleKey(offset, eventIndex);
+                    if (cycleKey >= 0) {
+                        flatRecalTables.incrementAdditionalTable(cycleTableIndex, key0, key1, cycleKey, eventIndex, isError);
                     }
                 }
             }
@@ -323,44 +462,115 @@ public final class BaseRecalibrationEngine implements Serializable {
         return read;
     }
 
-    private boolean[] calculateSkipArray( final GATKRead read, final Iterable<? extends Locatable> knownSites ) {
+    /**
+     * Fill the first read.getLength() entries of skip with whether each base of the read is to be skipped
+     *
+     * @param knownSitesArray the known sites of the read, as computed by calculateKnownSites
+     */
+    private void calculateSkipArray( final GATKRead read, final boolean[] skip, final boolean[] knownSitesArray ) {
         final int readLength = read.getLength();
-        final boolean[] skip = new boolean[readLength];
-        final boolean[] knownSitesArray = calculateKnownSites(read, knownSites);
         for(int i = 0; i < readLength; i++ ) {
             skip[i] = !BaseUtils.isRegularBase(read.getBase(i)) || read.getBaseQuality(i) < recalArgs.PRESERVE_QSCORES_LESS_THAN || knownSitesArray[i];
         }
-        return skip;
     }
 
-    protected boolean[] calculateKnownSites( final GATKRead read, final Iterable<? extends Locatable> knownSites ) {
+    /**
+     * Fill the first read.getLength() entries of knownSitesArray with whether each base of the read overlaps a known site
+     */
+    protected void calculateKnownSites( final GATKRead read, final Iterable<? extends Locatable> knownSites, final boolean[] knownSitesArray ) {
         final int readLength = read.getLength();
-        final boolean[] knownSitesArray = new boolean[readLength];//initializes to all false
+        Arrays.fill(knownSitesArray, 0, readLength, false);
         final Cigar cigar = read.getCigar();
         final int softStart = ReadUtils.getSoftStart(read);
         final int softEnd = ReadUtils.getSoftEnd(read);
         for ( final Locatable knownSite : knownSites ) {
-            if (knownSite.getEnd() < softStart || knownSite.getStart() > softEnd) {
-                // knownSite is outside clipping window for the read, ignore
-                continue;
-            }
-            int featureStartOnRead = ReadUtils.getReadCoordinateForReferenceCoordinate(softStart, cigar, knownSite.getStart(), ReadUtils.ClippingTail.LEFT_TAIL, true);
-            if( featureStartOnRead == ReadUtils.CLIPPING_GOAL_NOT_REACHED ) {
-                featureStartOnRead = 0;
-            }
+            markKnownSite(knownSite.getStart(), knownSite.getEnd(), readLength, cigar, softStart, softEnd, knownSitesArray);
+        }
+    }
 
-            int featureEndOnRead = ReadUtils.getReadCoordinateForReferenceCoordinate(softStart, cigar, knownSite.getEnd(), ReadUtils.ClippingTail.LEFT_TAIL, true);
-            if( featureEndOnRead == ReadUtils.CLIPPING_GOAL_NOT_REACHED ) {
-                featureEndOnRead = readLength;
-            }
+    /**
+     * Fill the first read.getLength() entries of knownSitesArray with whether each base of the read overlaps a known
+     * site, considering as known sites the runs of consecutive known positions that overlap the read's alignment
+     * (just as a FeatureContext holds the features overlapping the read's alignment).
+     */
+    protected void calculateKnownSites( final GATKRead read, final DbSnpBitSetUtil knownSites, final boolean[] knownSitesArray ) {
+        final int readLength = read.getLength();
+        Arrays.fill(knownSitesArray, 0, readLength, false);
+        final String contig = read.getContig();
+        final int readStart = read.getStart();
+        final int readEnd = read.getEnd();
+        int runStart = knownSites.isDbSnpSite(contig, readStart) ? knownSites.previousNonSitePosition(contig, readStart) + 1
+                                                                 : knownSites.nextSitePosition(contig, readStart);
+        if ( runStart == -1 || runStart > readEnd ) {
+            return; // the common case: no known sites overlap the read
+        }
+
+        final Cigar cigar = read.getCigar();
+        final int softStart = ReadUtils.getSoftStart(read);
+        final int softEnd = ReadUtils.getSoftEnd(read);
+        while ( runStart != -1 && runStart <= readEnd ) {
+            final int runEnd = knownSites.nextNonSitePosition(contig, runStart) - 1;
+            markKnownSite(runStart, runEnd, readLength, cigar, softStart, softEnd, knownSitesArray);
+            runStart = knownSites.nextSitePosition(contig, runEnd + 1);
+        }
+    }
+
+    /**
+     * Mark the bases of the read overlapping the known site spanning the reference positions siteStart to siteEnd in knownSitesArray
+     */
+    private static void markKnownSite( final int siteStart, final int siteEnd, final int readLength, final Cigar cigar,
+                                       final int softStart, final int softEnd, final boolean[] knownSitesArray ) {
+        if (siteEnd < softStart || siteStart > softEnd) {
+            // knownSite is outside clipping window for the read, ignore
+            return;
+        }
+        int featureStartOnRead = ReadUtils.getReadCoordinateForReferenceCoordinate(softStart, cigar, siteStart, ReadUtils.ClippingTail.LEFT_TAIL, true);
+        if( featureStartOnRead == ReadUtils.CLIPPING_GOAL_NOT_REACHED ) {
+            featureStartOnRead = 0;
+        }
 
-            if( featureStartOnRead > readLength ) {
-                featureStartOnRead = featureEndOnRead = readLength;
+        int featureEndOnRead = ReadUtils.getReadCoordinateForReferenceCoordinate(softStart, cigar, siteEnd, ReadUtils.ClippingTail.LEFT_TAIL, true);
+        if( featureEndOnRead == ReadUtils.CLIPPING_GOAL_NOT_REACHED ) {
+            featureEndOnRead = readLength;
+        }
+
+        if( featureStartOnRead > readLength ) {
+            featureStartOnRead = featureEndOnRead = readLength;
+        }
+
+        Arrays.fill(knownSitesArray, Math.max(0, featureStartOnRead), Math.min(readLength, featureEndOnRead + 1), true);
+    }
+
+    /**
+     * Fill quals[eventType.ordinal()] with the qualities of the read for each event type we are recalibrating
+     */
+    private void fillEventQualities( final GATKRead read, final int readLength, final byte[][] quals ) {
+        for ( final EventType eventType : cachedEventTypes ) {
+            final byte[] eventQuals = quals[eventType.ordinal()];
+            switch ( eventType ) {
+                case BASE_SUBSTITUTION:
+                    for ( int i = 0; i < readLength; i++ ) {
+                        eventQuals[i] = read.getBaseQuality(i);
+                    }
+                    break;
+                case BASE_INSERTION:
+                    copyOrDefaultQuals(ReadUtils.getExistingBaseInsertionQualities(read), eventQuals, readLength);
+                    break;
+                case BASE_DELETION:
+                    copyOrDefaultQuals(ReadUtils.getExistingBaseDeletionQualities(read), eventQuals, readLength);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event type " + eventType);
             }
+        }
+    }
 
-            Arrays.fill(knownSitesArray, Math.max(0, featureStartOnRead), Math.min(readLength, featureEndOnRead + 1), true);
+    private static void copyOrDefaultQuals( final byte[] existingQuals, final byte[] quals, final int readLength ) {
+        if ( existingQuals == null ) {
+            Arrays.fill(quals, 0, readLength, ReadUtils.DEFAULT_INSERTION_DELETION_QUAL);
+        } else {
+            System.arraycopy(existingQuals, 0, quals, 0, readLength);
         }
-        return knownSitesArray;
     }
 
     /**
@@ -369,13 +579,14 @@ public final class BaseRecalibrationEngine implements Serializable {
      *
      * @param read read to inspect
      * @param ref source of reference bses
-     * @param snp storage for snp events (must be of length read.getBases().length and initialized to all 0's)
-     * @param isIns storage for insertion events (must be of length read.getBases().length and initialized to all 0's)
-     * @param isDel storage for deletion events (must be of length read.getBases().length and initialized to all 0's)
+     * @param snp storage for snp events (must be at least read.getBases().length long, with the first read.getBases().length entries initialized to 0's)
+     * @param isIns storage for insertion events (must be at least read.getBases().length long, with the first read.getBases().length entries initialized to 0's)
+     * @param isDel storage for deletion events (must be at least read.getBases().length long, with the first read.getBases().length entries initialized to 0's)
      * @return the total number of SNP and indel events
      */
     protected static int calculateIsSNPOrIndel(final GATKRead read, final ReferenceDataSource ref, int[] snp, int[] isIns, int[] isDel) {
         final byte[] refBases = ref.queryAndPrefetch(read.getContig(), read.getStart(), read.getEnd()).getBases();
+        final int readLength = read.getLength();
         int readPos = 0;
         int refPos = 0;
         int nEvents = 0;
@@ -396,7 +607,7 @@ public final class BaseRecalibrationEngine implements Serializable {
                     break;
                 case D: {
                     final int index = (read.isReverseStrand() ? readPos : readPos - 1);
-                    updateIndel(isDel, index);
+                    updateIndel(isDel, index, readLength);
                     refPos += elementLength;
                     break;
                 }
@@ -406,11 +617,11 @@ public final class BaseRecalibrationEngine implements Serializable {
                 case I: {
                     final boolean forwardStrandRead = !read.isReverseStrand();
                     if (forwardStrandRead) {
-                        updateIndel(isIns, readPos - 1);
+                        updateIndel(isIns, readPos - 1, readLength);
                     }
                     readPos += elementLength;
                     if (!forwardStrandRead) {
-                        updateIndel(isIns, readPos);
+                        updateIndel(isIns, readPos, readLength);
                     }
                     break;
                 }
@@ -425,12 +636,14 @@ public final class BaseRecalibrationEngine implements Serializable {
             }
         }
         // we don't sum those as we go because they might set the same place to 1 twice
-        nEvents += MathUtils.sum(isDel) + MathUtils.sum(isIns);
+        for (int i = 0; i < readLength; i++) {
+            nEvents += isDel[i] + isIns[i];
+        }
         return nEvents;
     }
 
-    private static void updateIndel(final int[] indel, final int index) {
-        if (index >= 0 && index < indel.length) {
+    private static void updateIndel(final int[] indel, final int index, final int readLength) {
+        if (index >= 0 && index < readLength) {
             // protect ourselves from events at the start or end of the read (1D3M or 3M1D)
             indel[index] = 1;
         }
@@ -441,13 +654,26 @@ public final class BaseRecalibrationEngine implements Serializable {
             throw new GATKException("Array length mismatch detected. Malformed read?");
         }
 
+        final double[] fractionalErrors = new double[baqArray.length];
+        calculateFractionalErrorArray(errorArray, baqArray, baqArray.length, fractionalErrors);
+        return fractionalErrors;
+    }
+
+    /**
+     * Version of {@link #calculateFractionalErrorArray(int[], byte[])} that considers only the first length entries
+     * of its (possibly longer) arrays, and stores the results in the first length entries of fractionalErrors
+     */
+    private static void calculateFractionalErrorArray( final int[] errorArray, final byte[] baqArray, final int length, final double[] fractionalErrors ) {
+        if ( errorArray.length < length || baqArray.length < length || fractionalErrors.length < length ) {
+            throw new GATKException("Array length mismatch detected. Malformed read?");
+        }
+
         final int BLOCK_START_UNSET = -1;
 
-        final double[] fractionalErrors = new double[baqArray.length];
         boolean inBlock = false;
         int blockStartIndex = BLOCK_START_UNSET;
         int i;
-        for( i = 0; i < fractionalErrors.length; i++ ) {
+        for( i = 0; i < length; i++ ) {
             if( baqArray[i] == NO_BAQ_UNCERTAINTY ) {
                 if( !inBlock ) {
                     fractionalErrors[i] = (double) errorArray[i];
@@ -464,10 +690,6 @@ public final class BaseRecalibrationEngine implements Serializable {
         if( inBlock ) {
             calculateAndStoreErrorsInBlock(i-1, blockStartIndex, errorArray, fractionalErrors);
         }
-        if( fractionalErrors.length != errorArray.length ) {
-            throw new GATKException("Output array length mismatch detected. Malformed read?");
-        }
-        return fractionalErrors;
     }
 
     private static void calculateAndStoreErrorsInBlock( final int i,
@@ -483,18 +705,6 @@ public final class BaseRecalibrationEngine implements Serializable {
         }
     }
 
-    /**
-     * Create a BAQ style array that indicates no alignment uncertainty
-     * @param read the read for which we want a BAQ array
-     * @return a BAQ-style non-null byte[] counting NO_BAQ_UNCERTAINTY values
-     * // TODO -- could be optimized avoiding this function entirely by using this inline if the calculation code above
-     */
-    protected static byte[] flatBAQArray(final GATKRead read) {
-        final byte[] baq = new byte[read.getLength()];
-        Arrays.fill(baq, NO_BAQ_UNCERTAINTY);
-        return baq;
-    }
-
     /**
      * Compute an actual BAQ array for read, based on its quals and the reference sequence
      * @param read the read to BAQ
@@ -504,4 +714,56 @@ public final class BaseRecalibrationEngine implements Serializable {
         baq.baqRead(read, refDS, BAQ.CalculationMode.RECALCULATE, BAQ.QualityMode.ADD_TAG);
         return BAQ.getBAQTag(read);
     }
-}
\ No newline at end of file
+
+    /**
+     * Working storage for the per-base information computed for each read in processRead, reused from read to read
+     * so that processing a read does not allocate a new set of arrays. The arrays grow to fit the longest read seen
+     * so far, so only the first read.getLength() entries of each are meaningful for the current read.
+     */
+    private static final class ReadBuffers {
+        /**
+         * Covariate keys of the bases of the current read
+         */
+        private final StreamingCovariateEvaluator covariateEvaluator;
+
+        private int[] isSNP = new int[0];
+        private int[] isInsertion = new int[0];
+        private int[] isDeletion = new int[0];
+        private boolean[] skip = new boolean[0];
+        private boolean[] knownSites = new boolean[0];
+        private byte[] flatBAQ = new byte[0];
+
+        /**
+         * Fractional errors and qualities of each base, indexed by event type ordinal
+         */
+        private final double[][] errors = new double[EventType.values().length][0];
+        private final byte[][] quals = new byte[EventType.values().length][0];
+
+        private ReadBuffers( final StandardCovariateList covariates ) {
+            covariateEvaluator = new StreamingCovariateEvaluator(covariates);
+        }
+
+        /**
+         * Make sure the buffers can hold a read of the given length, and reset the error counts for a new read
+         */
+        private void prepareForRead( final int readLength ) {
+            if ( readLength > isSNP.length ) {
+                isSNP = new int[readLength];
+                isInsertion = new int[readLength];
+                isDeletion = new int[readLength];
+                skip = new boolean[readLength];
+                knownSites = new boolean[readLength];
+                flatBAQ = new byte[readLength];
+                Arrays.fill(flatBAQ, NO_BAQ_UNCERTAINTY);
+                for ( int i = 0; i < errors.length; i++ ) {
+                    errors[i] = new double[readLength];
+                    quals[i] = new byte[readLength];
+                }
+            } else {
+                Arrays.fill(isSNP, 0, readLength, 0);
+                Arrays.fill(isInsertion, 0, readLength, 0);
+                Arrays.fill(isDeletion, 0, readLength, 0);
+            }
+        }
+    }
+}
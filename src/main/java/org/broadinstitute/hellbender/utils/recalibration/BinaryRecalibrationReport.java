@@ -0,0 +1,307 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.ReadGroupCovariate;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+import org.broadinstitute.hellbender.utils.report.GATKReportTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Reads and writes recalibration reports in a compact binary format, as an alternative to the text GATKReport
+ * format written by {@link RecalUtils#outputRecalibrationReport}.
+ *
+ * A binary report holds exactly the information of a text report - the argument table, the quantization table and
+ * the recalibration tables - but stores the tables as the raw keys and counts of each {@link RecalDatum}, so that
+ * loading it requires no text parsing and no intermediate {@link GATKReportTable}s: the file is read with a single
+ * bulk read and decoded directly into {@link RecalibrationTables}. The read group names are stored at the start of
+ * the file, so the read groups of a report can be found (eg., when gathering) without decoding the rest of it.
+ *
+ * Layout (all numbers big-endian, strings as an int length followed by that many UTF-8 bytes):
+ * <pre>
+ *   magic "GATKBQSR", int format version
+ *   int number of read groups, read group names in key order
+ *   int number of arguments, (argument name, value) string pairs
+ *   int number of qualities, (byte quantized quality, long count) for each quality
+ *   int number of tables, and for each table:
+ *     int number of keys per entry, int number of entries,
+ *     for each entry: the keys as ints, long observations, double errors, double estimated reported quality
+ * </pre>
+ * Entry keys are those of {@link RecalibrationTables}, except that read group keys are indices into the read group
+ * names of the file.
+ */
+public final class BinaryRecalibrationReport {
+
+    private static final byte[] MAGIC = "GATKBQSR".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String ARGUMENT_TABLE_DESCRIPTION = "Recalibration argument collection values used in this run";
+
+    private BinaryRecalibrationReport() {}
+
+    /**
+     * @return true if the given file is a binary recalibration report (as opposed to a text GATKReport)
+     */
+    public static boolean isBinaryReport(final File file) {
+        Utils.nonNull(file);
+        try ( final InputStream in = BucketUtils.openFile(file.getPath(), null) ) {
+            return hasMagic(in);
+        } catch ( final IOException e ) {
+            throw new UserException.CouldNotReadInputFile(file, e);
+        }
+    }
+
+    /**
+     * Check whether a stream starts with the magic bytes of a binary report. Reads up to the length of the magic
+     * from the stream: callers that need to read the stream afterwards should mark and reset it.
+     */
+    static boolean hasMagic(final InputStream in) throws IOException {
+        final byte[] start = new byte[MAGIC.length];
+        int read = 0;
+        while ( read < start.length ) {
+            final int n = in.read(start, read, start.length - read);
+            if ( n < 0 ) {
+                return false;
+            }
+            read += n;
+        }
+        return Arrays.equals(start, MAGIC);
+    }
+
+    /**
+     * Number of bytes needed to recognize a binary report by {@link #hasMagic}
+     */
+    static int magicLength() {
+        return MAGIC.length;
+    }
+
+    /**
+     * Write a recalibration report to a file in binary format.
+     */
+    public static void write(final RecalibrationReport report, final File output) {
+        Utils.nonNull(report);
+        Utils.nonNull(output);
+        try ( final OutputStream out = new FileOutputStream(output) ) {
+            write(out, report.getArgumentTable(), report.getQuantizationInfo(), report.getRecalibrationTables(), report.getCovariates());
+        } catch ( final IOException e ) {
+            throw new UserException.CouldNotCreateOutputFile(output, e);
+        }
+    }
+
+    /**
+     * Write recalibration tables to a stream in binary format.
+     *
+     * @param out the stream to write to (not closed by this method)
+     * @param argumentTable the argument table of the report, eg., from {@link RecalibrationArgumentCollection#generateReportTable}
+     * @param quantizationInfo quantization of the report
+     * @param recalibrationTables the recalibration tables
+     * @param covariates the covariates of the recalibration tables
+     */
+    public static void write(final OutputStream out, final GATKReportTable argumentTable, final QuantizationInfo quantizationInfo,
+                             final RecalibrationTables recalibrationTables, final StandardCovariateList covariates) throws IOException {
+        Utils.nonNull(out);
+        Utils.nonNull(argumentTable);
+        Utils.nonNull(quantizationInfo);
+        Utils.nonNull(recalibrationTables);
+        Utils.nonNull(covariates);
+
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.write(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+
+        final ReadGroupCovariate readGroupCovariate = covariates.getReadGroupCovariate();
+        final int numReadGroups = readGroupCovariate.maximumKeyValue() + 1;
+        data.writeInt(numReadGroups);
+        for ( int key = 0; key < numReadGroups; key++ ) {
+            writeString(data, readGroupCovariate.formatKey(key));
+        }
+
+        data.writeInt(argumentTable.getNumRows());
+        for ( int row = 0; row < argumentTable.getNumRows(); row++ ) {
+            writeString(data, String.valueOf(argumentTable.get(row, RecalUtils.ARGUMENT_COLUMN_NAME)));
+            writeString(data, String.valueOf(argumentTable.get(row, RecalUtils.ARGUMENT_VALUE_COLUMN_NAME)));
+        }
+
+        final List<Byte> quantizedQuals = quantizationInfo.getQuantizedQuals();
+        final List<Long> qualCounts = quantizationInfo.getEmpiricalQualCounts();
+        data.writeInt(quantizedQuals.size());
+        for ( int qual = 0; qual < quantizedQuals.size(); qual++ ) {
+            data.writeByte(quantizedQuals.get(qual));
+            data.writeLong(qualCounts.get(qual));
+        }
+
+        data.writeInt(recalibrationTables.numTables());
+        for ( final NestedIntegerArray<RecalDatum> table : recalibrationTables ) {
+            final List<NestedIntegerArray.Leaf<RecalDatum>> leaves = table.getAllLeaves();
+            data.writeInt(table.getDimensions().length);
+            data.writeInt(leaves.size());
+            for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : leaves ) {
+                for ( final int key : leaf.keys ) {
+                    data.writeInt(key);
+                }
+                data.writeLong(leaf.value.getNumObservations());
+                data.writeDouble(leaf.value.getNumMismatches());
+                data.writeDouble(leaf.value.getEstimatedQReported());
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Read the read groups of a binary report, without reading the rest of the file.
+     */
+    public static SortedSet<String> readReadGroups(final File file) {
+        Utils.nonNull(file);
+        try ( final DataInputStream in = new DataInputStream(new BufferedInputStream(BucketUtils.openFile(file.getPath(), null))) ) {
+            if ( !hasMagic(in) ) {
+                throw new UserException.MalformedFile(file, "not a binary recalibration report");
+            }
+            checkVersion(in.readInt());
+            final int numReadGroups = in.readInt();
+            final SortedSet<String> readGroups = new TreeSet<>();
+            for ( int i = 0; i < numReadGroups; i++ ) {
+                final byte[] name = new byte[in.readInt()];
+                in.readFully(name);
+                readGroups.add(new String(name, StandardCharsets.UTF_8));
+            }
+            return readGroups;
+        } catch ( final IOException e ) {
+            throw new UserException.CouldNotReadInputFile(file, e);
+        }
+    }
+
+    /**
+     * Decode a binary report.
+     *
+     * @param bytes the entire contents of a binary report
+     * @param allReadGroups the read groups of the resulting report, which must include all those of the binary
+     *                      report; if null, the read groups of the binary report
+     * @return the decoded report
+     */
+    static RecalibrationReport read(final byte[] bytes, final SortedSet<String> allReadGroups) {
+        Utils.nonNull(bytes);
+        try {
+            return read(ByteBuffer.wrap(bytes), allReadGroups);
+        } catch ( final BufferUnderflowException e ) {
+            throw new UserException.MalformedFile("binary recalibration report is truncated");
+        }
+    }
+
+    private static RecalibrationReport read(final ByteBuffer buffer, final SortedSet<String> allReadGroups) {
+        final byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if ( !Arrays.equals(magic, MAGIC) ) {
+            throw new UserException.MalformedFile("not a binary recalibration report");
+        }
+        checkVersion(buffer.getInt());
+
+        final int numReadGroups = buffer.getInt();
+        final List<String> readGroups = new ArrayList<>(numReadGroups);
+        for ( int i = 0; i < numReadGroups; i++ ) {
+            readGroups.add(readString(buffer));
+        }
+        final SortedSet<String> reportReadGroups = allReadGroups != null ? allReadGroups : new TreeSet<>(readGroups);
+
+        final GATKReportTable argumentTable = new GATKReportTable(RecalUtils.ARGUMENT_REPORT_TABLE_TITLE, ARGUMENT_TABLE_DESCRIPTION, 2, GATKReportTable.Sorting.SORT_BY_COLUMN);
+        argumentTable.addColumn(RecalUtils.ARGUMENT_COLUMN_NAME, "%s");
+        argumentTable.addColumn(RecalUtils.ARGUMENT_VALUE_COLUMN_NAME, "");
+        final int numArguments = buffer.getInt();
+        for ( int i = 0; i < numArguments; i++ ) {
+            final String argument = readString(buffer);
+            argumentTable.addRowID(argument, true);
+            argumentTable.set(argument, RecalUtils.ARGUMENT_VALUE_COLUMN_NAME, readString(buffer));
+        }
+
+        final int numQuals = buffer.getInt();
+        final List<Byte> quantizedQuals = new ArrayList<>(numQuals);
+        final List<Long> qualCounts = new ArrayList<>(numQuals);
+        for ( int i = 0; i < numQuals; i++ ) {
+            quantizedQuals.add(buffer.get());
+            qualCounts.add(buffer.getLong());
+        }
+
+        final RecalibrationReport report = new RecalibrationReport(argumentTable, new QuantizationInfo(quantizedQuals, qualCounts), reportReadGroups);
+
+        // map the read group keys of the file to those of the report
+        final int[] readGroupKeys = new int[numReadGroups];
+        for ( int i = 0; i < numReadGroups; i++ ) {
+            if ( !reportReadGroups.contains(readGroups.get(i)) ) {
+                throw new GATKException("read group " + readGroups.get(i) + " of the binary recalibration report is not among the read groups " + reportReadGroups);
+            }
+            readGroupKeys[i] = report.getCovariates().getReadGroupCovariate().keyFromValue(readGroups.get(i));
+        }
+
+        final RecalibrationTables recalibrationTables = report.getRecalibrationTables();
+        final int numTables = buffer.getInt();
+        if ( numTables != recalibrationTables.numTables() ) {
+            throw new UserException.MalformedFile("binary recalibration report has " + numTables + " tables but its covariates require " + recalibrationTables.numTables());
+        }
+        for ( final NestedIntegerArray<RecalDatum> table : recalibrationTables ) {
+            final int[] dimensions = table.getDimensions();
+            final int numKeys = buffer.getInt();
+            if ( numKeys != dimensions.length ) {
+                throw new UserException.MalformedFile("binary recalibration report has a table with " + numKeys + " keys per entry where " + dimensions.length + " were expected");
+            }
+            final int numEntries = buffer.getInt();
+            final int[] keys = new int[numKeys];
+            for ( int entry = 0; entry < numEntries; entry++ ) {
+                for ( int i = 0; i < numKeys; i++ ) {
+                    keys[i] = buffer.getInt();
+                }
+                if ( keys[0] < 0 || keys[0] >= numReadGroups ) {
+                    throw new UserException.MalformedFile("binary recalibration report has an invalid read group key " + keys[0]);
+                }
+                keys[0] = readGroupKeys[keys[0]];
+                for ( int i = 1; i < numKeys; i++ ) {
+                    if ( keys[i] < 0 || keys[i] >= dimensions[i] ) {
+                        throw new UserException.MalformedFile("binary recalibration report has an invalid key " + keys[i] + " for a table of dimensions " + Arrays.toString(dimensions));
+                    }
+                }
+                final long numObservations = buffer.getLong();
+                final double numMismatches = buffer.getDouble();
+                final RecalDatum datum = new RecalDatum(numObservations, numMismatches, (byte)1);
+                datum.setEstimatedQReported(buffer.getDouble());
+                table.put(datum, keys);
+            }
+        }
+        return report;
+    }
+
+    private static void checkVersion(final int version) {
+        if ( version != FORMAT_VERSION ) {
+            throw new UserException.MalformedFile("unsupported binary recalibration report version " + version + " (expected " + FORMAT_VERSION + ")");
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
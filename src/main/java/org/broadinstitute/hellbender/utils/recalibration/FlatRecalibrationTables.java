@@ -0,0 +1,221 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.Covariate;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dense storage for the observations collected by {@link BaseRecalibrationEngine}, as an alternative to incrementing
+ * RecalDatum objects in the {@link NestedIntegerArray}s of {@link RecalibrationTables}.
+ *
+ * The counts for the quality score table and for each additional covariate table are kept in flat primitive arrays
+ * indexed by a key computed from the read group, reported quality, covariate value (for additional covariates)
+ * and event type, so that each observation is a pair of array increments rather than a walk down a tree of
+ * Object[] nodes to a RecalDatum on the heap. The arrays are allocated in full up front, so memory use is
+ * proportional to the number of read groups regardless of how many distinct keys are actually observed.
+ *
+ * Mismatch counts are accumulated with the same scaling as in RecalDatum, and {@link #flushInto} turns the counts
+ * into RecalDatums identical to those that {@link RecalUtils#incrementDatumOrPutIfNecessary3keys} and
+ * {@link RecalUtils#incrementDatumOrPutIfNecessary4keys} would have produced for the same observations.
+ */
+public final class FlatRecalibrationTables implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int numReadGroups;
+    private final int qualDimension;
+    private final int eventDimension;
+
+    private final long[] qualityScoreObservations;
+    private final double[] qualityScoreMismatches;
+
+    private final int[] additionalDimensions;
+    private final long[][] additionalObservations;
+    private final double[][] additionalMismatches;
+
+    /**
+     * @param covariates the covariates for which to collect observations
+     * @param numReadGroups number of read groups
+     * @param numEventTypes observations will only be collected for event types with ordinal less than this
+     */
+    public FlatRecalibrationTables(final StandardCovariateList covariates, final int numReadGroups, final int numEventTypes) {
+        Utils.nonNull(covariates);
+        Utils.validateArg(numReadGroups > 0, "numReadGroups must be > 0");
+        Utils.validateArg(numEventTypes > 0 && numEventTypes <= EventType.values().length, "invalid number of event types");
+
+        this.numReadGroups = numReadGroups;
+        this.qualDimension = covariates.getQualityScoreCovariate().maximumKeyValue() + 1;
+        this.eventDimension = numEventTypes;
+
+        final int qualityScoreTableSize = tableSize(1);
+        qualityScoreObservations = new long[qualityScoreTableSize];
+        qualityScoreMismatches = new double[qualityScoreTableSize];
+
+        final List<Covariate> additionalCovariates = new ArrayList<>();
+        covariates.getAdditionalCovariates().forEach(additionalCovariates::add);
+        additionalDimensions = new int[additionalCovariates.size()];
+        additionalObservations = new long[additionalCovariates.size()][];
+        additionalMismatches = new double[additionalCovariates.size()][];
+        for ( int i = 0; i < additionalCovariates.size(); i++ ) {
+            additionalDimensions[i] = additionalCovariates.get(i).maximumKeyValue() + 1;
+            final int tableSize = tableSize(additionalDimensions[i]);
+            additionalObservations[i] = new long[tableSize];
+            additionalMismatches[i] = new double[tableSize];
+        }
+    }
+
+    private int tableSize( final int covariateDimension ) {
+        final long size = (long)numReadGroups * qualDimension * covariateDimension * eventDimension;
+        if ( size > Integer.MAX_VALUE ) {
+            throw new UserException("Too many read groups (" + numReadGroups + ") to collect recalibration data in flat tables. Run without flat recalibration tables.");
+        }
+        return (int)size;
+    }
+
+    /**
+     * Record an observation in the quality score table
+     *
+     * @param readGroup read group key
+     * @param qual reported quality (also the quality score covariate key)
+     * @param eventIndex ordinal of the event type
+     * @param isError error value for this observation
+     */
+    public void incrementQualityScoreTable( final int readGroup, final int qual, final int eventIndex, final double isError ) {
+        final int index = qualityScoreIndex(readGroup, qual, eventIndex);
+        qualityScoreObservations[index]++;
+        qualityScoreMismatches[index] += RecalDatum.scaleMismatches(isError);
+    }
+
+    /**
+     * Record an observation in the table for an additional covariate
+     *
+     * @param table index of the covariate among the additional covariates
+     * @param readGroup read group key
+     * @param qual reported quality (also the quality score covariate key)
+     * @param key key for the additional covariate. Must be >= 0.
+     * @param eventIndex ordinal of the event type
+     * @param isError error value for this observation
+     */
+    public void incrementAdditionalTable( final int table, final int readGroup, final int qual, final int key, final int eventIndex, final double isError ) {
+        final int index = additionalIndex(table, readGroup, qual, key, eventIndex);
+        additionalObservations[table][index]++;
+        additionalMismatches[table][index] += RecalDatum.scaleMismatches(isError);
+    }
+
+    private int qualityScoreIndex( final int readGroup, final int qual, final int eventIndex ) {
+        // A key out of range would silently alias another key's counts, rather than failing as in NestedIntegerArray
+        if ( readGroup >= numReadGroups || qual >= qualDimension || eventIndex >= eventDimension ) {
+            throw new IllegalArgumentException("Key too large for recalibration table: " + readGroup + ", " + qual + ", " + eventIndex);
+        }
+        return (readGroup * qualDimension + qual) * eventDimension + eventIndex;
+    }
+
+    private int additionalIndex( final int table, final int readGroup, final int qual, final int key, final int eventIndex ) {
+        final int covariateDimension = additionalDimensions[table];
+        if ( readGroup >= numReadGroups || qual >= qualDimension || key >= covariateDimension || eventIndex >= eventDimension ) {
+            throw new IllegalArgumentException("Key too large for recalibration table: " + readGroup + ", " + qual + ", " + key + ", " + eventIndex);
+        }
+        return ((readGroup * qualDimension + qual) * covariateDimension + key) * eventDimension + eventIndex;
+    }
+
+    /**
+     * Add all observations from another set of flat tables, which must have been created with the same dimensions,
+     * into these tables
+     */
+    public void mergeObservations( final FlatRecalibrationTables other ) {
+        Utils.nonNull(other);
+        if ( numReadGroups != other.numReadGroups || qualDimension != other.qualDimension || eventDimension != other.eventDimension ||
+             ! Arrays.equals(additionalDimensions, other.additionalDimensions) ) {
+            throw new IllegalArgumentException("Attempting to merge FlatRecalibrationTables with different dimensions");
+        }
+
+        addCounts(qualityScoreObservations, qualityScoreMismatches, other.qualityScoreObservations, other.qualityScoreMismatches);
+        for ( int i = 0; i < additionalDimensions.length; i++ ) {
+            addCounts(additionalObservations[i], additionalMismatches[i], other.additionalObservations[i], other.additionalMismatches[i]);
+        }
+    }
+
+    private static void addCounts( final long[] observations, final double[] mismatches, final long[] otherObservations, final double[] otherMismatches ) {
+        for ( int i = 0; i < observations.length; i++ ) {
+            if ( otherObservations[i] != 0 ) {
+                observations[i] += otherObservations[i];
+                mismatches[i] += otherMismatches[i];
+            }
+        }
+    }
+
+    /**
+     * Add all observations in these tables to the corresponding principal tables of the given RecalibrationTables,
+     * creating RecalDatums where necessary, and reset these tables to empty.
+     *
+     * @param tables tables to receive our observations. Must have been created for the same covariates and number of read groups.
+     */
+    public void flushInto( final RecalibrationTables tables ) {
+        Utils.nonNull(tables);
+        Utils.validateArg(tables.getAdditionalTables().size() == additionalDimensions.length, "RecalibrationTables have a different number of covariates");
+
+        flushQualityScoreTableInto(tables);
+
+        for ( int i = 0; i < additionalDimensions.length; i++ ) {
+            final NestedIntegerArray<RecalDatum> table = tables.getAdditionalTables().get(i);
+            final long[] observations = additionalObservations[i];
+            final double[] mismatches = additionalMismatches[i];
+            int index = 0;
+            for ( int readGroup = 0; readGroup < numReadGroups; readGroup++ ) {
+                for ( int qual = 0; qual < qualDimension; qual++ ) {
+                    for ( int key = 0; key < additionalDimensions[i]; key++ ) {
+                        for ( int eventIndex = 0; eventIndex < eventDimension; eventIndex++, index++ ) {
+                            if ( observations[index] != 0 ) {
+                                final RecalDatum datum = table.get4Keys(readGroup, qual, key, eventIndex);
+                                if ( datum == null ) {
+                                    table.put(RecalDatum.fromScaledCounts(observations[index], mismatches[index], (byte)qual), readGroup, qual, key, eventIndex);
+                                } else {
+                                    datum.incrementScaled(observations[index], mismatches[index]);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            Arrays.fill(observations, 0L);
+            Arrays.fill(mismatches, 0.0);
+        }
+    }
+
+    /**
+     * Add the observations in the quality score table to the quality score table of the given RecalibrationTables,
+     * creating RecalDatums where necessary, and reset it to empty. The (much larger) tables for the additional
+     * covariates are left untouched, so this is cheap enough to call often during a traversal, eg. to check whether
+     * the statistics collected so far have converged.
+     *
+     * @param tables tables to receive our observations. Must have been created for the same number of read groups.
+     */
+    public void flushQualityScoreTableInto( final RecalibrationTables tables ) {
+        Utils.nonNull(tables);
+
+        final NestedIntegerArray<RecalDatum> qualityScoreTable = tables.getQualityScoreTable();
+        int index = 0;
+        for ( int readGroup = 0; readGroup < numReadGroups; readGroup++ ) {
+            for ( int qual = 0; qual < qualDimension; qual++ ) {
+                for ( int eventIndex = 0; eventIndex < eventDimension; eventIndex++, index++ ) {
+                    if ( qualityScoreObservations[index] != 0 ) {
+                        final RecalDatum datum = qualityScoreTable.get3Keys(readGroup, qual, eventIndex);
+                        if ( datum == null ) {
+                            qualityScoreTable.put(RecalDatum.fromScaledCounts(qualityScoreObservations[index], qualityScoreMismatches[index], (byte)qual), readGroup, qual, eventIndex);
+                        } else {
+                            datum.incrementScaled(qualityScoreObservations[index], qualityScoreMismatches[index]);
+                        }
+                    }
+                }
+            }
+        }
+        Arrays.fill(qualityScoreObservations, 0L);
+        Arrays.fill(qualityScoreMismatches, 0.0);
+    }
+}
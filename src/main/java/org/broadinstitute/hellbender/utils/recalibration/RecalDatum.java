@@ -74,6 +74,28 @@ public final class RecalDatum implements Serializable {
         empiricalQuality = UNINITIALIZED;
     }
 
+    /**
+     * Create a new RecalDatum from counts accumulated outside of any RecalDatum, with the mismatch count already
+     * scaled by {@link #scaleMismatches}, so that the datum is identical to one that had counted the same
+     * observations itself
+     *
+     * @param numObservations       observations
+     * @param scaledNumMismatches   sum of the scaled error weights of the observations
+     * @param reportedQuality       Qreported
+     */
+    static RecalDatum fromScaledCounts(final long numObservations, final double scaledNumMismatches, final byte reportedQuality) {
+        final RecalDatum datum = new RecalDatum(numObservations, 0.0, reportedQuality);
+        datum.numMismatches = scaledNumMismatches;
+        return datum;
+    }
+
+    /**
+     * @return the given error weight scaled by the internal multiplier applied to our mismatch counts
+     */
+    static double scaleMismatches(final double mismatches) {
+        return mismatches*MULTIPLIER;
+    }
+
     /**
      * Copy copy into this recal datum, overwriting all of this objects data
      * @param copy  RecalDatum to copy
@@ -98,6 +120,27 @@ public final class RecalDatum implements Serializable {
         empiricalQuality = UNINITIALIZED;
     }
 
+    /**
+     * Add in the observations and mismatches of other, which must be for the same reported quality as this datum,
+     * exactly as if they had been counted by this datum. Unlike {@link #combine}, the estimated reported quality
+     * is left untouched and the internally scaled mismatch counts are added directly, so the result does not depend
+     * on how the observations were divided between the two datums (for whole-number mismatch counts).
+     *
+     * @param other  RecalDatum whose observations to add
+     */
+    public void mergeObservations(final RecalDatum other) {
+        incrementScaled(other.numObservations, other.numMismatches);
+    }
+
+    /**
+     * Add in observations with a mismatch count already scaled by {@link #scaleMismatches}
+     */
+    void incrementScaled(final long incObservations, final double incScaledMismatches) {
+        numObservations += incObservations;
+        numMismatches += incScaledMismatches;
+        empiricalQuality = UNINITIALIZED;
+    }
+
     public void setEstimatedQReported(final double estimatedQReported) {
         if ( estimatedQReported < 0 ) throw new IllegalArgumentException("estimatedQReported < 0");
         if ( Double.isInfinite(estimatedQReported) ) throw new IllegalArgumentException("estimatedQReported is infinite");
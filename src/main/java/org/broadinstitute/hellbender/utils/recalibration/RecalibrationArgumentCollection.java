@@ -1,5 +1,6 @@
 package org.broadinstitute.hellbender.utils.recalibration;
 
+import org.broadinstitute.hellbender.cmdline.Advanced;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.ArgumentCollectionDefinition;
 import org.broadinstitute.hellbender.cmdline.Hidden;
@@ -108,6 +109,35 @@ public final class RecalibrationArgumentCollection implements ArgumentCollection
     @Argument(fullName = "computeIndelBQSRTables", shortName = "indelBQSR", doc = "compute indel BQSR tables")
     public boolean computeIndelBQSRTables = false;
 
+    /**
+     * Collect the recalibration observations in dense arrays of counts rather than in sparse trees of objects, and
+     * convert them to the usual tables only once all reads have been processed. This is faster, but the arrays are
+     * allocated in full up front, so memory use grows with the number of read groups (a few megabytes per read group
+     * with default arguments, three times that with indel recalibration) regardless of the data. The resulting report
+     * is identical.
+     */
+    @Advanced
+    @Argument(fullName = "useFlatRecalibrationTables", shortName = "useFlatRecalibrationTables", doc = "Collect recalibration data in dense arrays rather than sparse tables (faster, but uses memory proportional to the number of read groups)", optional = true)
+    public boolean useFlatRecalibrationTables = false;
+
+    /**
+     * The FLOAT implementation of the BAQ HMM is considerably faster than the default DOUBLE implementation, but
+     * computes in single precision, so that a small fraction of BAQ qualities may differ by one from those computed by
+     * the DOUBLE implementation (and by samtools). Only relevant with -enableBAQ.
+     */
+    @Advanced
+    @Argument(fullName = "bqsrBAQImplementation", shortName = "bqsrBAQImplementation", doc = "Implementation of the BAQ HMM to use", optional = true)
+    public BAQ.Implementation BAQ_IMPLEMENTATION = BAQ.Implementation.DOUBLE;
+
+    /**
+     * Keep the BAQ results for up to this many distinct combinations of reference context, read bases and base
+     * qualities, so that the HMM is not run again for reads identical to a recently processed read (such as
+     * duplicates with identical qualities). 0 disables the cache. Only relevant with -enableBAQ.
+     */
+    @Advanced
+    @Argument(fullName = "bqsrBAQCacheSize", shortName = "bqsrBAQCacheSize", doc = "Number of BAQ results to cache for reuse by identical reads (0 for no cache)", optional = true)
+    public int BAQ_CACHE_SIZE = 0;
+
 
     // --------------------------------------------------------------------------------------------------------------
     //
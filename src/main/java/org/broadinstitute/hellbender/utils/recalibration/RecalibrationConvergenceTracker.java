@@ -0,0 +1,120 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks whether the statistics collected by BaseRecalibrator have converged, ie. whether processing more reads
+ * would no longer change the recalibration materially.
+ *
+ * Each call to {@link #update} takes a snapshot of the empirical quality of every read group for every event type,
+ * computed from the quality score table just as the read group table of the final report is, and compares it with
+ * the previous snapshot. The statistics have converged once no read group's empirical quality has changed by more
+ * than the tolerance between two consecutive snapshots. Read groups without observations are not considered, but
+ * a read group that appears for the first time in a snapshot prevents convergence.
+ *
+ * Only the quality score table is read, whose size depends only on the number of read groups, so the cost of an
+ * update does not grow with the number of reads processed or with the size of the additional covariate tables.
+ */
+public final class RecalibrationConvergenceTracker {
+
+    private final double tolerance;
+
+    // empirical quality of each read group (by read group key) for each event type, NaN if there is no data
+    private Map<Integer, double[]> previousSnapshot = null;
+    private double lastMaximumChange = Double.POSITIVE_INFINITY;
+    private int numUpdates = 0;
+
+    /**
+     * @param tolerance largest change in empirical quality (in Phred units) of any read group between two consecutive
+     *                  snapshots for the statistics to be considered converged. Must be >= 0.
+     */
+    public RecalibrationConvergenceTracker( final double tolerance ) {
+        Utils.validateArg(tolerance >= 0.0, "tolerance must be >= 0");
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Take a snapshot of the given (non-finalized) recalibration tables, and compare it with the previous one
+     *
+     * @param tables recalibration tables whose quality score table holds all the observations collected so far
+     *               (see {@link BaseRecalibrationEngine#getRecalibrationTablesWithCurrentQualityScores})
+     * @return true if the statistics have converged since the previous update
+     */
+    public boolean update( final RecalibrationTables tables ) {
+        Utils.nonNull(tables);
+        final Map<Integer, double[]> snapshot = empiricalQualitiesByReadGroup(tables);
+        lastMaximumChange = previousSnapshot == null ? Double.POSITIVE_INFINITY : maximumChange(previousSnapshot, snapshot);
+        previousSnapshot = snapshot;
+        numUpdates++;
+        return lastMaximumChange <= tolerance;
+    }
+
+    /**
+     * @return the largest change in the empirical quality of any read group observed by the last update, or
+     *         positive infinity if there has not been one yet, or the read groups with data changed
+     */
+    public double getLastMaximumChange() {
+        return lastMaximumChange;
+    }
+
+    /**
+     * @return the number of calls to {@link #update} so far
+     */
+    public int getNumUpdates() {
+        return numUpdates;
+    }
+
+    /**
+     * Compute the empirical quality of each read group for each event type by combining the entries of the quality
+     * score table, as {@link BaseRecalibrationEngine#finalizeRecalibrationTables} does
+     */
+    static Map<Integer, double[]> empiricalQualitiesByReadGroup( final RecalibrationTables tables ) {
+        final int numEventTypes = EventType.values().length;
+        final Map<Integer, RecalDatum[]> byReadGroup = new HashMap<>();
+        for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : tables.getQualityScoreTable().getAllLeaves() ) {
+            final RecalDatum[] readGroupData = byReadGroup.computeIfAbsent(leaf.keys[0], rgKey -> new RecalDatum[numEventTypes]);
+            final int eventIndex = leaf.keys[2];
+            if ( readGroupData[eventIndex] == null ) {
+                readGroupData[eventIndex] = new RecalDatum(leaf.value);
+            } else {
+                readGroupData[eventIndex].combine(leaf.value);
+            }
+        }
+
+        final Map<Integer, double[]> qualities = new HashMap<>(byReadGroup.size());
+        for ( final Map.Entry<Integer, RecalDatum[]> entry : byReadGroup.entrySet() ) {
+            final double[] readGroupQualities = new double[numEventTypes];
+            for ( int eventIndex = 0; eventIndex < numEventTypes; eventIndex++ ) {
+                final RecalDatum datum = entry.getValue()[eventIndex];
+                readGroupQualities[eventIndex] = datum == null || datum.getNumObservations() == 0 ? Double.NaN : datum.getEmpiricalQuality();
+            }
+            qualities.put(entry.getKey(), readGroupQualities);
+        }
+        return qualities;
+    }
+
+    private static double maximumChange( final Map<Integer, double[]> previous, final Map<Integer, double[]> current ) {
+        double maximumChange = 0.0;
+        for ( final Map.Entry<Integer, double[]> entry : current.entrySet() ) {
+            final double[] previousQualities = previous.get(entry.getKey());
+            if ( previousQualities == null ) {
+                return Double.POSITIVE_INFINITY; // a new read group
+            }
+            final double[] currentQualities = entry.getValue();
+            for ( int eventIndex = 0; eventIndex < currentQualities.length; eventIndex++ ) {
+                if ( Double.isNaN(currentQualities[eventIndex]) ) {
+                    continue;
+                }
+                if ( Double.isNaN(previousQualities[eventIndex]) ) {
+                    return Double.POSITIVE_INFINITY; // the first data for this event type
+                }
+                maximumChange = Math.max(maximumChange, Math.abs(currentQualities[eventIndex] - previousQualities[eventIndex]));
+            }
+        }
+        return maximumChange;
+    }
+}
@@ -0,0 +1,193 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+
+import java.io.Serializable;
+import java.util.List;
+
+import static org.broadinstitute.hellbender.utils.MathUtils.fastRound;
+import static org.broadinstitute.hellbender.utils.QualityUtils.boundQual;
+import static org.broadinstitute.hellbender.utils.recalibration.RecalDatum.MAX_RECALIBRATED_Q_SCORE;
+
+/**
+ * Precomputed form of the recalibration tables, for recalibrating base substitution qualities by table lookup.
+ *
+ * The recalibrated quality of a base is the sum of a conditional prior that depends only on the read group and
+ * reported quality of the base, and one delta for each additional covariate that depends only on the read group,
+ * reported quality and the value of that covariate (see BQSRReadTransformer.hierarchicalBayesianQualityEstimate).
+ * We precompute the conditional prior for every (read group, reported quality), and the delta for every
+ * (read group, reported quality, covariate value) present in the tables, so that recalibrating a base requires only
+ * a handful of array lookups and additions instead of walking the NestedIntegerArrays and computing the empirical
+ * quality of several RecalDatums. The quantization (and static quantization, if any) of the result is also
+ * precomputed as a byte-to-byte mapping. The results are identical to those computed from the tables directly.
+ *
+ * The deltas for additional covariates are only allocated for (read group, reported quality) combinations seen
+ * in the data, so the table is much smaller than the full key space. It is serializable, and contains everything
+ * needed to recalibrate reads (including the covariates), so that it can be broadcast to Spark executors in place
+ * of the full RecalibrationReport.
+ */
+public final class RecalibrationLookupTable implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int BASE_SUBSTITUTION_INDEX = EventType.BASE_SUBSTITUTION.ordinal();
+
+    private final StandardCovariateList covariates;
+    private final int specialCovariateCount;
+    private final int totalCovariateCount;
+
+    /**
+     * Prior by read group (the global delta Q plus epsilon), used for reported qualities beyond the quality score table
+     */
+    private final double[] readGroupPriors;
+
+    /**
+     * Conditional prior by read group and reported quality. Null for read groups with no data, whose reads are
+     * left unchanged.
+     */
+    private final double[][] conditionalPriors;
+
+    /**
+     * Deltas for all additional covariates by read group and reported quality. The deltas for the ith additional
+     * covariate start at covariateOffsets[i]. Null for combinations with no data for any additional covariate.
+     */
+    private final double[][][] covariateDeltas;
+    private final int[] covariateOffsets;
+    private final int[] covariateDimensions;
+
+    /**
+     * Final (quantized) quality by rounded and bounded recalibrated quality
+     */
+    private final byte[] finalQualities;
+
+    /**
+     * @param recalibrationTables finalized recalibration tables
+     * @param covariates the covariates used to create the tables
+     * @param quantizedQuals quantization map, from recalibrated quality to quantized quality
+     * @param staticQuantizedMapping mapping of quantized qualities to static quantization bins, or null for none
+     * @param globalQScorePrior if > 0.0, the prior to use in place of the reported quality of each read group
+     */
+    public RecalibrationLookupTable( final RecalibrationTables recalibrationTables, final StandardCovariateList covariates,
+                                     final List<Byte> quantizedQuals, final byte[] staticQuantizedMapping, final double globalQScorePrior ) {
+        Utils.nonNull(recalibrationTables);
+        Utils.nonNull(covariates);
+        Utils.nonNull(quantizedQuals);
+        Utils.validateArg(quantizedQuals.size() > MAX_RECALIBRATED_Q_SCORE, "quantization map must cover all recalibrated qualities");
+
+        this.covariates = covariates;
+        specialCovariateCount = covariates.numberOfSpecialCovariates();
+        totalCovariateCount = covariates.size();
+
+        final NestedIntegerArray<RecalDatum> readGroupTable = recalibrationTables.getReadGroupTable();
+        final NestedIntegerArray<RecalDatum> qualityScoreTable = recalibrationTables.getQualityScoreTable();
+        final int numReadGroups = readGroupTable.getDimensions()[0];
+        final int qualDimension = qualityScoreTable.getDimensions()[1];
+
+        final int numAdditionalCovariates = totalCovariateCount - specialCovariateCount;
+        covariateOffsets = new int[numAdditionalCovariates];
+        covariateDimensions = new int[numAdditionalCovariates];
+        int deltasPerQual = 0;
+        for ( int i = 0; i < numAdditionalCovariates; i++ ) {
+            covariateOffsets[i] = deltasPerQual;
+            covariateDimensions[i] = recalibrationTables.getTable(i + specialCovariateCount).getDimensions()[2];
+            deltasPerQual += covariateDimensions[i];
+        }
+
+        readGroupPriors = new double[numReadGroups];
+        conditionalPriors = new double[numReadGroups][];
+        covariateDeltas = new double[numReadGroups][][];
+        for ( int rgKey = 0; rgKey < numReadGroups; rgKey++ ) {
+            final RecalDatum empiricalQualRG = readGroupTable.get2Keys(rgKey, BASE_SUBSTITUTION_INDEX);
+            if ( empiricalQualRG == null ) {
+                continue;
+            }
+            final double epsilon = globalQScorePrior > 0.0 ? globalQScorePrior : empiricalQualRG.getEstimatedQReported();
+            final double globalDeltaQ = empiricalQualRG.getEmpiricalQuality(epsilon) - epsilon;
+            readGroupPriors[rgKey] = globalDeltaQ + epsilon;
+
+            conditionalPriors[rgKey] = new double[qualDimension];
+            covariateDeltas[rgKey] = new double[qualDimension][];
+            for ( int qual = 0; qual < qualDimension; qual++ ) {
+                final RecalDatum empiricalQualQS = qualityScoreTable.get3Keys(rgKey, qual, BASE_SUBSTITUTION_INDEX);
+                final double deltaQReported = empiricalQualQS == null ? 0.0 : empiricalQualQS.getEmpiricalQuality(globalDeltaQ + epsilon) - (globalDeltaQ + epsilon);
+                final double conditionalPrior = deltaQReported + globalDeltaQ + epsilon;
+                conditionalPriors[rgKey][qual] = conditionalPrior;
+
+                double[] deltas = null;
+                for ( int i = 0; i < numAdditionalCovariates; i++ ) {
+                    final NestedIntegerArray<RecalDatum> table = recalibrationTables.getTable(i + specialCovariateCount);
+                    for ( int key = 0; key < covariateDimensions[i]; key++ ) {
+                        final RecalDatum empiricalQualCov = table.get4Keys(rgKey, qual, key, BASE_SUBSTITUTION_INDEX);
+                        if ( empiricalQualCov != null ) {
+                            if ( deltas == null ) {
+                                deltas = new double[deltasPerQual];
+                            }
+                            deltas[covariateOffsets[i] + key] = empiricalQualCov.getEmpiricalQuality(conditionalPrior) - conditionalPrior;
+                        }
+                    }
+                }
+                covariateDeltas[rgKey][qual] = deltas;
+            }
+        }
+
+        finalQualities = new byte[MAX_RECALIBRATED_Q_SCORE + 1];
+        for ( int qual = 0; qual < finalQualities.length; qual++ ) {
+            final Byte quantizedQual = quantizedQuals.get(qual);
+            if ( quantizedQual == null ) {
+                throw new GATKException("Quantization map has no entry for quality " + qual);
+            }
+            finalQualities[qual] = staticQuantizedMapping == null ? quantizedQual : staticQuantizedMapping[quantizedQual];
+        }
+    }
+
+    /**
+     * @return the covariates for which this table was computed
+     */
+    public StandardCovariateList getCovariates() {
+        return covariates;
+    }
+
+    /**
+     * @return true if there is recalibration data for the read group with the given key, otherwise reads from the
+     *         read group should be left unchanged
+     */
+    public boolean hasReadGroup( final int rgKey ) {
+        return rgKey >= 0 && rgKey < conditionalPriors.length && conditionalPriors[rgKey] != null;
+    }
+
+    /**
+     * Get the recalibrated (and quantized) base substitution quality of a base
+     *
+     * @param keySet covariate keys for the base substitution event at the base. The read group (the first key) must
+     *               be one for which {@link #hasReadGroup} is true.
+     * @return the recalibrated quality
+     */
+    public byte getRecalibratedQuality( final int[] keySet ) {
+        final int rgKey = keySet[0];
+        final int qual = keySet[1];
+        final double[] priors = conditionalPriors[rgKey];
+        if ( qual >= priors.length ) {
+            // No data in any table for this quality
+            return finalQualities[boundQual(fastRound(readGroupPriors[rgKey]), MAX_RECALIBRATED_Q_SCORE)];
+        }
+        final double conditionalPrior = priors[qual];
+        final double[] deltas = covariateDeltas[rgKey][qual];
+
+        // Note: sum in the same order as hierarchicalBayesianQualityEstimate to get identical results
+        double deltaQCovariates = 0.0;
+        if ( deltas != null ) {
+            for ( int i = specialCovariateCount; i < totalCovariateCount; i++ ) {
+                final int key = keySet[i];
+                final int covariateIndex = i - specialCovariateCount;
+                if ( key >= 0 && key < covariateDimensions[covariateIndex] ) {
+                    deltaQCovariates += deltas[covariateOffsets[covariateIndex] + key];
+                }
+            }
+        }
+
+        final double recalibratedQualDouble = conditionalPrior + deltaQCovariates;
+        return finalQualities[boundQual(fastRound(recalibratedQualDouble), MAX_RECALIBRATED_Q_SCORE)];
+    }
+}
@@ -2,6 +2,7 @@ package org.broadinstitute.hellbender.utils.recalibration;
 
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.broadinstitute.hellbender.exceptions.GATKException;
@@ -9,13 +10,16 @@ import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.QualityUtils;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.Covariate;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
 import org.broadinstitute.hellbender.utils.report.GATKReport;
 import org.broadinstitute.hellbender.utils.report.GATKReportTable;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
@@ -40,12 +44,20 @@ public final class RecalibrationReport {
     private final GATKReportTable argumentTable; // keep the argument table untouched just for output purposes
     private final RecalibrationArgumentCollection RAC; // necessary for quantizing qualities with the same parameter
 
+    /**
+     * Load a recalibration report from a file, in either the text GATKReport format or the binary format of
+     * {@link BinaryRecalibrationReport}.
+     */
     public RecalibrationReport(final File recalFile) {
-        this(new GATKReport(recalFile));
+        this(BucketUtils.openFile(recalFile.getPath(), null));
     }
 
+    /**
+     * Load a recalibration report from a stream, in either the text GATKReport format or the binary format of
+     * {@link BinaryRecalibrationReport}.
+     */
     public RecalibrationReport(final InputStream recalibrationTableStream){
-        this(new GATKReport(recalibrationTableStream));
+        this(readReport(recalibrationTableStream, null));
     }
 
     public RecalibrationReport(final GATKReport report){
@@ -53,24 +65,75 @@ public final class RecalibrationReport {
     }
 
     public RecalibrationReport(final GATKReport report, final SortedSet<String> allReadGroups) {
-        argumentTable = report.getTable(RecalUtils.ARGUMENT_REPORT_TABLE_TITLE);
+        this(report.getTable(RecalUtils.ARGUMENT_REPORT_TABLE_TITLE),
+             initializeQuantizationTable(report.getTable(RecalUtils.QUANTIZED_REPORT_TABLE_TITLE)),
+             allReadGroups);
+
+        parseReadGroupTable(report.getTable(RecalUtils.READGROUP_REPORT_TABLE_TITLE), recalibrationTables.getReadGroupTable());
+
+        parseQualityScoreTable(report.getTable(RecalUtils.QUALITY_SCORE_REPORT_TABLE_TITLE), recalibrationTables.getQualityScoreTable());
+
+        parseAllCovariatesTable(report.getTable(RecalUtils.ALL_COVARIATES_REPORT_TABLE_TITLE), recalibrationTables);
+
+    }
+
+    /**
+     * Create a report with the given arguments and quantization, and empty recalibration tables to be filled in
+     * by the caller.
+     */
+    RecalibrationReport(final GATKReportTable argumentTable, final QuantizationInfo quantizationInfo, final SortedSet<String> allReadGroups) {
+        this.argumentTable = argumentTable;
         RAC = initializeArgumentCollectionTable(argumentTable);
 
-        final GATKReportTable quantizedTable = report.getTable(RecalUtils.QUANTIZED_REPORT_TABLE_TITLE);
-        quantizationInfo = initializeQuantizationTable(quantizedTable);
+        this.quantizationInfo = quantizationInfo;
 
         covariates = new StandardCovariateList(RAC, new ArrayList<>(allReadGroups));
 
         recalibrationTables = new RecalibrationTables(covariates, allReadGroups.size());
 
         initializeReadGroupCovariates(allReadGroups);
+    }
 
-        parseReadGroupTable(report.getTable(RecalUtils.READGROUP_REPORT_TABLE_TITLE), recalibrationTables.getReadGroupTable());
-
-        parseQualityScoreTable(report.getTable(RecalUtils.QUALITY_SCORE_REPORT_TABLE_TITLE), recalibrationTables.getQualityScoreTable());
+    /**
+     * Load a recalibration report from a file in either format, using the given read groups.
+     *
+     * @param recalFile a text or binary recalibration report
+     * @param allReadGroups the read groups of the report, which must include those of the file
+     */
+    public static RecalibrationReport read(final File recalFile, final SortedSet<String> allReadGroups) {
+        Utils.nonNull(recalFile);
+        Utils.nonNull(allReadGroups);
+        return readReport(BucketUtils.openFile(recalFile.getPath(), null), allReadGroups);
+    }
 
-        parseAllCovariatesTable(report.getTable(RecalUtils.ALL_COVARIATES_REPORT_TABLE_TITLE), recalibrationTables);
+    /**
+     * @return the read groups of a recalibration report file in either format
+     */
+    public static SortedSet<String> readReadGroups(final File recalFile) {
+        Utils.nonNull(recalFile);
+        return BinaryRecalibrationReport.isBinaryReport(recalFile) ?
+                BinaryRecalibrationReport.readReadGroups(recalFile) :
+                new GATKReport(recalFile).getReadGroups();
+    }
 
+    /**
+     * Read a report in either format from a stream, and close the stream.
+     *
+     * @param allReadGroups the read groups of the report; if null, the read groups in the stream
+     */
+    private static RecalibrationReport readReport(final InputStream in, final SortedSet<String> allReadGroups) {
+        try ( final BufferedInputStream buffered = new BufferedInputStream(in) ) {
+            buffered.mark(BinaryRecalibrationReport.magicLength());
+            final boolean isBinary = BinaryRecalibrationReport.hasMagic(buffered);
+            buffered.reset();
+            if ( isBinary ) {
+                return BinaryRecalibrationReport.read(IOUtils.toByteArray(buffered), allReadGroups);
+            }
+            final GATKReport report = new GATKReport(buffered);
+            return new RecalibrationReport(report, allReadGroups != null ? allReadGroups : report.getReadGroups());
+        } catch ( final IOException e ) {
+            throw new UserException("Couldn't read RecalibrationReport", e);
+        }
     }
 
     /**
@@ -79,8 +142,23 @@ public final class RecalibrationReport {
      * @param output a file to write the recalibration reports to
      */
     public static void gatherReportsIntoOneFile(final List<File> inputs, final File output) {
+        gatherReportsIntoOneFile(inputs, output, false);
+    }
+
+    /**
+     * Gather multiple {@link RecalibrationReport}s into a single file
+     * @param inputs a list of {@link RecalibrationReport} files to gather, in either the text or binary format
+     * @param output a file to write the recalibration reports to
+     * @param binaryOutput if true, write the output in the binary format of {@link BinaryRecalibrationReport},
+     *                     otherwise as a text GATKReport
+     */
+    public static void gatherReportsIntoOneFile(final List<File> inputs, final File output, final boolean binaryOutput) {
         Utils.nonNull(inputs, "inputs");
         Utils.nonNull(output, "output");
+        if ( binaryOutput ) {
+            BinaryRecalibrationReport.write(gather(inputs), output);
+            return;
+        }
         try (final PrintStream outputFile = new PrintStream(output)){
             final GATKReport report = gatherReports(inputs);
             report.print(outputFile);
@@ -96,6 +174,10 @@ public final class RecalibrationReport {
      * @return gathered recalibration GATK report
      */
     public static GATKReport gatherReports(final List<File> inputs) {
+        return gather(inputs).createGATKReport();
+    }
+
+    private static RecalibrationReport gather(final List<File> inputs) {
         Utils.nonNull(inputs);
         Utils.nonEmpty(inputs, "Cannot gather an empty list of inputs");
 
@@ -104,8 +186,7 @@ public final class RecalibrationReport {
 
         // Get the read groups from each input report
         for (final File input : inputs) {
-            final GATKReport report = new GATKReport(input);
-            final Set<String> readGroups = report.getReadGroups();
+            final Set<String> readGroups = readReadGroups(input);
             inputReadGroups.put(input, readGroups);
             allReadGroups.addAll(readGroups);
         }
@@ -113,13 +194,13 @@ public final class RecalibrationReport {
         logTablesWithMissingReadGroups(allReadGroups, inputReadGroups);
 
         final RecalibrationReport result = inputs.stream()
-                .map(i -> new RecalibrationReport(new GATKReport(i), allReadGroups))
+                .map(i -> read(i, allReadGroups))
                 .reduce(RecalibrationReport::combine)
                 .filter(r -> !r.isEmpty())
                 .orElseThrow(() -> new GATKException("there is no usable data in any input file") );
 
         result.quantizationInfo = new QuantizationInfo(result.recalibrationTables, result.RAC.QUANTIZING_LEVELS);
-        return result.createGATKReport();
+        return result;
     }
 
     /**
@@ -427,6 +508,13 @@ public final class RecalibrationReport {
         return RecalUtils.createRecalibrationGATKReport(argumentTable, quantizationInfo, recalibrationTables, covariates);
     }
 
+    /**
+     * @return the argument table of the report, as it will be written out
+     */
+    GATKReportTable getArgumentTable() {
+        return argumentTable;
+    }
+
     public RecalibrationArgumentCollection getRAC() {
         return RAC;
     }
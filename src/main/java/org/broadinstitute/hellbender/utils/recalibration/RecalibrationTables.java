@@ -147,6 +147,36 @@ public final class RecalibrationTables implements Serializable, Iterable<NestedI
         return this;
     }
 
+    /**
+     * Merge the observations of all of the principal tables from toMerge into this set of tables, as if they had
+     * been collected directly into this set of tables. Intended for merging tables collected over disjoint sets of
+     * reads (eg., by different threads) before the derived read group table has been computed, so the read group
+     * tables must both be empty. Unlike {@link #combine}, the reported quality of each datum is preserved exactly.
+     */
+    public RecalibrationTables mergeObservations(final RecalibrationTables toMerge) {
+        Utils.nonNull(toMerge);
+        if ( numTables() != toMerge.numTables() ) {
+            throw new IllegalArgumentException("Attempting to merge RecalibrationTables with different sizes");
+        }
+        if ( ! readGroupTable.getAllValues().isEmpty() || ! toMerge.readGroupTable.getAllValues().isEmpty() ) {
+            throw new IllegalStateException("Cannot merge observations into RecalibrationTables that have already been finalized");
+        }
+
+        for ( int i = 0; i < numTables(); i++ ) {
+            final NestedIntegerArray<RecalDatum> myTable = this.allTables.get(i);
+            for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : toMerge.allTables.get(i).getAllLeaves() ) {
+                final RecalDatum myDatum = myTable.get(leaf.keys);
+                if ( myDatum == null ) {
+                    myTable.put(new RecalDatum(leaf.value), leaf.keys);
+                } else {
+                    myDatum.mergeObservations(leaf.value);
+                }
+            }
+        }
+
+        return this;
+    }
+
     /**
      * Combines the two tables into a new table (allocating a new table in the process)
      *
@@ -2,8 +2,6 @@ package org.broadinstitute.hellbender.utils.recalibration.covariates;
 
 import com.google.common.annotations.VisibleForTesting;
 import htsjdk.samtools.SAMFileHeader;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.exceptions.GATKException;
@@ -14,6 +12,8 @@ import org.broadinstitute.hellbender.utils.clipping.ReadClipper;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.recalibration.RecalibrationArgumentCollection;
 
+import java.util.Arrays;
+
 public final class ContextCovariate implements Covariate {
     private static final long serialVersionUID = 1L;
     private static final Logger logger = LogManager.getLogger(ContextCovariate.class);
@@ -57,45 +57,73 @@ public final class ContextCovariate implements Covariate {
 
     @Override
     public void recordValues(final GATKRead read, final SAMFileHeader header, final ReadCovariates values, final boolean recordIndelValues) {
+        final int readLength = read.getLength();
+        final int[] mismatchKeys = new int[readLength];
+        final int[] indelKeys = recordIndelValues ? new int[readLength] : null;
+        recordKeys(read, new byte[readLength], mismatchKeys, indelKeys);
 
-        final int originalReadLength = read.getLength();
-
-        // store the original bases and then write Ns over low quality ones
-        final byte[] strandedClippedBases = getStrandedClippedBytes(read, lowQualTail);  //Note: this makes a copy of the read
-
-        //Note: we're using a non-standard library here because boxing came up on profiling as taking 20% of time in applyBQSR.
-        //IntList avoids boxing
-        final IntList mismatchKeys = contextWith(strandedClippedBases, mismatchesContextSize, mismatchesKeyMask);
+        //Note: duplicated the loop to avoid checking recordIndelValues on each iteration
+        if (recordIndelValues) {
+            for (int i = 0; i < readLength; i++) {
+                final int indelKey = indelKeys[i];
+                values.addCovariate(mismatchKeys[i], indelKey, indelKey, i);
+            }
+        } else {
+            for (int i = 0; i < readLength; i++) {
+                values.addCovariate(mismatchKeys[i], 0, 0, i);
+            }
+        }
+    }
 
-        final int readLengthAfterClipping = strandedClippedBases.length;
+    /**
+     * Computes the mismatch and indel keys of every base of the read into the given arrays, indexed by read offset.
+     * These are the keys recorded by {@link #recordValues}, computed without copying the read.
+     *
+     * The low quality tails of the read are treated as Ns, as by {@link #getStrandedClippedBytes}. If the entire read
+     * is low quality, all keys are 0.
+     *
+     * @param read the read
+     * @param basesBuffer working storage for the bases of the read, at least as long as the read
+     * @param mismatchKeys storage for the mismatch keys, at least as long as the read
+     * @param indelKeys storage for the indel keys, at least as long as the read, or null if they are not needed
+     */
+    public void recordKeys(final GATKRead read, final byte[] basesBuffer, final int[] mismatchKeys, final int[] indelKeys) {
+        final int readLength = read.getLength();
+
+        // find the low quality tails (see ReadClipper.clipLowQualEnds)
+        int leftClipIndex = 0;
+        int rightClipIndex = readLength - 1;
+        while (rightClipIndex >= 0 && read.getBaseQuality(rightClipIndex) <= lowQualTail) {
+            rightClipIndex--;
+        }
+        while (leftClipIndex < readLength && read.getBaseQuality(leftClipIndex) <= lowQualTail) {
+            leftClipIndex++;
+        }
 
-        // this is necessary to ensure that we don't keep historical data in the ReadCovariates values
-        // since the context covariate may not span the entire set of values in read covariates
-        // due to the clipping of the low quality bases
-        if ( readLengthAfterClipping != originalReadLength) {
-            // don't bother zeroing out if we are going to overwrite the whole array
-            for ( int i = 0; i < originalReadLength; i++ ){
-                // this base has been clipped off, so zero out the covariate values here
-                values.addCovariate(0, 0, 0, i);
+        if (leftClipIndex > rightClipIndex) {
+            // the whole read was clipped, so no base has any context
+            Arrays.fill(mismatchKeys, 0, readLength, 0);
+            if (indelKeys != null) {
+                Arrays.fill(indelKeys, 0, readLength, 0);
             }
+            return;
         }
 
+        // write Ns over the low quality tails, and reverse-complement negative strand reads
         final boolean negativeStrand = read.isReverseStrand();
-
-        //Note: duplicated the loop to avoid checking recordIndelValues on each iteration
-        if (recordIndelValues) {
-            final IntList indelKeys = contextWith(strandedClippedBases, indelsContextSize, indelsKeyMask);
-            for (int i = 0; i < readLengthAfterClipping; i++) {
-                final int readOffset = getStrandedOffset(negativeStrand, i, readLengthAfterClipping);
-                final int indelKey = indelKeys.getInt(i);
-                values.addCovariate(mismatchKeys.getInt(i), indelKey, indelKey, readOffset);
-            }
-        } else {
-            for (int i = 0; i < readLengthAfterClipping; i++) {
-                final int readOffset = getStrandedOffset(negativeStrand, i, readLengthAfterClipping);
-                values.addCovariate(mismatchKeys.getInt(i), 0, 0, readOffset);
+        for (int i = 0; i < readLength; i++) {
+            final byte base = (i < leftClipIndex || i > rightClipIndex) ? (byte)'N' : read.getBase(i);
+            if (negativeStrand) {
+                basesBuffer[readLength - 1 - i] = BaseUtils.simpleComplement(base);
+            } else {
+                basesBuffer[i] = base;
             }
         }
+
+        contextWith(basesBuffer, readLength, mismatchesContextSize, mismatchesKeyMask, negativeStrand, mismatchKeys);
+        if (indelKeys != null) {
+            contextWith(basesBuffer, readLength, indelsContextSize, indelsKeyMask, negativeStrand, indelKeys);
+        }
     }
 
     /**
@@ -156,31 +184,30 @@ public final class ContextCovariate implements Covariate {
     /**
      * calculates the context of a base independent of the covariate mode (mismatch, insertion or deletion)
      *
-     * @param bases       the bases in the read to build the context from
+     * @param bases       the bases in the read to build the context from, after reverse-complementing for negative-strand reads
+     * @param readLength  the number of bases in the read
      * @param contextSize context size to use building the context
      * @param mask        mask for pulling out just the context bits
+     * @param negativeStrand is the read on the negative strand
+     * @param keys        storage for the keys, which are stored by offset in the (original, unstranded) read
      */
-    private static IntList contextWith(final byte[] bases, final int contextSize, final int mask) {
-
-        final int readLength = bases.length;
-
-        //Note: we use a specialized collection to avoid the cost of boxing and unboxing that otherwise comes up on the profiler.
-        final IntList keys = new IntArrayList(readLength);
+    private static void contextWith(final byte[] bases, final int readLength, final int contextSize, final int mask,
+                                    final boolean negativeStrand, final int[] keys) {
 
         // the first contextSize-1 bases will not have enough previous context
         for (int i = 1; i < contextSize && i <= readLength; i++) {
-            keys.add(-1);
+            keys[getStrandedOffset(negativeStrand, i - 1, readLength)] = -1;
         }
 
         if (readLength < contextSize) {
-            return keys;
+            return;
         }
 
         final int newBaseOffset = 2 * (contextSize - 1) + LENGTH_BITS;
 
         // get (and add) the key for the context starting at the first base
         int currentKey = keyFromContext(bases, 0, contextSize);
-        keys.add(currentKey);
+        keys[getStrandedOffset(negativeStrand, contextSize - 1, readLength)] = currentKey;
 
         // if the first key was -1 then there was an N in the context; figure out how many more consecutive contexts it affects
         int currentNPenalty = 0;
@@ -208,15 +235,14 @@ public final class ContextCovariate implements Covariate {
                 currentKey |= contextSize;
             }
 
+            final int readOffset = getStrandedOffset(negativeStrand, currentIndex, readLength);
             if (currentNPenalty == 0) {
-                keys.add(currentKey);
+                keys[readOffset] = currentKey;
             } else {
                 currentNPenalty--;
-                keys.add(-1);
+                keys[readOffset] = -1;
             }
         }
-
-        return keys;
     }
 
     public static int keyFromContext(final String dna) {
@@ -48,6 +48,13 @@ public final class CycleCovariate implements Covariate {
         return (value instanceof String) ? keyFromCycle(Integer.parseInt((String) value), MAXIMUM_CYCLE_VALUE) : keyFromCycle((Integer) value, MAXIMUM_CYCLE_VALUE);
     }
 
+    /**
+     * @return the maximum absolute value of the cycle of any base
+     */
+    public int getMaximumCycleValue() {
+        return MAXIMUM_CYCLE_VALUE;
+    }
+
     @Override
     public int maximumKeyValue() {
         return (MAXIMUM_CYCLE_VALUE << 1) + 1;
@@ -0,0 +1,144 @@
+package org.broadinstitute.hellbender.utils.recalibration.covariates;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadUtils;
+import org.broadinstitute.hellbender.utils.recalibration.EventType;
+
+/**
+ * Evaluates the standard covariates of a read base by base, as an alternative to {@link ReadCovariates} for callers
+ * that consume the keys of each base once, in order (eg., to update recalibration tables).
+ *
+ * Rather than materializing the keys of every covariate, event type and base of the read in an int[][][] (which must
+ * be allocated or fetched from a {@link CovariateKeyCache} for every read length), {@link #setRead} does the per-read
+ * work once and the keys of each base are computed on demand:
+ * <ul>
+ *     <li>the read group key is constant over the read</li>
+ *     <li>the quality score key of a base is its quality for the event type, which the caller already has</li>
+ *     <li>the context keys are computed into arrays that are reused from read to read</li>
+ *     <li>the cycle keys are computed arithmetically from the offset of the base</li>
+ * </ul>
+ * The keys are exactly those that {@link StandardCovariateList#recordAllValuesInStorage} records.
+ *
+ * This class holds per-read state, so each thread needs its own instance.
+ */
+public final class StreamingCovariateEvaluator {
+
+    private static final int SUBSTITUTION_INDEX = EventType.BASE_SUBSTITUTION.ordinal();
+
+    private final ReadGroupCovariate readGroupCovariate;
+    private final ContextCovariate contextCovariate;
+    private final int contextCovariateIndex;
+    private final int cycleCovariateIndex;
+    private final int maximumCycleValue;
+
+    // per-read state
+    private boolean recordIndelValues;
+    private int readLength;
+    private int readGroupKey;
+    private int firstCycle;
+    private int cycleIncrement;
+    private int maxCycleOffsetForIndels;
+
+    // context keys of the current read, by read offset; grown as needed to fit the longest read seen so far
+    private byte[] basesBuffer = new byte[0];
+    private int[] mismatchContextKeys = new int[0];
+    private int[] indelContextKeys = new int[0];
+
+    public StreamingCovariateEvaluator(final StandardCovariateList covariates) {
+        Utils.nonNull(covariates);
+        readGroupCovariate = covariates.getReadGroupCovariate();
+        contextCovariateIndex = covariates.indexByClass(ContextCovariate.class);
+        cycleCovariateIndex = covariates.indexByClass(CycleCovariate.class);
+        Utils.validateArg(contextCovariateIndex >= 0 && cycleCovariateIndex >= 0, "the covariates must include the context and cycle covariates");
+        contextCovariate = (ContextCovariate)covariates.get(contextCovariateIndex);
+        maximumCycleValue = ((CycleCovariate)covariates.get(cycleCovariateIndex)).getMaximumCycleValue();
+    }
+
+    /**
+     * @return the index of the context covariate in the covariate list (and of its table in the recalibration tables)
+     */
+    public int getContextCovariateIndex() {
+        return contextCovariateIndex;
+    }
+
+    /**
+     * @return the index of the cycle covariate in the covariate list (and of its table in the recalibration tables)
+     */
+    public int getCycleCovariateIndex() {
+        return cycleCovariateIndex;
+    }
+
+    /**
+     * Prepare to evaluate the covariates of the bases of a read
+     *
+     * @param read the read
+     * @param header SAM header for the read
+     * @param recordIndelValues are keys for the indel event types needed? If not, they are all 0, as in ReadCovariates.
+     */
+    public void setRead(final GATKRead read, final SAMFileHeader header, final boolean recordIndelValues) {
+        this.recordIndelValues = recordIndelValues;
+        readLength = read.getLength();
+        readGroupKey = readGroupCovariate.keyFromValue(ReadGroupCovariate.getID(ReadUtils.getSAMReadGroupRecord(read, header)));
+
+        if ( readLength > mismatchContextKeys.length ) {
+            basesBuffer = new byte[readLength];
+            mismatchContextKeys = new int[readLength];
+            indelContextKeys = new int[readLength];
+        }
+        contextCovariate.recordKeys(read, basesBuffer, mismatchContextKeys, recordIndelValues ? indelContextKeys : null);
+
+        // see CycleCovariate.cycleKey
+        final boolean isSecondInPair = read.isPaired() && read.isSecondOfPair();
+        final int readOrderFactor = isSecondInPair ? -1 : 1;
+        if ( read.isReverseStrand() ) {
+            firstCycle = readLength * readOrderFactor;
+            cycleIncrement = -1 * readOrderFactor;
+        } else {
+            firstCycle = readOrderFactor;
+            cycleIncrement = readOrderFactor;
+        }
+        maxCycleOffsetForIndels = readLength - CycleCovariate.CUSHION_FOR_INDELS - 1;
+
+        // the cycle with the largest absolute value is +/- readLength, so make sure that's allowed now, rather than
+        // checking every base
+        CycleCovariate.keyFromCycle(readLength, maximumCycleValue);
+    }
+
+    /**
+     * @return the read group key of the current read
+     */
+    public int getReadGroupKey() {
+        return readGroupKey;
+    }
+
+    /**
+     * @param offset offset of a base in the current read
+     * @param eventIndex ordinal of the event type
+     * @return the context covariate key of the base for the event type, or -1 if it has none
+     */
+    public int getContextKey(final int offset, final int eventIndex) {
+        if ( eventIndex == SUBSTITUTION_INDEX ) {
+            return mismatchContextKeys[offset];
+        }
+        return recordIndelValues ? indelContextKeys[offset] : 0;
+    }
+
+    /**
+     * @param offset offset of a base in the current read
+     * @param eventIndex ordinal of the event type
+     * @return the cycle covariate key of the base for the event type, or -1 if it has none
+     */
+    public int getCycleKey(final int offset, final int eventIndex) {
+        if ( eventIndex != SUBSTITUTION_INDEX ) {
+            if ( !recordIndelValues ) {
+                return 0;
+            }
+            if ( offset < CycleCovariate.CUSHION_FOR_INDELS || offset > maxCycleOffsetForIndels ) {
+                return -1;
+            }
+        }
+        return CycleCovariate.keyFromCycle(firstCycle + offset * cycleIncrement, maximumCycleValue);
+    }
+}
@@ -0,0 +1,302 @@
+package org.broadinstitute.hellbender.utils.smithwaterman;
+
+import htsjdk.samtools.Cigar;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.AlignmentUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Smith-Waterman aligner computing the same alignments as {@link SWPairwiseAlignment}, meant to be reused for many alignments
+ *
+ * Rather than allocating full scoring and back track matrices for every alignment, this aligner only keeps two rows of
+ * scores plus the last column (which is all the traceback needs from the scoring matrix), stores the back track of
+ * all rows in a single flat buffer, and reuses these buffers from one alignment to the next, only growing them when
+ * a pair of sequences is larger than any previous one.
+ *
+ * When the offset of the alignment is known in advance, only the cells within a band of diagonals around it are
+ * computed, which makes the cost of an alignment proportional to the length of the reference times the width of
+ * the band instead of the product of the lengths of the sequences. The recurrence, its tie breaking and the traceback
+ * are those of {@link SWPairwiseAlignment}, so an unbanded alignment is identical to the reference one, and so is a
+ * banded one whose best path stays within the band. If the band doesn't reach the cells the traceback may start
+ * from, the alignment is computed without a band.
+ *
+ * ************************************************************************
+ * ****                    IMPORTANT NOTE:                             ****
+ * ****  This class assumes that all bytes come from UPPERCASED chars! ****
+ * ************************************************************************
+ *
+ * This class is not thread-safe.
+ */
+public final class BandedSmithWatermanAligner implements SmithWatermanAligner {
+
+    // never let matrix elements drop below this cutoff
+    private static final int MATRIX_MIN_CUTOFF = (int) -1.0e8;
+
+    // score of the cells out of the band, low enough to never be picked by the recurrence nor the traceback
+    private static final int LOW_INIT_VALUE = Integer.MIN_VALUE / 2;
+
+    // scores of the previous and current rows; after an alignment curRow holds the bottom row
+    private int[] lastRow = new int[0];
+    private int[] curRow = new int[0];
+
+    // the best vertical gap ending at each column so far, and its length
+    private int[] bestGapV = new int[0];
+    private int[] gapSizeV = new int[0];
+
+    // the score of the last column of each row
+    private int[] lastColumn = new int[0];
+
+    // the back track of the cells of all rows within the band, row after row; cell (i, j) is at btrackRowOffsets[i] + j
+    private int[] btrack = new int[0];
+    private int[] btrackRowOffsets = new int[0];
+
+    @Override
+    public SmithWatermanAlignment align(final byte[] reference, final byte[] alternate, final SWPairwiseAlignment.Parameters parameters,
+                                        final SWPairwiseAlignment.OverhangStrategy overhangStrategy) {
+        validateArgs(reference, alternate, parameters, overhangStrategy);
+        return alignWithinDiagonals(reference, alternate, parameters, overhangStrategy, -alternate.length, reference.length);
+    }
+
+    @Override
+    public SmithWatermanAlignment align(final byte[] reference, final byte[] alternate, final SWPairwiseAlignment.Parameters parameters,
+                                        final SWPairwiseAlignment.OverhangStrategy overhangStrategy, final int expectedOffset, final int bandWidth) {
+        validateArgs(reference, alternate, parameters, overhangStrategy);
+        Utils.validateArg(bandWidth >= 0, () -> "bandWidth must be >= 0 but got " + bandWidth);
+
+        // diagonals are numbered by row - column, which is the offset of the alignment for the cells on them
+        final int minDiagonal = Math.max(-alternate.length, expectedOffset - bandWidth);
+        final int maxDiagonal = Math.min(reference.length, expectedOffset + bandWidth);
+        if ( bandReachesTracebackStart(reference.length, alternate.length, minDiagonal, maxDiagonal, overhangStrategy) ) {
+            return alignWithinDiagonals(reference, alternate, parameters, overhangStrategy, minDiagonal, maxDiagonal);
+        } else {
+            return alignWithinDiagonals(reference, alternate, parameters, overhangStrategy, -alternate.length, reference.length);
+        }
+    }
+
+    private static void validateArgs(final byte[] reference, final byte[] alternate, final SWPairwiseAlignment.Parameters parameters,
+                                     final SWPairwiseAlignment.OverhangStrategy overhangStrategy) {
+        Utils.nonNull(parameters, "parameters");
+        Utils.nonNull(overhangStrategy, "overhangStrategy");
+        if ( reference == null || reference.length == 0 || alternate == null || alternate.length == 0 )
+            throw new IllegalArgumentException("Non-null, non-empty sequences are required for the Smith-Waterman calculation");
+    }
+
+    /**
+     * Whether the band contains the corner of the matrix for the INDEL strategy, or a cell of the last column otherwise
+     */
+    private static boolean bandReachesTracebackStart(final int refLength, final int altLength, final int minDiagonal, final int maxDiagonal,
+                                                     final SWPairwiseAlignment.OverhangStrategy overhangStrategy) {
+        if ( overhangStrategy == SWPairwiseAlignment.OverhangStrategy.INDEL ) {
+            return minDiagonal <= refLength - altLength && refLength - altLength <= maxDiagonal;
+        } else {
+            return minDiagonal <= refLength - altLength && 1 - altLength <= maxDiagonal;
+        }
+    }
+
+    /**
+     * Aligns the alternate sequence to the reference sequence, only computing the cells (i, j) with
+     * minDiagonal <= i - j <= maxDiagonal
+     */
+    private SmithWatermanAlignment alignWithinDiagonals(final byte[] reference, final byte[] alternate, final SWPairwiseAlignment.Parameters parameters,
+                                                        final SWPairwiseAlignment.OverhangStrategy overhangStrategy, final int minDiagonal, final int maxDiagonal) {
+        // avoid running full Smith-Waterman if there is an exact match of alternate in reference
+        // NOTE: This approach only works for SOFTCLIP and IGNORE overhang strategies
+        if ( overhangStrategy == SWPairwiseAlignment.OverhangStrategy.SOFTCLIP || overhangStrategy == SWPairwiseAlignment.OverhangStrategy.IGNORE ) {
+            final int matchIndex = Utils.lastIndexOf(reference, alternate);
+            if ( matchIndex != -1 ) {
+                final Cigar cigar = new Cigar(Collections.singletonList(SWPairwiseAlignment.makeElement(SWPairwiseAlignment.State.MATCH, alternate.length)));
+                return new SWPairwiseAlignment.SWPairwiseAlignmentResult(AlignmentUtils.consolidateCigar(cigar), matchIndex);
+            }
+        }
+
+        final int nrow = reference.length + 1;
+        final int ncol = alternate.length + 1;
+        layOutBuffers(nrow, ncol, minDiagonal, maxDiagonal);
+        calculateMatrix(reference, alternate, parameters, overhangStrategy, minDiagonal, maxDiagonal);
+        return calculateCigar(nrow, ncol, minDiagonal, maxDiagonal, overhangStrategy);
+    }
+
+    private static int firstColumnInBand(final int row, final int maxDiagonal) {
+        return Math.max(1, row - maxDiagonal);
+    }
+
+    private static int lastColumnInBand(final int row, final int ncol, final int minDiagonal) {
+        return Math.min(ncol - 1, row - minDiagonal);
+    }
+
+    /**
+     * Grows the buffers if needed for a matrix of the given dimensions, and computes where each row of the band
+     * goes in the back track buffer
+     */
+    private void layOutBuffers(final int nrow, final int ncol, final int minDiagonal, final int maxDiagonal) {
+        if ( curRow.length < ncol ) {
+            lastRow = new int[ncol];
+            curRow = new int[ncol];
+            bestGapV = new int[ncol];
+            gapSizeV = new int[ncol];
+        }
+        if ( lastColumn.length < nrow ) {
+            lastColumn = new int[nrow];
+            btrackRowOffsets = new int[nrow];
+        }
+
+        int btrackSize = 0;
+        for ( int i = 1; i < nrow; i++ ) {
+            final int start = firstColumnInBand(i, maxDiagonal);
+            final int end = lastColumnInBand(i, ncol, minDiagonal);
+            btrackRowOffsets[i] = btrackSize - start;
+            btrackSize += Math.max(0, end - start + 1);
+        }
+        if ( btrack.length < btrackSize ) {
+            btrack = new int[btrackSize];
+        }
+    }
+
+    /**
+     * Calculates the scores and back track of the cells within the band, row by row
+     *
+     * Cells out of the band that the cells in the band look at are given a score so low they are never picked, so
+     * that every cell in the band is computed exactly as in {@link SWPairwiseAlignment}.
+     */
+    private void calculateMatrix(final byte[] reference, final byte[] alternate, final SWPairwiseAlignment.Parameters parameters,
+                                 final SWPairwiseAlignment.OverhangStrategy overhangStrategy, final int minDiagonal, final int maxDiagonal) {
+        final int nrow = reference.length + 1;
+        final int ncol = alternate.length + 1;
+
+        //field access is pricey if done enough times so we extract those out
+        final int w_open = parameters.w_open;
+        final int w_extend = parameters.w_extend;
+        final int w_match = parameters.w_match;
+        final int w_mismatch = parameters.w_mismatch;
+        final int[] bestGapV = this.bestGapV;
+        final int[] gapSizeV = this.gapSizeV;
+        final int[] btrack = this.btrack;
+
+        // we need to initialize the first row and column with gap penalties if we want to keep track of indels at the edges of alignments
+        final boolean penalizeEdges = overhangStrategy == SWPairwiseAlignment.OverhangStrategy.INDEL || overhangStrategy == SWPairwiseAlignment.OverhangStrategy.LEADING_INDEL;
+
+        Arrays.fill(bestGapV, 0, ncol, LOW_INIT_VALUE);
+        Arrays.fill(gapSizeV, 0, ncol, 0);
+
+        int[] lastRow = this.lastRow;
+        int[] curRow = this.curRow;
+        curRow[0] = 0;
+        for ( int j = 1; j < ncol; j++ ) {
+            curRow[j] = penalizeEdges ? w_open + (j - 1) * w_extend : 0;
+        }
+
+        for ( int i = 1; i < nrow; i++ ) {
+            final int[] swap = lastRow;
+            lastRow = curRow;
+            curRow = swap;
+
+            final byte a_base = reference[i-1]; // letter in a at the current pos
+            final int start = firstColumnInBand(i, maxDiagonal);
+            final int end = lastColumnInBand(i, ncol, minDiagonal);
+            final int btrackOffset = btrackRowOffsets[i];
+
+            curRow[0] = penalizeEdges ? w_open + (i - 1) * w_extend : 0;
+            if ( start > 1 && start - 1 < ncol ) {
+                curRow[start - 1] = LOW_INIT_VALUE;
+            }
+
+            int bestGapH = LOW_INIT_VALUE;
+            int gapSizeH = 0;
+            for ( int j = start; j <= end; j++ ) {
+                final int step_diag = lastRow[j-1] + (a_base == alternate[j-1] ? w_match : w_mismatch);
+
+                // the best vertical gap ending here is either one just opened above, or the previous best one extended
+                // by one base. IMPORTANT: this only works for linear w(k)=wopen+(k-1)*wextend, see SWPairwiseAlignment
+                int prev_gap = lastRow[j] + w_open;
+                bestGapV[j] += w_extend;
+                if ( prev_gap > bestGapV[j] ) {
+                    bestGapV[j] = prev_gap;
+                    gapSizeV[j] = 1;
+                } else {
+                    gapSizeV[j]++;
+                }
+                final int step_down = bestGapV[j];
+
+                // and likewise for the best horizontal gap
+                prev_gap = curRow[j-1] + w_open;
+                bestGapH += w_extend;
+                if ( prev_gap > bestGapH ) {
+                    bestGapH = prev_gap;
+                    gapSizeH = 1;
+                } else {
+                    gapSizeH++;
+                }
+                final int step_right = bestGapH;
+
+                //priority here will be step diagonal, step right, step down
+                if ( step_diag >= step_down && step_diag >= step_right ) {
+                    curRow[j] = Math.max(MATRIX_MIN_CUTOFF, step_diag);
+                    btrack[btrackOffset + j] = 0;
+                } else if ( step_right >= step_down ) {
+                    curRow[j] = Math.max(MATRIX_MIN_CUTOFF, step_right);
+                    btrack[btrackOffset + j] = -gapSizeH; // negative = horizontal
+                } else {
+                    curRow[j] = Math.max(MATRIX_MIN_CUTOFF, step_down);
+                    btrack[btrackOffset + j] = gapSizeV[j]; // positive = vertical
+                }
+            }
+
+            final int afterBand = Math.max(end, 0) + 1;
+            if ( afterBand < ncol ) {
+                curRow[afterBand] = LOW_INIT_VALUE;
+            }
+            lastColumn[i] = start <= end && end == ncol - 1 ? curRow[ncol - 1] : LOW_INIT_VALUE;
+        }
+
+        this.lastRow = lastRow;
+        this.curRow = curRow;
+    }
+
+    /**
+     * Picks the cell the alignment ends at as {@link SWPairwiseAlignment} does, and builds the CIGAR from there
+     */
+    private SmithWatermanAlignment calculateCigar(final int nrow, final int ncol, final int minDiagonal, final int maxDiagonal,
+                                                  final SWPairwiseAlignment.OverhangStrategy overhangStrategy) {
+        final int refLength = nrow - 1;
+        final int altLength = ncol - 1;
+
+        int p1 = 0;
+        int p2 = 0;
+        int maxscore = Integer.MIN_VALUE; // sw scores are allowed to be negative
+        int segment_length = 0;
+
+        if ( overhangStrategy == SWPairwiseAlignment.OverhangStrategy.INDEL ) {
+            p1 = refLength;
+            p2 = altLength;
+        } else {
+            // the largest score on the last column, the last one of them if several are equal
+            p2 = altLength;
+            for ( int i = 1; i < nrow; i++ ) {
+                if ( lastColumn[i] >= maxscore ) {
+                    p1 = i;
+                    maxscore = lastColumn[i];
+                }
+            }
+            // or a larger score on the bottom row, or an equal one closer to the diagonal
+            if ( overhangStrategy != SWPairwiseAlignment.OverhangStrategy.LEADING_INDEL ) {
+                final int[] bottomRow = curRow;
+                for ( int j = firstColumnInBand(refLength, maxDiagonal), end = lastColumnInBand(refLength, ncol, minDiagonal); j <= end; j++ ) {
+                    final int curScore = bottomRow[j];
+                    if ( curScore > maxscore ||
+                            (curScore == maxscore && Math.abs(refLength - j) < Math.abs(p1 - p2)) ) {
+                        p1 = refLength;
+                        p2 = j;
+                        maxscore = curScore;
+                        segment_length = altLength - j; // end of sequence 2 is overhanging; we will just record it as 'M' segment
+                    }
+                }
+            }
+        }
+
+        final int[] btrack = this.btrack;
+        final int[] btrackRowOffsets = this.btrackRowOffsets;
+        return SWPairwiseAlignment.traceBack((i, j) -> btrack[btrackRowOffsets[i] + j], p1, p2, segment_length, overhangStrategy);
+    }
+}
@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.IntBinaryOperator;
 
 /**
  * Pairwise discrete smith-waterman alignment
@@ -20,8 +21,10 @@ import java.util.List;
  * ****                    IMPORTANT NOTE:                             ****
  * ****  This class assumes that all bytes come from UPPERCASED chars! ****
  * ************************************************************************
+ *
+ * This is the reference {@link SmithWatermanAligner} implementation (see {@link SmithWatermanAligner.Implementation#FULL_MATRIX}).
  */
-public final class SWPairwiseAlignment {
+public final class SWPairwiseAlignment implements SmithWatermanAlignment {
 
     /**
      * Holds the core Smith-Waterman alignment parameters of
@@ -159,8 +162,10 @@ public final class SWPairwiseAlignment {
         this(seq1,seq2,ORIGINAL_DEFAULT);
     }
 
+    @Override
     public Cigar getCigar() { return alignmentResult.cigar ; }
 
+    @Override
     public int getAlignmentStart2wrt1() { return alignmentResult.alignment_offset; }
 
     /**
@@ -350,13 +355,19 @@ public final class SWPairwiseAlignment {
     /*
      * Class to store the result of calculating the CIGAR from the back track matrix
      */
-    private static final class SWPairwiseAlignmentResult {
+    static final class SWPairwiseAlignmentResult implements SmithWatermanAlignment {
         public final Cigar cigar;
         public final int alignment_offset;
         SWPairwiseAlignmentResult(final Cigar cigar, final int alignment_offset) {
             this.cigar = cigar;
             this.alignment_offset = alignment_offset;
         }
+
+        @Override
+        public Cigar getCigar() { return cigar; }
+
+        @Override
+        public int getAlignmentStart2wrt1() { return alignment_offset; }
     }
 
     /**
@@ -411,6 +422,20 @@ public final class SWPairwiseAlignment {
                 }
             }
         }
+        return traceBack((i, j) -> btrack[i][j], p1, p2, segment_length, overhangStrategy);
+    }
+
+    /**
+     * Builds the CIGAR for the alignment by following the back track from the cell the alignment ends at
+     *
+     * @param btrack               the back track value of the cell at a given row and column
+     * @param p1                   the row of the cell the alignment ends at
+     * @param p2                   the column of the cell the alignment ends at
+     * @param segment_length       the number of bases of the alternate sequence overhanging the end of the reference
+     * @param overhangStrategy    the strategy to use for dealing with overhangs
+     * @return non-null SWPairwiseAlignmentResult object
+     */
+    static SWPairwiseAlignmentResult traceBack(final IntBinaryOperator btrack, int p1, int p2, int segment_length, final OverhangStrategy overhangStrategy) {
         final List<CigarElement> lce = new ArrayList<>(5);
         if ( segment_length > 0 && overhangStrategy == OverhangStrategy.SOFTCLIP ) {
             lce.add(makeElement(State.CLIP, segment_length));
@@ -422,7 +447,7 @@ public final class SWPairwiseAlignment {
 
         State state = State.MATCH;
         do {
-            final int btr = btrack[p1][p2];
+            final int btr = btrack.applyAsInt(p1, p2);
             final State new_state;
             int step_length = 1;
             if ( btr > 0 ) {
@@ -486,7 +511,7 @@ public final class SWPairwiseAlignment {
         return new SWPairwiseAlignmentResult(AlignmentUtils.consolidateCigar(new Cigar(lce)), alignment_offset);
     }
 
-    private static CigarElement makeElement(final State state, final int length) {
+    static CigarElement makeElement(final State state, final int length) {
         CigarOperator op = null;
         switch (state) {
             case MATCH: op = CigarOperator.M; break;
@@ -0,0 +1,71 @@
+package org.broadinstitute.hellbender.utils.smithwaterman;
+
+import java.util.function.Supplier;
+
+/**
+ * Aligns an alternate sequence to a reference sequence with Smith-Waterman
+ *
+ * Implementations may keep buffers from one alignment to the next, so unless stated otherwise an aligner must not be
+ * shared between threads. All implementations produce the same alignment as {@link SWPairwiseAlignment} for an
+ * unbanded alignment.
+ */
+public interface SmithWatermanAligner {
+
+    /**
+     * Band width meaning that all alignment paths are considered, for the methods taking an optional band width
+     */
+    int NO_BAND = -1;
+
+    /**
+     * Aligns the alternate sequence to the reference sequence
+     *
+     * @param reference the reference sequence
+     * @param alternate the alternate sequence
+     * @param parameters the SW parameters to use
+     * @param overhangStrategy the overhang strategy to use
+     * @return the alignment of the alternate sequence to the reference sequence. Never {@code null}.
+     */
+    SmithWatermanAlignment align(final byte[] reference, final byte[] alternate, final SWPairwiseAlignment.Parameters parameters,
+                                 final SWPairwiseAlignment.OverhangStrategy overhangStrategy);
+
+    /**
+     * Aligns the alternate sequence to the reference sequence when the offset of the alignment is known in advance
+     *
+     * Implementations may only consider alignment paths that stay within {@code bandWidth} diagonals of the one starting
+     * at {@code expectedOffset}, which is much cheaper when the sequences are long and the indels between them short,
+     * but means paths that leave the band are missed. The default implementation ignores the band and computes
+     * the full alignment.
+     *
+     * @param reference the reference sequence
+     * @param alternate the alternate sequence
+     * @param parameters the SW parameters to use
+     * @param overhangStrategy the overhang strategy to use
+     * @param expectedOffset the expected 0-based offset in the reference of the start of the alternate sequence
+     * @param bandWidth how far from the expected offset (in bases) the alignment path is allowed to go. Must be >= 0.
+     * @return the alignment of the alternate sequence to the reference sequence. Never {@code null}.
+     */
+    default SmithWatermanAlignment align(final byte[] reference, final byte[] alternate, final SWPairwiseAlignment.Parameters parameters,
+                                         final SWPairwiseAlignment.OverhangStrategy overhangStrategy, final int expectedOffset, final int bandWidth) {
+        return align(reference, alternate, parameters, overhangStrategy);
+    }
+
+    enum Implementation {
+        /* The reference implementation, which allocates the full scoring and back track matrices for every alignment */
+        FULL_MATRIX(() -> SWPairwiseAlignment::new),
+        /* Same alignments as FULL_MATRIX using reusable buffers, and computing only the band when the expected offset is known */
+        BANDED(BandedSmithWatermanAligner::new);
+
+        private final Supplier<SmithWatermanAligner> makeAligner;
+
+        private Implementation(final Supplier<SmithWatermanAligner> makeAligner) {
+            this.makeAligner = makeAligner;
+        }
+
+        /**
+         * @return a new aligner of this implementation, to be used by a single thread
+         */
+        public SmithWatermanAligner makeNewAligner() {
+            return makeAligner.get();
+        }
+    }
+}
@@ -1,20 +1,36 @@
 package org.broadinstitute.hellbender.utils.variant;
 
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Locatable;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.Utils;
 
-import java.io.File;
+import java.io.*;
 import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
 
 /**
  * Utility class to use with DbSnp files to determine is a locus is
  * a dbSnp site.
+ *
+ * Bit sets may also be built from any source of sites (see {@link #createFromSites}), combined, and saved to and
+ * loaded from a compact gzipped binary file (see {@link #write} and {@link #read}), so that a large set of known
+ * sites need only be decoded once. The file records the known sites inputs and the sequence dictionary the bit set was
+ * built from, and loading it fails if they don't match the current ones.
  */
-public final class DbSnpBitSetUtil {
+public final class DbSnpBitSetUtil implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Identifies the binary format written by {@link #write}. */
+    private static final String MAGIC = "GATKSITES";
+    private static final int FORMAT_VERSION = 2;
 
     private final Map<String, BitSet> sequenceToBitSet = new LinkedHashMap<>();
 
@@ -91,6 +107,51 @@ public final class DbSnpBitSetUtil {
         CloserUtil.close(variantReader);
     }
 
+    /**
+     * Creates a bit set with bits set to true for every position covered by one of the given sites.
+     *
+     * @param sites the sites to load, in any order
+     * @param sequenceDictionary Optionally, a sequence dictionary for the sites, else null. If present, BitSets will
+     * be allocated more efficiently because the maximum size will be known.
+     */
+    public static DbSnpBitSetUtil createFromSites(final Iterator<? extends Locatable> sites, final SAMSequenceDictionary sequenceDictionary) {
+        Utils.nonNull(sites);
+        final DbSnpBitSetUtil bitset = new DbSnpBitSetUtil();
+        while ( sites.hasNext() ) {
+            bitset.addSite(sites.next(), sequenceDictionary);
+        }
+        return bitset;
+    }
+
+    /** Sets the bits for all positions of the given site, allocating the BitSet for its sequence if necessary. */
+    private void addSite(final Locatable site, final SAMSequenceDictionary sequenceDictionary) {
+        BitSet bits = sequenceToBitSet.get(site.getContig());
+        if (bits == null) {
+            final SAMSequenceRecord sequence = sequenceDictionary == null ? null : sequenceDictionary.getSequence(site.getContig());
+            bits = sequence == null ? new BitSet() : new BitSet(sequence.getSequenceLength() + 1);
+            sequenceToBitSet.put(site.getContig(), bits);
+        }
+        bits.set(site.getStart(), site.getEnd() + 1);
+    }
+
+    /**
+     * Adds all the sites of another bit set to this one.
+     *
+     * @return this bit set, for convenience
+     */
+    public DbSnpBitSetUtil union(final DbSnpBitSetUtil other) {
+        Utils.nonNull(other);
+        for (final Map.Entry<String, BitSet> entry : other.sequenceToBitSet.entrySet()) {
+            final BitSet bits = sequenceToBitSet.get(entry.getKey());
+            if (bits == null) {
+                sequenceToBitSet.put(entry.getKey(), (BitSet) entry.getValue().clone());
+            } else {
+                bits.or(entry.getValue());
+            }
+        }
+        return this;
+    }
+
     /**
      * Returns true if there is a dbSnp entry at pos in sequenceName, otherwise false
      */
@@ -105,4 +166,151 @@ public final class DbSnpBitSetUtil {
         return sequenceToBitSet.get(sequenceName).get(pos);
     }
 
+    /**
+     * Returns the first position at or after pos in sequenceName that is a site, or -1 if there is none
+     */
+    public int nextSitePosition(final String sequenceName, final int pos) {
+        final BitSet bits = sequenceToBitSet.get(sequenceName);
+        return bits == null ? -1 : bits.nextSetBit(pos);
+    }
+
+    /**
+     * Returns the first position at or after pos in sequenceName that is not a site
+     */
+    public int nextNonSitePosition(final String sequenceName, final int pos) {
+        final BitSet bits = sequenceToBitSet.get(sequenceName);
+        return bits == null ? pos : bits.nextClearBit(pos);
+    }
+
+    /**
+     * Returns the last position at or before pos in sequenceName that is not a site
+     */
+    public int previousNonSitePosition(final String sequenceName, final int pos) {
+        final BitSet bits = sequenceToBitSet.get(sequenceName);
+        return bits == null ? pos : bits.previousClearBit(pos);
+    }
+
+    /**
+     * Writes this bit set to a file in a binary format that can be loaded with {@link #read(File, List, SAMSequenceDictionary)}
+     *
+     * @param sources the known sites inputs the bit set was built from, recorded in the file so that they can be checked when it is loaded
+     * @param sequenceDictionary the sequence dictionary the bit set was built against, recorded in the file (as a fingerprint) so
+     *                           that it can be checked when it is loaded. May be null.
+     */
+    public void write(final File file, final List<String> sources, final SAMSequenceDictionary sequenceDictionary) {
+        Utils.nonNull(file);
+        try (final OutputStream out = new FileOutputStream(file)) {
+            write(out, sources, sequenceDictionary);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(file, e);
+        }
+    }
+
+    /**
+     * Writes this bit set to a stream in a binary format that can be loaded with
+     * {@link #read(InputStream, String, List, SAMSequenceDictionary)}. The stream is not closed.
+     *
+     * @see #write(File, List, SAMSequenceDictionary)
+     */
+    public void write(final OutputStream outputStream, final List<String> sources, final SAMSequenceDictionary sequenceDictionary) throws IOException {
+        Utils.nonNull(outputStream);
+        Utils.nonNull(sources);
+        final GZIPOutputStream gzipOut = new GZIPOutputStream(outputStream);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzipOut));
+        out.writeUTF(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(sources.size());
+        for (final String source : sources) {
+            out.writeUTF(source);
+        }
+        out.writeUTF(sequenceDictionaryFingerprint(sequenceDictionary));
+        out.writeInt(sequenceToBitSet.size());
+        for (final Map.Entry<String, BitSet> entry : sequenceToBitSet.entrySet()) {
+            out.writeUTF(entry.getKey());
+            final long[] words = entry.getValue().toLongArray();
+            out.writeInt(words.length);
+            for (final long word : words) {
+                out.writeLong(word);
+            }
+        }
+        out.flush();
+        gzipOut.finish();
+    }
+
+    /**
+     * Loads a bit set written by {@link #write(File, List, SAMSequenceDictionary)}, checking that it was built from the
+     * given known sites inputs (in any order) and against the given sequence dictionary.
+     *
+     * @throws UserException.BadInput if the file was built from other known sites or against another sequence dictionary
+     */
+    public static DbSnpBitSetUtil read(final File file, final List<String> expectedSources, final SAMSequenceDictionary expectedSequenceDictionary) {
+        Utils.nonNull(file);
+        try (final InputStream in = new FileInputStream(file)) {
+            return read(in, file.getPath(), expectedSources, expectedSequenceDictionary);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile(file, e);
+        }
+    }
+
+    /**
+     * Loads a bit set written by {@link #write(OutputStream, List, SAMSequenceDictionary)}. The stream is not closed.
+     *
+     * @param sourceName name of the source of the stream, for error messages
+     * @see #read(File, List, SAMSequenceDictionary)
+     */
+    public static DbSnpBitSetUtil read(final InputStream inputStream, final String sourceName,
+                                       final List<String> expectedSources, final SAMSequenceDictionary expectedSequenceDictionary) throws IOException {
+        Utils.nonNull(inputStream);
+        Utils.nonNull(expectedSources);
+        final DbSnpBitSetUtil bitset = new DbSnpBitSetUtil();
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(inputStream)));
+            if (!MAGIC.equals(in.readUTF())) {
+                throw new UserException.MalformedFile(sourceName + " is not a known sites bit set file");
+            }
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new UserException.MalformedFile(sourceName + " has unsupported known sites bit set format version " + version);
+            }
+
+            final List<String> sources = new ArrayList<>();
+            final int nSources = in.readInt();
+            for (int i = 0; i < nSources; i++) {
+                sources.add(in.readUTF());
+            }
+            if (!new HashSet<>(sources).equals(new HashSet<>(expectedSources))) {
+                throw new UserException.BadInput(String.format("The known sites bit set %s was built from the known sites %s, not %s. " +
+                        "Delete it to have it rebuilt from the current known sites.", sourceName, sources, expectedSources));
+            }
+            if (!in.readUTF().equals(sequenceDictionaryFingerprint(expectedSequenceDictionary))) {
+                throw new UserException.BadInput(String.format("The known sites bit set %s was built against a different sequence dictionary. " +
+                        "Delete it to have it rebuilt against the current one.", sourceName));
+            }
+
+            final int nSequences = in.readInt();
+            for (int i = 0; i < nSequences; i++) {
+                final String sequenceName = in.readUTF();
+                final long[] words = new long[in.readInt()];
+                for (int j = 0; j < words.length; j++) {
+                    words[j] = in.readLong();
+                }
+                bitset.sequenceToBitSet.put(sequenceName, BitSet.valueOf(words));
+            }
+        } catch (final EOFException | UTFDataFormatException | ZipException e) {
+            throw new UserException.MalformedFile(sourceName + " is not a valid known sites bit set file: " + e.getMessage());
+        }
+        return bitset;
+    }
+
+    /** The MD5 of the names and lengths of the sequences in the dictionary, in order, or the empty string for a null dictionary. */
+    private static String sequenceDictionaryFingerprint(final SAMSequenceDictionary sequenceDictionary) {
+        if (sequenceDictionary == null) {
+            return "";
+        }
+        final StringBuilder sequences = new StringBuilder();
+        for (final SAMSequenceRecord sequence : sequenceDictionary.getSequences()) {
+            sequences.append(sequence.getSequenceName()).append('\t').append(sequence.getSequenceLength()).append('\n');
+        }
+        return Utils.calcMD5(sequences.toString());
+    }
 }
@@ -13,6 +13,8 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public final class FeatureContextUnitTest extends BaseTest {
 
@@ -65,4 +67,45 @@ public final class FeatureContextUnitTest extends BaseTest {
                     " not a VCFHeader");
         }
     }
+
+    @DataProvider(name = "FeatureBatchQueryDataProvider")
+    public Object[][] getFeatureBatchQueryData() {
+        final SimpleInterval window = new SimpleInterval("1", 100, 1100);
+        return new Object[][] {
+                // Queries within the batch window, in no particular order
+                { window, new SimpleInterval("1", 100, 200) },
+                { window, new SimpleInterval("1", 205, 285) },
+                { window, new SimpleInterval("1", 100, 100) },
+                { window, new SimpleInterval("1", 1000, 1000) },
+                { window, new SimpleInterval("1", 500, 600) },
+                // Queries extending outside the batch window
+                { window, new SimpleInterval("1", 1, 200) },
+                { window, new SimpleInterval("1", 1000, 1200) },
+                { window, new SimpleInterval("2", 200, 600) }
+        };
+    }
+
+    @Test(dataProvider = "FeatureBatchQueryDataProvider")
+    public void testFeatureBatchQueriesMatchUnbatchedQueries( final SimpleInterval window, final SimpleInterval queryInterval ) {
+        final ArtificialFeatureContainingCommandLineProgram toolInstance = new ArtificialFeatureContainingCommandLineProgram();
+        try (final FeatureManager batchedManager = new FeatureManager(toolInstance);
+             final FeatureManager unbatchedManager = new FeatureManager(toolInstance)) {
+            final FeatureBatch batch = new FeatureBatch(batchedManager, window);
+            final FeatureContext batchedContext = FeatureContext.fromBatch(batch, queryInterval);
+            final FeatureContext unbatchedContext = new FeatureContext(unbatchedManager, queryInterval);
+
+            Assert.assertTrue(batchedContext.hasBackingDataSource());
+            Assert.assertEquals(batchedContext.getInterval(), queryInterval);
+            // Query twice, so that the second query is answered from the Features prefetched by the first
+            for ( int i = 0; i < 2; ++i ) {
+                Assert.assertEquals(featureLocations(batchedContext.getValues(toolInstance.featureArgument)),
+                                    featureLocations(unbatchedContext.getValues(toolInstance.featureArgument)),
+                                    "Wrong Features returned by batched FeatureContext for interval " + queryInterval);
+            }
+        }
+    }
+
+    private static List<SimpleInterval> featureLocations( final List<Feature> features ) {
+        return features.stream().map(SimpleInterval::new).collect(Collectors.toList());
+    }
 }
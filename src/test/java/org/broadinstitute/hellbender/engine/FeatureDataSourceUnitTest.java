@@ -5,6 +5,7 @@ import htsjdk.tribble.Feature;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFHeader;
 import org.apache.commons.lang3.tuple.Pair;
+import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
@@ -38,6 +39,11 @@ public final class FeatureDataSourceUnitTest extends BaseTest {
         FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, "MyName", -1);
     }
 
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testHandleInvalidQueryLookbehind() {
+        FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(new FeatureInput<>(QUERY_TEST_VCF.getAbsolutePath(), "MyName"), 0, -1, VariantContext.class);
+    }
+
     @Test(expectedExceptions = UserException.class)
     public void testHandleQueryOverUnindexedFile() {
         try ( FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(UNINDEXED_VCF) ) {
@@ -356,6 +362,48 @@ public final class FeatureDataSourceUnitTest extends BaseTest {
         }
     }
 
+    /**
+     * Tests correctness of Feature caching behavior with a query lookbehind (and therefore an {@link IntervalTreeFeatureCache})
+     * by executing multiple queries on the same FeatureDataSource
+     */
+    @Test(dataProvider = "SingleDataSourceMultipleQueriesTestData")
+    public void testSingleDataSourceMultipleQueriesWithLookbehind( final List<Pair<SimpleInterval, List<String>>> testQueries ) {
+        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(new FeatureInput<>(QUERY_TEST_VCF.getAbsolutePath(), "test"), FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES, 1000, VariantContext.class)) {
+            for ( Pair<SimpleInterval, List<String>> testQuery : testQueries ) {
+                final SimpleInterval queryInterval = testQuery.getLeft();
+                final List<String> expectedVariantIDs = testQuery.getRight();
+
+                final List<VariantContext> queryResults = featureSource.queryAndPrefetch(queryInterval);
+                checkVariantQueryResults(queryResults, expectedVariantIDs, queryInterval);
+            }
+        }
+    }
+
+    @Test
+    public void testBackwardQueriesAreCacheHitsWithLookbehind() {
+        final List<Pair<SimpleInterval, List<String>>> backwardQueries = Arrays.asList(
+                Pair.of(new SimpleInterval("1", 100, 200), Arrays.asList("a", "b", "c")),
+                Pair.of(new SimpleInterval("1", 99, 205), Arrays.asList("a", "b", "c", "d")),
+                Pair.of(new SimpleInterval("1", 205, 285), Arrays.asList("d", "e", "f", "g")),
+                Pair.of(new SimpleInterval("1", 100, 200), Arrays.asList("a", "b", "c")),
+                Pair.of(new SimpleInterval("1", 1, 1), Collections.<String>emptyList())
+        );
+
+        try (final FeatureDataSource<VariantContext> forwardOnlySource = new FeatureDataSource<>(QUERY_TEST_VCF);
+             final FeatureDataSource<VariantContext> lookbehindSource = new FeatureDataSource<>(new FeatureInput<>(QUERY_TEST_VCF.getAbsolutePath(), "test"), FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES, 1000, VariantContext.class)) {
+            for ( Pair<SimpleInterval, List<String>> query : backwardQueries ) {
+                checkVariantQueryResults(forwardOnlySource.queryAndPrefetch(query.getLeft()), query.getRight(), query.getLeft());
+                checkVariantQueryResults(lookbehindSource.queryAndPrefetch(query.getLeft()), query.getRight(), query.getLeft());
+            }
+
+            // Every backup is a miss for the default cache, but only the first query misses with a lookbehind
+            Assert.assertEquals(forwardOnlySource.getNumCacheMisses(), 4);
+            Assert.assertEquals(forwardOnlySource.getNumCacheHits(), 1);
+            Assert.assertEquals(lookbehindSource.getNumCacheMisses(), 1);
+            Assert.assertEquals(lookbehindSource.getNumCacheHits(), 4);
+        }
+    }
+
     @DataProvider(name = "GVCFQueryTestData")
     public Object[][] getGVCFQueryTestData() {
 
@@ -648,4 +696,81 @@ public final class FeatureDataSourceUnitTest extends BaseTest {
      * End of direct testing on the FeatureCache inner class
      *********************************************************/
 
+    /***************************************************************
+     * Direct testing on the IntervalTreeFeatureCache inner class
+     ***************************************************************/
+
+    @Test
+    public void testIntervalTreeCacheRetrievalInAnyOrder() {
+        // Same Features as in the FeatureCache trimming test: sorted by start, but not by end
+        final List<ArtificialTestFeature> feats = Arrays.asList(
+                new ArtificialTestFeature("1", 1, 1),
+                new ArtificialTestFeature("1", 1, 100),
+                new ArtificialTestFeature("1", 1, 1),
+                new ArtificialTestFeature("1", 1, 50),
+                new ArtificialTestFeature("1", 1, 3),
+                new ArtificialTestFeature("1", 1, 5),
+                new ArtificialTestFeature("1", 5, 5),
+                new ArtificialTestFeature("1", 5, 50),
+                new ArtificialTestFeature("1", 5, 10),
+                new ArtificialTestFeature("1", 50, 100),
+                new ArtificialTestFeature("1", 50, 50),
+                new ArtificialTestFeature("1", 50, 200),
+                new ArtificialTestFeature("1", 100, 100),
+                new ArtificialTestFeature("1", 100, 110),
+                new ArtificialTestFeature("1", 100, 200),
+                new ArtificialTestFeature("1", 100, 150),
+                new ArtificialTestFeature("1", 100, 199)
+        );
+        final IntervalTreeFeatureCache<ArtificialTestFeature> cache = new IntervalTreeFeatureCache<>();
+        cache.fill(feats.iterator(), new SimpleInterval("1", 1, 200));
+        Assert.assertEquals(cache.size(), feats.size());
+
+        // Query every interval in the cache, with decreasing starts, and compare against a brute-force scan
+        for ( int start = 200; start >= 1; start -= 3 ) {
+            for ( int end = start; end <= 200; end += 7 ) {
+                final SimpleInterval query = new SimpleInterval("1", start, end);
+                Assert.assertTrue(cache.cacheHit(query), "Unexpected cache miss for " + query);
+
+                final List<ArtificialTestFeature> expected = feats.stream().filter(f -> f.getStart() <= query.getEnd() && f.getEnd() >= query.getStart()).collect(Collectors.toList());
+                Assert.assertEquals(cache.getCachedFeatures(query), expected, "Wrong Features retrieved for " + query);
+            }
+        }
+
+        Assert.assertEquals(cache.getNumCacheMisses(), 0);
+        Assert.assertTrue(cache.getNumBackwardCacheHits() > 0);
+        Assert.assertFalse(cache.cacheHit(new SimpleInterval("1", 150, 201)));
+        Assert.assertFalse(cache.cacheHit(new SimpleInterval("2", 1, 10)));
+        Assert.assertEquals(cache.getNumCacheMisses(), 2);
+    }
+
+    @Test
+    public void testIntervalTreeCacheEmptyRegion() {
+        final IntervalTreeFeatureCache<ArtificialTestFeature> cache = new IntervalTreeFeatureCache<>();
+        Assert.assertFalse(cache.cacheHit(new SimpleInterval("1", 1, 100)), "Unexpected cache hit before fill");
+
+        cache.fill(Collections.<ArtificialTestFeature>emptyIterator(), new SimpleInterval("1", 1, 100));
+        Assert.assertTrue(cache.cacheHit(new SimpleInterval("1", 50, 60)), "Unexpected cache miss");
+        Assert.assertTrue(cache.getCachedFeatures(new SimpleInterval("1", 50, 60)).isEmpty(), "Should get back empty List for empty region");
+        Assert.assertTrue(cache.cacheHit(new SimpleInterval("1", 1, 10)), "Unexpected cache miss");
+        Assert.assertTrue(cache.getCachedFeatures(new SimpleInterval("1", 1, 10)).isEmpty(), "Should get back empty List for empty region");
+    }
+
+    @Test(expectedExceptions = GATKException.class)
+    public void testIntervalTreeCacheRejectsUnsortedFeatures() {
+        final IntervalTreeFeatureCache<ArtificialTestFeature> cache = new IntervalTreeFeatureCache<>();
+        cache.fill(Arrays.asList(new ArtificialTestFeature("1", 10, 20), new ArtificialTestFeature("1", 5, 20)).iterator(), new SimpleInterval("1", 1, 100));
+    }
+
+    @Test(expectedExceptions = GATKException.class)
+    public void testIntervalTreeCacheRetrievalOutsideCachedInterval() {
+        final IntervalTreeFeatureCache<ArtificialTestFeature> cache = new IntervalTreeFeatureCache<>();
+        cache.fill(Arrays.asList(new ArtificialTestFeature("1", 10, 20)).iterator(), new SimpleInterval("1", 10, 100));
+        cache.getCachedFeatures(new SimpleInterval("1", 1, 50));
+    }
+
+    /***************************************************************
+     * End of direct testing on the IntervalTreeFeatureCache inner class
+     ***************************************************************/
+
 }
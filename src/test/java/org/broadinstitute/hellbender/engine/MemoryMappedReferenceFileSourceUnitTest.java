@@ -0,0 +1,103 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Random;
+
+public final class MemoryMappedReferenceFileSourceUnitTest extends BaseTest {
+
+    private static final File TEST_REFERENCE = new File(hg19MiniReference);
+
+    @Test(expectedExceptions = UserException.class)
+    public void testNonExistentReference() {
+        new MemoryMappedReferenceFileSource(BaseTest.getSafeNonExistentFile("nonexistent.fasta"));
+    }
+
+    @Test(expectedExceptions = UserException.MissingReferenceFaiFile.class)
+    public void testReferenceWithMissingFaiFile() {
+        new MemoryMappedReferenceFileSource(new File(publicTestDir + "fastaWithoutFai.fasta"));
+    }
+
+    @Test(expectedExceptions = UserException.MissingReferenceDictFile.class)
+    public void testReferenceWithMissingDictFile() {
+        new MemoryMappedReferenceFileSource(new File(publicTestDir + "fastaWithoutDict.fasta"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNullReference() {
+        new MemoryMappedReferenceFileSource(null);
+    }
+
+    @Test
+    public void testGetSequenceDictionary() {
+        try (ReferenceDataSource mapped = new MemoryMappedReferenceFileSource(TEST_REFERENCE);
+             ReferenceDataSource cached = new ReferenceFileSource(TEST_REFERENCE)) {
+            final SAMSequenceDictionary dictionary = mapped.getSequenceDictionary();
+            Assert.assertEquals(dictionary.size(), 4);
+            dictionary.assertSameDictionary(cached.getSequenceDictionary());
+        }
+    }
+
+    @DataProvider(name = "ReferenceIntervalDataProvider")
+    public Object[][] getReferenceIntervals() {
+        return new Object[][] {
+                { new SimpleInterval("1", 1, 3), "NNN" },
+                { new SimpleInterval("1", 11041, 11045), "GCAAA" },
+                { new SimpleInterval("1", 11210, 11220), "CGGTGCTGTGC" },
+                { new SimpleInterval("2", 9995, 10005), "NNNNNNCGTAT" },
+                { new SimpleInterval("2", 10001, 10080), "CGTATCCCACACACCACACCCACACACCACACCCACACACACCCACACCCACACCCACACACACCACACCCACACACCAC" },
+                { new SimpleInterval("2", 10005, 10084), "TCCCACACACCACACCCACACACCACACCCACACACACCCACACCCACACCCACACACACCACACCCACACACCACACCC" },
+                { new SimpleInterval("2", 15995, 16000), "TGTCAG" }
+        };
+    }
+
+    @Test(dataProvider = "ReferenceIntervalDataProvider")
+    public void testQueryAndPrefetch( final SimpleInterval interval, final String expectedBases ) {
+        try (ReferenceDataSource reference = ReferenceDataSource.of(TEST_REFERENCE, true)) {
+            Assert.assertEquals(new String(reference.queryAndPrefetch(interval).getBases()), expectedBases,
+                    "Wrong bases returned from queryAndPrefetch() for interval " + interval);
+        }
+    }
+
+    @Test
+    public void testRandomQueriesMatchReferenceFileSource() {
+        final Random random = new Random(42);
+        try (ReferenceDataSource mapped = new MemoryMappedReferenceFileSource(TEST_REFERENCE);
+             ReferenceDataSource cached = new ReferenceFileSource(TEST_REFERENCE)) {
+            // Query in random order, so that many queries jump backwards and span line boundaries
+            for ( int i = 0; i < 1000; ++i ) {
+                final SAMSequenceRecord contig = mapped.getSequenceDictionary().getSequence(random.nextInt(mapped.getSequenceDictionary().size()));
+                final int start = 1 + random.nextInt(contig.getSequenceLength());
+                final int stop = Math.min(contig.getSequenceLength(), start + random.nextInt(500));
+                final SimpleInterval interval = new SimpleInterval(contig.getSequenceName(), start, stop);
+
+                Assert.assertEquals(mapped.queryAndPrefetch(interval).getBases(), cached.queryAndPrefetch(interval).getBases(),
+                        "Bases differ from those returned by ReferenceFileSource for interval " + interval);
+                Assert.assertEquals(mapped.queryAndPrefetch(interval).getContigIndex(), contig.getSequenceIndex());
+            }
+        }
+    }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void testQueryPastContigEnd() {
+        try (ReferenceDataSource reference = new MemoryMappedReferenceFileSource(TEST_REFERENCE)) {
+            reference.queryAndPrefetch(new SimpleInterval("1", 15990, 16001));
+        }
+    }
+
+    @Test(expectedExceptions = UserException.MissingContigInSequenceDictionary.class)
+    public void testQueryUnknownContig() {
+        try (ReferenceDataSource reference = new MemoryMappedReferenceFileSource(TEST_REFERENCE)) {
+            reference.queryAndPrefetch("nonexistent", 1, 10);
+        }
+    }
+}
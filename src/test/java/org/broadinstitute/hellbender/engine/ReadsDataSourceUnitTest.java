@@ -14,6 +14,7 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.nio.file.Path;
 import java.util.*;
 
@@ -295,6 +296,129 @@ public final class ReadsDataSourceUnitTest extends BaseTest {
         }
     }
 
+    @Test(dataProvider = "MultipleFilesCompleteTraversalData")
+    public void testMultipleFilesCompleteTraversalWithReadAhead( final List<Path> samFiles, final List<String> expectedReadNames ) {
+        try (ReadsDataSource readsSource = new ReadsDataSource(samFiles)) {
+            readsSource.setReadAheadQueueDepth(2);
+
+            List<String> readNames = new ArrayList<>();
+            for (GATKRead read : readsSource) {
+                readNames.add(read.getName());
+            }
+
+            Assert.assertEquals(readNames, expectedReadNames, "Wrong reads returned in complete traversal with read-ahead of " + samFiles);
+        }
+    }
+
+    @Test(dataProvider = "MultipleFilesTraversalWithIntervalsData")
+    public void testMultipleFilesTraversalWithIntervalsWithReadAhead( final List<Path> samFiles, final List<SimpleInterval> intervals, final List<String> expectedReadNames ) {
+        try (ReadsDataSource readsSource = new ReadsDataSource(samFiles)) {
+            readsSource.setReadAheadQueueDepth(1);
+            readsSource.setTraversalBounds(intervals);
+
+            List<String> readNames = new ArrayList<>();
+            for (GATKRead read : readsSource) {
+                readNames.add(read.getName());
+            }
+
+            Assert.assertEquals(readNames, expectedReadNames, "Wrong reads returned in traversal by intervals with read-ahead of " + samFiles);
+
+            // Starting a new traversal must stop the previous read-ahead before re-using the readers
+            final Iterator<GATKRead> partialTraversal = readsSource.iterator();
+            if ( partialTraversal.hasNext() ) {
+                partialTraversal.next();
+            }
+            readNames.clear();
+            for (GATKRead read : readsSource) {
+                readNames.add(read.getName());
+            }
+            Assert.assertEquals(readNames, expectedReadNames, "Wrong reads returned in second traversal by intervals with read-ahead of " + samFiles);
+        }
+    }
+
+    @DataProvider(name = "QueryPlanningData")
+    public Object[][] getQueryPlanningData() {
+        final Path unmappedBam = IOUtils.getPath(READS_DATA_SOURCE_TEST_DIRECTORY + "reads_data_source_test1_with_unmapped.bam");
+        final Path ceuSnippet = IOUtils.getPath(READS_DATA_SOURCE_TEST_DIRECTORY + "CEUTrio.HiSeq.WGS.b37.NA12878.snippet_with_unmapped.bam");
+
+        // Many small, nearby intervals, as in an exome traversal
+        final List<SimpleInterval> sparseIntervals = new ArrayList<>();
+        for ( int start = 200; start <= 1000; start += 100 ) {
+            sparseIntervals.add(new SimpleInterval("1", start, start + 10));
+        }
+        sparseIntervals.add(new SimpleInterval("2", 500, 700));
+        sparseIntervals.add(new SimpleInterval("4", 700, 701));
+
+        final List<SimpleInterval> ceuIntervals = Arrays.asList(new SimpleInterval("20", 10000009, 10000009), new SimpleInterval("20", 10000011, 10000011), new SimpleInterval("20", 10000013, 10000013));
+
+        return new Object[][] {
+                { unmappedBam, sparseIntervals, false },
+                { unmappedBam, sparseIntervals, true },
+                { ceuSnippet, ceuIntervals, false },
+                { ceuSnippet, ceuIntervals, true }
+        };
+    }
+
+    @Test(dataProvider = "QueryPlanningData")
+    public void testQueryPlanningReturnsSameReads( final Path samFile, final List<SimpleInterval> intervals, final boolean queryUnmapped ) {
+        final List<String> unplannedReadNames = new ArrayList<>();
+        try (ReadsDataSource readsSource = new ReadsDataSource(samFile)) {
+            // query planning is disabled by default
+            readsSource.setTraversalBounds(intervals, queryUnmapped);
+            for ( GATKRead read : readsSource ) {
+                unplannedReadNames.add(read.getName() + " " + read.getContig() + ":" + read.getStart());
+            }
+            Assert.assertTrue(readsSource.getQueryPlans().isEmpty());
+        }
+
+        try (ReadsDataSource readsSource = new ReadsDataSource(samFile)) {
+            readsSource.setQueryPlanningEnabled(true);
+            readsSource.setTraversalBounds(intervals, queryUnmapped);
+            final List<String> plannedReadNames = new ArrayList<>();
+            for ( GATKRead read : readsSource ) {
+                plannedReadNames.add(read.getName() + " " + read.getContig() + ":" + read.getStart());
+            }
+            Assert.assertEquals(plannedReadNames, unplannedReadNames, "Planned query returned different reads from unplanned query over " + intervals);
+
+            // These files are small enough that nearby intervals always share a BGZF block
+            Assert.assertEquals(readsSource.getQueryPlans().size(), 1);
+            final ReadsQueryPlan plan = readsSource.getQueryPlans().get(0);
+            Assert.assertTrue(plan.getNumMergedIntervals() > 0);
+            Assert.assertTrue(plan.mergedAnyIntervals());
+            Assert.assertTrue(plan.getNumPlannedQueries() < plan.getNumQueryIntervals());
+            Assert.assertTrue(plan.getNumPlannedChunks() <= plan.getNumUnplannedChunks());
+        }
+    }
+
+    @Test
+    public void testNoQueryPlanningForCram() {
+        final Path cram = IOUtils.getPath(READS_DATA_SOURCE_TEST_DIRECTORY + "CEUTrio.HiSeq.WGS.b37.NA12878.snippet_with_unmapped.cram");
+        final List<SimpleInterval> intervals = Arrays.asList(new SimpleInterval("20", 10000009, 10000009), new SimpleInterval("20", 10000011, 10000011), new SimpleInterval("20", 10000013, 10000013));
+        final Map<Boolean, List<String>> readNamesByPlanning = new HashMap<>();
+        for ( final boolean queryPlanningEnabled : Arrays.asList(false, true) ) {
+            try (ReadsDataSource readsSource = new ReadsDataSource(cram, SamReaderFactory.makeDefault().referenceSequence(new File(b37_reference_20_21)))) {
+                readsSource.setQueryPlanningEnabled(queryPlanningEnabled);
+                readsSource.setTraversalBounds(intervals);
+                final List<String> readNames = new ArrayList<>();
+                for ( GATKRead read : readsSource ) {
+                    readNames.add(read.getName() + " " + read.getContig() + ":" + read.getStart());
+                }
+                readNamesByPlanning.put(queryPlanningEnabled, readNames);
+                // CRAM index offsets are not BGZF virtual offsets, so CRAM queries are never planned
+                Assert.assertTrue(readsSource.getQueryPlans().isEmpty());
+            }
+        }
+        Assert.assertFalse(readNamesByPlanning.get(false).isEmpty());
+        Assert.assertEquals(readNamesByPlanning.get(true), readNamesByPlanning.get(false));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeReadAheadQueueDepth() {
+        try (ReadsDataSource readsSource = new ReadsDataSource(FIRST_TEST_BAM)) {
+            readsSource.setReadAheadQueueDepth(-1);
+        }
+    }
+
     @DataProvider(name = "MultipleFilesQueryByIntervalData")
     public Object[][] getMultipleFilesQueryByIntervalData() {
         // Files, with a single query interval, and expected read names in the expected order
@@ -0,0 +1,141 @@
+package org.broadinstitute.hellbender.engine;
+
+import org.broadinstitute.hellbender.engine.filters.ReadFilter;
+import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public final class TraversalMetricsUnitTest extends BaseTest {
+
+    @Test
+    public void testPhaseTimingDisabledByDefault() {
+        final TraversalMetrics metrics = new TraversalMetrics();
+        Assert.assertFalse(metrics.isPhaseTimingEnabled());
+
+        final Iterator<Integer> iterator = Arrays.asList(1, 2, 3).iterator();
+        final ReadFilter filter = ReadFilterLibrary.ALLOW_ALL_READS;
+        Assert.assertSame(metrics.timeIterator(iterator, TraversalMetrics.Phase.READ_DECODING), iterator);
+        Assert.assertSame(metrics.timeFilter(filter), filter);
+
+        final long start = metrics.startTimer();
+        metrics.stopTimer(TraversalMetrics.Phase.APPLY, start);
+        metrics.recordShard(new SimpleInterval("1", 1, 100), 10, start);
+        for ( final TraversalMetrics.Phase phase : TraversalMetrics.Phase.values() ) {
+            Assert.assertEquals(metrics.getPhaseCount(phase), 0);
+            Assert.assertEquals(metrics.getPhaseTimeNanos(phase), 0);
+        }
+        Assert.assertTrue(metrics.getShardMetrics().isEmpty());
+    }
+
+    @Test
+    public void testPhaseTiming() {
+        final TraversalMetrics metrics = new TraversalMetrics();
+        metrics.enablePhaseTiming();
+
+        final Iterator<Integer> iterator = metrics.timeIterator(Arrays.asList(1, 2, 3).iterator(), TraversalMetrics.Phase.READ_DECODING);
+        int count = 0;
+        while ( iterator.hasNext() ) {
+            iterator.next();
+            ++count;
+        }
+        Assert.assertEquals(count, 3);
+        // 4 calls to hasNext() and 3 calls to next()
+        Assert.assertEquals(metrics.getPhaseCount(TraversalMetrics.Phase.READ_DECODING), 7);
+
+        final GATKRead read = ArtificialReadUtils.createArtificialRead("10M");
+        final ReadFilter filter = metrics.timeFilter(ReadFilterLibrary.ALLOW_ALL_READS);
+        Assert.assertTrue(filter.test(read));
+        Assert.assertFalse(metrics.timeFilter(ReadFilterLibrary.ALLOW_ALL_READS.negate()).test(read));
+        Assert.assertEquals(metrics.getPhaseCount(TraversalMetrics.Phase.FILTERING), 2);
+
+        metrics.addPhaseTime(TraversalMetrics.Phase.APPLY, 1000L);
+        metrics.addPhaseTime(TraversalMetrics.Phase.APPLY, 500L);
+        Assert.assertEquals(metrics.getPhaseCount(TraversalMetrics.Phase.APPLY), 2);
+        Assert.assertEquals(metrics.getPhaseTimeNanos(TraversalMetrics.Phase.APPLY), 1500L);
+
+        final SimpleInterval shard = new SimpleInterval("1", 1, 100);
+        metrics.recordShard(shard, 10, metrics.startTimer());
+        final List<TraversalMetrics.ShardMetrics> shards = metrics.getShardMetrics();
+        Assert.assertEquals(shards.size(), 1);
+        Assert.assertEquals(shards.get(0).getShard(), shard);
+        Assert.assertEquals(shards.get(0).getNumRecords(), 10);
+        Assert.assertTrue(shards.get(0).getElapsedNanos() >= 0);
+        Assert.assertTrue(metrics.getPeakHeapUsedBytes() > 0);
+    }
+
+    @Test
+    public void testTimeReference() {
+        final TraversalMetrics metrics = new TraversalMetrics();
+        Assert.assertNull(metrics.timeReference(null));
+
+        try ( final ReferenceDataSource reference = new ReferenceFileSource(new File(hg19MiniReference)) ) {
+            Assert.assertSame(metrics.timeReference(reference), reference);
+
+            metrics.enablePhaseTiming();
+            final ReferenceDataSource timedReference = metrics.timeReference(reference);
+            final SimpleInterval interval = new SimpleInterval("1", 11041, 11045);
+            Assert.assertEquals(timedReference.queryAndPrefetch(interval).getBases(), reference.queryAndPrefetch(interval).getBases());
+            Assert.assertEquals(timedReference.getSequenceDictionary(), reference.getSequenceDictionary());
+            Assert.assertEquals(metrics.getPhaseCount(TraversalMetrics.Phase.REFERENCE_FETCH), 1);
+        }
+    }
+
+    @Test
+    public void testProgressMeterRecordsTotals() {
+        final ProgressMeter progressMeter = new ProgressMeter(1.0, Arrays.asList(0L, 1000L, 2000L).iterator()::next);
+        progressMeter.setRecordsBetweenTimeChecks(5L);
+        progressMeter.start();
+        for ( int i = 0; i < 5; ++i ) {
+            progressMeter.update(new SimpleInterval("1", i + 1, i + 1));
+        }
+        progressMeter.stop();
+
+        final TraversalMetrics metrics = progressMeter.getMetrics();
+        Assert.assertEquals(metrics.getNumRecordsProcessed(), 5);
+        Assert.assertEquals(metrics.getElapsedMillis(), 2000L);
+        Assert.assertTrue(metrics.getPeakHeapUsedBytes() > 0);
+    }
+
+    @Test
+    public void testWriteTsv() throws IOException {
+        final List<String> lines = Files.readAllLines(writeMetrics(".tsv").toPath());
+        Assert.assertEquals(lines.get(0), "metric\tvalue");
+        Assert.assertTrue(lines.contains("records\t0"));
+        Assert.assertTrue(lines.contains("applySeconds\t2.0"));
+        Assert.assertTrue(lines.contains("applyCount\t1"));
+        Assert.assertTrue(lines.contains("shard\trecords\tseconds\trecordsPerSecond"));
+        Assert.assertTrue(lines.get(lines.size() - 1).startsWith("1:1-100\t10\t"));
+    }
+
+    @Test
+    public void testWriteJson() throws IOException {
+        final String json = new String(Files.readAllBytes(writeMetrics(".json").toPath()));
+        Assert.assertTrue(json.startsWith("{"));
+        Assert.assertTrue(json.trim().endsWith("}"));
+        Assert.assertTrue(json.contains("\"records\": 0,"));
+        Assert.assertTrue(json.contains("\"apply\": { \"seconds\": 2.0, \"count\": 1 }"));
+        Assert.assertTrue(json.contains("{ \"shard\": \"1:1-100\", \"records\": 10,"));
+    }
+
+    private static File writeMetrics( final String extension ) {
+        final TraversalMetrics metrics = new TraversalMetrics();
+        metrics.enablePhaseTiming();
+        metrics.addPhaseTime(TraversalMetrics.Phase.APPLY, 2_000_000_000L);
+        metrics.recordShard(new SimpleInterval("1", 1, 100), 10, metrics.startTimer());
+
+        final File output = createTempFile("traversalMetrics", extension);
+        metrics.write(output);
+        return output;
+    }
+}
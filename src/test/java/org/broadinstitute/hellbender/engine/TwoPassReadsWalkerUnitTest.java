@@ -11,6 +11,8 @@ import org.testng.annotations.Test;
 import org.testng.annotations.DataProvider;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TwoPassReadsWalkerUnitTest extends CommandLineProgramTest{
 
@@ -38,6 +40,59 @@ public class TwoPassReadsWalkerUnitTest extends CommandLineProgramTest{
         }
     }
 
+    @CommandLineProgramProperties(
+            summary = "Dummy that reads file twice, spilling the reads between passes",
+            oneLineSummary = "empty class",
+            programGroup = TestProgramGroup.class
+    )
+    private static final class dummySpillingTwoPassReadsWalker extends TwoPassReadWalker {
+        final List<String> firstPassReads = new ArrayList<>();
+        final List<String> secondPassReads = new ArrayList<>();
+        @Override
+        protected void firstPassApply(GATKRead read, ReferenceContext referenceContext, FeatureContext featureContext) {
+            firstPassReads.add(read.commonToString());
+        }
+        @Override
+        protected void secondPassApply(GATKRead read, ReferenceContext referenceContext, FeatureContext featureContext) {
+            secondPassReads.add(read.commonToString());
+        }
+        @Override
+        protected boolean spillReadsForSecondPass() {
+            return true;
+        }
+    }
+
+    @Test(dataProvider = "unsortedFiles")
+    public void testSpilledSecondPass(String file) {
+        final dummySpillingTwoPassReadsWalker tool = new dummySpillingTwoPassReadsWalker();
+
+        final String[] args = {
+                "-I", getTestDataDir()+ file,
+                "-R", getTestDataDir()+ "/count_reads.fasta"
+        };
+
+        tool.instanceMain(args);
+
+        Assert.assertEquals(tool.firstPassReads.size(), 8);
+        Assert.assertEquals(tool.secondPassReads, tool.firstPassReads);
+    }
+
+    @Test(dataProvider = "sortedFiles")
+    public void testSpilledSecondPassWithIntervals(String file) {
+        final dummySpillingTwoPassReadsWalker tool = new dummySpillingTwoPassReadsWalker();
+
+        final String[] args = {
+                "-I", getTestDataDir()+ file,
+                "-R", getTestDataDir()+ "/count_reads.fasta",
+                "-L", "chr7:10-40"
+        };
+
+        tool.instanceMain(args);
+
+        Assert.assertEquals(tool.firstPassReads.size(), 5);
+        Assert.assertEquals(tool.secondPassReads, tool.firstPassReads);
+    }
+
     @Test(dataProvider = "unsortedFiles")
     public void testDifferentFormatEquivalentBehavior(String file) throws IOException {
         final TwoPassReadsWalkerUnitTest.dummyTwoPassReadsWalker tool = new TwoPassReadsWalkerUnitTest.dummyTwoPassReadsWalker();
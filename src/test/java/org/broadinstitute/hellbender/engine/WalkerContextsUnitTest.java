@@ -0,0 +1,172 @@
+package org.broadinstitute.hellbender.engine;
+
+import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
+import org.broadinstitute.hellbender.cmdline.TestProgramGroup;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+public final class WalkerContextsUnitTest extends BaseTest {
+
+    private static final File TEST_REFERENCE = new File(hg19MiniReference);
+
+    @Test
+    public void testNewContextsWithoutReuse() {
+        try (final ReferenceDataSource reference = new ReferenceFileSource(TEST_REFERENCE)) {
+            final WalkerContexts contexts = new WalkerContexts(null, reference, null, false);
+            final SimpleInterval first = new SimpleInterval("1", 11041, 11045);
+            final SimpleInterval second = new SimpleInterval("2", 10001, 10005);
+
+            final ReferenceContext firstReferenceContext = contexts.getReferenceContext(first);
+            final FeatureContext firstFeatureContext = contexts.getFeatureContext(first);
+            final ReadsContext firstReadsContext = contexts.getReadsContext(first);
+            Assert.assertNotSame(contexts.getReferenceContext(second), firstReferenceContext);
+            Assert.assertNotSame(contexts.getFeatureContext(second), firstFeatureContext);
+            Assert.assertNotSame(contexts.getReadsContext(second), firstReadsContext);
+
+            // Contexts handed out earlier are unaffected by later records
+            Assert.assertEquals(firstReferenceContext.getInterval(), first);
+            Assert.assertEquals(new String(firstReferenceContext.getBases()), "GCAAA");
+            Assert.assertEquals(firstFeatureContext.getInterval(), first);
+            Assert.assertEquals(firstReadsContext.getInterval(), first);
+        }
+    }
+
+    @Test
+    public void testContextReuse() {
+        try (final ReferenceDataSource reference = new ReferenceFileSource(TEST_REFERENCE)) {
+            final WalkerContexts contexts = new WalkerContexts(null, reference, null, true);
+            final SimpleInterval first = new SimpleInterval("1", 11041, 11045);
+            final SimpleInterval second = new SimpleInterval("2", 10001, 10005);
+
+            final ReferenceContext referenceContext = contexts.getReferenceContext(first);
+            final FeatureContext featureContext = contexts.getFeatureContext(first);
+            final ReadsContext readsContext = contexts.getReadsContext(first);
+            referenceContext.setWindow(1, 1);
+            Assert.assertEquals(new String(referenceContext.getBases()), "AGCAAAG");
+
+            Assert.assertSame(contexts.getReferenceContext(second), referenceContext);
+            Assert.assertSame(contexts.getFeatureContext(second), featureContext);
+            Assert.assertSame(contexts.getReadsContext(second), readsContext);
+
+            // A recycled ReferenceContext must drop the window and bases of the previous record
+            Assert.assertEquals(referenceContext.getInterval(), second);
+            Assert.assertEquals(referenceContext.getWindow(), second);
+            Assert.assertEquals(referenceContext.numWindowLeadingBases(), 0);
+            Assert.assertEquals(referenceContext.numWindowTrailingBases(), 0);
+            Assert.assertEquals(new String(referenceContext.getBases()), "CGTAT");
+            Assert.assertEquals(featureContext.getInterval(), second);
+            Assert.assertEquals(readsContext.getInterval(), second);
+
+            // Records with no location get empty contexts
+            Assert.assertSame(contexts.getReferenceContext(null), referenceContext);
+            Assert.assertNull(referenceContext.getInterval());
+            Assert.assertEquals(referenceContext.getBases().length, 0);
+            Assert.assertFalse(contexts.getFeatureContext(null).hasBackingDataSource());
+            Assert.assertNull(featureContext.getInterval());
+        }
+    }
+
+    @CommandLineProgramProperties(
+            summary = "Records the contexts passed to apply()",
+            oneLineSummary = "Records the contexts passed to apply()",
+            programGroup = TestProgramGroup.class
+    )
+    private static final class ContextRecordingReadWalker extends ReadWalker {
+        private final boolean reuseContexts;
+        final Set<ReferenceContext> referenceContexts = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<FeatureContext> featureContexts = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<String> records = new ArrayList<>();
+
+        private ContextRecordingReadWalker( final boolean reuseContexts ) {
+            this.reuseContexts = reuseContexts;
+        }
+
+        @Override
+        public boolean allowsContextReuse() {
+            return reuseContexts;
+        }
+
+        @Override
+        public void apply( GATKRead read, ReferenceContext referenceContext, FeatureContext featureContext ) {
+            referenceContexts.add(referenceContext);
+            featureContexts.add(featureContext);
+            records.add(read.getName() + " " + referenceContext.getInterval() + " " + new String(referenceContext.getBases()) + " " + featureContext.getInterval());
+        }
+    }
+
+    @CommandLineProgramProperties(
+            summary = "Records the contexts passed to apply()",
+            oneLineSummary = "Records the contexts passed to apply()",
+            programGroup = TestProgramGroup.class
+    )
+    private static final class ContextRecordingLocusWalker extends LocusWalker {
+        private final boolean reuseContexts;
+        final Set<ReferenceContext> referenceContexts = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<FeatureContext> featureContexts = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<String> records = new ArrayList<>();
+
+        private ContextRecordingLocusWalker( final boolean reuseContexts ) {
+            this.reuseContexts = reuseContexts;
+        }
+
+        @Override
+        public boolean allowsContextReuse() {
+            return reuseContexts;
+        }
+
+        @Override
+        public void apply( AlignmentContext alignmentContext, ReferenceContext referenceContext, FeatureContext featureContext ) {
+            referenceContexts.add(referenceContext);
+            featureContexts.add(featureContext);
+            records.add(alignmentContext.getContig() + ":" + alignmentContext.getPosition() + " " + alignmentContext.size() + " " + (char)referenceContext.getBase() + " " + featureContext.getInterval());
+        }
+    }
+
+    private static String[] traversalArgs() {
+        return new String[]{
+                "-R", b37_reference_20_21,
+                "-I", NA12878_20_21_WGS_bam,
+                "-L", "20:9999900-10000000"
+        };
+    }
+
+    @Test
+    public void testReadWalkerContextReuse() {
+        final ContextRecordingReadWalker withoutReuse = new ContextRecordingReadWalker(false);
+        withoutReuse.instanceMain(traversalArgs());
+        final ContextRecordingReadWalker withReuse = new ContextRecordingReadWalker(true);
+        withReuse.instanceMain(traversalArgs());
+
+        Assert.assertTrue(withoutReuse.records.size() > 1);
+        Assert.assertEquals(withoutReuse.referenceContexts.size(), withoutReuse.records.size());
+        Assert.assertEquals(withoutReuse.featureContexts.size(), withoutReuse.records.size());
+        Assert.assertEquals(withReuse.referenceContexts.size(), 1);
+        Assert.assertEquals(withReuse.featureContexts.size(), 1);
+        Assert.assertEquals(withReuse.records, withoutReuse.records);
+    }
+
+    @Test
+    public void testLocusWalkerContextReuse() {
+        final ContextRecordingLocusWalker withoutReuse = new ContextRecordingLocusWalker(false);
+        withoutReuse.instanceMain(traversalArgs());
+        final ContextRecordingLocusWalker withReuse = new ContextRecordingLocusWalker(true);
+        withReuse.instanceMain(traversalArgs());
+
+        Assert.assertTrue(withoutReuse.records.size() > 1);
+        Assert.assertEquals(withoutReuse.referenceContexts.size(), withoutReuse.records.size());
+        Assert.assertEquals(withoutReuse.featureContexts.size(), withoutReuse.records.size());
+        Assert.assertEquals(withReuse.referenceContexts.size(), 1);
+        Assert.assertEquals(withReuse.featureContexts.size(), 1);
+        Assert.assertEquals(withReuse.records, withoutReuse.records);
+    }
+}
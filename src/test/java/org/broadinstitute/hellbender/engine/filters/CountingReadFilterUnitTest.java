@@ -244,5 +244,31 @@ public final class CountingReadFilterUnitTest {
         Assert.assertEquals(badStartAndEnd.getFilteredCount(), startEndRejections);
         Assert.assertEquals(isRayOrEgon.getFilteredCount(), nameRejections);
     }
-}
 
+    private static CountingReadFilter makeCompoundFilter() {
+        return new CountingReadFilter(startOk).and(new CountingReadFilter(endOk).negate()).or(new CountingReadFilter(endOk));
+    }
+
+    @Test
+    public void testAddFilteredCounts() {
+        final GATKRead[] reads = {goodRead, startBad, endBad, bothBad, startBad, bothBad};
+
+        final CountingReadFilter allReadsFilter = makeCompoundFilter();
+        Arrays.stream(reads).filter(allReadsFilter).count();
+
+        // split the reads between two filters, as the threads of a traversal would, and merge their counts
+        final CountingReadFilter mergedFilter = makeCompoundFilter();
+        final CountingReadFilter otherFilter = makeCompoundFilter();
+        Arrays.stream(reads, 0, 2).filter(mergedFilter).count();
+        Arrays.stream(reads, 2, reads.length).filter(otherFilter).count();
+        mergedFilter.addFilteredCounts(otherFilter);
+
+        Assert.assertEquals(mergedFilter.getFilteredCount(), allReadsFilter.getFilteredCount());
+        Assert.assertEquals(mergedFilter.getSummaryLine(), allReadsFilter.getSummaryLine());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAddFilteredCountsOfDifferentFilter() {
+        makeCompoundFilter().addFilteredCounts(new CountingReadFilter(startOk));
+    }
+}
@@ -96,4 +96,15 @@ public final class CountReadsIntegrationTest extends CommandLineProgramTest {
         args.add("--fred");
         this.runCommandLine(args.getArgsArray());
     }
+
+    @Test(expectedExceptions = UserException.BadArgumentValue.class)
+    public void testMultipleThreadsRejected() throws Exception {
+        // CountReads does not opt in to multi-threaded traversal, so the engine must refuse to run it with more than one thread
+        final ArgumentsBuilder args = new ArgumentsBuilder();
+        args.add("--input");
+        args.add(new File(getTestDataDir(), "count_reads_sorted.bam").getAbsolutePath());
+        args.add("--threads");
+        args.add("2");
+        this.runCommandLine(args.getArgsArray());
+    }
 }
@@ -192,6 +192,16 @@ public final class PrintReadsIntegrationTest extends CommandLineProgramTest{
 
     @Test(dataProvider = "UnmappedReadInclusionTestData")
     public void testUnmappedReadInclusion( final File input, final String reference, final List<String> intervalStrings, final List<String> expectedReadNames ) {
+        doUnmappedReadInclusionTest(input, reference, intervalStrings, expectedReadNames, Collections.emptyList());
+    }
+
+    @Test(dataProvider = "UnmappedReadInclusionTestData")
+    public void testUnmappedReadInclusionMultiThreaded( final File input, final String reference, final List<String> intervalStrings, final List<String> expectedReadNames ) {
+        // Use tiny read shards so that many reads span shard boundaries, and must still be output exactly once and in order
+        doUnmappedReadInclusionTest(input, reference, intervalStrings, expectedReadNames, Arrays.asList("--threads", "2", "--readShardSize", "2"));
+    }
+
+    private void doUnmappedReadInclusionTest( final File input, final String reference, final List<String> intervalStrings, final List<String> expectedReadNames, final List<String> extraArgs ) {
         final File outFile = createTempFile("testUnmappedReadInclusion", ".bam");
 
         final ArgumentsBuilder args = new ArgumentsBuilder();
@@ -203,6 +213,9 @@ public final class PrintReadsIntegrationTest extends CommandLineProgramTest{
         if ( reference != null ) {
             args.add("-R"); args.add(reference);
         }
+        for ( final String extraArg : extraArgs ) {
+            args.add(extraArg);
+        }
 
         runCommandLine(args);
 
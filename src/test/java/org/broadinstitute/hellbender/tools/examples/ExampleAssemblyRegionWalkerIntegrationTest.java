@@ -22,4 +22,20 @@ public class ExampleAssemblyRegionWalkerIntegrationTest extends CommandLineProgr
 
         testSpec.executeTest("testExampleAssemblyRegionWalker", this);
     }
+
+    @Test
+    public void testExampleAssemblyRegionWalkerMultiThreaded() throws Exception {
+        // Output must be identical to the single-threaded traversal
+        IntegrationTestSpec testSpec = new IntegrationTestSpec(
+                " -R " + b37_reference_20_21 +
+                " -I " + NA12878_20_21_WGS_bam +
+                " -knownVariants " + dbsnp_138_b37_20_21_vcf +
+                " -L 20:10000000-10050000 " +
+                " --threads 4 " +
+                " -O %s",
+                Arrays.asList(TEST_OUTPUT_DIRECTORY + "expected_ExampleAssemblyRegionWalkerIntegrationTest_output.txt")
+        );
+
+        testSpec.executeTest("testExampleAssemblyRegionWalkerMultiThreaded", this);
+    }
 }
@@ -7,6 +7,10 @@ import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
 import org.broadinstitute.hellbender.utils.test.SamAssertionUtils;
 import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.recalibration.RecalDatum;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationReport;
+import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -94,6 +98,14 @@ public final class BaseRecalibratorIntegrationTest extends CommandLineProgramTes
                 {new BQSRTest(hg18Reference, HiSeqBam_chr17, dbSNPb37_chr17, "-indelBQSR -enableBAQ " +"--quantizing_levels 6", getResourceDir() + "expected.NA12878.chr17_69k_70k.quantizing_levels6.txt")},
                 {new BQSRTest(hg18Reference, HiSeqBam_chr17, dbSNPb37_chr17, "-indelBQSR -enableBAQ " +"--mismatches_context_size 4", getResourceDir() + "expected.NA12878.chr17_69k_70k.mismatches_context_size4.txt")},
                 {new BQSRTest(b36Reference, origQualsBam_chr1, dbSNPb36_chr1, "-indelBQSR -enableBAQ " +"-OQ", getResourceDir() + "expected.originalQuals.1kg.chr1.1-1K.1RG.dictFix.OQ.txt")},
+
+                // flat recalibration tables must produce the same reports
+                {new BQSRTest(GRCh37Ref_chr2021, hiSeqBam_chr20, dbSNPb37_chr20, "-useFlatRecalibrationTables", getResourceDir() + BQSRTestData.EXPECTED_WGS_B37_CH20_1M_1M1K_NOINDEL_NOBAQ_RECAL)},
+                {new BQSRTest(hg18Reference, HiSeqBam_chr17, dbSNPb37_chr17, "-indelBQSR -enableBAQ -useFlatRecalibrationTables", getResourceDir() + "expected.NA12878.chr17_69k_70k.txt")},
+
+                // so must preloading the known sites into a bit set
+                {new BQSRTest(GRCh37Ref_chr2021, hiSeqBam_chr20, dbSNPb37_chr20, "-indelBQSR -enableBAQ -useKnownSitesBitSet", getResourceDir() + BQSRTestData.EXPECTED_WGS_B37_CH20_1M_1M1K_RECAL)},
+                {new BQSRTest(hg18Reference, HiSeqBam_chr17, dbSNPb37_chr17, "-indelBQSR -enableBAQ -useKnownSitesBitSet " + "-knownSites " + more17Sites, getResourceDir() + "expected.NA12878.chr17_69k_70k.2inputs.txt")},
         };
     }
     @Test(dataProvider = "BQSRTest")
@@ -104,6 +116,110 @@ public final class BaseRecalibratorIntegrationTest extends CommandLineProgramTes
         spec.executeTest("testBQSR-" + params.args, this);
     }
 
+    @DataProvider(name = "BQSRMultiThreadedTest")
+    public Object[][] createBQSRMultiThreadedTestData() {
+        final String hg18Reference = publicTestDir + "human_g1k_v37.chr17_1Mb.fasta";
+        final String hiSeqBam_chr20 = getResourceDir() + WGS_B37_CH20_1M_1M1K_BAM;
+        final String HiSeqBam_chr17 = getResourceDir() + "NA12878.chr17_69k_70k.dictFix.bam";
+        final String dbSNPb37_chr17 =  getResourceDir() + "dbsnp_132.b37.excluding_sites_after_129.chr17_69k_70k.vcf";
+        final String dbSNPb37_chr20 = getResourceDir() + DBSNP_138_B37_CH20_1M_1M1K_VCF;
+        final String GRCh37Ref_chr2021 = "src/test/resources/large/human_g1k_v37.20.21.fasta";
+
+        // Small shards, so that each thread processes many shards and most reads are processed on worker threads
+        final String threadArgs = " --threads 4 --readShardSize 100 ";
+        return new Object[][]{
+                {new BQSRTest(GRCh37Ref_chr2021, hiSeqBam_chr20, dbSNPb37_chr20, threadArgs, getResourceDir() + BQSRTestData.EXPECTED_WGS_B37_CH20_1M_1M1K_NOINDEL_NOBAQ_RECAL)},
+                {new BQSRTest(GRCh37Ref_chr2021, hiSeqBam_chr20, dbSNPb37_chr20, "-indelBQSR -enableBAQ" + threadArgs, getResourceDir() + BQSRTestData.EXPECTED_WGS_B37_CH20_1M_1M1K_RECAL)},
+                {new BQSRTest(hg18Reference, HiSeqBam_chr17, dbSNPb37_chr17, "-indelBQSR -enableBAQ" + threadArgs, getResourceDir() + "expected.NA12878.chr17_69k_70k.txt")},
+        };
+    }
+
+    @Test(dataProvider = "BQSRMultiThreadedTest")
+    public void testBQSRMultiThreaded(BQSRTest params) throws IOException {
+        // a multi-threaded run must produce the same report as a single-threaded one
+        IntegrationTestSpec spec = new IntegrationTestSpec(
+                params.getCommandLine(),
+                Arrays.asList(params.expectedFileName));
+        spec.executeTest("testBQSRMultiThreaded-" + params.args, this);
+    }
+
+    @Test
+    public void testKnownSitesBitSetFile() throws IOException {
+        final String hg18Reference = publicTestDir + "human_g1k_v37.chr17_1Mb.fasta";
+        final String HiSeqBam_chr17 = getResourceDir() + "NA12878.chr17_69k_70k.dictFix.bam";
+        final String dbSNPb37_chr17 =  getResourceDir() + "dbsnp_132.b37.excluding_sites_after_129.chr17_69k_70k.vcf";
+        final File expected = new File(getResourceDir() + "expected.NA12878.chr17_69k_70k.txt");
+
+        final File bitSetFile = createTempFile("knownSites.", ".bits");
+        Assert.assertTrue(bitSetFile.delete());
+
+        // the first run saves the bit set, the second loads it
+        for ( int run = 0; run < 2; run++ ) {
+            final File table = createTempFile("bitset.recal", ".table");
+            final String args = "-R " + hg18Reference + " -indelBQSR -enableBAQ --knownSites " + dbSNPb37_chr17 + " -I " + HiSeqBam_chr17 +
+                                " --knownSitesBitSetFile " + bitSetFile.getAbsolutePath() + " -O " + table.getAbsolutePath();
+            new BaseRecalibrator().instanceMain(Utils.escapeExpressions(args));
+            Assert.assertTrue(bitSetFile.exists());
+            IntegrationTestSpec.assertEqualTextFiles(table, expected);
+        }
+    }
+
+    @Test(expectedExceptions = UserException.BadInput.class)
+    public void testKnownSitesBitSetFileWithOtherKnownSites() {
+        final String hg18Reference = publicTestDir + "human_g1k_v37.chr17_1Mb.fasta";
+        final String HiSeqBam_chr17 = getResourceDir() + "NA12878.chr17_69k_70k.dictFix.bam";
+        final String dbSNPb37_chr17 =  getResourceDir() + "dbsnp_132.b37.excluding_sites_after_129.chr17_69k_70k.vcf";
+        final String more17Sites = getResourceDir() + "bqsr.fakeSitesForTesting.b37.chr17.vcf";
+
+        final File bitSetFile = createTempFile("knownSites.", ".bits");
+        Assert.assertTrue(bitSetFile.delete());
+
+        // the bit set saved from one set of known sites can't be loaded for another
+        for ( final String knownSites : Arrays.asList(dbSNPb37_chr17, dbSNPb37_chr17 + " --knownSites " + more17Sites) ) {
+            final File table = createTempFile("bitset.recal", ".table");
+            final String args = "-R " + hg18Reference + " --knownSites " + knownSites + " -I " + HiSeqBam_chr17 +
+                                " --knownSitesBitSetFile " + bitSetFile.getAbsolutePath() + " -O " + table.getAbsolutePath();
+            new BaseRecalibrator().instanceMain(Utils.escapeExpressions(args));
+        }
+    }
+
+    @DataProvider(name = "ConvergenceArgs")
+    public Object[][] createConvergenceArgs() {
+        return new Object[][]{
+                {""},
+                {" --postConvergenceSamplingRate 0.1"},
+                {" --threads 4 --readShardSize 100"},
+        };
+    }
+
+    @Test(dataProvider = "ConvergenceArgs")
+    public void testEarlyTerminationOnConvergence( final String extraArgs ) {
+        final String hg18Reference = publicTestDir + "human_g1k_v37.chr17_1Mb.fasta";
+        final String HiSeqBam_chr17 = getResourceDir() + "NA12878.chr17_69k_70k.dictFix.bam";
+        final String dbSNPb37_chr17 =  getResourceDir() + "dbsnp_132.b37.excluding_sites_after_129.chr17_69k_70k.vcf";
+
+        final File fullTable = createTempFile("full.recal", ".table");
+        new BaseRecalibrator().instanceMain(Utils.escapeExpressions("-R " + hg18Reference + " --knownSites " + dbSNPb37_chr17 + " -I " + HiSeqBam_chr17 + " -O " + fullTable.getAbsolutePath()));
+
+        // a huge tolerance converges at the second check
+        final File convergedTable = createTempFile("converged.recal", ".table");
+        new BaseRecalibrator().instanceMain(Utils.escapeExpressions("-R " + hg18Reference + " --knownSites " + dbSNPb37_chr17 + " -I " + HiSeqBam_chr17 + " -O " + convergedTable.getAbsolutePath() +
+                                                                    " --convergenceCheckInterval 20 --convergenceTolerance 100" + extraArgs));
+
+        final long fullObservations = countReadGroupObservations(new RecalibrationReport(fullTable));
+        final long convergedObservations = countReadGroupObservations(new RecalibrationReport(convergedTable));
+        Assert.assertTrue(convergedObservations > 0);
+        Assert.assertTrue(convergedObservations < fullObservations, convergedObservations + " observations after convergence, " + fullObservations + " without");
+    }
+
+    private static long countReadGroupObservations( final RecalibrationReport report ) {
+        long observations = 0;
+        for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : report.getRecalibrationTables().getReadGroupTable().getAllLeaves() ) {
+            observations += leaf.value.getNumObservations();
+        }
+        return observations;
+    }
+
     @Test(description = "This is to test https://github.com/broadinstitute/hellbender/issues/322")
     public void testPlottingWorkflow() throws IOException {
         final String resourceDir = getTestDataDir() + "/" + "BQSR" + "/";
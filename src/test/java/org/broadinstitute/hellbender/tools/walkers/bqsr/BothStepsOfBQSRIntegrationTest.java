@@ -1,11 +1,14 @@
 package org.broadinstitute.hellbender.tools.walkers.bqsr;
 
+import htsjdk.samtools.Defaults;
+import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.ValidationStringency;
 import org.broadinstitute.hellbender.CommandLineProgramTest;
 import org.broadinstitute.hellbender.Main;
 import org.broadinstitute.hellbender.tools.validation.CompareBaseQualities;
 import org.broadinstitute.hellbender.utils.test.ArgumentsBuilder;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -34,6 +37,50 @@ public final class BothStepsOfBQSRIntegrationTest extends CommandLineProgramTest
         Assert.assertEquals(result, 0);
     }
 
+    @Test //Tests that BQSRPipeline produces the same recalibration table and bam file as BaseRecalibrator followed by ApplyBQSR
+    public void testBQSRPipelineMatchesBothSteps() throws Exception {
+        checkBQSRPipelineMatchesBothSteps();
+    }
+
+    @Test //Same as above, with the reads spilled between the passes of BQSRPipeline written asynchronously
+    public void testBQSRPipelineMatchesBothStepsWithAsyncWrites() throws Exception {
+        SAMFileWriterFactory.setDefaultUseAsyncIoWriteSamtools(true);
+        try {
+            checkBQSRPipelineMatchesBothSteps();
+        } finally {
+            SAMFileWriterFactory.setDefaultUseAsyncIoWriteSamtools(Defaults.USE_ASYNC_IO_WRITE_FOR_SAMTOOLS);
+        }
+    }
+
+    private void checkBQSRPipelineMatchesBothSteps() {
+        final File bamIn = new File(NA12878_20_21_WGS_bam);
+        final String interval = "20";
+
+        final File recalOut = baseRecalibrator(bamIn, interval, false);
+        final File bamOut = applyBQSR(bamIn, interval, recalOut, false);
+
+        final File pipelineRecalOut = BaseTest.createTempFile("bqsrPipeline", ".recal");
+        final File pipelineBamOut = BaseTest.createTempFile("bqsrPipeline", ".bam");
+        final ArgumentsBuilder pipelineArgs = new ArgumentsBuilder();
+        pipelineArgs.addInput(bamIn);
+        pipelineArgs.addOutput(pipelineBamOut);
+        pipelineArgs.addFileArgument("recalTableOutput", pipelineRecalOut);
+        pipelineArgs.addArgument("L", interval);
+        pipelineArgs.addFileArgument("knownSites", new File(dbsnp_138_b37_20_21_vcf));
+        pipelineArgs.addReference(new File(b37_reference_20_21));
+        pipelineArgs.addBooleanArgument("indelBQSR", true);
+        new Main().instanceMain(makeCommandLineArgs(pipelineArgs.getArgsList(), BQSRPipeline.class.getSimpleName()));
+
+        IntegrationTestSpec.assertEqualTextFiles(pipelineRecalOut, recalOut);
+
+        final ArgumentsBuilder compareArgs = new ArgumentsBuilder();
+        compareArgs.addArgument("VALIDATION_STRINGENCY", ValidationStringency.SILENT.name());
+        compareArgs.addPositionalArgument(pipelineBamOut.getAbsolutePath());
+        compareArgs.addPositionalArgument(bamOut.getAbsolutePath());
+        final Object result = new Main().instanceMain(makeCommandLineArgs(compareArgs.getArgsList(), CompareBaseQualities.class.getSimpleName()));
+        Assert.assertEquals(result, 0);
+    }
+
     private File applyBQSR(final File bamIn, final String interval, final File recalOut, final boolean skipIndels) {
         final File bamOut = BaseTest.createTempFile("applyBQSR." + skipIndels, ".bam");
         final ArgumentsBuilder args1 = new ArgumentsBuilder();
@@ -0,0 +1,47 @@
+package org.broadinstitute.hellbender.tools.walkers.bqsr;
+
+import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.utils.recalibration.BinaryRecalibrationReport;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationReport;
+import org.broadinstitute.hellbender.utils.test.ArgumentsBuilder;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.PrintStream;
+
+public final class ConvertBQSRReportIntegrationTest extends CommandLineProgramTest {
+
+    private static final String testDir = BaseTest.publicTestDir + "/org/broadinstitute/hellbender/utils/recalibration/";
+
+    private Object convert(final File input, final File output) {
+        final ArgumentsBuilder args = new ArgumentsBuilder();
+        args.add("-I");
+        args.add(input.getAbsolutePath());
+        args.add("-O");
+        args.add(output.getAbsolutePath());
+        return runCommandLine(args.getArgsArray());
+    }
+
+    @Test
+    public void testTextToBinaryAndBack() throws Exception {
+        final File textReport = new File(testDir + "HiSeq.1mb.1RG.noSG.table");
+
+        final File binaryReport = BaseTest.createTempFile("recal.", ".bin");
+        Assert.assertEquals(convert(textReport, binaryReport), 0);
+        Assert.assertTrue(BinaryRecalibrationReport.isBinaryReport(binaryReport));
+
+        final File convertedBack = BaseTest.createTempFile("recal.", ".table");
+        Assert.assertEquals(convert(binaryReport, convertedBack), 0);
+        Assert.assertFalse(BinaryRecalibrationReport.isBinaryReport(convertedBack));
+
+        // the result is the same as loading and writing out the text report
+        final File expected = BaseTest.createTempFile("expected.", ".table");
+        try ( final PrintStream out = new PrintStream(expected) ) {
+            new RecalibrationReport(textReport).createGATKReport().print(out);
+        }
+        IntegrationTestSpec.assertEqualTextFiles(convertedBack, expected);
+    }
+}
@@ -30,6 +30,20 @@ public class PileupIntegrationTest extends CommandLineProgramTest {
         testSpec.executeTest("testSimplePileup", this);
     }
 
+    @Test
+    public void testSimplePileupMultiThreaded() throws IOException {
+        // small read shards so that many reads span shard boundaries; output must match the single-threaded traversal
+        IntegrationTestSpec testSpec = new IntegrationTestSpec(
+            " -L 20:9999900-10000000" +
+                " -R " + b37_reference_20_21 +
+                " -I " + NA12878_20_21_WGS_bam +
+                " --threads 4 --readShardSize 7" +
+                " -O %s",
+            Arrays.asList(TEST_OUTPUT_DIRECTORY + "expectedSimplePileup.txt")
+        );
+        testSpec.executeTest("testSimplePileupMultiThreaded", this);
+    }
+
     @Test
     public void testVerbosePileup() throws IOException {
         // GATK 3.5 code have a the last line with a REDUCE RESULT that was removed in this implementation
@@ -4,9 +4,11 @@ package org.broadinstitute.hellbender.utils;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log.LogLevel;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.Level;
+import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
@@ -17,6 +19,8 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static java.util.Arrays.asList;
@@ -54,6 +58,56 @@ public final class UtilsUnitTest extends BaseTest {
         assertEquals(Lists.newArrayList(integers), ImmutableList.of(5, 4, 3, 2, 1));
     }
 
+    @Test
+    public void testTransformParallelStopsWorkersOnFailure() {
+        final AtomicInteger running = new AtomicInteger();
+        final Iterator<Integer> integers = Utils.transformParallel(ImmutableList.of(0, 1, 2, 3).iterator(), i -> {
+            running.incrementAndGet();
+            try {
+                if (i == 0) {
+                    throw new IllegalStateException("failed task");
+                }
+                Thread.sleep(60000);
+                return i;
+            } catch (InterruptedException e) {
+                return i;
+            } finally {
+                running.decrementAndGet();
+            }
+        }, 2);
+        try {
+            integers.next();
+            Assert.fail("the failure of the task should have been propagated");
+        } catch (GATKException e) {
+            Assert.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+        }
+        assertEquals(running.get(), 0);
+    }
+
+    @Test
+    public void testTransformParallelStopsWorkersOnClose() throws InterruptedException {
+        final AtomicInteger running = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CloseableIterator<Integer> integers = Utils.transformParallel(ImmutableList.of(0, 1, 2, 3).iterator(), i -> {
+            running.incrementAndGet();
+            try {
+                if (i > 0) {
+                    started.countDown();
+                    Thread.sleep(60000);
+                }
+                return i;
+            } catch (InterruptedException e) {
+                return i;
+            } finally {
+                running.decrementAndGet();
+            }
+        }, 2);
+        assertEquals(integers.next(), Integer.valueOf(0));
+        started.await();
+        integers.close();
+        assertEquals(running.get(), 0);
+    }
+
     @Test
     public void testIteratorConcat() throws Exception {
         final List<Integer> ints1 = Arrays.asList(0, 1, 2);
@@ -21,6 +21,7 @@ import org.testng.annotations.Test;
 import java.io.File;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public final class BAQUnitTest extends BaseTest {
@@ -161,6 +162,67 @@ public final class BAQUnitTest extends BaseTest {
         }
     }
 
+    @Test(dataProvider = "data")
+    public void testFloatImplementationMatchesDouble(BAQTest test) {
+        final BAQ doubleBAQ = new BAQ(1.0e-3, 0.1, 7, (byte) 4);
+        final BAQ floatBAQ = new BAQ(1.0e-3, 0.1, 7, (byte) 4);
+        floatBAQ.setImplementation(BAQ.Implementation.FLOAT);
+
+        final BAQ.BAQCalculationResult expected = doubleBAQ.calcBAQFromHMM(test.createRead(), test.refBases.getBytes(), test.refOffset);
+        final BAQ.BAQCalculationResult actual = floatBAQ.calcBAQFromHMM(test.createRead(), test.refBases.getBytes(), test.refOffset);
+        Assert.assertNotNull(actual);
+        for (int i = 0; i < test.quals.length; i++) {
+            Assert.assertTrue(Math.abs(actual.bq[i] - expected.bq[i]) <= 1, "FLOAT BAQ differs from DOUBLE BAQ by more than 1 at " + i);
+        }
+    }
+
+    @Test
+    public void testMatricesReusedAcrossReads() {
+        // run reads of different lengths through the same BAQ, and make sure the results don't depend on the order
+        final Object[][] data = createData1();
+        for ( final BAQ.Implementation implementation : BAQ.Implementation.values() ) {
+            final BAQ baq = new BAQ(1.0e-3, 0.1, 7, (byte) 4);
+            baq.setImplementation(implementation);
+            final List<byte[]> firstResults = new ArrayList<>();
+            for ( final Object[] params : data ) {
+                final BAQTest test = (BAQTest)params[0];
+                firstResults.add(baq.calcBAQFromHMM(test.createRead(), test.refBases.getBytes(), test.refOffset).bq);
+            }
+            for ( int i = data.length - 1; i >= 0; i-- ) {
+                final BAQTest test = (BAQTest)data[i][0];
+                Assert.assertEquals(baq.calcBAQFromHMM(test.createRead(), test.refBases.getBytes(), test.refOffset).bq, firstResults.get(i));
+            }
+        }
+    }
+
+    @Test(dataProvider = "data")
+    public void testResultCache(BAQTest test) {
+        final BAQ baq = new BAQ(1.0e-3, 0.1, 7, (byte) 4);
+        final BAQ cachingBAQ = new BAQ(1.0e-3, 0.1, 7, (byte) 4);
+        cachingBAQ.setResultCacheSize(10);
+        Assert.assertEquals(cachingBAQ.getResultCacheSize(), 10);
+
+        final byte[] expected = baq.calcBAQFromHMM(test.createRead(), test.refBases.getBytes(), test.refOffset).bq;
+        final BAQ.BAQCalculationResult first = cachingBAQ.calcBAQFromHMM(test.createRead(), test.refBases.getBytes(), test.refOffset);
+        Assert.assertEquals(first.bq, expected);
+        Assert.assertEquals(cachingBAQ.getNumResultCacheHits(), 0);
+
+        // modifying the first result must not affect the cached result
+        Arrays.fill(first.bq, (byte)0);
+        final BAQ.BAQCalculationResult second = cachingBAQ.calcBAQFromHMM(test.createRead(), test.refBases.getBytes(), test.refOffset);
+        Assert.assertEquals(second.bq, expected);
+        Assert.assertEquals(cachingBAQ.getNumResultCacheHits(), 1);
+
+        // without a cache there are never any hits
+        baq.calcBAQFromHMM(test.createRead(), test.refBases.getBytes(), test.refOffset);
+        Assert.assertEquals(baq.getNumResultCacheHits(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeResultCacheSize() {
+        new BAQ().setResultCacheSize(-1);
+    }
+
     @Test
     public void testBAQQualRange() {
         BAQ baq = new BAQ(1.0e-3, 0.1, 7, (byte) 4);         // matches current samtools parameters
@@ -192,6 +192,53 @@ public final class ReadLikelihoodsUnitTest {
         testLikelihoodMatrixQueries(samples,result,newLikelihoods);
     }
 
+    @Test(dataProvider = "dataSets")
+    public void testAddReadsAfterRemovingReads(final String[] samples, final Allele[] alleles, final Map<String,List<GATKRead>> reads) {
+        final ReadLikelihoods<Allele> result = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads);
+        final SimpleInterval evenReadOverlap = new SimpleInterval(SAM_HEADER.getSequenceDictionary().getSequences().get(0).getSequenceName(), EVEN_READ_START, EVEN_READ_START);
+        final double[][][] likelihoods = fillWithRandomLikelihoods(samples, alleles, result);
+        result.filterToOnlyOverlappingUnclippedReads(evenReadOverlap);
+
+        // the removed odd reads are added back, which fits in the room they left, and then some brand new reads, which does not.
+        final Map<String,List<GATKRead>> oddReads = new LinkedHashMap<>();
+        final Map<String,List<GATKRead>> newReads = new LinkedHashMap<>();
+        for (final String sample : samples) {
+            final List<GATKRead> sampleReads = reads.get(sample);
+            final List<GATKRead> sampleOddReads = new ArrayList<>();
+            for (int r = 1; r < sampleReads.size(); r += 2) {
+                sampleOddReads.add(sampleReads.get(r));
+            }
+            oddReads.put(sample, sampleOddReads);
+            final List<GATKRead> sampleNewReads = new ArrayList<>();
+            for (int r = 0; r < sampleReads.size() + 1; r++) {
+                sampleNewReads.add(ArtificialReadUtils.createArtificialRead(SAM_HEADER,
+                        "NEW" + sample + "00" + r, 0, EVEN_READ_START, "AAAAA".getBytes(), new byte[]{30, 30, 30, 30, 30}, "5M"));
+            }
+            newReads.put(sample, sampleNewReads);
+        }
+        result.addReads(oddReads, 0.0);
+        result.addReads(newReads, -1.5);
+
+        for (int s = 0; s < samples.length; s++) {
+            final int originalReadCount = reads.get(samples[s]).size();
+            final int evenReadCount = (originalReadCount + 1) / 2;
+            Assert.assertEquals(result.sampleReadCount(s), originalReadCount + originalReadCount + 1);
+            final LikelihoodMatrix<Allele> sampleMatrix = result.sampleMatrix(s);
+            for (int a = 0; a < alleles.length; a++) {
+                for (int r = 0; r < evenReadCount; r++) {
+                    Assert.assertEquals(sampleMatrix.get(a, r), likelihoods[s][a][r << 1]);
+                }
+                // the likelihoods of the removed reads must not reappear
+                for (int r = evenReadCount; r < originalReadCount; r++) {
+                    Assert.assertEquals(sampleMatrix.get(a, r), 0.0);
+                }
+                for (int r = originalReadCount; r < result.sampleReadCount(s); r++) {
+                    Assert.assertEquals(sampleMatrix.get(a, r), -1.5);
+                }
+            }
+        }
+    }
+
     @Test(dataProvider = "marginalizationDataSets")
     public void testMarginalizationWithOverlap(final String[] samples, final Allele[] alleles, final Map<String,List<GATKRead>> reads, final Map<Allele,List<Allele>> newToOldAlleleMapping) {
         final ReadLikelihoods<Allele> original = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads);
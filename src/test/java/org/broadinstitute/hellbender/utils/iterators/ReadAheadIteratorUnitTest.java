@@ -0,0 +1,132 @@
+package org.broadinstitute.hellbender.utils.iterators;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class ReadAheadIteratorUnitTest extends BaseTest {
+
+    private static List<Integer> makeRecords( final int numRecords ) {
+        return IntStream.range(0, numRecords).boxed().collect(Collectors.toList());
+    }
+
+    @DataProvider(name = "ReadAheadTestData")
+    public Object[][] readAheadTestData() {
+        return new Object[][] {
+                // numRecords, queueDepth, batchSize
+                { 0, 1, 1 },
+                { 1, 1, 1 },
+                { 10, 1, 1 },
+                { 10, 1, 3 },
+                { 10, 2, 10 },
+                { 10, 4, 100 },
+                { 1000, 3, 7 }
+        };
+    }
+
+    @Test(dataProvider = "ReadAheadTestData")
+    public void testRecordsReturnedInOrder( final int numRecords, final int queueDepth, final int batchSize ) {
+        final List<Integer> expected = makeRecords(numRecords);
+        final AtomicInteger numPrefetched = new AtomicInteger(0);
+
+        final List<Integer> actual = new ArrayList<>();
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(expected.iterator(), queueDepth, batchSize, record -> numPrefetched.incrementAndGet()) ) {
+            while ( iter.hasNext() ) {
+                actual.add(iter.next());
+            }
+            Assert.assertFalse(iter.hasNext());
+        }
+
+        Assert.assertEquals(actual, expected);
+        Assert.assertEquals(numPrefetched.get(), numRecords, "prefetch action not run exactly once per record");
+    }
+
+    @Test
+    public void testNullPrefetchAction() {
+        final List<Integer> expected = makeRecords(25);
+        final List<Integer> actual = new ArrayList<>();
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(expected.iterator(), 2, 4, null) ) {
+            iter.forEachRemaining(actual::add);
+        }
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testCloseBeforeExhausted() {
+        // A large source with a small queue: the read-ahead thread will be blocked on the full queue when we close
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(makeRecords(100000).iterator(), 1, 10, null) ) {
+            Assert.assertEquals(iter.next().intValue(), 0);
+            Assert.assertEquals(iter.next().intValue(), 1);
+
+            iter.close();
+            Assert.assertFalse(iter.hasNext(), "iterator should be empty once closed");
+
+            // Closing a second time should be harmless
+            iter.close();
+        }
+    }
+
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void testNextOnExhaustedIterator() {
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(Collections.<Integer>emptyIterator(), 1, 1, null) ) {
+            iter.next();
+        }
+    }
+
+    @Test
+    public void testSourceExceptionPropagated() {
+        final RuntimeException sourceException = new IllegalStateException("bad record");
+        final Iterator<Integer> failingSource = new Iterator<Integer>() {
+            private int count = 0;
+            @Override public boolean hasNext() { return true; }
+            @Override public Integer next() {
+                if ( count == 5 ) {
+                    throw sourceException;
+                }
+                return count++;
+            }
+        };
+
+        final List<Integer> actual = new ArrayList<>();
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(failingSource, 2, 2, null) ) {
+            while ( iter.hasNext() ) {
+                actual.add(iter.next());
+            }
+            Assert.fail("Expected the source exception to be rethrown");
+        }
+        catch ( final GATKException e ) {
+            Assert.assertSame(e.getCause(), sourceException);
+        }
+
+        // Records from complete batches before the failure must still have been delivered
+        Assert.assertEquals(actual, makeRecords(4));
+    }
+
+    @Test(expectedExceptions = GATKException.class)
+    public void testPrefetchExceptionPropagated() {
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(makeRecords(10).iterator(), 1, 3, record -> { throw new IllegalStateException("prefetch failed"); }) ) {
+            iter.hasNext();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidQueueDepth() {
+        new ReadAheadIterator<>(makeRecords(1).iterator(), 0, 1, null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBatchSize() {
+        new ReadAheadIterator<>(makeRecords(1).iterator(), 1, 0, null);
+    }
+}
@@ -0,0 +1,130 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class AntiDiagonalLoglessPairHMMUnitTest extends BaseTest {
+
+    // single precision results are compared with relative tolerance
+    private static final double RELATIVE_TOLERANCE = 1e-4;
+
+    private static byte[] randomBases(final Random random, final int length) {
+        final byte[] bases = new byte[length];
+        for ( int i = 0; i < length; i++ ) {
+            bases[i] = random.nextInt(20) == 0 ? (byte)'N' : BaseUtils.BASES[random.nextInt(4)];
+        }
+        return bases;
+    }
+
+    private static byte[] randomQuals(final Random random, final int length, final int min, final int max) {
+        final byte[] quals = new byte[length];
+        for ( int i = 0; i < length; i++ ) {
+            quals[i] = (byte)(min + random.nextInt(max - min + 1));
+        }
+        return quals;
+    }
+
+    @DataProvider(name = "TristateCorrection")
+    public Object[][] makeTristateCorrection() {
+        return new Object[][]{{true}, {false}};
+    }
+
+    @Test(dataProvider = "TristateCorrection")
+    public void testMatchesLoglessPairHMM(final boolean useTristateCorrection) {
+        final Random random = new Random(17);
+        final int maxReadLength = 250;
+        final int maxHaplotypeLength = 400;
+        final LoglessPairHMM logless = new LoglessPairHMM();
+        final AntiDiagonalLoglessPairHMM antiDiagonal = new AntiDiagonalLoglessPairHMM();
+        if ( ! useTristateCorrection ) {
+            logless.doNotUseTristateCorrection();
+            antiDiagonal.doNotUseTristateCorrection();
+        }
+        logless.initialize(maxReadLength, maxHaplotypeLength);
+        antiDiagonal.initialize(maxReadLength, maxHaplotypeLength);
+
+        for ( int test = 0; test < 200; test++ ) {
+            final byte[] haplotypeBases = randomBases(random, 1 + random.nextInt(maxHaplotypeLength));
+            final int readLength = 1 + random.nextInt(maxReadLength);
+
+            // mostly copies of part of the haplotype, with some errors
+            final byte[] readBases = new byte[readLength];
+            final int start = random.nextInt(haplotypeBases.length);
+            for ( int i = 0; i < readLength; i++ ) {
+                readBases[i] = random.nextInt(10) == 0 ? BaseUtils.BASES[random.nextInt(4)] : haplotypeBases[(start + i) % haplotypeBases.length];
+            }
+            final byte[] quals = randomQuals(random, readLength, 6, 40);
+            final byte[] insQuals = randomQuals(random, readLength, 20, 50);
+            final byte[] delQuals = randomQuals(random, readLength, 20, 50);
+            final byte[] gcps = Utils.dupBytes((byte) 10, readLength);
+
+            // the second haplotype is computed without recaching the read values
+            final byte[] otherHaplotypeBases = randomBases(random, 1 + random.nextInt(maxHaplotypeLength));
+            for ( final byte[] hap : new byte[][]{ haplotypeBases, otherHaplotypeBases } ) {
+                final boolean recache = hap == haplotypeBases;
+                final double expected = logless.computeReadLikelihoodGivenHaplotypeLog10(hap, readBases, quals, insQuals, delQuals, gcps, true, null);
+                final double actual = antiDiagonal.computeReadLikelihoodGivenHaplotypeLog10(hap, readBases, quals, insQuals, delQuals, gcps, recache, null);
+                Assert.assertEquals(actual, expected, Math.abs(expected) * RELATIVE_TOLERANCE, "test " + test);
+            }
+        }
+    }
+
+    @Test
+    public void testUnderflowRecomputedInDoublePrecision() {
+        // a long, high quality read that matches nowhere has a likelihood far below what single precision can represent
+        final int length = 150;
+        final byte[] haplotypeBases = Utils.dupBytes((byte) 'A', length);
+        final byte[] readBases = Utils.dupBytes((byte) 'C', length);
+        final byte[] quals = Utils.dupBytes((byte) 40, length);
+        final byte[] gcps = Utils.dupBytes((byte) 10, length);
+
+        final LoglessPairHMM logless = new LoglessPairHMM();
+        final AntiDiagonalLoglessPairHMM antiDiagonal = new AntiDiagonalLoglessPairHMM();
+        logless.initialize(length, length);
+        antiDiagonal.initialize(length, length);
+
+        final double expected = logless.computeReadLikelihoodGivenHaplotypeLog10(haplotypeBases, readBases, quals, quals, quals, gcps, true, null);
+        final double actual = antiDiagonal.computeReadLikelihoodGivenHaplotypeLog10(haplotypeBases, readBases, quals, quals, quals, gcps, true, null);
+        Assert.assertEquals(antiDiagonal.getNumDoublePrecisionRecomputations(), 1);
+        Assert.assertEquals(actual, expected, 1e-8);
+
+        // a matching read does not need the double precision pass
+        antiDiagonal.computeReadLikelihoodGivenHaplotypeLog10(haplotypeBases, haplotypeBases, quals, quals, quals, gcps, true, null);
+        Assert.assertEquals(antiDiagonal.getNumDoublePrecisionRecomputations(), 1);
+    }
+
+    @Test
+    public void testReadsOfDifferentLengthsReuseStorage() {
+        final Random random = new Random(5);
+        final LoglessPairHMM logless = new LoglessPairHMM();
+        final AntiDiagonalLoglessPairHMM antiDiagonal = new AntiDiagonalLoglessPairHMM();
+        logless.initialize(100, 100);
+        antiDiagonal.initialize(100, 100);
+
+        final byte[] haplotypeBases = randomBases(random, 100);
+        final List<Integer> readLengths = new ArrayList<>();
+        for ( final int readLength : new int[]{ 100, 1, 57, 99, 2, 100 } ) {
+            readLengths.add(readLength);
+            final byte[] readBases = randomBases(random, readLength);
+            final byte[] quals = randomQuals(random, readLength, 10, 40);
+            final byte[] gcps = Utils.dupBytes((byte) 10, readLength);
+            final double expected = logless.computeReadLikelihoodGivenHaplotypeLog10(haplotypeBases, readBases, quals, quals, quals, gcps, true, null);
+            final double actual = antiDiagonal.computeReadLikelihoodGivenHaplotypeLog10(haplotypeBases, readBases, quals, quals, quals, gcps, true, null);
+            Assert.assertEquals(actual, expected, Math.abs(expected) * RELATIVE_TOLERANCE, "read lengths " + readLengths);
+        }
+    }
+
+    @Test
+    public void testImplementation() {
+        final PairHMM hmm = PairHMM.Implementation.ANTI_DIAGONAL_LOGLESS.makeNewHMM();
+        Assert.assertTrue(hmm instanceof AntiDiagonalLoglessPairHMM);
+    }
+}
@@ -0,0 +1,221 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.genotyper.LikelihoodMatrix;
+import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public final class BatchedPairHMMUnitTest extends BaseTest {
+
+    private static final int HAPLOTYPE_LENGTH = 120;
+
+    private static byte[] randomBases(final Random random, final int length) {
+        final byte[] bases = new byte[length];
+        for ( int i = 0; i < length; i++ ) {
+            bases[i] = BaseUtils.BASES[random.nextInt(4)];
+        }
+        return bases;
+    }
+
+    /**
+     * Haplotypes of the same length that differ from a common one in a single base, and a shorter one
+     */
+    private static List<Haplotype> createHaplotypes(final Random random, final int numHaplotypes) {
+        final byte[] reference = randomBases(random, HAPLOTYPE_LENGTH);
+        final List<Haplotype> haplotypes = new ArrayList<>();
+        haplotypes.add(new Haplotype(reference, true));
+        for ( int i = 1; i < numHaplotypes - 1; i++ ) {
+            final byte[] bases = reference.clone();
+            final int position = random.nextInt(HAPLOTYPE_LENGTH);
+            bases[position] = bases[position] == 'A' ? (byte)'C' : (byte)'A';
+            haplotypes.add(new Haplotype(bases, false));
+        }
+        haplotypes.add(new Haplotype(Arrays.copyOf(reference, HAPLOTYPE_LENGTH - 7), false));
+        return haplotypes;
+    }
+
+    private static List<GATKRead> createReads(final Random random, final List<Haplotype> haplotypes, final int numReads) {
+        final List<GATKRead> reads = new ArrayList<>();
+        for ( int i = 0; i < numReads; i++ ) {
+            final byte[] haplotypeBases = haplotypes.get(random.nextInt(haplotypes.size())).getBases();
+            final int length = 10 + random.nextInt(90);
+            final int start = random.nextInt(haplotypeBases.length - length);
+            final byte[] bases = Arrays.copyOfRange(haplotypeBases, start, start + length);
+            final byte[] quals = new byte[length];
+            for ( int j = 0; j < length; j++ ) {
+                quals[j] = (byte)(10 + random.nextInt(30));
+            }
+            reads.add(ArtificialReadUtils.createArtificialRead(bases, quals, length + "M"));
+        }
+        return reads;
+    }
+
+    private static Map<GATKRead, byte[]> gapContinuationPenalties(final List<GATKRead> reads) {
+        final Map<GATKRead, byte[]> gcps = new LinkedHashMap<>();
+        for ( final GATKRead read : reads ) {
+            final byte[] gcp = new byte[read.getLength()];
+            Arrays.fill(gcp, (byte) 10);
+            gcps.put(read, gcp);
+        }
+        return gcps;
+    }
+
+    @DataProvider(name = "Batching")
+    public Object[][] makeBatching() {
+        return new Object[][]{
+                // implementation, number of threads, target cells per work unit
+                { PairHMM.Implementation.LOGLESS_CACHING, 1, BatchedPairHMM.DEFAULT_TARGET_CELLS_PER_WORK_UNIT },
+                { PairHMM.Implementation.LOGLESS_CACHING, 1, 1L },
+                { PairHMM.Implementation.LOGLESS_CACHING, 4, 20_000L },
+                { PairHMM.Implementation.ORIGINAL, 3, 50_000L },
+                { PairHMM.Implementation.ANTI_DIAGONAL_LOGLESS, 2, 20_000L },
+        };
+    }
+
+    @Test(dataProvider = "Batching")
+    public void testMatchesUnbatchedLikelihoods(final PairHMM.Implementation implementation, final int numThreads, final long targetCellsPerWorkUnit) {
+        final Random random = new Random(31);
+        final List<Haplotype> haplotypes = createHaplotypes(random, 8);
+        final List<GATKRead> reads = createReads(random, haplotypes, 60);
+        final Map<GATKRead, byte[]> gcps = gapContinuationPenalties(reads);
+
+        final TestMatrix expected = new TestMatrix(haplotypes, reads.size());
+        implementation.makeNewHMM().computeLog10Likelihoods(expected, reads, gcps);
+
+        try ( final BatchedPairHMM batched = new BatchedPairHMM(implementation, numThreads, targetCellsPerWorkUnit) ) {
+            for ( int region = 0; region < 2; region++ ) {
+                final TestMatrix actual = new TestMatrix(haplotypes, reads.size());
+                final BatchedPairHMM.RegionStats stats = batched.computeLog10Likelihoods(actual, reads, gcps);
+                for ( int a = 0; a < haplotypes.size(); a++ ) {
+                    for ( int r = 0; r < reads.size(); r++ ) {
+                        Assert.assertEquals(actual.get(a, r), expected.get(a, r), 1e-6, "haplotype " + a + " read " + r);
+                    }
+                }
+
+                final long totalCells = reads.stream().mapToLong(GATKRead::getLength).sum() * haplotypes.stream().mapToLong(Haplotype::length).sum();
+                Assert.assertSame(batched.getLastRegionStats(), stats);
+                Assert.assertEquals(stats.getNumRegions(), 1);
+                Assert.assertEquals(stats.getNumReads(), reads.size());
+                Assert.assertEquals(stats.getNumHaplotypes(), haplotypes.size());
+                Assert.assertEquals(stats.getNumPairs(), reads.size() * haplotypes.size());
+                Assert.assertEquals(stats.getCellsComputed() + stats.getCellsSkipped(), totalCells);
+                if ( targetCellsPerWorkUnit == 1L ) {
+                    Assert.assertEquals(stats.getNumWorkUnits(), reads.size());
+                }
+                // the haplotypes of the same length share prefixes, which only implementations that cache them skip
+                if ( implementation == PairHMM.Implementation.ANTI_DIAGONAL_LOGLESS ) {
+                    Assert.assertEquals(stats.getCellsSkipped(), 0);
+                } else {
+                    Assert.assertTrue(stats.getCellsSkipped() > 0);
+                }
+            }
+            Assert.assertEquals(batched.getTotalStats().getNumRegions(), 2);
+            Assert.assertEquals(batched.getTotalStats().getNumPairs(), 2 * reads.size() * haplotypes.size());
+        }
+    }
+
+    @Test
+    public void testEmptyRegion() {
+        final List<Haplotype> haplotypes = createHaplotypes(new Random(3), 2);
+        try ( final BatchedPairHMM batched = new BatchedPairHMM(PairHMM.Implementation.LOGLESS_CACHING, 2, 1000L) ) {
+            final BatchedPairHMM.RegionStats stats = batched.computeLog10Likelihoods(new TestMatrix(haplotypes, 0), new ArrayList<>(), new LinkedHashMap<>());
+            Assert.assertEquals(stats.getNumPairs(), 0);
+            Assert.assertEquals(stats.getNumWorkUnits(), 0);
+            Assert.assertEquals(stats.getFractionSkipped(), 0.0);
+        }
+    }
+
+    @Test
+    public void testOnlyWorkerThreadsGetAPairHMM() {
+        final Random random = new Random(7);
+        final List<Haplotype> haplotypes = createHaplotypes(random, 4);
+        final List<GATKRead> reads = createReads(random, haplotypes, 20);
+        try ( final BatchedPairHMM batched = new BatchedPairHMM(PairHMM.Implementation.LOGLESS_CACHING, 2, 1L) ) {
+            batched.computeLog10Likelihoods(new TestMatrix(haplotypes, reads.size()), reads, gapContinuationPenalties(reads));
+            // the work units are all computed by the two worker threads, so the calling thread needs no PairHMM
+            Assert.assertTrue(batched.getNumHMMs() <= 2, "PairHMM instances: " + batched.getNumHMMs());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNoThreads() {
+        new BatchedPairHMM(PairHMM.Implementation.LOGLESS_CACHING, 0, 1000L);
+    }
+
+    private static final class TestMatrix implements LikelihoodMatrix<Haplotype> {
+        private final List<Haplotype> haplotypes;
+        private final double[][] values;
+
+        private TestMatrix(final List<Haplotype> haplotypes, final int numReads) {
+            this.haplotypes = haplotypes;
+            this.values = new double[haplotypes.size()][numReads];
+        }
+
+        @Override
+        public List<GATKRead> reads() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Haplotype> alleles() {
+            return haplotypes;
+        }
+
+        @Override
+        public void set(final int alleleIndex, final int readIndex, final double value) {
+            values[alleleIndex][readIndex] = value;
+        }
+
+        @Override
+        public double get(final int alleleIndex, final int readIndex) {
+            return values[alleleIndex][readIndex];
+        }
+
+        @Override
+        public int indexOfAllele(final Haplotype allele) {
+            return haplotypes.indexOf(allele);
+        }
+
+        @Override
+        public int indexOfRead(final GATKRead read) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int numberOfAlleles() {
+            return haplotypes.size();
+        }
+
+        @Override
+        public int numberOfReads() {
+            return values.length == 0 ? 0 : values[0].length;
+        }
+
+        @Override
+        public Haplotype getAllele(final int alleleIndex) {
+            return haplotypes.get(alleleIndex);
+        }
+
+        @Override
+        public GATKRead getRead(final int readIndex) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void copyAlleleLikelihoods(final int alleleIndex, final double[] dest, final int offset) {
+            System.arraycopy(values[alleleIndex], 0, dest, offset, numberOfReads());
+        }
+    }
+}
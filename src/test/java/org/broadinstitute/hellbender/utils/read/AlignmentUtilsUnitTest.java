@@ -6,6 +6,7 @@ import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
 import org.broadinstitute.hellbender.utils.pileup.PileupElement;
 import org.broadinstitute.hellbender.utils.smithwaterman.SWPairwiseAlignment;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAligner;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
@@ -169,6 +170,18 @@ public final class AlignmentUtilsUnitTest {
         Assert.assertEquals(read, originalReadCopy, "createReadAlignedToRef seems be modifying the original read!");
     }
 
+    @Test(dataProvider = "ReadAlignedToRefData")
+    public void testReadAlignedToRefWithinBand(final GATKRead read, final Haplotype haplotype, final int refStart, final int expectedReadStart, final String expectedReadCigar) throws Exception {
+        // the band is centered on the current position of the read, so put it where it is expected to align
+        final GATKRead placedRead = read.copy();
+        placedRead.setPosition(placedRead.getContig(), expectedReadStart);
+
+        final GATKRead alignedRead = AlignmentUtils.createReadAlignedToRef(placedRead, haplotype, haplotype, refStart, true,
+                                                                           SmithWatermanAligner.Implementation.BANDED.makeNewAligner(), 20);
+        Assert.assertEquals(alignedRead.getStart(), expectedReadStart);
+        Assert.assertEquals(alignedRead.getCigar(), TextCigarCodec.decode(expectedReadCigar));
+    }
+
     private static class Mutation implements Comparable<Mutation> {
         int pos, len;
         CigarOperator operator;
@@ -2,6 +2,7 @@ package org.broadinstitute.hellbender.utils.read;
 
 import htsjdk.samtools.Cigar;
 import htsjdk.samtools.TextCigarCodec;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAligner;
 import org.broadinstitute.hellbender.utils.test.ReadClipperTestUtils;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -337,4 +338,12 @@ public final class CigarUtilsUnitTest {
         final Cigar decode = TextCigarCodec.decode(expectedCigar);
         Assert.assertEquals(actualCigar, decode);
     }
+
+    @Test(dataProvider = "testData_testComputeCigar")
+    public void testComputeCigarWithinBand(String s1, String s2, String expectedCigar) throws Exception {
+        // the band must contain the whole path, which strays from the start of the reference by at most the indels
+        final int bandWidth = Math.abs(s1.length() - s2.length()) + 10;
+        final Cigar actualCigar = CigarUtils.calculateCigar(s1.getBytes(), s2.getBytes(), SmithWatermanAligner.Implementation.BANDED.makeNewAligner(), bandWidth);
+        Assert.assertEquals(actualCigar, TextCigarCodec.decode(expectedCigar));
+    }
 }
@@ -145,4 +145,23 @@ public final class BaseRecalibrationEngineUnitTest {
         final int[] actual = (mode == EventType.BASE_INSERTION ? isInsertion : isDeletion);
         Assert.assertEquals(actual, expected, "calculateIsSNPOrIndel() failed with " + mode + " and cigar " + cigar + " Expected " + Arrays.toString(expected) + " but got " + Arrays.toString(actual));
     }
-}
\ No newline at end of file
+
+    @Test(dataProvider = "CalculateIsIndelData")
+    public void testCalculateIsIndelWithLongerBuffers(final String cigar, final boolean negStrand, final EventType mode, final int[] expected) {
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(TextCigarCodec.decode(cigar));
+        read.setIsReverseStrand(negStrand);
+        final ReferenceDataSource refSource = new ReferenceMemorySource(new ReferenceBases(Utils.repeatBytes((byte)'A', read.getEnd() - read.getStart() + 1), new SimpleInterval(read)), ArtificialReadUtils.createArtificialSamHeader().getSequenceDictionary());
+
+        // buffers reused from a longer read must give the same results, and leave entries past the read untouched
+        final int bufferLength = read.getLength() + 5;
+        int[] isSNP = new int[bufferLength];
+        int[] isInsertion = new int[bufferLength];
+        int[] isDeletion = new int[bufferLength];
+        final int nEvents = BaseRecalibrationEngine.calculateIsSNPOrIndel(read, refSource, isSNP, isInsertion, isDeletion);
+        final int[] actual = (mode == EventType.BASE_INSERTION ? isInsertion : isDeletion);
+        Assert.assertEquals(Arrays.copyOf(actual, read.getLength()), expected);
+        Assert.assertEquals(Arrays.copyOfRange(actual, read.getLength(), bufferLength), new int[5]);
+        final int length = read.getLength();
+        Assert.assertEquals(nEvents, BaseRecalibrationEngine.calculateIsSNPOrIndel(read, refSource, new int[length], new int[length], new int[length]));
+    }
+}
@@ -0,0 +1,98 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.report.GATKReport;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class BinaryRecalibrationReportUnitTest extends BaseTest {
+
+    private static final String testDir = BaseTest.publicTestDir + "/org/broadinstitute/hellbender/utils/recalibration/";
+    private static final File recal_original = new File(testDir + "HiSeq.1mb.1RG.noSG.table");
+    private static final List<File> scatteredRecalFiles = Arrays.asList(
+            new File(testDir + "HiSeq.1mb.1RG.sg1.table"),
+            new File(testDir + "HiSeq.1mb.1RG.sg2.table"),
+            new File(testDir + "HiSeq.1mb.1RG.sg3.table"),
+            new File(testDir + "HiSeq.1mb.1RG.sg4.table"),
+            new File(testDir + "HiSeq.1mb.1RG.sg5.table"));
+
+    private static File toBinary(final File textReport) {
+        final File binaryReport = createTempFile("binaryRecal.", ".bin");
+        BinaryRecalibrationReport.write(new RecalibrationReport(textReport), binaryReport);
+        return binaryReport;
+    }
+
+    private static String asText(final GATKReport report) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try ( final PrintStream out = new PrintStream(bytes) ) {
+            report.print(out);
+        }
+        return bytes.toString();
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final File binaryReport = toBinary(recal_original);
+        Assert.assertTrue(BinaryRecalibrationReport.isBinaryReport(binaryReport));
+        Assert.assertFalse(BinaryRecalibrationReport.isBinaryReport(recal_original));
+
+        final RecalibrationReport fromText = new RecalibrationReport(recal_original);
+        final RecalibrationReport fromBinary = new RecalibrationReport(binaryReport);
+        Assert.assertEquals(asText(fromBinary.createGATKReport()), asText(fromText.createGATKReport()));
+        Assert.assertEquals(fromBinary.getQuantizationInfo().getQuantizedQuals(), fromText.getQuantizationInfo().getQuantizedQuals());
+        Assert.assertEquals(fromBinary.getRAC().QUANTIZING_LEVELS, fromText.getRAC().QUANTIZING_LEVELS);
+        Assert.assertEquals(fromBinary.getCovariates().covariateNames(), fromText.getCovariates().covariateNames());
+        Assert.assertEquals(RecalibrationReport.readReadGroups(binaryReport), RecalibrationReport.readReadGroups(recal_original));
+    }
+
+    @Test
+    public void testReadFromStream() throws IOException {
+        final File binaryReport = toBinary(recal_original);
+        final RecalibrationReport fromStream = new RecalibrationReport(new ByteArrayInputStream(Files.readAllBytes(binaryReport.toPath())));
+        Assert.assertEquals(asText(fromStream.createGATKReport()), asText(new RecalibrationReport(recal_original).createGATKReport()));
+    }
+
+    @Test
+    public void testGatherBinaryReports() throws IOException {
+        final List<File> binaryReports = new ArrayList<>();
+        for ( final File scattered : scatteredRecalFiles ) {
+            binaryReports.add(toBinary(scattered));
+        }
+
+        final File gatheredText = createTempFile("gathered.", ".table");
+        RecalibrationReport.gatherReportsIntoOneFile(binaryReports, gatheredText);
+        IntegrationTestSpec.assertEqualTextFiles(gatheredText, recal_original);
+
+        // mixing formats works too, and gathering to a binary report gives the same result
+        final List<File> mixedReports = new ArrayList<>(binaryReports.subList(0, 2));
+        mixedReports.addAll(scatteredRecalFiles.subList(2, scatteredRecalFiles.size()));
+        final File gatheredBinary = createTempFile("gathered.", ".bin");
+        RecalibrationReport.gatherReportsIntoOneFile(mixedReports, gatheredBinary, true);
+        Assert.assertTrue(BinaryRecalibrationReport.isBinaryReport(gatheredBinary));
+        Assert.assertEquals(asText(new RecalibrationReport(gatheredBinary).createGATKReport()),
+                            asText(RecalibrationReport.gatherReports(scatteredRecalFiles)));
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testTruncatedReport() throws IOException {
+        final byte[] bytes = Files.readAllBytes(toBinary(recal_original).toPath());
+        final File truncated = createTempFile("truncated.", ".bin");
+        try ( final FileOutputStream out = new FileOutputStream(truncated) ) {
+            out.write(bytes, 0, bytes.length / 2);
+        }
+        new RecalibrationReport(truncated);
+    }
+}
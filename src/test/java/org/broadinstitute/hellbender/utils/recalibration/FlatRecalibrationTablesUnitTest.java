@@ -0,0 +1,144 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public final class FlatRecalibrationTablesUnitTest extends BaseTest {
+    private static final int NUM_READ_GROUPS = 3;
+    private static final List<String> READ_GROUPS = Arrays.asList("rg0", "rg1", "rg2");
+
+    private final StandardCovariateList covariates = new StandardCovariateList(new RecalibrationArgumentCollection(), READ_GROUPS);
+
+    /**
+     * Record the same random observations in flat tables and, via RecalUtils, in RecalibrationTables
+     */
+    private void recordObservations( final FlatRecalibrationTables flat, final RecalibrationTables expected, final int numEventTypes, final long seed, final int numObservations ) {
+        final Random random = new Random(seed);
+        final double[] errors = {0.0, 1.0, 1.0 / 3, 0.25};
+        for ( int i = 0; i < numObservations; i++ ) {
+            final int readGroup = random.nextInt(NUM_READ_GROUPS);
+            final byte qual = (byte)(random.nextInt(40) + 2);
+            final int eventIndex = random.nextInt(numEventTypes);
+            final double isError = errors[random.nextInt(errors.length)];
+
+            flat.incrementQualityScoreTable(readGroup, qual, eventIndex, isError);
+            RecalUtils.incrementDatumOrPutIfNecessary3keys(expected.getQualityScoreTable(), qual, isError, readGroup, qual, eventIndex);
+
+            for ( int table = 0; table < expected.getAdditionalTables().size(); table++ ) {
+                final int key = random.nextInt(20);
+                flat.incrementAdditionalTable(table, readGroup, qual, key, eventIndex, isError);
+                RecalUtils.incrementDatumOrPutIfNecessary4keys(expected.getAdditionalTables().get(table), qual, isError, readGroup, qual, key, eventIndex);
+            }
+        }
+    }
+
+    private static void assertTablesEqual( final RecalibrationTables actual, final RecalibrationTables expected ) {
+        Assert.assertEquals(actual.numTables(), expected.numTables());
+        for ( int i = 0; i < expected.numTables(); i++ ) {
+            final NestedIntegerArray<RecalDatum> expectedTable = expected.getTable(i);
+            final NestedIntegerArray<RecalDatum> actualTable = actual.getTable(i);
+            Assert.assertEquals(actualTable.getAllLeaves().size(), expectedTable.getAllLeaves().size());
+            for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : expectedTable.getAllLeaves() ) {
+                final RecalDatum actualDatum = actualTable.get(leaf.keys);
+                Assert.assertNotNull(actualDatum, "missing datum at " + Arrays.toString(leaf.keys));
+                Assert.assertEquals(actualDatum.getNumObservations(), leaf.value.getNumObservations());
+                Assert.assertEquals(actualDatum.getNumMismatches(), leaf.value.getNumMismatches());
+                Assert.assertEquals(actualDatum.getEstimatedQReported(), leaf.value.getEstimatedQReported());
+                Assert.assertEquals(actualDatum.getEmpiricalQuality(), leaf.value.getEmpiricalQuality());
+            }
+        }
+    }
+
+    @Test
+    public void testFlushMatchesRecalDatumTables() {
+        for ( final int numEventTypes : new int[]{1, EventType.values().length} ) {
+            final FlatRecalibrationTables flat = new FlatRecalibrationTables(covariates, NUM_READ_GROUPS, numEventTypes);
+            final RecalibrationTables expected = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+            recordObservations(flat, expected, numEventTypes, 1L, 10000);
+
+            final RecalibrationTables actual = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+            flat.flushInto(actual);
+            assertTablesEqual(actual, expected);
+
+            // flushing empties the flat tables
+            final RecalibrationTables empty = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+            flat.flushInto(empty);
+            Assert.assertTrue(empty.isEmpty());
+        }
+    }
+
+    @Test
+    public void testFlushIntoExistingData() {
+        final FlatRecalibrationTables flat = new FlatRecalibrationTables(covariates, NUM_READ_GROUPS, 1);
+        final RecalibrationTables expected = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        final RecalibrationTables actual = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+
+        // observations with whole-number errors are counted exactly however they are divided between flushes
+        final FlatRecalibrationTables firstFlat = new FlatRecalibrationTables(covariates, NUM_READ_GROUPS, 1);
+        final Random random = new Random(2L);
+        for ( int i = 0; i < 5000; i++ ) {
+            final int readGroup = random.nextInt(NUM_READ_GROUPS);
+            final byte qual = (byte)(random.nextInt(40) + 2);
+            final double isError = random.nextInt(4) == 0 ? 1.0 : 0.0;
+            (i < 2500 ? firstFlat : flat).incrementQualityScoreTable(readGroup, qual, 0, isError);
+            RecalUtils.incrementDatumOrPutIfNecessary3keys(expected.getQualityScoreTable(), qual, isError, readGroup, qual, 0);
+        }
+        firstFlat.flushInto(actual);
+        flat.flushInto(actual);
+        assertTablesEqual(actual, expected);
+    }
+
+    @Test
+    public void testFlushQualityScoreTableOnly() {
+        final FlatRecalibrationTables flat = new FlatRecalibrationTables(covariates, NUM_READ_GROUPS, EventType.values().length);
+        final RecalibrationTables expected = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        recordObservations(flat, expected, EventType.values().length, 5L, 5000);
+
+        final RecalibrationTables actual = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        flat.flushQualityScoreTableInto(actual);
+        Assert.assertEquals(actual.getQualityScoreTable().getAllLeaves().size(), expected.getQualityScoreTable().getAllLeaves().size());
+        for ( final NestedIntegerArray<RecalDatum> table : actual.getAdditionalTables() ) {
+            Assert.assertTrue(table.getAllLeaves().isEmpty());
+        }
+
+        // a later full flush adds the remaining observations only
+        flat.flushInto(actual);
+        assertTablesEqual(actual, expected);
+    }
+
+    @Test
+    public void testMergeObservations() {
+        final FlatRecalibrationTables first = new FlatRecalibrationTables(covariates, NUM_READ_GROUPS, 1);
+        final FlatRecalibrationTables second = new FlatRecalibrationTables(covariates, NUM_READ_GROUPS, 1);
+        final RecalibrationTables firstExpected = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        final RecalibrationTables secondExpected = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        recordObservations(first, firstExpected, 1, 3L, 2000);
+        recordObservations(second, secondExpected, 1, 4L, 2000);
+
+        first.mergeObservations(second);
+        final RecalibrationTables actual = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        first.flushInto(actual);
+
+        final RecalibrationTables expected = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        expected.mergeObservations(firstExpected);
+        expected.mergeObservations(secondExpected);
+        assertTablesEqual(actual, expected);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMergeDifferentDimensions() {
+        new FlatRecalibrationTables(covariates, NUM_READ_GROUPS, 1).mergeObservations(new FlatRecalibrationTables(covariates, NUM_READ_GROUPS, 3));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testKeyOutOfRange() {
+        new FlatRecalibrationTables(covariates, NUM_READ_GROUPS, 1).incrementQualityScoreTable(0, 30, 1, 0.0);
+    }
+}
@@ -0,0 +1,93 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+public final class RecalibrationConvergenceTrackerUnitTest extends BaseTest {
+
+    private static final int NUM_READ_GROUPS = 2;
+
+    private static RecalibrationTables createTables() {
+        final StandardCovariateList covariates = new StandardCovariateList(new RecalibrationArgumentCollection(), Arrays.asList("rg0", "rg1"));
+        return new RecalibrationTables(covariates, NUM_READ_GROUPS);
+    }
+
+    /**
+     * Add nObservations observations with the given error rate at two reported qualities to the quality score table
+     */
+    private static void addObservations( final RecalibrationTables tables, final int rgKey, final int nObservations, final double errorRate ) {
+        final int eventIndex = EventType.BASE_SUBSTITUTION.ordinal();
+        for ( final byte qual : new byte[]{ 20, 30 } ) {
+            final RecalDatum datum = tables.getQualityScoreTable().get(rgKey, qual, eventIndex);
+            if ( datum == null ) {
+                tables.getQualityScoreTable().put(new RecalDatum(nObservations, nObservations * errorRate, qual), rgKey, qual, eventIndex);
+            } else {
+                datum.increment(nObservations, nObservations * errorRate);
+            }
+        }
+    }
+
+    @Test
+    public void testConvergence() {
+        final RecalibrationTables tables = createTables();
+        final RecalibrationConvergenceTracker tracker = new RecalibrationConvergenceTracker(0.1);
+        addObservations(tables, 0, 100_000, 0.001);
+
+        // nothing to compare the first snapshot with
+        Assert.assertFalse(tracker.update(tables));
+        Assert.assertEquals(tracker.getLastMaximumChange(), Double.POSITIVE_INFINITY);
+
+        // more of the same
+        addObservations(tables, 0, 100_000, 0.001);
+        Assert.assertTrue(tracker.update(tables));
+        Assert.assertTrue(tracker.getLastMaximumChange() <= 0.1);
+
+        // a much higher error rate moves the empirical quality
+        addObservations(tables, 0, 100_000, 0.01);
+        Assert.assertFalse(tracker.update(tables));
+        Assert.assertTrue(tracker.getLastMaximumChange() > 0.1);
+        Assert.assertEquals(tracker.getNumUpdates(), 3);
+    }
+
+    @Test
+    public void testNewReadGroupPreventsConvergence() {
+        final RecalibrationTables tables = createTables();
+        final RecalibrationConvergenceTracker tracker = new RecalibrationConvergenceTracker(0.1);
+        addObservations(tables, 0, 100_000, 0.001);
+        tracker.update(tables);
+        Assert.assertTrue(tracker.update(tables));
+
+        addObservations(tables, 1, 10, 0.001);
+        Assert.assertFalse(tracker.update(tables));
+        Assert.assertEquals(tracker.getLastMaximumChange(), Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void testEmpiricalQualitiesMatchReadGroupTable() {
+        final RecalibrationTables tables = createTables();
+        addObservations(tables, 0, 1000, 0.01);
+        addObservations(tables, 1, 5000, 0.001);
+
+        final RecalibrationTables finalized = createTables();
+        addObservations(finalized, 0, 1000, 0.01);
+        addObservations(finalized, 1, 5000, 0.001);
+        BaseRecalibrationEngine.finalizeRecalibrationTables(finalized);
+
+        final int eventIndex = EventType.BASE_SUBSTITUTION.ordinal();
+        for ( int rgKey = 0; rgKey < NUM_READ_GROUPS; rgKey++ ) {
+            final double[] qualities = RecalibrationConvergenceTracker.empiricalQualitiesByReadGroup(tables).get(rgKey);
+            // the finalized tables are rounded, as written to a report
+            Assert.assertEquals(qualities[eventIndex], finalized.getReadGroupTable().get(rgKey, eventIndex).getEmpiricalQuality(), 1e-2);
+            Assert.assertTrue(Double.isNaN(qualities[EventType.BASE_INSERTION.ordinal()]));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeTolerance() {
+        new RecalibrationConvergenceTracker(-1.0);
+    }
+}
@@ -0,0 +1,116 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.transformers.BQSRReadTransformer;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.broadinstitute.hellbender.utils.MathUtils.fastRound;
+import static org.broadinstitute.hellbender.utils.QualityUtils.boundQual;
+import static org.broadinstitute.hellbender.utils.recalibration.RecalDatum.MAX_RECALIBRATED_Q_SCORE;
+
+public final class RecalibrationLookupTableUnitTest extends BaseTest {
+
+    private static final File recalFile = new File(publicTestDir + "/org/broadinstitute/hellbender/utils/recalibration/HiSeq.1mb.1RG.noSG.table");
+    private static final int SUBSTITUTION = EventType.BASE_SUBSTITUTION.ordinal();
+
+    @Test
+    public void testLookupMatchesTables() {
+        final RecalibrationReport report = new RecalibrationReport(recalFile);
+        final RecalibrationTables tables = report.getRecalibrationTables();
+        final List<Byte> quantizedQuals = report.getQuantizationInfo().getQuantizedQuals();
+        final int numCovariates = report.getCovariates().size();
+
+        for ( final double globalQScorePrior : new double[]{ -1.0, 25.0 } ) {
+            final RecalibrationLookupTable lookupTable = new RecalibrationLookupTable(tables, report.getCovariates(), quantizedQuals, null, globalQScorePrior);
+
+            final int numReadGroups = tables.getReadGroupTable().getDimensions()[0];
+            final int qualDimension = tables.getQualityScoreTable().getDimensions()[1];
+            Assert.assertFalse(lookupTable.hasReadGroup(-1));
+            Assert.assertFalse(lookupTable.hasReadGroup(numReadGroups));
+
+            final Random random = new Random(42);
+            for ( int i = 0; i < 20000; i++ ) {
+                final int[] keySet = new int[numCovariates];
+                keySet[0] = random.nextInt(numReadGroups);
+                // include some qualities beyond the quality score table
+                keySet[1] = random.nextInt(qualDimension + 5);
+                for ( int j = 2; j < numCovariates; j++ ) {
+                    keySet[j] = random.nextInt(tables.getTable(j).getDimensions()[2] + 1) - 1;
+                }
+
+                final RecalDatum empiricalQualRG = tables.getReadGroupTable().get2Keys(keySet[0], SUBSTITUTION);
+                Assert.assertEquals(lookupTable.hasReadGroup(keySet[0]), empiricalQualRG != null);
+                if ( empiricalQualRG == null ) {
+                    continue;
+                }
+                final double epsilon = globalQScorePrior > 0.0 ? globalQScorePrior : empiricalQualRG.getEstimatedQReported();
+                final RecalDatum[] empiricalQualCovs = new RecalDatum[numCovariates - 2];
+                for ( int j = 2; j < numCovariates; j++ ) {
+                    if ( keySet[j] >= 0 ) {
+                        empiricalQualCovs[j - 2] = tables.getTable(j).get4Keys(keySet[0], keySet[1], keySet[j], SUBSTITUTION);
+                    }
+                }
+                final double expected = BQSRReadTransformer.hierarchicalBayesianQualityEstimate(epsilon, empiricalQualRG,
+                        tables.getQualityScoreTable().get3Keys(keySet[0], keySet[1], SUBSTITUTION), empiricalQualCovs);
+
+                Assert.assertEquals(lookupTable.getRecalibratedQuality(keySet),
+                                    (byte)quantizedQuals.get(boundQual(fastRound(expected), MAX_RECALIBRATED_Q_SCORE)));
+            }
+        }
+    }
+
+    @Test
+    public void testStaticQuantization() {
+        final RecalibrationReport report = new RecalibrationReport(recalFile);
+        final RecalibrationTables tables = report.getRecalibrationTables();
+        final List<Byte> quantizedQuals = report.getQuantizationInfo().getQuantizedQuals();
+        final byte[] staticQuantizedMapping = new byte[MAX_RECALIBRATED_Q_SCORE + 1];
+        // map everything to Q20
+        Arrays.fill(staticQuantizedMapping, (byte)20);
+
+        final RecalibrationLookupTable lookupTable = new RecalibrationLookupTable(tables, report.getCovariates(), quantizedQuals, staticQuantizedMapping, -1.0);
+        final int[] keySet = new int[report.getCovariates().size()];
+        keySet[1] = 30;
+        Assert.assertTrue(lookupTable.hasReadGroup(0));
+        Assert.assertEquals(lookupTable.getRecalibratedQuality(keySet), 20);
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        final RecalibrationReport report = new RecalibrationReport(recalFile);
+        final RecalibrationLookupTable lookupTable = new RecalibrationLookupTable(report.getRecalibrationTables(), report.getCovariates(),
+                                                                                  report.getQuantizationInfo().getQuantizedQuals(), null, -1.0);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try ( final ObjectOutputStream out = new ObjectOutputStream(bytes) ) {
+            out.writeObject(lookupTable);
+        }
+        final RecalibrationLookupTable copy;
+        try ( final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())) ) {
+            copy = (RecalibrationLookupTable)in.readObject();
+        }
+
+        final int numCovariates = report.getCovariates().size();
+        final Random random = new Random(7);
+        for ( int i = 0; i < 1000; i++ ) {
+            final int[] keySet = new int[numCovariates];
+            keySet[1] = random.nextInt(MAX_RECALIBRATED_Q_SCORE);
+            for ( int j = 2; j < numCovariates; j++ ) {
+                keySet[j] = random.nextInt(100) - 1;
+            }
+            Assert.assertEquals(copy.getRecalibratedQuality(keySet), lookupTable.getRecalibratedQuality(keySet));
+        }
+        Assert.assertEquals(copy.getCovariates().size(), numCovariates);
+    }
+}
@@ -150,4 +150,45 @@ public final class RecalibrationTablesUnitTest extends BaseTest {
             }
         }
     }
+
+    @Test
+    public void testMergeObservations() {
+        // Observations divided between two sets of tables and then merged must match those collected in a single set
+        final RecalibrationTables all = new RecalibrationTables(covariates, numReadGroups);
+        final RecalibrationTables first = new RecalibrationTables(covariates, numReadGroups);
+        final RecalibrationTables second = new RecalibrationTables(covariates, numReadGroups);
+        for ( int iteration = 0; iteration < 10; iteration++ ) {
+            for ( final int rg : combineStates ) {
+                final double error = (rg + iteration) % 3 == 0 ? 1 : 0;
+                final byte qual = (byte)(10 + rg);
+                for ( final RecalibrationTables target : Arrays.asList(all, iteration % 3 == 0 ? first : second) ) {
+                    RecalUtils.incrementDatumOrPutIfNecessary3keys(target.getQualityScoreTable(), qual, error, rg, qual, EventType.BASE_SUBSTITUTION.ordinal());
+                    RecalUtils.incrementDatumOrPutIfNecessary4keys(target.getTable(2), qual, error, rg, qual, iteration, EventType.BASE_SUBSTITUTION.ordinal());
+                }
+            }
+        }
+
+        first.mergeObservations(second);
+
+        for ( int i = 0; i < all.numTables(); i++ ) {
+            final NestedIntegerArray<RecalDatum> expectedTable = all.getTable(i);
+            final NestedIntegerArray<RecalDatum> mergedTable = first.getTable(i);
+
+            Assert.assertEquals(mergedTable.getAllLeaves().size(), expectedTable.getAllLeaves().size());
+            for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : expectedTable.getAllLeaves() ) {
+                final RecalDatum mergedValue = mergedTable.get(leaf.keys);
+                Assert.assertNotNull(mergedValue);
+                Assert.assertEquals(mergedValue.getNumObservations(), leaf.value.getNumObservations());
+                Assert.assertEquals(mergedValue.getNumMismatches(), leaf.value.getNumMismatches());
+                Assert.assertEquals(mergedValue.getEstimatedQReported(), leaf.value.getEstimatedQReported());
+                Assert.assertEquals(mergedValue.getEmpiricalQuality(), leaf.value.getEmpiricalQuality());
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testMergeObservationsAfterFinalization() {
+        // our tables have a populated read group table
+        new RecalibrationTables(covariates, numReadGroups).mergeObservations(tables);
+    }
 }
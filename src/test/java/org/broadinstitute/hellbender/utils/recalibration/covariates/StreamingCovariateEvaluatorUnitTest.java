@@ -0,0 +1,104 @@
+package org.broadinstitute.hellbender.utils.recalibration.covariates;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.recalibration.EventType;
+import org.broadinstitute.hellbender.utils.recalibration.RecalUtils;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationArgumentCollection;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public final class StreamingCovariateEvaluatorUnitTest extends BaseTest {
+
+    private static final String[] READ_GROUPS = {"RG1", "RG2", "RGbla"};
+
+    private static SAMFileHeader createHeader() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        for ( final String readGroupID : READ_GROUPS ) {
+            final SAMReadGroupRecord readGroupRecord = new SAMReadGroupRecord(readGroupID);
+            readGroupRecord.setPlatform("illumina");
+            header.addReadGroup(readGroupRecord);
+        }
+        return header;
+    }
+
+    @Test
+    public void testKeysMatchReadCovariates() {
+        final RecalibrationArgumentCollection RAC = new RecalibrationArgumentCollection();
+        final SAMFileHeader header = createHeader();
+        final StandardCovariateList covariates = new StandardCovariateList(RAC, Arrays.asList(READ_GROUPS));
+        final int contextIndex = covariates.indexByClass(ContextCovariate.class);
+        final int cycleIndex = covariates.indexByClass(CycleCovariate.class);
+
+        final StreamingCovariateEvaluator evaluator = new StreamingCovariateEvaluator(covariates);
+        Assert.assertEquals(evaluator.getContextCovariateIndex(), contextIndex);
+        Assert.assertEquals(evaluator.getCycleCovariateIndex(), cycleIndex);
+
+        final Random rnd = new Random(13);
+        final CovariateKeyCache keyCache = new CovariateKeyCache();
+        for ( int idx = 0; idx < 500; idx++ ) {
+            // reads of varying length, so that the evaluator's storage is reused for shorter reads
+            final int length = 1 + rnd.nextInt(150);
+            final GATKRead read = ArtificialReadUtils.createRandomRead(header, length, false);
+            read.setReadGroup(READ_GROUPS[rnd.nextInt(READ_GROUPS.length)]);
+            read.setIsReverseStrand(rnd.nextBoolean());
+            switch ( rnd.nextInt(3) ) {
+                case 0: read.setIsPaired(false); break;
+                case 1: read.setIsFirstOfPair(); break;
+                default: read.setIsSecondOfPair(); break;
+            }
+
+            // low quality tails (sometimes covering the whole read) and the odd N
+            final byte[] quals = read.getBaseQualities();
+            for ( int i = 0; i < length; i++ ) {
+                quals[i] = (byte)(1 + rnd.nextInt(40));
+            }
+            final int lowQualLeft = rnd.nextInt(length + 1);
+            for ( int i = 0; i < lowQualLeft && rnd.nextInt(4) != 0; i++ ) {
+                quals[i] = RAC.LOW_QUAL_TAIL;
+            }
+            for ( int i = length - 1; i >= 0 && rnd.nextInt(4) != 0; i-- ) {
+                quals[i] = RAC.LOW_QUAL_TAIL;
+            }
+            read.setBaseQualities(quals);
+            if ( rnd.nextInt(5) == 0 ) {
+                final byte[] bases = read.getBases();
+                bases[rnd.nextInt(length)] = 'N';
+                read.setBases(bases);
+            }
+
+            for ( final boolean recordIndelValues : new boolean[]{ true, false } ) {
+                final ReadCovariates readCovariates = RecalUtils.computeCovariates(read, header, covariates, recordIndelValues, keyCache);
+                evaluator.setRead(read, header, recordIndelValues);
+                for ( final EventType eventType : EventType.values() ) {
+                    final int eventIndex = eventType.ordinal();
+                    for ( int offset = 0; offset < length; offset++ ) {
+                        final int[] expected = readCovariates.getKeySet(offset, eventType);
+                        Assert.assertEquals(evaluator.getReadGroupKey(), expected[0]);
+                        Assert.assertEquals(evaluator.getContextKey(offset, eventIndex), expected[contextIndex], "context of read " + idx + " at " + offset + " for " + eventType);
+                        Assert.assertEquals(evaluator.getCycleKey(offset, eventIndex), expected[cycleIndex], "cycle of read " + idx + " at " + offset + " for " + eventType);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testCycleTooLarge() {
+        final RecalibrationArgumentCollection RAC = new RecalibrationArgumentCollection();
+        RAC.MAXIMUM_CYCLE_VALUE = 10;
+        final SAMFileHeader header = createHeader();
+        final StreamingCovariateEvaluator evaluator = new StreamingCovariateEvaluator(new StandardCovariateList(RAC, Arrays.asList(READ_GROUPS)));
+
+        final GATKRead read = ArtificialReadUtils.createRandomRead(header, 11, false);
+        read.setReadGroup(READ_GROUPS[0]);
+        evaluator.setRead(read, header, true);
+    }
+}
@@ -0,0 +1,146 @@
+package org.broadinstitute.hellbender.utils.smithwaterman;
+
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.read.CigarUtils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public final class BandedSmithWatermanAlignerUnitTest extends BaseTest {
+
+    private static byte[] randomBases(final Random random, final int length) {
+        final byte[] bases = new byte[length];
+        for ( int i = 0; i < length; i++ ) {
+            bases[i] = BaseUtils.BASES[random.nextInt(4)];
+        }
+        return bases;
+    }
+
+    /**
+     * The given sequence with a few mismatches and short insertions and deletions
+     */
+    private static byte[] mutate(final Random random, final byte[] sequence) {
+        final List<Byte> bases = new ArrayList<>();
+        for ( final byte base : sequence ) {
+            bases.add(base);
+        }
+        for ( int i = random.nextInt(4); i > 0; i-- ) {
+            bases.set(random.nextInt(bases.size()), BaseUtils.BASES[random.nextInt(4)]);
+        }
+        for ( int i = random.nextInt(3); i > 0 && bases.size() > 6; i-- ) {
+            final int position = random.nextInt(bases.size() - 5);
+            bases.subList(position, position + 1 + random.nextInt(5)).clear();
+        }
+        for ( int i = random.nextInt(3); i > 0; i-- ) {
+            final int position = random.nextInt(bases.size() + 1);
+            for ( int j = random.nextInt(5); j >= 0; j-- ) {
+                bases.add(position, BaseUtils.BASES[random.nextInt(4)]);
+            }
+        }
+        final byte[] mutated = new byte[bases.size()];
+        for ( int i = 0; i < mutated.length; i++ ) {
+            mutated[i] = bases.get(i);
+        }
+        return mutated;
+    }
+
+    private static void assertSameAlignment(final SmithWatermanAlignment actual, final SmithWatermanAlignment expected, final String message) {
+        Assert.assertEquals(actual.getCigar(), expected.getCigar(), message);
+        Assert.assertEquals(actual.getAlignmentStart2wrt1(), expected.getAlignmentStart2wrt1(), message);
+    }
+
+    private static Object[][] makeParameters(final List<SWPairwiseAlignment.OverhangStrategy> strategies) {
+        final List<Object[]> tests = new ArrayList<>();
+        for ( final SWPairwiseAlignment.Parameters parameters : Arrays.asList(SWPairwiseAlignment.ORIGINAL_DEFAULT, SWPairwiseAlignment.STANDARD_NGS, CigarUtils.NEW_SW_PARAMETERS) ) {
+            for ( final SWPairwiseAlignment.OverhangStrategy strategy : strategies ) {
+                tests.add(new Object[]{parameters, strategy});
+            }
+        }
+        return tests.toArray(new Object[][]{});
+    }
+
+    @DataProvider(name = "Parameters")
+    public Object[][] makeParameters() {
+        return makeParameters(Arrays.asList(SWPairwiseAlignment.OverhangStrategy.values()));
+    }
+
+    // with the other strategies a leading overhang is penalized, so for a piece of a long reference the best alignment is
+    // often one starting near the beginning of the reference, far from the band
+    @DataProvider(name = "UnpenalizedOverhangParameters")
+    public Object[][] makeUnpenalizedOverhangParameters() {
+        return makeParameters(Arrays.asList(SWPairwiseAlignment.OverhangStrategy.SOFTCLIP, SWPairwiseAlignment.OverhangStrategy.IGNORE));
+    }
+
+    @Test(dataProvider = "Parameters")
+    public void testMatchesReferenceImplementation(final SWPairwiseAlignment.Parameters parameters, final SWPairwiseAlignment.OverhangStrategy strategy) {
+        final Random random = new Random(17);
+        // a single aligner for all the pairs, to check that reusing (and growing) its buffers doesn't change the results
+        final SmithWatermanAligner aligner = SmithWatermanAligner.Implementation.BANDED.makeNewAligner();
+        for ( int i = 0; i < 300; i++ ) {
+            final byte[] reference = randomBases(random, 1 + random.nextInt(i % 10 == 0 ? 10 : 150));
+            final int start = random.nextInt(reference.length);
+            final int end = start + 1 + random.nextInt(reference.length - start);
+            final byte[] alternate = random.nextInt(5) == 0 ? randomBases(random, 1 + random.nextInt(60)) : mutate(random, Arrays.copyOfRange(reference, start, end));
+
+            final String message = new String(reference) + " " + new String(alternate);
+            final SWPairwiseAlignment expected = new SWPairwiseAlignment(reference, alternate, parameters, strategy);
+            assertSameAlignment(aligner.align(reference, alternate, parameters, strategy), expected, message);
+            // a band wider than the matrix is no band at all
+            assertSameAlignment(aligner.align(reference, alternate, parameters, strategy, start, reference.length + alternate.length), expected, message);
+        }
+    }
+
+    @Test(dataProvider = "UnpenalizedOverhangParameters")
+    public void testBandedMatchesReferenceImplementation(final SWPairwiseAlignment.Parameters parameters, final SWPairwiseAlignment.OverhangStrategy strategy) {
+        final Random random = new Random(29);
+        final SmithWatermanAligner aligner = SmithWatermanAligner.Implementation.BANDED.makeNewAligner();
+        for ( int i = 0; i < 100; i++ ) {
+            // a read-sized piece of a long reference whose indels are all shorter than the band
+            final byte[] reference = randomBases(random, 500);
+            final int start = 100 + random.nextInt(200);
+            final byte[] alternate = mutate(random, Arrays.copyOfRange(reference, start, start + 100 + random.nextInt(50)));
+
+            assertSameAlignment(aligner.align(reference, alternate, parameters, strategy, start, 30),
+                                new SWPairwiseAlignment(reference, alternate, parameters, strategy), new String(alternate));
+        }
+    }
+
+    @Test
+    public void testBandOutsideOfMatrix() {
+        final byte[] reference = "ACGTTGCAAGGCTTACCGATAGCTAGGCATTACG".getBytes();
+        final byte[] alternate = "GCAAGGCTTAGCGATAGCT".getBytes();
+        final SmithWatermanAligner aligner = SmithWatermanAligner.Implementation.BANDED.makeNewAligner();
+        for ( final SWPairwiseAlignment.OverhangStrategy strategy : SWPairwiseAlignment.OverhangStrategy.values() ) {
+            final SWPairwiseAlignment expected = new SWPairwiseAlignment(reference, alternate, SWPairwiseAlignment.STANDARD_NGS, strategy);
+            // bands that don't reach the end of the alignment fall back to the unbanded alignment
+            assertSameAlignment(aligner.align(reference, alternate, SWPairwiseAlignment.STANDARD_NGS, strategy, 1000, 2), expected, strategy.toString());
+            assertSameAlignment(aligner.align(reference, alternate, SWPairwiseAlignment.STANDARD_NGS, strategy, -1000, 2), expected, strategy.toString());
+        }
+    }
+
+    @Test
+    public void testFullMatrixImplementation() {
+        final byte[] reference = "AAAGACTACTG".getBytes();
+        final byte[] alternate = "AACGGACACTG".getBytes();
+        final SmithWatermanAlignment alignment = SmithWatermanAligner.Implementation.FULL_MATRIX.makeNewAligner()
+                .align(reference, alternate, new SWPairwiseAlignment.Parameters(50, -100, -220, -12), SWPairwiseAlignment.OverhangStrategy.SOFTCLIP);
+        Assert.assertEquals(alignment.getAlignmentStart2wrt1(), 1);
+        Assert.assertEquals(alignment.getCigar().toString(), "2M2I3M1D4M");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmptyAlternate() {
+        new BandedSmithWatermanAligner().align("ACGT".getBytes(), new byte[0], SWPairwiseAlignment.ORIGINAL_DEFAULT, SWPairwiseAlignment.OverhangStrategy.SOFTCLIP);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeBandWidth() {
+        new BandedSmithWatermanAligner().align("ACGT".getBytes(), "CG".getBytes(), SWPairwiseAlignment.ORIGINAL_DEFAULT, SWPairwiseAlignment.OverhangStrategy.SOFTCLIP, 1, -1);
+    }
+}
@@ -0,0 +1,112 @@
+package org.broadinstitute.hellbender.utils.variant;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+public final class DbSnpBitSetUtilUnitTest extends BaseTest {
+
+    private static final SAMSequenceDictionary DICTIONARY = new SAMSequenceDictionary(Arrays.asList(
+            new SAMSequenceRecord("1", 1000000), new SAMSequenceRecord("2", 2000000)));
+
+    private static DbSnpBitSetUtil createSites(final SimpleInterval... sites) {
+        return DbSnpBitSetUtil.createFromSites(Arrays.asList(sites).iterator(), null);
+    }
+
+    @Test
+    public void testCreateFromSites() {
+        final DbSnpBitSetUtil sites = createSites(new SimpleInterval("1", 10, 10), new SimpleInterval("1", 20, 23), new SimpleInterval("2", 5, 5));
+
+        Assert.assertTrue(sites.isDbSnpSite("1", 10));
+        Assert.assertFalse(sites.isDbSnpSite("1", 11));
+        for ( int pos = 20; pos <= 23; pos++ ) {
+            Assert.assertTrue(sites.isDbSnpSite("1", pos));
+        }
+        Assert.assertFalse(sites.isDbSnpSite("1", 24));
+        Assert.assertFalse(sites.isDbSnpSite("1", 1000));
+        Assert.assertTrue(sites.isDbSnpSite("2", 5));
+        Assert.assertFalse(sites.isDbSnpSite("3", 5));
+    }
+
+    @Test
+    public void testSiteNavigation() {
+        final DbSnpBitSetUtil sites = createSites(new SimpleInterval("1", 10, 10), new SimpleInterval("1", 20, 23));
+
+        Assert.assertEquals(sites.nextSitePosition("1", 1), 10);
+        Assert.assertEquals(sites.nextSitePosition("1", 10), 10);
+        Assert.assertEquals(sites.nextSitePosition("1", 11), 20);
+        Assert.assertEquals(sites.nextSitePosition("1", 24), -1);
+        Assert.assertEquals(sites.nextSitePosition("2", 1), -1);
+
+        Assert.assertEquals(sites.nextNonSitePosition("1", 20), 24);
+        Assert.assertEquals(sites.nextNonSitePosition("1", 9), 9);
+        Assert.assertEquals(sites.previousNonSitePosition("1", 22), 19);
+        Assert.assertEquals(sites.previousNonSitePosition("1", 15), 15);
+    }
+
+    @Test
+    public void testUnion() {
+        final DbSnpBitSetUtil sites = createSites(new SimpleInterval("1", 10, 10));
+        final DbSnpBitSetUtil other = createSites(new SimpleInterval("1", 12, 12), new SimpleInterval("2", 5, 5));
+        Assert.assertSame(sites.union(other), sites);
+
+        Assert.assertTrue(sites.isDbSnpSite("1", 10));
+        Assert.assertTrue(sites.isDbSnpSite("1", 12));
+        Assert.assertTrue(sites.isDbSnpSite("2", 5));
+
+        // the other bit set is left unchanged
+        Assert.assertFalse(other.isDbSnpSite("1", 10));
+        sites.union(createSites(new SimpleInterval("2", 6, 6)));
+        Assert.assertFalse(other.isDbSnpSite("2", 6));
+    }
+
+    @Test
+    public void testWriteAndRead() {
+        final DbSnpBitSetUtil sites = createSites(new SimpleInterval("1", 10, 10), new SimpleInterval("1", 200, 230), new SimpleInterval("2", 100000, 100001));
+        final File file = createTempFile("knownSites.", ".bits");
+        sites.write(file, Arrays.asList("a.vcf", "b.vcf"), DICTIONARY);
+
+        // the known sites may be given in any order
+        final DbSnpBitSetUtil loaded = DbSnpBitSetUtil.read(file, Arrays.asList("b.vcf", "a.vcf"), DICTIONARY);
+        for ( final String contig : Arrays.asList("1", "2", "3") ) {
+            for ( int pos = 0; pos <= 100010; pos++ ) {
+                Assert.assertEquals(loaded.isDbSnpSite(contig, pos), sites.isDbSnpSite(contig, pos), contig + ":" + pos);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = UserException.MalformedFile.class)
+    public void testReadNotABitSetFile() throws IOException {
+        final File file = createTempFile("notKnownSites.", ".bits");
+        try ( final FileOutputStream out = new FileOutputStream(file) ) {
+            out.write("not a bit set".getBytes());
+        }
+        DbSnpBitSetUtil.read(file, Collections.emptyList(), null);
+    }
+
+    @Test(expectedExceptions = UserException.BadInput.class)
+    public void testReadWithOtherKnownSites() {
+        final File file = createTempFile("knownSites.", ".bits");
+        createSites(new SimpleInterval("1", 10, 10)).write(file, Arrays.asList("a.vcf", "b.vcf"), DICTIONARY);
+        DbSnpBitSetUtil.read(file, Collections.singletonList("a.vcf"), DICTIONARY);
+    }
+
+    @Test(expectedExceptions = UserException.BadInput.class)
+    public void testReadWithOtherSequenceDictionary() {
+        final File file = createTempFile("knownSites.", ".bits");
+        createSites(new SimpleInterval("1", 10, 10)).write(file, Collections.singletonList("a.vcf"), DICTIONARY);
+        final SAMSequenceDictionary otherDictionary = new SAMSequenceDictionary(Arrays.asList(
+                new SAMSequenceRecord("1", 1000000), new SAMSequenceRecord("2", 2000001)));
+        DbSnpBitSetUtil.read(file, Collections.singletonList("a.vcf"), otherDictionary);
+    }
+}